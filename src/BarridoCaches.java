@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calcula los aciertos y fallos de muchas caches de datos con una traza grabada,
+ * sin volver a correr el pipeline. Usa las distancias de pila de Mattson: con
+ * reemplazo LRU un bloque esta en una cache de v vias si desde su ultimo acceso se
+ * tocaron menos de v bloques distintos de su conjunto. Entonces una sola pasada por
+ * la traza con una pila LRU por conjunto sirve para todas las asociatividades que
+ * tienen el mismo numero de conjuntos y el mismo tamano de bloque.
+ *
+ * Las geometrias se agrupan por (conjuntos, palabras por bloque) y cada grupo es
+ * una tarea de fork-join, asi que un barrido de decenas de geometrias tarda mas o
+ * menos lo que una pasada en cada procesador. Los resultados son los de una
+ * CacheDatos LRU que trae el bloque en cada acceso (WRITE_BACK o WRITE_THROUGH).
+ */
+public class BarridoCaches {
+	private final TrazaMemoria traza;
+
+	public BarridoCaches(TrazaMemoria traza){
+		this.traza = traza;
+	}
+
+	/**
+	 * Prueba todas las geometrias en el pool
+	 * @param geometrias - cada una es {conjuntos, vias, palabrasBloque}
+	 * @param pool - pool de fork-join donde corren las pasadas
+	 * @return un resultado por geometria, en el mismo orden
+	 */
+	public Resultado[] barrer(int[][] geometrias, ForkJoinPool pool){
+		final Resultado[] resultados = new Resultado[geometrias.length];
+		// indices de las geometrias de cada grupo, en el orden en que aparecen
+		Map<Long, List<Integer>> grupos = new LinkedHashMap<Long, List<Integer>>();
+		for(int i = 0; i < geometrias.length; ++i){
+			int[] g = geometrias[i];
+			if(g.length != 3 || g[0] <= 0 || g[1] <= 0 || Integer.bitCount(g[2]) != 1){
+				throw new IllegalArgumentException("Geometria invalida, debe ser CONJUNTOS,VIAS,PALABRAS: "
+						+ Arrays.toString(g));
+			}
+			Long clave = ((long) g[0] << 32) | g[2];
+			if(!grupos.containsKey(clave)){
+				grupos.put(clave, new ArrayList<Integer>());
+			}
+			grupos.get(clave).add(i);
+		}
+		final List<Pasada> pasadas = new ArrayList<Pasada>(grupos.size());
+		for(List<Integer> indices : grupos.values()){
+			pasadas.add(new Pasada(geometrias, indices, resultados));
+		}
+		pool.invoke(new RecursiveAction(){
+			@Override
+			protected void compute(){
+				ForkJoinTask.invokeAll(pasadas);
+			}
+		});
+		return resultados;
+	}
+
+	/**
+	 * Igual que barrer(geometrias, pool), en el pool comun
+	 */
+	public Resultado[] barrer(int[][] geometrias){
+		return barrer(geometrias, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Una pasada por la traza para un numero de conjuntos y un tamano de bloque.
+	 * Cada conjunto tiene una pila LRU de hasta maxVias bloques en un arreglo plano;
+	 * la posicion donde se encuentra el bloque es su distancia de pila.
+	 */
+	private final class Pasada extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[][] geometrias;
+		private final List<Integer> indices;
+		private final Resultado[] resultados;
+
+		Pasada(int[][] geometrias, List<Integer> indices, Resultado[] resultados){
+			this.geometrias = geometrias;
+			this.indices = indices;
+			this.resultados = resultados;
+		}
+
+		@Override
+		protected void compute(){
+			int conjuntos = geometrias[indices.get(0)][0];
+			int desplazamiento = 2 + Integer.numberOfTrailingZeros(geometrias[indices.get(0)][2]);
+			int maxVias = 0;
+			for(int i : indices){
+				maxVias = Math.max(maxVias, geometrias[i][1]);
+			}
+			int[] pila = new int[conjuntos * maxVias];
+			int[] ocupadas = new int[conjuntos];
+			long[] distancias = new long[maxVias];	// accesos que encontraron su bloque a cada distancia
+
+			int largo = traza.getLargo();
+			for(int a = 0; a < largo; ++a){
+				int bloque = traza.getDireccion(a) >>> desplazamiento;
+				int conjunto = bloque % conjuntos;
+				int tope = conjunto * maxVias;
+				int n = ocupadas[conjunto];
+				int d = 0;
+				while(d < n && pila[tope + d] != bloque){
+					d++;
+				}
+				if(d < n){
+					distancias[d]++;
+				}
+				else if(n < maxVias){
+					ocupadas[conjunto] = ++n;
+				}
+				else{
+					d = maxVias - 1;		// el bloque del fondo sale de todas las caches del grupo
+				}
+				System.arraycopy(pila, tope, pila, tope + 1, d);
+				pila[tope] = bloque;
+			}
+
+			for(int i : indices){
+				long aciertos = 0;
+				for(int d = 0; d < geometrias[i][1]; ++d){
+					aciertos += distancias[d];
+				}
+				resultados[i] = new Resultado(geometrias[i][0], geometrias[i][1], geometrias[i][2],
+						aciertos, largo - aciertos);
+			}
+		}
+	}//fin de la clase Pasada
+
+	/**
+	 * Lee geometrias escritas como CONJUNTOS/VIAS/PALABRAS, cada parte una lista
+	 * separada por comas, y devuelve todas las combinaciones. Por ejemplo
+	 * 1,2,4,8/1,2,4/4 son doce caches de bloques de 4 palabras.
+	 */
+	public static int[][] leerGeometrias(String texto){
+		String[] partes = texto.split("/");
+		if(partes.length != 3){
+			throw new IllegalArgumentException("Las geometrias se indican como CONJUNTOS/VIAS/PALABRAS: " + texto);
+		}
+		int[][] listas = new int[3][];
+		for(int p = 0; p < 3; ++p){
+			String[] valores = partes[p].split(",");
+			listas[p] = new int[valores.length];
+			for(int i = 0; i < valores.length; ++i){
+				listas[p][i] = Integer.parseInt(valores[i]);
+			}
+		}
+		int[][] geometrias = new int[listas[0].length * listas[1].length * listas[2].length][];
+		int g = 0;
+		for(int palabras : listas[2]){
+			for(int conjuntos : listas[0]){
+				for(int vias : listas[1]){
+					geometrias[g++] = new int[]{conjuntos, vias, palabras};
+				}
+			}
+		}
+		return geometrias;
+	}
+
+	/**
+	 * Aciertos y fallos de una geometria
+	 */
+	public static class Resultado {
+		public final int conjuntos;
+		public final int vias;
+		public final int palabrasBloque;
+		public final long aciertos;
+		public final long fallos;
+
+		Resultado(int conjuntos, int vias, int palabrasBloque, long aciertos, long fallos){
+			this.conjuntos = conjuntos;
+			this.vias = vias;
+			this.palabrasBloque = palabrasBloque;
+			this.aciertos = aciertos;
+			this.fallos = fallos;
+		}
+
+		/**
+		 * @return fallos entre accesos, 0 si no hubo accesos
+		 */
+		public double tasaFallos(){
+			long accesos = aciertos + fallos;
+			return accesos == 0 ? 0 : (double) fallos / accesos;
+		}
+
+		@Override
+		public String toString(){
+			return conjuntos + " conjuntos x " + vias + " vias x " + palabrasBloque + " palabras";
+		}
+	}//fin de la clase Resultado
+
+}//fin de la clase
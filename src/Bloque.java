@@ -1,51 +1,34 @@
 /*	Clase Bloque, que se usar para la memoria cach
- * 	
- * 	
+ * 	Es una vista de solo lectura de una linea de CacheDatos, que guarda sus
+ * 	etiquetas, estados y datos en arreglos planos. Se usa para imprimir la cache.
  */	
 public class Bloque {
-	private final int tamBloque = 4; //todo bloque tiene 4 palabras, que son 16 enteros
-	private int[] bloque; //cada bloque contiene 'tamBloque' enteros
-	private int etiqueta; //etiqueta del bloque de memoria que contiene
-	private char estado;//'c' para compartido, 'm' para modificado
-	
-	//constructor de la clase Bloque
-	public Bloque(){
-		etiqueta =-1; //como aun no contiene ningun bloque de memoria, se inicializa en -1
-		estado = 'v'; //por defecto el estado del bloque es 'v' de vacio porque aun no se le carga un bloque de memoria
-		bloque = new int[tamBloque];
-		//inicializa el bloque con ceros
-		for(int i=0; i<tamBloque; ++i){
-			bloque[i] = 0;
-		}//fin del for
-		
+	private final CacheDatos cache;	//cache que guarda los datos
+	private final int linea;		//linea de la cache que se ve por medio de este bloque
+
+	//constructor de la clase Bloque, lo crea la cache en getLinea
+	Bloque(CacheDatos cache, int linea){
+		this.cache = cache;
+		this.linea = linea;
 	}//fin del constructor
-	
+
+	//'v' de vacio si aun no se le carga un bloque de memoria, 'c' para compartido, 'm' para modificado
 	public char getEstado(){
-		return estado;
+		return cache.getEstado(linea);
 	}
-	
-	public void setEstado(char status){
-		estado = status;
-	}
-	
+
 	public int getValor(int indice){
-		return bloque[indice];
+		return cache.getDato(linea, indice);
 	}
-	
-	//set de una posicion unica del bloque
-	public void setBloquePos(int pos, int valor){
-		bloque[pos] = valor;
-	}// fin setBloque
-	
+
+	//etiqueta del bloque de memoria que contiene, -1 si aun no contiene ninguno
 	public int getEtiqueta(){
-		return etiqueta;
+		return cache.getEtiqueta(linea);
 	}
-	
-	public void setEtiqueta(int bloqueMem){
-		etiqueta = bloqueMem;
+
+	//todo bloque tiene las palabras por bloque de la cache, en el enunciado 4 palabras, que son 16 bytes
+	public int getTamBloque(){
+		return cache.getPalabrasBloque();
 	}
-	
-	//set de todas las posiciones del bloque (el bloque completo)
-	//recibe la posicion de memoria a partir de la cual hace el seteo
-	
+
 }//fin de la clase
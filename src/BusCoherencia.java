@@ -0,0 +1,153 @@
+/**
+ * Bus compartido por las caches de datos de los nucleos de un Multinucleo. Cada
+ * cache que falla pide el bloque por el bus y las demas lo revisan (snooping): la
+ * que lo tiene modificado lo guarda en memoria antes de que se lea (intervencion) y,
+ * si el bloque se pide para escribirlo, todas invalidan su copia. Una escritura a un
+ * bloque compartido solo manda la invalidacion.
+ *
+ * Con MSI un bloque que se lee queda compartido. Con MESI queda exclusivo si ninguna
+ * otra cache lo tiene, y escribirlo despues no usa el bus.
+ *
+ * El bus atiende un pedido a la vez: un pedido que llega mientras esta ocupado espera
+ * a que se desocupe. Los nucleos corren al mismo paso en un solo hilo, asi que el
+ * bus no necesita sincronizacion.
+ */
+public class BusCoherencia implements Coherencia {
+	private static final int CICLOS_INVALIDACION = 1;	// lo que ocupa el bus una invalidacion sin datos
+
+	private final Protocolo protocolo;
+	private CacheDatos[] caches = new CacheDatos[0];
+	private int libre;				// ciclo desde el que el bus esta libre
+	private boolean compartido;		// el ultimo pedido encontro el bloque en otra cache
+
+	// Estadisticas
+	private long lecturas;			// fallos de lectura (BusRd)
+	private long lecturasExclusivas;	// fallos de escritura (BusRdX)
+	private long actualizaciones;	// escrituras a un bloque compartido (BusUpgr)
+	private long invalidaciones;	// copias que se invalidaron en otras caches
+	private long intervenciones;	// bloques modificados que otra cache tuvo que guardar
+	private long ciclosOcupado;
+	private long ciclosEspera;		// ciclos que los pedidos esperaron el bus
+
+	public BusCoherencia(Protocolo protocolo){
+		this.protocolo = protocolo;
+	}
+
+	@Override
+	public void conectar(CacheDatos cache){
+		cache.setCoherencia(this, caches.length);
+		CacheDatos[] nuevas = new CacheDatos[caches.length + 1];
+		System.arraycopy(caches, 0, nuevas, 0, caches.length);
+		nuevas[caches.length] = cache;
+		caches = nuevas;
+	}
+
+	/**
+	 * Todas las caches revisan el pedido. Si es para escribir es un BusRdX, si no un BusRd.
+	 * @return ciclos de espera del bus mas los de las intervenciones
+	 */
+	@Override
+	public int pedir(CacheDatos quien, int bloqueMem, boolean escritura, int ahora, int costoLlenado){
+		if(escritura){
+			lecturasExclusivas++;
+		}
+		else{
+			lecturas++;
+		}
+		compartido = false;
+		int costo = 0;
+		for(CacheDatos cache : caches){
+			if(cache == quien){
+				continue;
+			}
+			int copia = cache.fisgonear(bloqueMem, escritura);
+			if(copia > 0){
+				compartido = true;
+				if(escritura){
+					invalidaciones++;
+				}
+			}
+			if(copia == 2){
+				intervenciones++;
+				costo += cache.costoIntervencion();
+			}
+		}
+		return ocupar(ahora, costo + costoLlenado) - costoLlenado;
+	}
+
+	/**
+	 * Manda un BusUpgr que todas las caches revisan
+	 * @return ciclos de espera del bus mas lo que tarda la invalidacion
+	 */
+	@Override
+	public int invalidarCopias(CacheDatos quien, int bloqueMem, int ahora){
+		actualizaciones++;
+		for(CacheDatos cache : caches){
+			if(cache != quien && cache.fisgonear(bloqueMem, true) > 0){
+				invalidaciones++;
+			}
+		}
+		return ocupar(ahora, CICLOS_INVALIDACION);
+	}
+
+	/**
+	 * Reserva el bus para un pedido
+	 * @return ciclos hasta que termina el pedido, contando la espera
+	 */
+	private int ocupar(int ahora, int duracion){
+		int espera = Math.max(0, libre - ahora);
+		libre = ahora + espera + duracion;
+		ciclosEspera += espera;
+		ciclosOcupado += duracion;
+		return espera + duracion;
+	}
+
+	@Override
+	public boolean fueCompartido(){
+		return compartido;
+	}
+
+	@Override
+	public Protocolo getProtocolo(){
+		return protocolo;
+	}
+
+	@Override
+	public long getLecturas(){
+		return lecturas;
+	}
+
+	@Override
+	public long getLecturasExclusivas(){
+		return lecturasExclusivas;
+	}
+
+	@Override
+	public long getActualizaciones(){
+		return actualizaciones;
+	}
+
+	@Override
+	public long getInvalidaciones(){
+		return invalidaciones;
+	}
+
+	@Override
+	public long getIntervenciones(){
+		return intervenciones;
+	}
+
+	public long getCiclosOcupado(){
+		return ciclosOcupado;
+	}
+
+	@Override
+	public long getCiclosEspera(){
+		return ciclosEspera;
+	}
+
+	@Override
+	public String toString(){
+		return protocolo.name().toLowerCase();
+	}
+}//fin de la clase
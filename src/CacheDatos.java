@@ -0,0 +1,1223 @@
+import java.util.Arrays;
+
+/**
+ * Cache de datos asociativa por conjuntos. El numero de conjuntos, las vias por
+ * conjunto y las palabras por bloque se escogen al crearla: con una via es de
+ * mapeo directo y con un solo conjunto es totalmente asociativa. Un bloque de
+ * memoria va al conjunto (bloque de memoria % conjuntos) y dentro del conjunto
+ * se busca en cada via, sin crear objetos en cada acceso.
+ *
+ * Las lineas se guardan en arreglos primitivos planos (etiquetas, estados y datos)
+ * en vez de un objeto Bloque por linea, asi una busqueda recorre enteros seguidos
+ * en memoria y llenar o guardar un bloque es un System.arraycopy. La via v del
+ * conjunto c es la linea c*vias + v y sus palabras estan en datos desde
+ * linea*palabrasBloque. Cuenta aciertos y fallos por conjunto para comparar geometrias.
+ *
+ * Un Precargador puede traer bloques con precargar(). Esas lineas quedan marcadas
+ * con el ciclo en que llega el bloque hasta su primer uso, para contar las
+ * precargas utiles, las que llegaron tarde y las que se reemplazaron sin usarse.
+ * Tambien se cuentan los ciclos de memoria de cada precarga y los bloques
+ * modificados que tuvo que guardar para hacerle lugar.
+ *
+ * Detras puede tener una CacheL2. Entonces los bloques que se traen o se guardan
+ * tardan lo que diga el segundo nivel en vez de ir directo a memoria.
+ *
+ * Al lado puede tener una cache de victimas, totalmente asociativa y LRU, que
+ * recibe los bloques que salen de la cache; un fallo que encuentra su bloque ahi
+ * lo intercambia con la victima en un ciclo. Los bloques modificados que salen
+ * pueden ir a un buffer de escritura FIFO que los escribe de fondo: el acceso no
+ * espera la escritura salvo que el buffer este lleno, y un fallo a un bloque que
+ * sigue en el buffer lo toma de ahi. Un bloque esta en un solo lugar: la cache,
+ * la cache de victimas o el buffer.
+ *
+ * Con varios nucleos la cache se conecta a una Coherencia (un bus o un directorio).
+ * Cada fallo pide el bloque y cada escritura a un bloque compartido invalida las
+ * otras copias, asi que las lineas tienen los estados de MSI o MESI.
+ */
+public class CacheDatos implements CacheL2.Superior {
+	/**
+	 * Politicas para escoger la via que se reemplaza cuando el conjunto esta lleno.
+	 * LRU: la que se uso hace mas tiempo.
+	 * PLRU: aproximacion de LRU con un arbol de bits por conjunto.
+	 * FIFO: la que se cargo hace mas tiempo.
+	 * ALEATORIO: cualquiera, con una semilla fija para que las corridas se repitan.
+	 */
+	public enum Reemplazo { LRU, PLRU, FIFO, ALEATORIO }
+
+	/**
+	 * Politicas de escritura.
+	 * WRITE_BACK: la escritura queda en la cache y el bloque modificado se copia a
+	 * memoria cuando se reemplaza o cuando se vacia la cache.
+	 * WRITE_THROUGH: trae el bloque a la cache (WRITE ALLOCATE) y ademas escribe la palabra en memoria.
+	 * WRITE_AROUND: escribe la palabra en memoria y solo la actualiza en la cache si el bloque ya estaba.
+	 */
+	public enum Escritura { WRITE_BACK, WRITE_THROUGH, WRITE_AROUND }
+
+	// Estados de una linea
+	private static final byte VACIO = 0;
+	private static final byte COMPARTIDO = 1;
+	private static final byte MODIFICADO = 2;
+	private static final byte EXCLUSIVO = 3;	// MESI: la unica copia, igual a la memoria
+
+	private static final int CICLOS_CERCANOS = 1;	// acierto en la cache de victimas o reenvio del buffer
+
+	private final int conjuntos;
+	private final int vias;
+	private final int palabrasBloque;
+	private final Reemplazo reemplazo;
+	private final Escritura escritura;
+	private final int desplazamiento;	// log2 de palabrasBloque
+	private final int[] etiquetas;		// bloque de memoria de cada linea, -1 si esta vacia
+	private final byte[] estados;		// VACIO, COMPARTIDO, MODIFICADO o EXCLUSIVO por linea
+	private final int[] datos;			// palabras de todas las lineas, una tras otra
+	private final int[] memoria;		// memoria de datos, la palabra 0 es la direccion dirBase
+	private final int bloqueBase;		// bloque de memoria de la palabra 0
+	private CacheL2 siguienteNivel;		// null: los fallos van directo a memoria
+
+	// Estado de las politicas de reemplazo
+	private final long[] ultimoUso;		// LRU: momento del ultimo acceso a cada linea
+	private long accesos;				// LRU: contador de accesos, hace de reloj
+	private final long[] arbol;			// PLRU: bits del arbol de cada conjunto, el nodo i es el bit i
+	private final int[] turno;			// FIFO: siguiente via que sale de cada conjunto
+	private int semilla = 0x2545F491;	// ALEATORIO: estado del xorshift
+
+	// Precargas
+	private final int[] llegadaPrecarga;	// ciclo en que llega el bloque precargado, -1 si no es precarga o ya se uso
+	private final boolean[] sacadoPorPrecarga;	// por bloque de memoria: una precarga lo saco de la cache
+	private int precargaUsada;			// llegada de la precarga que uso el ultimo acceso, -1 si ninguna
+	private boolean ultimoAcierto;		// el ultimo leer o escribir encontro el bloque
+
+	// Cache de victimas, una entrada por bloque
+	private int[] etiquetasVictimas = new int[0];	// bloque de memoria de cada entrada, -1 si esta vacia
+	private byte[] estadosVictimas = new byte[0];
+	private int[] datosVictimas = new int[0];
+	private long[] usoVictimas = new long[0];		// momento del ultimo uso, para LRU
+	private long accesosVictimas;
+
+	// Buffer de escritura, la entrada 0 es la mas vieja
+	private int[] bloquesBuffer = new int[0];		// bloque de memoria de cada entrada
+	private int[] listoBuffer = new int[0];			// ciclo en que termina de escribirse
+	private int[] datosBuffer = new int[0];
+	private int enBuffer;							// entradas ocupadas
+	private int ciclo;								// ciclo del acceso en curso
+
+	// Coherencia con las caches de los otros nucleos
+	private Coherencia coherencia;			// null: un solo nucleo
+	private int nodo;						// numero de esta cache en la coherencia
+	private boolean[] invalidadoPorBus = new boolean[0];	// por bloque de memoria: otro nucleo lo invalido
+	private int bloqueEnlazado = -1;		// bloque del ultimo LL, se pierde si sale de la cache
+	private int enlacePerdido = -1;		// bloque enlazado que se perdio desde el ultimo LL
+
+	// Estadisticas
+	private final long[] aciertosConjunto;
+	private final long[] fallosConjunto;
+	private long bloquesEscritos;		// bloques que se copiaron al siguiente nivel
+	private long palabrasEscritas;		// trafico de escritura al siguiente nivel, en palabras
+	private long precargasEmitidas;		// bloques que se trajeron por precarga
+	private long precargasUtiles;		// bloques precargados que se usaron
+	private long precargasInutiles;		// bloques precargados que se reemplazaron sin usarse
+	private long fallosPorContaminacion;	// fallos a bloques que habia sacado una precarga
+	private long precargasPisadas;		// precargas sin usar que reemplazo otra precarga
+	private long escriturasPrecarga;	// bloques modificados que salieron para hacerle lugar a una precarga
+	private long ciclosPrecarga;		// ciclos de memoria de las precargas, con esas escrituras
+	private boolean precargando;		// el desalojo en curso es de una precarga
+	private long aciertosVictimas;		// fallos que encontraron el bloque en la cache de victimas
+	private long escriturasBuffer;		// bloques que entraron al buffer de escritura
+	private long reenvios;				// fallos que tomaron el bloque del buffer
+	private long ciclosOcultos;			// ciclos de escritura que el buffer hizo de fondo
+	private long ciclosBufferLleno;		// ciclos que se espero porque el buffer estaba lleno
+	private long fallosCoherencia;		// fallos a bloques que habia invalidado otro nucleo
+	private long ciclosCoherencia;		// ciclos de esos fallos, de las invalidaciones y de esperar el bus o el directorio
+
+	// Tiempos de la memoria, en ciclos de reloj. En 0 la memoria responde en el mismo ciclo.
+	private int latenciaFallo;			// hasta que llega la primera palabra de un bloque que se trae
+	private int latenciaEscritura;		// hasta que la memoria acepta una escritura
+	private int ciclosPorPalabra;		// transferencia de cada palabra por el bus
+	private int ciclosAcceso;			// lo que tardo la memoria en el ultimo leer o escribir
+
+	/**
+	 * @param conjuntos - numero de conjuntos
+	 * @param vias - lineas por conjunto (1 es mapeo directo)
+	 * @param palabrasBloque - palabras de 4 bytes por bloque, potencia de 2
+	 * @param reemplazo - politica de reemplazo
+	 * @param escritura - politica de escritura
+	 * @param memoria - memoria de datos que respalda a la cache
+	 * @param dirBase - direccion en bytes de memoria[0], multiplo del tamano del bloque
+	 */
+	public CacheDatos(int conjuntos, int vias, int palabrasBloque, Reemplazo reemplazo, Escritura escritura,
+			int[] memoria, int dirBase){
+		if(conjuntos <= 0 || vias <= 0){
+			throw new IllegalArgumentException("La cache debe tener al menos un conjunto y una via");
+		}
+		if(Integer.bitCount(palabrasBloque) != 1 || (dirBase / 4) % palabrasBloque != 0
+				|| memoria.length % palabrasBloque != 0){
+			throw new IllegalArgumentException("Las palabras por bloque deben ser una potencia de 2 que divida"
+					+ " la memoria de datos: " + palabrasBloque);
+		}
+		if(reemplazo == Reemplazo.PLRU && (Integer.bitCount(vias) != 1 || vias > 64)){
+			throw new IllegalArgumentException("PLRU necesita un numero de vias potencia de 2, hasta 64: " + vias);
+		}
+		this.conjuntos = conjuntos;
+		this.vias = vias;
+		this.palabrasBloque = palabrasBloque;
+		this.reemplazo = reemplazo;
+		this.escritura = escritura;
+		this.memoria = memoria;
+		this.desplazamiento = Integer.numberOfTrailingZeros(palabrasBloque);
+		this.bloqueBase = dirBase / (4 * palabrasBloque);
+
+		int numLineas = conjuntos * vias;
+		etiquetas = new int[numLineas];
+		Arrays.fill(etiquetas, -1);
+		estados = new byte[numLineas];
+		datos = new int[numLineas * palabrasBloque];
+		ultimoUso = new long[numLineas];
+		arbol = new long[conjuntos];
+		turno = new int[conjuntos];
+		aciertosConjunto = new long[conjuntos];
+		fallosConjunto = new long[conjuntos];
+		llegadaPrecarga = new int[numLineas];
+		Arrays.fill(llegadaPrecarga, -1);
+		sacadoPorPrecarga = new boolean[memoria.length >> desplazamiento];
+	}
+
+	/**
+	 * Cache de mapeo directo de 8 bloques de 4 palabras con WRITE BACK, la del enunciado
+	 */
+	public CacheDatos(int[] memoria, int dirBase){
+		this(8, 1, 4, Reemplazo.LRU, Escritura.WRITE_BACK, memoria, dirBase);
+	}
+
+	/**
+	 * Lee una palabra. Si hay fallo se guarda el bloque que estaba modificado
+	 * (WRITE BACK) y se carga el bloque de la direccion
+	 * @param dirMemoria - direccion valida de memoria de datos
+	 * @return el valor de la palabra
+	 */
+	public int leer(int dirMemoria){
+		ciclosAcceso = 0;
+		precargaUsada = -1;
+		drenar(ciclo);
+		int linea = traer(dirMemoria, false);
+		return datos[(linea << desplazamiento) + palabra(dirMemoria)];
+	}
+
+	/**
+	 * Escribe una palabra segun la politica de escritura
+	 * @param dirMemoria - direccion valida de memoria de datos
+	 * @param valor - valor a guardar
+	 */
+	public void escribir(int dirMemoria, int valor){
+		ciclosAcceso = 0;
+		precargaUsada = -1;
+		drenar(ciclo);
+		if(escritura == Escritura.WRITE_AROUND){
+			int bloqueMem = calcularBloqueMemoria(dirMemoria);
+			int conjunto = bloqueMem % conjuntos;
+			int linea = buscar(bloqueMem, conjunto);
+			ultimoAcierto = linea >= 0;
+			if(linea >= 0){
+				aciertosConjunto[conjunto]++;
+				usarPrecarga(linea);
+				usar(conjunto, linea);
+				datos[(linea << desplazamiento) + palabra(dirMemoria)] = valor;
+			}
+			else{
+				fallosConjunto[conjunto]++;
+				contarContaminacion(bloqueMem);
+			}
+			escribirPalabra(dirMemoria, valor);
+			return;
+		}
+		int linea = traer(dirMemoria, true);
+		datos[(linea << desplazamiento) + palabra(dirMemoria)] = valor;
+		if(escritura == Escritura.WRITE_BACK){
+			if(coherencia != null && ultimoAcierto && estados[linea] == COMPARTIDO){
+				// las otras copias se invalidan antes de modificar el bloque
+				int costo = coherencia.invalidarCopias(this, etiquetas[linea], ciclo + ciclosAcceso);
+				ciclosAcceso += costo;
+				ciclosCoherencia += costo;
+			}
+			estados[linea] = MODIFICADO; //cuando se escribe en cache el estado debe pasar a modificado
+		}
+		else{
+			escribirPalabra(dirMemoria, valor);
+		}
+	}
+
+	/**
+	 * Escribe una sola palabra en memoria, sin pasar por la cache
+	 */
+	private void escribirPalabra(int dirMemoria, int valor){
+		memoria[(dirMemoria >>> 2) - (bloqueBase << desplazamiento)] = valor;
+		// las copias en la cache de victimas o en el buffer tambien quedan al dia
+		int bloqueMem = calcularBloqueMemoria(dirMemoria);
+		int entrada = buscarVictima(bloqueMem);
+		if(entrada >= 0){
+			datosVictimas[(entrada << desplazamiento) + palabra(dirMemoria)] = valor;
+		}
+		entrada = buscarBuffer(bloqueMem);
+		if(entrada >= 0){
+			datosBuffer[(entrada << desplazamiento) + palabra(dirMemoria)] = valor;
+		}
+		palabrasEscritas++;
+		if(siguienteNivel == null){
+			ciclosAcceso += latenciaEscritura + ciclosPorPalabra;
+		}
+		else{
+			ciclosAcceso += siguienteNivel.escribirPalabra(calcularBloqueMemoria(dirMemoria));
+		}
+	}
+
+	/**
+	 * Copia a memoria todos los bloques modificados y los deja compartidos.
+	 * Con WRITE_BACK es la unica forma, ademas del reemplazo, de que la memoria
+	 * quede al dia.
+	 */
+	public void vaciar(){
+		for(int linea = 0; linea < estados.length; ++linea){
+			if(estados[linea] == MODIFICADO){
+				guardar(linea);
+				if(siguienteNivel != null){
+					siguienteNivel.desalojo(etiquetas[linea], true);
+				}
+				estados[linea] = COMPARTIDO;
+			}
+		}
+		for(int entrada = 0; entrada < etiquetasVictimas.length; ++entrada){
+			if(estadosVictimas[entrada] == MODIFICADO){
+				guardar(etiquetasVictimas[entrada], datosVictimas, entrada);
+				if(siguienteNivel != null){
+					siguienteNivel.desalojo(etiquetasVictimas[entrada], true);
+				}
+				estadosVictimas[entrada] = COMPARTIDO;
+			}
+		}
+		drenar(Integer.MAX_VALUE);
+		if(siguienteNivel != null){
+			siguienteNivel.vaciar();
+		}
+	}
+
+	/**
+	 * Busca el bloque de la direccion y si no esta lo carga, cuenta el acierto o el fallo
+	 * @param escritura - el bloque se trae para escribirlo, con coherencia se invalidan las otras copias
+	 * @return la linea que tiene el bloque
+	 */
+	private int traer(int dirMemoria, boolean escritura){
+		int bloqueMem = calcularBloqueMemoria(dirMemoria);
+		int conjunto = bloqueMem % conjuntos;
+		int linea = buscar(bloqueMem, conjunto);
+		ultimoAcierto = linea >= 0;
+		if(linea >= 0){
+			aciertosConjunto[conjunto]++;
+			usarPrecarga(linea);
+		}
+		else{
+			fallosConjunto[conjunto]++;
+			contarContaminacion(bloqueMem);
+			linea = victima(conjunto);
+			int entrada = buscarVictima(bloqueMem);
+			if(entrada >= 0){
+				intercambiar(linea, entrada);
+			}
+			else{
+				desalojar(linea);
+				llenar(bloqueMem, linea, escritura);
+			}
+		}
+		usar(conjunto, linea);
+		return linea;
+	}
+
+	/**
+	 * Trae un bloque a la cache sin que lo pida una instruccion. No cuenta como
+	 * acierto ni fallo y lo que tarda no se suma al acceso en curso: la memoria lo
+	 * trae de fondo y llega en ahora mas el costo, que se suma a getCiclosPrecarga.
+	 * Si la linea tenia otra precarga sin usar, llegara o no, esa cuenta como inutil
+	 * y como pisada, pero no como contaminacion: el bloque no estaba por un acceso.
+	 * @param bloqueMem - bloque de memoria que se precarga
+	 * @param ahora - ciclo en que se pide
+	 * @return ciclos que tarda en llegar, -1 si ya estaba o no es de la memoria de datos
+	 */
+	public int precargar(int bloqueMem, int ahora){
+		if(bloqueMem < bloqueBase || bloqueMem - bloqueBase >= memoria.length >> desplazamiento){
+			return -1;
+		}
+		int conjunto = bloqueMem % conjuntos;
+		if(buscar(bloqueMem, conjunto) >= 0 || buscarVictima(bloqueMem) >= 0){
+			return -1;
+		}
+		int linea = victima(conjunto);
+		int antes = ciclosAcceso;
+		ciclosAcceso = 0;
+		ciclo = ahora;
+		boolean pisada = llegadaPrecarga[linea] >= 0;
+		precargando = true;
+		desalojar(linea);
+		precargando = false;
+		if(pisada){
+			precargasPisadas++;		// cargar la cuenta como inutil
+		}
+		else if(etiquetas[linea] != -1){
+			sacadoPorPrecarga[etiquetas[linea] - bloqueBase] = true;
+		}
+		llenar(bloqueMem, linea, false);
+		usar(conjunto, linea);
+		int costo = ciclosAcceso;
+		ciclosAcceso = antes;
+		llegadaPrecarga[linea] = ahora + costo;
+		precargasEmitidas++;
+		ciclosPrecarga += costo;
+		return costo;
+	}
+
+	/**
+	 * Primer uso de una linea precargada: la cuenta como util y guarda cuando llego
+	 */
+	private void usarPrecarga(int linea){
+		if(llegadaPrecarga[linea] >= 0){
+			precargaUsada = llegadaPrecarga[linea];
+			llegadaPrecarga[linea] = -1;
+			precargasUtiles++;
+		}
+	}
+
+	/**
+	 * Un fallo a un bloque que habia sacado una precarga es costo de la contaminacion
+	 */
+	private void contarContaminacion(int bloqueMem){
+		if(sacadoPorPrecarga[bloqueMem - bloqueBase]){
+			sacadoPorPrecarga[bloqueMem - bloqueBase] = false;
+			fallosPorContaminacion++;
+		}
+	}
+
+	/**
+	 * @return el bloque de memoria al que pertenece la direccion
+	 */
+	public int calcularBloqueMemoria(int dirMemoria){
+		return dirMemoria >>> (2 + desplazamiento);
+	}
+
+	/**
+	 * @return la posicion de la palabra de la direccion dentro de su bloque
+	 */
+	private int palabra(int dirMemoria){
+		return (dirMemoria >>> 2) & (palabrasBloque - 1);
+	}
+
+	/**
+	 * @return la linea del conjunto que tiene el bloque de memoria, -1 si no esta
+	 */
+	private int buscar(int bloqueMem, int conjunto){
+		int primera = conjunto * vias;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == bloqueMem){
+				return linea;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return true si el bloque de la direccion esta en la cache
+	 */
+	public boolean contiene(int dirMemoria){
+		int bloqueMem = calcularBloqueMemoria(dirMemoria);
+		return buscar(bloqueMem, bloqueMem % conjuntos) >= 0;
+	}
+
+	/**
+	 * Escoge la linea que se reemplaza en el conjunto. Primero usa las vias vacias.
+	 */
+	private int victima(int conjunto){
+		int primera = conjunto * vias;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == -1){
+				return linea;
+			}
+		}
+		switch(reemplazo){
+		case LRU:
+			int masVieja = primera;
+			for(int linea = primera + 1; linea < primera + vias; ++linea){
+				if(ultimoUso[linea] < ultimoUso[masVieja]){
+					masVieja = linea;
+				}
+			}
+			return masVieja;
+		case PLRU:
+			// baja por el arbol siguiendo los bits, cada bit apunta a la mitad menos usada
+			int nodo = 1;
+			while(nodo < vias){
+				nodo = 2*nodo + (int) ((arbol[conjunto] >>> nodo) & 1);
+			}
+			return primera + nodo - vias;
+		case FIFO:
+			int via = turno[conjunto];
+			turno[conjunto] = (via + 1) % vias;
+			return primera + via;
+		default:
+			semilla ^= semilla << 13;
+			semilla ^= semilla >>> 17;
+			semilla ^= semilla << 5;
+			return primera + (semilla & 0x7FFFFFFF) % vias;
+		}
+	}
+
+	/**
+	 * Actualiza el estado de la politica de reemplazo despues de un acceso a la linea
+	 */
+	private void usar(int conjunto, int linea){
+		if(reemplazo == Reemplazo.LRU){
+			ultimoUso[linea] = ++accesos;
+		}
+		else if(reemplazo == Reemplazo.PLRU){
+			// sube desde la hoja y deja cada bit del camino apuntando al otro lado
+			int nodo = vias + linea - conjunto * vias;
+			long bits = arbol[conjunto];
+			while(nodo > 1){
+				int padre = nodo / 2;
+				if((nodo & 1) == 0){
+					bits |= 1L << padre;		// se uso la izquierda, la victima va a la derecha
+				}
+				else{
+					bits &= ~(1L << padre);
+				}
+				nodo = padre;
+			}
+			arbol[conjunto] = bits;
+		}
+	}
+
+	/* No confundir con instruccion LOAD
+	 * Guarda en la linea un bloque traido desde memoria
+	 */
+	private void cargar(int bloqueMem, int linea){
+		if(llegadaPrecarga[linea] >= 0){
+			precargasInutiles++;		// se reemplaza una precarga que nadie uso
+			llegadaPrecarga[linea] = -1;
+		}
+		sacadoPorPrecarga[bloqueMem - bloqueBase] = false;
+		etiquetas[linea] = bloqueMem;
+		int entrada = buscarBuffer(bloqueMem);
+		if(entrada >= 0){
+			// el bloque no se ha terminado de escribir, se toma del buffer y sigue modificado
+			System.arraycopy(datosBuffer, entrada << desplazamiento, datos, linea << desplazamiento, palabrasBloque);
+			quitarDelBuffer(entrada);
+			estados[linea] = MODIFICADO;
+			ciclosAcceso += CICLOS_CERCANOS;
+			reenvios++;
+			return;
+		}
+		System.arraycopy(memoria, (bloqueMem - bloqueBase) << desplazamiento, datos, linea << desplazamiento, palabrasBloque);
+		estados[linea] = COMPARTIDO;
+		if(siguienteNivel == null){
+			ciclosAcceso += latenciaFallo + palabrasBloque * ciclosPorPalabra;
+		}
+		else{
+			ciclosAcceso += siguienteNivel.leerBloque(bloqueMem);
+			if(siguienteNivel.fueModificado()){
+				estados[linea] = MODIFICADO;	// con EXCLUSIVA la cache se queda con la modificacion
+			}
+		}
+	}
+
+	/**
+	 * Trae un bloque que falta. Con coherencia primero lo pide a las otras caches: la que lo
+	 * tiene modificado lo guarda en memoria y, si se va a escribir, todas lo invalidan.
+	 * Con MESI un bloque que se lee y no esta en ninguna otra cache queda EXCLUSIVO.
+	 */
+	private void llenar(int bloqueMem, int linea, boolean escritura){
+		if(coherencia == null){
+			cargar(bloqueMem, linea);
+			return;
+		}
+		int antes = ciclosAcceso;
+		boolean invalidado = invalidadoPorBus[bloqueMem - bloqueBase];
+		invalidadoPorBus[bloqueMem - bloqueBase] = false;
+		int costoBus = coherencia.pedir(this, bloqueMem, escritura, ciclo + ciclosAcceso,
+				latenciaFallo + palabrasBloque * ciclosPorPalabra);
+		ciclosAcceso += costoBus;
+		cargar(bloqueMem, linea);
+		if(!escritura && !coherencia.fueCompartido() && coherencia.getProtocolo() == Coherencia.Protocolo.MESI){
+			estados[linea] = EXCLUSIVO;
+		}
+		if(invalidado){
+			fallosCoherencia++;
+			ciclosCoherencia += ciclosAcceso - antes;
+		}
+		else{
+			ciclosCoherencia += costoBus;
+		}
+	}
+
+	/**
+	 * Otra cache pidio el bloque por el bus o el directorio. Si esta aqui modificado se
+	 * guarda en memoria; si la otra cache lo va a escribir la copia se invalida, si no
+	 * queda compartida.
+	 * @return 0 si no esta, 1 si habia una copia limpia, 2 si estaba modificado
+	 */
+	int fisgonear(int bloqueMem, boolean invalidar){
+		int linea = buscar(bloqueMem, bloqueMem % conjuntos);
+		if(linea < 0){
+			return 0;
+		}
+		int copia = 1;
+		if(estados[linea] == MODIFICADO){
+			guardar(linea);
+			copia = 2;
+		}
+		if(invalidar){
+			etiquetas[linea] = -1;
+			estados[linea] = VACIO;
+			llegadaPrecarga[linea] = -1;
+			invalidadoPorBus[bloqueMem - bloqueBase] = true;
+			if(bloqueEnlazado == bloqueMem){
+				perderEnlace();		// el SC de este nucleo va a fallar
+			}
+		}
+		else{
+			estados[linea] = COMPARTIDO;
+		}
+		return copia;
+	}
+
+	/**
+	 * @return ciclos que tarda esta cache en guardar en memoria un bloque modificado
+	 * que le pide otro nucleo
+	 */
+	int costoIntervencion(){
+		return latenciaEscritura + palabrasBloque * ciclosPorPalabra;
+	}
+
+	/**
+	 * Un LL marca su bloque. Con varios nucleos el SC solo escribe si el bloque no salio de la
+	 * cache ni lo invalido otro nucleo desde entonces.
+	 * @return el bloque enlazado que se perdio desde el LL anterior, o -1. Los hilos
+	 * del nucleo que lo tenian enlazado deben fallar su SC aunque este LL vuelva a
+	 * marcar el mismo bloque.
+	 */
+	public int enlazar(int dirMemoria){
+		int perdido = enlacePerdido;
+		enlacePerdido = -1;
+		bloqueEnlazado = calcularBloqueMemoria(dirMemoria);
+		return perdido;
+	}
+
+	private void perderEnlace(){
+		enlacePerdido = bloqueEnlazado;
+		bloqueEnlazado = -1;
+	}
+
+	/**
+	 * @return true si el bloque de la direccion sigue marcado por el LL; con un
+	 * solo nucleo siempre, porque ningun otro nucleo escribe
+	 */
+	public boolean enlazado(int dirMemoria){
+		return coherencia == null || bloqueEnlazado == calcularBloqueMemoria(dirMemoria);
+	}
+
+	/**
+	 * Saca el bloque de la linea antes de reemplazarlo. Si hay cache de victimas
+	 * el bloque pasa a ella, si no sale de la cache.
+	 */
+	private void desalojar(int linea){
+		if(etiquetas[linea] == -1){
+			return;
+		}
+		if(etiquetas[linea] == bloqueEnlazado){
+			perderEnlace();
+		}
+		if(etiquetasVictimas.length > 0){
+			meterVictima(linea);
+		}
+		else{
+			sacar(etiquetas[linea], estados[linea], datos, linea);
+		}
+	}
+
+	/**
+	 * Un bloque sale del primer nivel. Si estaba modificado se guarda, por el buffer
+	 * de escritura si lo hay; con un segundo nivel EXCLUSIVO tambien se le pasan los limpios.
+	 * @param origen - datos o datosVictimas
+	 * @param entrada - linea o entrada de origen que tiene el bloque
+	 */
+	private void sacar(int bloqueMem, byte estado, int[] origen, int entrada){
+		if(estado == MODIFICADO){
+			if(precargando){
+				escriturasPrecarga++;
+			}
+			if(bloquesBuffer.length > 0){
+				encolar(bloqueMem, origen, entrada);
+			}
+			else{
+				guardar(bloqueMem, origen, entrada);
+				ciclosAcceso += costoEscritura(bloqueMem);
+			}
+		}
+		else if(estado == COMPARTIDO && siguienteNivel != null){
+			ciclosAcceso += siguienteNivel.desalojo(bloqueMem, false);
+		}
+	}
+
+	/**
+	 * @return ciclos que tarda el siguiente nivel en recibir un bloque modificado
+	 */
+	private int costoEscritura(int bloqueMem){
+		if(siguienteNivel == null){
+			return latenciaEscritura + palabrasBloque * ciclosPorPalabra;
+		}
+		return siguienteNivel.desalojo(bloqueMem, true);
+	}
+
+	/**
+	 * @return la entrada de la cache de victimas que tiene el bloque, -1 si no esta
+	 */
+	private int buscarVictima(int bloqueMem){
+		for(int entrada = 0; entrada < etiquetasVictimas.length; ++entrada){
+			if(etiquetasVictimas[entrada] == bloqueMem){
+				return entrada;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Pasa el bloque de la linea a la cache de victimas. Si esta llena sale la
+	 * entrada LRU.
+	 */
+	private void meterVictima(int linea){
+		int entrada = 0;
+		for(int i = 0; i < etiquetasVictimas.length; ++i){
+			if(etiquetasVictimas[i] == -1){
+				entrada = i;
+				break;
+			}
+			if(usoVictimas[i] < usoVictimas[entrada]){
+				entrada = i;
+			}
+		}
+		if(etiquetasVictimas[entrada] != -1){
+			sacar(etiquetasVictimas[entrada], estadosVictimas[entrada], datosVictimas, entrada);
+		}
+		System.arraycopy(datos, linea << desplazamiento, datosVictimas, entrada << desplazamiento, palabrasBloque);
+		etiquetasVictimas[entrada] = etiquetas[linea];
+		estadosVictimas[entrada] = estados[linea];
+		usoVictimas[entrada] = ++accesosVictimas;
+	}
+
+	/**
+	 * Un fallo encontro su bloque en la cache de victimas: el bloque sube a la linea
+	 * y lo que tenia la linea baja a la entrada
+	 */
+	private void intercambiar(int linea, int entrada){
+		if(llegadaPrecarga[linea] >= 0){
+			precargasInutiles++;
+			llegadaPrecarga[linea] = -1;
+		}
+		int bloqueMem = etiquetasVictimas[entrada];
+		sacadoPorPrecarga[bloqueMem - bloqueBase] = false;
+		int desdeLinea = linea << desplazamiento;
+		int desdeEntrada = entrada << desplazamiento;
+		for(int i = 0; i < palabrasBloque; ++i){
+			int temp = datos[desdeLinea + i];
+			datos[desdeLinea + i] = datosVictimas[desdeEntrada + i];
+			datosVictimas[desdeEntrada + i] = temp;
+		}
+		int etiqueta = etiquetas[linea];
+		byte estado = estados[linea];
+		etiquetas[linea] = bloqueMem;
+		estados[linea] = estadosVictimas[entrada];
+		etiquetasVictimas[entrada] = etiqueta;		// si la linea estaba vacia la entrada queda vacia
+		estadosVictimas[entrada] = estado;
+		usoVictimas[entrada] = ++accesosVictimas;
+		ciclosAcceso += CICLOS_CERCANOS;
+		aciertosVictimas++;
+	}
+
+	/**
+	 * Lo llama el segundo nivel INCLUSIVO cuando reemplaza un bloque
+	 */
+	@Override
+	public int invalidar(int bloqueMem){
+		int linea = buscar(bloqueMem, bloqueMem % conjuntos);
+		if(linea < 0){
+			return invalidarVictima(bloqueMem);
+		}
+		int estado = 0;
+		if(estados[linea] == MODIFICADO){
+			guardar(linea);
+			estado = 1;
+		}
+		etiquetas[linea] = -1;
+		estados[linea] = VACIO;
+		llegadaPrecarga[linea] = -1;
+		return estado;
+	}
+
+	/**
+	 * Como invalidar, para un bloque que esta en la cache de victimas. Un bloque que
+	 * esta en el buffer de escritura se deja, el buffer lo termina de escribir.
+	 */
+	private int invalidarVictima(int bloqueMem){
+		int entrada = buscarVictima(bloqueMem);
+		if(entrada < 0){
+			return -1;
+		}
+		int estado = 0;
+		if(estadosVictimas[entrada] == MODIFICADO){
+			guardar(bloqueMem, datosVictimas, entrada);
+			estado = 1;
+		}
+		etiquetasVictimas[entrada] = -1;
+		estadosVictimas[entrada] = VACIO;
+		return estado;
+	}
+
+	/**
+	 * Mete un bloque modificado al final del buffer de escritura. La escritura empieza
+	 * cuando termina la anterior; si el buffer esta lleno el acceso espera a que
+	 * salga la primera entrada.
+	 */
+	private void encolar(int bloqueMem, int[] origen, int entrada){
+		int ahora = ciclo + ciclosAcceso;
+		drenar(ahora);
+		if(enBuffer == bloquesBuffer.length){
+			int espera = listoBuffer[0] - ahora;
+			ciclosAcceso += espera;
+			ciclosBufferLleno += espera;
+			ahora += espera;
+			drenar(ahora);
+		}
+		int costo = costoEscritura(bloqueMem);
+		int inicio = enBuffer == 0 ? ahora : Math.max(ahora, listoBuffer[enBuffer - 1]);
+		bloquesBuffer[enBuffer] = bloqueMem;
+		listoBuffer[enBuffer] = inicio + costo;
+		System.arraycopy(origen, entrada << desplazamiento, datosBuffer, enBuffer << desplazamiento, palabrasBloque);
+		enBuffer++;
+		escriturasBuffer++;
+		ciclosOcultos += costo;
+	}
+
+	/**
+	 * Escribe en memoria las entradas del buffer que terminaron hasta el ciclo dado
+	 */
+	private void drenar(int hasta){
+		while(enBuffer > 0 && listoBuffer[0] <= hasta){
+			guardar(bloquesBuffer[0], datosBuffer, 0);
+			quitarDelBuffer(0);
+		}
+	}
+
+	/**
+	 * @return la entrada del buffer de escritura que tiene el bloque, -1 si no esta
+	 */
+	private int buscarBuffer(int bloqueMem){
+		for(int entrada = 0; entrada < enBuffer; ++entrada){
+			if(bloquesBuffer[entrada] == bloqueMem){
+				return entrada;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Quita la entrada del buffer y corre las siguientes una posicion
+	 */
+	private void quitarDelBuffer(int entrada){
+		int siguientes = enBuffer - entrada - 1;
+		System.arraycopy(bloquesBuffer, entrada + 1, bloquesBuffer, entrada, siguientes);
+		System.arraycopy(listoBuffer, entrada + 1, listoBuffer, entrada, siguientes);
+		System.arraycopy(datosBuffer, (entrada + 1) << desplazamiento, datosBuffer, entrada << desplazamiento,
+				siguientes << desplazamiento);
+		enBuffer--;
+	}
+
+	/**
+	 * Pone una cache de victimas al lado de esta. Se llama con la cache vacia, antes
+	 * de correr el programa.
+	 * @param entradas - bloques que caben, 0 para no tener
+	 */
+	public void setVictimas(int entradas){
+		if(entradas < 0){
+			throw new IllegalArgumentException("La cache de victimas no puede tener entradas negativas: " + entradas);
+		}
+		etiquetasVictimas = new int[entradas];
+		Arrays.fill(etiquetasVictimas, -1);
+		estadosVictimas = new byte[entradas];
+		datosVictimas = new int[entradas * palabrasBloque];
+		usoVictimas = new long[entradas];
+	}
+
+	/**
+	 * Pone un buffer de escritura para los bloques modificados que salen. Se llama
+	 * con la cache vacia, antes de correr el programa.
+	 * @param entradas - bloques que caben, 0 para escribir sin buffer
+	 */
+	public void setBufferEscritura(int entradas){
+		if(entradas < 0){
+			throw new IllegalArgumentException("El buffer de escritura no puede tener entradas negativas: " + entradas);
+		}
+		bloquesBuffer = new int[entradas];
+		listoBuffer = new int[entradas];
+		datosBuffer = new int[entradas * palabrasBloque];
+		enBuffer = 0;
+	}
+
+	/**
+	 * El simulador dice en que ciclo va antes de cada acceso, para saber que
+	 * escrituras del buffer ya terminaron
+	 */
+	public void setCiclo(int ciclo){
+		this.ciclo = ciclo;
+	}
+
+	/**
+	 * Pone un segundo nivel detras de esta cache. Los dos deben tener el mismo
+	 * tamano de bloque.
+	 * @param siguienteNivel - null para ir directo a memoria
+	 */
+	public void setSiguienteNivel(CacheL2 siguienteNivel){
+		this.siguienteNivel = siguienteNivel;
+		if(siguienteNivel != null){
+			siguienteNivel.agregarSuperior(this);
+		}
+	}
+
+	public CacheL2 getSiguienteNivel(){
+		return siguienteNivel;
+	}
+
+	/**
+	 * Lo llama Coherencia.conectar. Solo se revisan las lineas de la cache, asi que
+	 * no se puede con cache de victimas, buffer de escritura ni segundo nivel, y las
+	 * escrituras deben quedarse en la cache (WRITE_BACK).
+	 * @param nodo - numero de la cache en el orden en que se conecto
+	 */
+	void setCoherencia(Coherencia coherencia, int nodo){
+		if(escritura != Escritura.WRITE_BACK || etiquetasVictimas.length > 0 || bloquesBuffer.length > 0
+				|| siguienteNivel != null){
+			throw new IllegalArgumentException("Con varios nucleos la cache de datos debe ser WRITE_BACK, sin cache"
+					+ " de victimas, buffer de escritura ni segundo nivel");
+		}
+		this.coherencia = coherencia;
+		this.nodo = nodo;
+		invalidadoPorBus = new boolean[memoria.length >> desplazamiento];
+	}
+
+	/**
+	 * @return numero de la cache en su coherencia
+	 */
+	int getNodo(){
+		return nodo;
+	}
+
+	/**
+	 * @return el bus o el directorio, null si hay un solo nucleo
+	 */
+	public Coherencia getCoherencia(){
+		return coherencia;
+	}
+
+	/**
+	 * @return bloque de memoria de la primera palabra de la memoria de datos
+	 */
+	int getBloqueBase(){
+		return bloqueBase;
+	}
+
+	/**
+	 * @return bloques de la memoria de datos
+	 */
+	int getBloquesMemoria(){
+		return memoria.length >> desplazamiento;
+	}
+
+	/* No confundir con instruccion STORE
+	 * Guarda en memoria el bloque que esta en la linea
+	 */
+	private void guardar(int linea){
+		guardar(etiquetas[linea], datos, linea);
+	}
+
+	/**
+	 * Guarda en memoria un bloque que esta en datos, datosVictimas o datosBuffer
+	 */
+	private void guardar(int bloqueMem, int[] origen, int entrada){
+		System.arraycopy(origen, entrada << desplazamiento, memoria, (bloqueMem - bloqueBase) << desplazamiento, palabrasBloque);
+		bloquesEscritos++;
+		palabrasEscritas += palabrasBloque;
+	}
+
+	/**
+	 * Configura cuanto tarda la memoria. Traer un bloque cuesta latenciaFallo mas
+	 * ciclosPorPalabra por cada palabra, guardar un bloque modificado latenciaEscritura
+	 * mas lo mismo y escribir una palabra suelta latenciaEscritura + ciclosPorPalabra.
+	 */
+	public void setTiempos(int latenciaFallo, int latenciaEscritura, int ciclosPorPalabra){
+		if(latenciaFallo < 0 || latenciaEscritura < 0 || ciclosPorPalabra < 0){
+			throw new IllegalArgumentException("Los tiempos de la memoria no pueden ser negativos");
+		}
+		this.latenciaFallo = latenciaFallo;
+		this.latenciaEscritura = latenciaEscritura;
+		this.ciclosPorPalabra = ciclosPorPalabra;
+	}
+
+	/**
+	 * @return ciclos que la memoria tardo en el ultimo leer o escribir, 0 si fue un
+	 * acierto sin escritura a memoria
+	 */
+	public int getCiclosAcceso(){
+		return ciclosAcceso;
+	}
+
+	/**
+	 * @return true si el ultimo leer o escribir encontro el bloque en la cache
+	 */
+	public boolean fueAcierto(){
+		return ultimoAcierto;
+	}
+
+	/**
+	 * @return el ciclo en que llego el bloque si el ultimo leer o escribir fue el
+	 * primer uso de una precarga, -1 si no
+	 */
+	public int getPrecargaUsada(){
+		return precargaUsada;
+	}
+
+	/**
+	 * Pone en cero las estadisticas, el contenido de la cache se queda
+	 */
+	public void reiniciarEstadisticas(){
+		for(int i = 0; i < conjuntos; ++i){
+			aciertosConjunto[i] = 0;
+			fallosConjunto[i] = 0;
+		}
+		bloquesEscritos = 0;
+		palabrasEscritas = 0;
+		precargasEmitidas = precargasUtiles = precargasInutiles = fallosPorContaminacion = 0;
+		precargasPisadas = escriturasPrecarga = ciclosPrecarga = 0;
+		aciertosVictimas = escriturasBuffer = reenvios = ciclosOcultos = ciclosBufferLleno = 0;
+		fallosCoherencia = ciclosCoherencia = 0;
+		Arrays.fill(sacadoPorPrecarga, false);
+	}
+
+	public int getConjuntos(){
+		return conjuntos;
+	}
+
+	public int getVias(){
+		return vias;
+	}
+
+	public int getPalabrasBloque(){
+		return palabrasBloque;
+	}
+
+	public Reemplazo getReemplazo(){
+		return reemplazo;
+	}
+
+	public Escritura getEscritura(){
+		return escritura;
+	}
+
+	/**
+	 * @return numero total de lineas, conjuntos*vias
+	 */
+	public int getLineas(){
+		return etiquetas.length;
+	}
+
+	/**
+	 * @param linea - la via v del conjunto c es la linea c*vias + v
+	 * @return vista de solo lectura de la linea
+	 */
+	public Bloque getLinea(int linea){
+		return new Bloque(this, linea);
+	}
+
+	/**
+	 * @return el bloque de memoria que tiene la linea, -1 si esta vacia
+	 */
+	public int getEtiqueta(int linea){
+		return etiquetas[linea];
+	}
+
+	/**
+	 * @return 'v' vacia, 'c' compartida, 'm' modificada o 'e' exclusiva (MESI)
+	 */
+	public char getEstado(int linea){
+		switch(estados[linea]){
+		case COMPARTIDO:
+			return 'c';
+		case MODIFICADO:
+			return 'm';
+		case EXCLUSIVO:
+			return 'e';
+		default:
+			return 'v';
+		}
+	}
+
+	/**
+	 * @return la palabra de la linea, sin contar acceso
+	 */
+	public int getDato(int linea, int palabra){
+		return datos[(linea << desplazamiento) + palabra];
+	}
+
+	public long getAciertos(int conjunto){
+		return aciertosConjunto[conjunto];
+	}
+
+	public long getFallos(int conjunto){
+		return fallosConjunto[conjunto];
+	}
+
+	public long getAciertos(){
+		long total = 0;
+		for(long a : aciertosConjunto){
+			total += a;
+		}
+		return total;
+	}
+
+	public long getFallos(){
+		long total = 0;
+		for(long f : fallosConjunto){
+			total += f;
+		}
+		return total;
+	}
+
+	/**
+	 * @return bloques completos que se copiaron a memoria (reemplazos y vaciar)
+	 */
+	public long getBloquesEscritos(){
+		return bloquesEscritos;
+	}
+
+	/**
+	 * @return palabras que se escribieron en memoria, contando los bloques completos
+	 * y las palabras sueltas de WRITE_THROUGH y WRITE_AROUND
+	 */
+	public long getPalabrasEscritas(){
+		return palabrasEscritas;
+	}
+
+	public long getPrecargasEmitidas(){
+		return precargasEmitidas;
+	}
+
+	public long getPrecargasUtiles(){
+		return precargasUtiles;
+	}
+
+	/**
+	 * @return bloques precargados que se reemplazaron sin que nadie los usara
+	 */
+	public long getPrecargasInutiles(){
+		return precargasInutiles;
+	}
+
+	/**
+	 * @return fallos a bloques que la cache tenia antes de que una precarga los sacara
+	 */
+	public long getFallosPorContaminacion(){
+		return fallosPorContaminacion;
+	}
+
+	/**
+	 * @return precargas que se reemplazaron sin usarse por otra precarga, tambien
+	 * contadas en getPrecargasInutiles
+	 */
+	public long getPrecargasPisadas(){
+		return precargasPisadas;
+	}
+
+	/**
+	 * @return bloques modificados que salieron de la cache o de la cache de victimas
+	 * para hacerle lugar a una precarga
+	 */
+	public long getEscriturasPrecarga(){
+		return escriturasPrecarga;
+	}
+
+	/**
+	 * @return ciclos de memoria que costaron las precargas, con las escrituras de los
+	 * bloques que sacaron; la memoria los gasta de fondo
+	 */
+	public long getCiclosPrecarga(){
+		return ciclosPrecarga;
+	}
+
+	/**
+	 * @return entradas de la cache de victimas, 0 si no hay
+	 */
+	public int getVictimas(){
+		return etiquetasVictimas.length;
+	}
+
+	/**
+	 * @return entradas del buffer de escritura, 0 si no hay
+	 */
+	public int getBufferEscritura(){
+		return bloquesBuffer.length;
+	}
+
+	/**
+	 * @return fallos de conflicto que la cache de victimas evito ir a buscar abajo
+	 */
+	public long getAciertosVictimas(){
+		return aciertosVictimas;
+	}
+
+	public long getEscriturasBuffer(){
+		return escriturasBuffer;
+	}
+
+	/**
+	 * @return fallos que tomaron el bloque del buffer antes de que se escribiera
+	 */
+	public long getReenvios(){
+		return reenvios;
+	}
+
+	/**
+	 * @return ciclos de escritura que el buffer escondio
+	 */
+	public long getCiclosOcultos(){
+		return ciclosOcultos;
+	}
+
+	/**
+	 * @return ciclos que los accesos esperaron porque el buffer estaba lleno
+	 */
+	public long getCiclosBufferLleno(){
+		return ciclosBufferLleno;
+	}
+
+	/**
+	 * @return fallos a bloques que esta cache tenia hasta que otro nucleo los invalido
+	 */
+	public long getFallosCoherencia(){
+		return fallosCoherencia;
+	}
+
+	/**
+	 * @return ciclos que costaron los fallos de coherencia, las invalidaciones que pidio
+	 * esta cache, los bloques que otro nucleo tuvo que guardar y la espera del bus o del directorio
+	 */
+	public long getCiclosCoherencia(){
+		return ciclosCoherencia;
+	}
+
+	@Override
+	public String toString(){
+		return conjuntos + " conjuntos x " + vias + " vias x " + palabrasBloque + " palabras, " + reemplazo + ", " + escritura;
+	}
+}//fin de la clase
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Cache de instrucciones de IF. Las instrucciones no cambian mientras corre el
+ * programa, asi que solo guarda etiquetas: IF sigue leyendo la instruccion
+ * predecodificada y la cache decide si hay que esperar el bloque. Usa reemplazo
+ * LRU y cuenta aciertos y fallos por hilo, para ver como se estorban los hilos
+ * que se cargaron uno detras de otro en la memoria de instrucciones.
+ *
+ * Las direcciones son las del PC, que avanza 4 por instruccion, asi que un
+ * bloque de n palabras tiene n instrucciones. Con una CacheL2 detras, el fallo
+ * tarda lo que diga el segundo nivel en vez de latenciaFallo.
+ */
+public class CacheInstrucciones implements CacheL2.Superior {
+	private final int conjuntos;
+	private final int vias;
+	private final int palabrasBloque;
+	private final int desplazamiento;	// log2 de palabrasBloque
+	private final int latenciaFallo;	// ciclos de un fallo sin segundo nivel
+	private final int[] etiquetas;		// bloque de cada linea, -1 si esta vacia
+	private final long[] ultimoUso;
+	private long accesos;
+	private CacheL2 siguienteNivel;
+
+	// Estadisticas por hilo
+	private long[] aciertosHilo = new long[1];
+	private long[] fallosHilo = new long[1];
+	private long ciclosEspera;			// ciclos que IF espero bloques
+
+	/**
+	 * @param conjuntos - numero de conjuntos
+	 * @param vias - lineas por conjunto
+	 * @param palabrasBloque - instrucciones por bloque, potencia de 2
+	 * @param latenciaFallo - ciclos que tarda en llegar un bloque de memoria
+	 */
+	public CacheInstrucciones(int conjuntos, int vias, int palabrasBloque, int latenciaFallo){
+		if(conjuntos <= 0 || vias <= 0){
+			throw new IllegalArgumentException("La cache de instrucciones debe tener al menos un conjunto y una via");
+		}
+		if(Integer.bitCount(palabrasBloque) != 1){
+			throw new IllegalArgumentException("Las palabras por bloque deben ser una potencia de 2: " + palabrasBloque);
+		}
+		if(latenciaFallo < 0){
+			throw new IllegalArgumentException("La latencia de un fallo no puede ser negativa");
+		}
+		this.conjuntos = conjuntos;
+		this.vias = vias;
+		this.palabrasBloque = palabrasBloque;
+		this.desplazamiento = Integer.numberOfTrailingZeros(palabrasBloque);
+		this.latenciaFallo = latenciaFallo;
+		etiquetas = new int[conjuntos * vias];
+		Arrays.fill(etiquetas, -1);
+		ultimoUso = new long[conjuntos * vias];
+	}
+
+	/**
+	 * Busca la instruccion del PC y si no esta trae su bloque
+	 * @param pc - direccion de la instruccion
+	 * @param hilo - hilo al que pertenece la instruccion
+	 * @return ciclos que IF tiene que esperar, 0 si fue un acierto
+	 */
+	public int leer(int pc, int hilo){
+		if(hilo >= aciertosHilo.length){
+			aciertosHilo = Arrays.copyOf(aciertosHilo, hilo + 1);
+			fallosHilo = Arrays.copyOf(fallosHilo, hilo + 1);
+		}
+		int bloque = pc >>> (2 + desplazamiento);
+		int primera = (bloque % conjuntos) * vias;
+		int masVieja = primera;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == bloque){
+				aciertosHilo[hilo]++;
+				ultimoUso[linea] = ++accesos;
+				return 0;
+			}
+			if(etiquetas[masVieja] != -1 && (etiquetas[linea] == -1 || ultimoUso[linea] < ultimoUso[masVieja])){
+				masVieja = linea;
+			}
+		}
+		fallosHilo[hilo]++;
+		etiquetas[masVieja] = bloque;
+		ultimoUso[masVieja] = ++accesos;
+		int costo = (siguienteNivel == null) ? latenciaFallo : siguienteNivel.leerBloque(bloque);
+		ciclosEspera += costo;
+		return costo;
+	}
+
+	/**
+	 * Lo llama el segundo nivel INCLUSIVO cuando reemplaza un bloque
+	 */
+	@Override
+	public int invalidar(int bloqueMem){
+		int primera = (bloqueMem % conjuntos) * vias;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == bloqueMem){
+				etiquetas[linea] = -1;
+				return 0;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Pone un segundo nivel detras, con el mismo tamano de bloque
+	 * @param siguienteNivel - null para que los fallos tarden latenciaFallo
+	 */
+	public void setSiguienteNivel(CacheL2 siguienteNivel){
+		if(siguienteNivel != null && siguienteNivel.getPalabrasBloque() != palabrasBloque){
+			throw new IllegalArgumentException("La cache de instrucciones y la L2 deben tener el mismo tamano de bloque");
+		}
+		this.siguienteNivel = siguienteNivel;
+		if(siguienteNivel != null){
+			siguienteNivel.agregarSuperior(this);
+		}
+	}
+
+	/**
+	 * Pone en cero las estadisticas, el contenido se queda
+	 */
+	public void reiniciarEstadisticas(){
+		Arrays.fill(aciertosHilo, 0);
+		Arrays.fill(fallosHilo, 0);
+		ciclosEspera = 0;
+	}
+
+	public int getConjuntos(){
+		return conjuntos;
+	}
+
+	public int getVias(){
+		return vias;
+	}
+
+	public int getPalabrasBloque(){
+		return palabrasBloque;
+	}
+
+	public int getLatenciaFallo(){
+		return latenciaFallo;
+	}
+
+	public long getAciertos(){
+		long total = 0;
+		for(long a : aciertosHilo){
+			total += a;
+		}
+		return total;
+	}
+
+	public long getFallos(){
+		long total = 0;
+		for(long f : fallosHilo){
+			total += f;
+		}
+		return total;
+	}
+
+	/**
+	 * @return aciertos de las instrucciones del hilo, en el orden en que se cargaron
+	 */
+	public long getAciertos(int hilo){
+		return hilo < aciertosHilo.length ? aciertosHilo[hilo] : 0;
+	}
+
+	public long getFallos(int hilo){
+		return hilo < fallosHilo.length ? fallosHilo[hilo] : 0;
+	}
+
+	/**
+	 * @return ciclos que IF espero bloques que no estaban
+	 */
+	public long getCiclosEspera(){
+		return ciclosEspera;
+	}
+
+	@Override
+	public String toString(){
+		return conjuntos + " conjuntos x " + vias + " vias x " + palabrasBloque + " palabras, fallo " + latenciaFallo + " ciclos";
+	}
+}//fin de la clase
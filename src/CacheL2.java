@@ -0,0 +1,320 @@
+import java.util.Arrays;
+
+/**
+ * Cache unificada de segundo nivel detras de la cache de datos (y de la de
+ * instrucciones cuando la haya). Usa el mismo tamano de bloque que el primer
+ * nivel y reemplazo LRU. Solo guarda etiquetas y estados: los datos siguen
+ * viajando entre el primer nivel y la memoria, el segundo nivel decide cuanto
+ * tarda cada transferencia y lleva sus propias estadisticas.
+ */
+public class CacheL2 {
+	/**
+	 * Politicas de inclusion con el primer nivel.
+	 * INCLUSIVA: todo bloque del primer nivel esta tambien aqui; al reemplazar un
+	 * bloque se invalida en el primer nivel.
+	 * EXCLUSIVA: un bloque esta en un nivel o en el otro. Un acierto pasa el bloque
+	 * al primer nivel y los bloques que salen del primer nivel entran aqui.
+	 * NINE: ni inclusiva ni exclusiva, los fallos se traen a los dos niveles y cada
+	 * uno reemplaza por su cuenta.
+	 */
+	public enum Inclusion { INCLUSIVA, EXCLUSIVA, NINE }
+
+	/**
+	 * Una cache de primer nivel que el segundo nivel puede invalidar
+	 */
+	public interface Superior {
+		/**
+		 * Saca el bloque de la cache. Si estaba modificado lo copia antes a memoria.
+		 * @return -1 si no estaba, 0 si estaba limpio, 1 si estaba modificado
+		 */
+		int invalidar(int bloqueMem);
+	}
+
+	// Estados de una linea
+	private static final byte VACIO = 0;
+	private static final byte COMPARTIDO = 1;
+	private static final byte MODIFICADO = 2;
+
+	private final int conjuntos;
+	private final int vias;
+	private final int palabrasBloque;
+	private final int latencia;			// ciclos de un acierto
+	private final Inclusion inclusion;
+	private final int[] etiquetas;		// bloque de memoria de cada linea, -1 si esta vacia
+	private final byte[] estados;
+	private final long[] ultimoUso;
+	private long accesos;
+	private Superior[] superiores = new Superior[0];
+	private boolean ultimoModificado;	// el ultimo leerBloque entrego un bloque modificado
+
+	// Tiempos de la memoria
+	private int latenciaFallo;
+	private int latenciaEscritura;
+	private int ciclosPorPalabra;
+
+	// Estadisticas
+	private long aciertos;
+	private long fallos;
+	private long bloquesEscritos;		// bloques que se copiaron a memoria
+	private long palabrasEscritas;		// trafico de escritura a memoria, en palabras
+	private long invalidaciones;		// bloques que la inclusion saco del primer nivel
+
+	/**
+	 * @param conjuntos - numero de conjuntos
+	 * @param vias - lineas por conjunto
+	 * @param palabrasBloque - las mismas del primer nivel
+	 * @param latencia - ciclos de un acierto
+	 * @param inclusion - politica de inclusion con el primer nivel
+	 */
+	public CacheL2(int conjuntos, int vias, int palabrasBloque, int latencia, Inclusion inclusion){
+		if(conjuntos <= 0 || vias <= 0){
+			throw new IllegalArgumentException("La cache L2 debe tener al menos un conjunto y una via");
+		}
+		if(latencia < 0){
+			throw new IllegalArgumentException("La latencia de la cache L2 no puede ser negativa");
+		}
+		this.conjuntos = conjuntos;
+		this.vias = vias;
+		this.palabrasBloque = palabrasBloque;
+		this.latencia = latencia;
+		this.inclusion = inclusion;
+		etiquetas = new int[conjuntos * vias];
+		Arrays.fill(etiquetas, -1);
+		estados = new byte[conjuntos * vias];
+		ultimoUso = new long[conjuntos * vias];
+	}
+
+	/**
+	 * Agrega una cache de primer nivel, para invalidarla con la politica INCLUSIVA
+	 */
+	public void agregarSuperior(Superior superior){
+		superiores = Arrays.copyOf(superiores, superiores.length + 1);
+		superiores[superiores.length - 1] = superior;
+	}
+
+	/**
+	 * Configura cuanto tarda la memoria, igual que en el primer nivel
+	 */
+	public void setTiempos(int latenciaFallo, int latenciaEscritura, int ciclosPorPalabra){
+		this.latenciaFallo = latenciaFallo;
+		this.latenciaEscritura = latenciaEscritura;
+		this.ciclosPorPalabra = ciclosPorPalabra;
+	}
+
+	/**
+	 * El primer nivel fallo y pide el bloque
+	 * @return ciclos que tarda en entregarlo
+	 */
+	public int leerBloque(int bloqueMem){
+		int conjunto = bloqueMem % conjuntos;
+		int linea = buscar(bloqueMem, conjunto);
+		if(linea >= 0){
+			aciertos++;
+			ultimoModificado = estados[linea] == MODIFICADO;
+			if(inclusion == Inclusion.EXCLUSIVA){
+				etiquetas[linea] = -1;		// el bloque se muda al primer nivel
+				estados[linea] = VACIO;
+			}
+			else{
+				ultimoUso[linea] = ++accesos;
+			}
+			return latencia;
+		}
+		fallos++;
+		ultimoModificado = false;
+		int costo = latencia + latenciaFallo + palabrasBloque * ciclosPorPalabra;
+		if(inclusion != Inclusion.EXCLUSIVA){
+			costo += ubicar(bloqueMem, conjunto, COMPARTIDO);
+		}
+		return costo;
+	}
+
+	/**
+	 * @return true si el ultimo bloque que se entrego estaba modificado en este nivel;
+	 * con EXCLUSIVA el primer nivel lo tiene que dejar modificado
+	 */
+	public boolean fueModificado(){
+		return ultimoModificado;
+	}
+
+	/**
+	 * Un bloque sale del primer nivel. Si estaba modificado se escribe aqui; con
+	 * EXCLUSIVA tambien entran los bloques limpios.
+	 * @return ciclos que tarda
+	 */
+	public int desalojo(int bloqueMem, boolean modificado){
+		if(!modificado && inclusion != Inclusion.EXCLUSIVA){
+			return 0;
+		}
+		int conjunto = bloqueMem % conjuntos;
+		int linea = buscar(bloqueMem, conjunto);
+		if(linea >= 0){
+			if(modificado){
+				estados[linea] = MODIFICADO;
+			}
+			ultimoUso[linea] = ++accesos;
+			return latencia;
+		}
+		return latencia + ubicar(bloqueMem, conjunto, modificado ? MODIFICADO : COMPARTIDO);
+	}
+
+	/**
+	 * El primer nivel escribe una palabra suelta (WRITE_THROUGH o WRITE_AROUND). Si el
+	 * bloque esta aqui se queda la escritura, si no sigue a memoria.
+	 * @return ciclos que tarda
+	 */
+	public int escribirPalabra(int bloqueMem){
+		int linea = buscar(bloqueMem, bloqueMem % conjuntos);
+		if(linea >= 0){
+			estados[linea] = MODIFICADO;
+			ultimoUso[linea] = ++accesos;
+			return latencia;
+		}
+		palabrasEscritas++;
+		return latencia + latenciaEscritura + ciclosPorPalabra;
+	}
+
+	/**
+	 * Cuenta como escritos a memoria los bloques modificados y los deja compartidos
+	 */
+	public void vaciar(){
+		for(int linea = 0; linea < estados.length; ++linea){
+			if(estados[linea] == MODIFICADO){
+				bloquesEscritos++;
+				palabrasEscritas += palabrasBloque;
+				estados[linea] = COMPARTIDO;
+			}
+		}
+	}
+
+	/**
+	 * Pone el bloque en su conjunto, reemplazando la linea LRU
+	 * @return ciclos que tarda sacar el bloque que estaba
+	 */
+	private int ubicar(int bloqueMem, int conjunto, byte estado){
+		int linea = victima(conjunto);
+		int costo = expulsar(linea);
+		etiquetas[linea] = bloqueMem;
+		estados[linea] = estado;
+		ultimoUso[linea] = ++accesos;
+		return costo;
+	}
+
+	/**
+	 * Saca el bloque de la linea. Con INCLUSIVA tambien sale del primer nivel, y si
+	 * alla estaba modificado se escribe a memoria junto con este.
+	 * @return ciclos que tarda escribirlo a memoria, 0 si estaba limpio
+	 */
+	private int expulsar(int linea){
+		if(etiquetas[linea] == -1){
+			return 0;
+		}
+		boolean modificado = estados[linea] == MODIFICADO;
+		if(inclusion == Inclusion.INCLUSIVA){
+			for(Superior superior : superiores){
+				int estado = superior.invalidar(etiquetas[linea]);
+				if(estado >= 0){
+					invalidaciones++;
+				}
+				modificado |= estado == 1;
+			}
+		}
+		etiquetas[linea] = -1;
+		estados[linea] = VACIO;
+		if(!modificado){
+			return 0;
+		}
+		bloquesEscritos++;
+		palabrasEscritas += palabrasBloque;
+		return latenciaEscritura + palabrasBloque * ciclosPorPalabra;
+	}
+
+	private int buscar(int bloqueMem, int conjunto){
+		int primera = conjunto * vias;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == bloqueMem){
+				return linea;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Primero una via vacia, si no la que se uso hace mas tiempo
+	 */
+	private int victima(int conjunto){
+		int primera = conjunto * vias;
+		int masVieja = primera;
+		for(int linea = primera; linea < primera + vias; ++linea){
+			if(etiquetas[linea] == -1){
+				return linea;
+			}
+			if(ultimoUso[linea] < ultimoUso[masVieja]){
+				masVieja = linea;
+			}
+		}
+		return masVieja;
+	}
+
+	/**
+	 * @return true si el bloque esta en este nivel
+	 */
+	public boolean contiene(int bloqueMem){
+		return buscar(bloqueMem, bloqueMem % conjuntos) >= 0;
+	}
+
+	/**
+	 * Pone en cero las estadisticas, el contenido se queda
+	 */
+	public void reiniciarEstadisticas(){
+		aciertos = fallos = bloquesEscritos = palabrasEscritas = invalidaciones = 0;
+	}
+
+	public int getConjuntos(){
+		return conjuntos;
+	}
+
+	public int getVias(){
+		return vias;
+	}
+
+	public int getPalabrasBloque(){
+		return palabrasBloque;
+	}
+
+	public int getLatencia(){
+		return latencia;
+	}
+
+	public Inclusion getInclusion(){
+		return inclusion;
+	}
+
+	public long getAciertos(){
+		return aciertos;
+	}
+
+	public long getFallos(){
+		return fallos;
+	}
+
+	public long getBloquesEscritos(){
+		return bloquesEscritos;
+	}
+
+	public long getPalabrasEscritas(){
+		return palabrasEscritas;
+	}
+
+	/**
+	 * @return bloques que la politica INCLUSIVA saco del primer nivel
+	 */
+	public long getInvalidaciones(){
+		return invalidaciones;
+	}
+
+	@Override
+	public String toString(){
+		return conjuntos + " conjuntos x " + vias + " vias, " + latencia + " ciclos, " + inclusion;
+	}
+}//fin de la clase
@@ -0,0 +1,75 @@
+/**
+ * Mantiene coherentes las caches de datos de los nucleos de un Multinucleo. La
+ * cache que falla pide el bloque y la que escribe un bloque compartido pide que se
+ * invaliden las otras copias; la implementacion decide a que caches les pregunta
+ * (todas con BusCoherencia, solo las que anota el directorio con
+ * DirectorioCoherencia) y cuantos ciclos cuesta. Para revisar una cache se llama
+ * CacheDatos.fisgonear.
+ */
+public interface Coherencia {
+	/**
+	 * Protocolos de coherencia.
+	 * MSI: modificado, compartido e invalido.
+	 * MESI: ademas exclusivo, para los bloques que solo tiene una cache.
+	 */
+	enum Protocolo { MSI, MESI }
+
+	/**
+	 * Agrega la cache de un nucleo. Se llama con la cache ya configurada, antes de correr.
+	 */
+	void conectar(CacheDatos cache);
+
+	/**
+	 * Una cache fallo y pide el bloque
+	 * @param quien - la cache que pide
+	 * @param bloqueMem - bloque de memoria
+	 * @param escritura - true si lo pide para escribirlo
+	 * @param ahora - ciclo del pedido
+	 * @param costoLlenado - lo que tarda la memoria en mandar el bloque, ya lo cuenta quien pide
+	 * @return ciclos que cuesta la coherencia, sin el llenado
+	 */
+	int pedir(CacheDatos quien, int bloqueMem, boolean escritura, int ahora, int costoLlenado);
+
+	/**
+	 * Una cache escribe un bloque que tiene compartido: las demas invalidan su copia
+	 * @return ciclos hasta que se puede escribir
+	 */
+	int invalidarCopias(CacheDatos quien, int bloqueMem, int ahora);
+
+	/**
+	 * @return true si el ultimo pedido encontro el bloque en otra cache
+	 */
+	boolean fueCompartido();
+
+	Protocolo getProtocolo();
+
+	/**
+	 * @return fallos de lectura
+	 */
+	long getLecturas();
+
+	/**
+	 * @return fallos de escritura
+	 */
+	long getLecturasExclusivas();
+
+	/**
+	 * @return escrituras a un bloque compartido
+	 */
+	long getActualizaciones();
+
+	/**
+	 * @return copias que se invalidaron en otras caches
+	 */
+	long getInvalidaciones();
+
+	/**
+	 * @return bloques modificados que otra cache tuvo que guardar
+	 */
+	long getIntervenciones();
+
+	/**
+	 * @return ciclos que los pedidos esperaron a que se desocupara el bus o el directorio
+	 */
+	long getCiclosEspera();
+}//fin de la interfaz
@@ -0,0 +1,43 @@
+/**
+ * Cola FIFO de hilos en un arreglo circular. Meter y sacar son O(1) y no crean
+ * objetos; la capacidad es el numero de hilos, porque un hilo esta a lo sumo
+ * una vez en la cola.
+ */
+final class ColaHilos {
+	private final int[] hilos;
+	private int primero;		// posicion del hilo que sale primero
+	private int largo;
+
+	ColaHilos(int capacidad){
+		hilos = new int[Math.max(1, capacidad)];
+	}
+
+	void meter(int hilo){
+		if(largo == hilos.length){
+			throw new IllegalStateException("La cola de hilos esta llena");
+		}
+		hilos[(primero + largo) % hilos.length] = hilo;
+		largo++;
+	}
+
+	/**
+	 * @return el hilo que lleva mas tiempo en la cola, -1 si esta vacia
+	 */
+	int sacar(){
+		if(largo == 0){
+			return -1;
+		}
+		int hilo = hilos[primero];
+		primero = (primero + 1) % hilos.length;
+		largo--;
+		return hilo;
+	}
+
+	boolean vacia(){
+		return largo == 0;
+	}
+
+	int largo(){
+		return largo;
+	}
+}//fin de la clase
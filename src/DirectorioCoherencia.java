@@ -0,0 +1,487 @@
+import java.util.Arrays;
+
+/**
+ * Coherencia por directorio para muchos nucleos. Cada bloque de memoria tiene un
+ * registro en el directorio con las caches que tienen copia y el nucleo que lo
+ * tiene exclusivo o modificado; un pedido solo visita esas caches en vez de
+ * preguntarle a todas como el bus. El directorio esta repartido: el bloque b vive
+ * en el nodo b % nodos, que atiende un pedido a la vez.
+ *
+ * Las copias se anotan de dos formas:
+ * mapa completo: un bit por nucleo en cada registro.
+ * punteros limitados: a lo sumo PUNTEROS nucleos por bloque. Si lo leen mas el
+ * registro se desborda y la siguiente escritura manda la invalidacion a todos los
+ * nucleos (difusion). Asi las lecturas nunca invalidan copias y un LL/SC no se
+ * queda fallando porque otros nucleos leen el mismo bloque.
+ *
+ * Los registros estan en arreglos planos (long[] para el mapa, int[] para los
+ * punteros y los duenos) indexados por el bloque de calcularBloqueMemoria, asi que
+ * buscar y recorrer las copias no crea objetos aunque haya 64 nucleos.
+ *
+ * Los nodos estan en una malla cuadrada y un mensaje tarda CICLOS_SALTO por cada
+ * salto entre nodos. Un fallo va al nodo del bloque, espera a que este libre,
+ * busca el registro y, si hace falta, manda el pedido al dueno o las invalidaciones
+ * a las copias, que contestan directo al que pidio; las invalidaciones van en
+ * paralelo y se espera la ultima respuesta. El bloque llega desde la memoria del
+ * nodo del bloque; ese llenado lo cuenta la cache y el nodo no atiende otro pedido
+ * hasta terminar de mandarlo.
+ *
+ * Las caches sacan bloques sin avisar, asi que el directorio puede anotar copias que
+ * ya no estan: la cache contesta que no lo tiene y el registro se corrige.
+ */
+public class DirectorioCoherencia implements Coherencia {
+	private final Protocolo protocolo;
+	private final int nodos;
+	private final int punteros;			// 0: mapa completo
+	private final int ciclosSalto;		// lo que tarda un mensaje en pasar de un nodo al vecino
+	private final int ciclosBusqueda;	// lo que tarda el nodo en leer el registro del bloque
+	private final int ancho;			// nodos por fila de la malla
+	private final int palabrasMapa;		// longs del mapa de cada bloque
+	private CacheDatos[] caches = new CacheDatos[0];
+	private int bloqueBase;
+	private boolean compartido;		// el ultimo pedido encontro el bloque en otra cache
+
+	// Registros del directorio, por bloque de memoria
+	private long[] mapa = new long[0];		// mapa completo: bit n en 1 si el nucleo n tiene copia
+	private int[] listaPunteros = new int[0];	// punteros limitados: los nucleos con copia, el mas viejo primero
+	private int[] usados = new int[0];		// punteros limitados: punteros ocupados
+	private boolean[] desbordado = new boolean[0];	// punteros limitados: hay mas copias que punteros
+	private int[] duenos = new int[0];		// nucleo con el bloque exclusivo o modificado, -1 si ninguno
+	private final int[] libre;				// por nodo: ciclo desde el que atiende otro pedido
+
+	// Estadisticas
+	private long lecturas;
+	private long lecturasExclusivas;
+	private long actualizaciones;
+	private long invalidaciones;
+	private long intervenciones;
+	private long desbordes;			// registros que se quedaron sin punteros
+	private long difusiones;		// invalidaciones que se mandaron a todos los nucleos
+	private long mensajes;
+	private long saltos;
+	private long ciclosEspera;		// ciclos que los pedidos esperaron a su nodo
+	private final long[] pedidosNodo;		// pedidos que mando cada nucleo
+	private final long[] respuestasNodo;	// datos y confirmaciones que mando cada nodo
+
+	/**
+	 * @param nodos - nucleos que se van a conectar
+	 * @param protocolo - MSI o MESI
+	 * @param punteros - punteros por bloque, 0 para mapa completo
+	 * @param ciclosSalto - ciclos por salto de un mensaje en la malla
+	 * @param ciclosBusqueda - ciclos para leer el registro de un bloque
+	 */
+	public DirectorioCoherencia(int nodos, Protocolo protocolo, int punteros, int ciclosSalto, int ciclosBusqueda){
+		if(nodos <= 0 || punteros < 0 || ciclosSalto < 0 || ciclosBusqueda < 0){
+			throw new IllegalArgumentException("Directorio invalido: " + nodos + " nodos, " + punteros
+					+ " punteros, " + ciclosSalto + " ciclos por salto, " + ciclosBusqueda + " de busqueda");
+		}
+		this.protocolo = protocolo;
+		this.nodos = nodos;
+		this.punteros = punteros;
+		this.ciclosSalto = ciclosSalto;
+		this.ciclosBusqueda = ciclosBusqueda;
+		int lado = 1;
+		while(lado * lado < nodos){
+			lado++;
+		}
+		ancho = lado;
+		palabrasMapa = (nodos + 63) >>> 6;
+		libre = new int[nodos];
+		pedidosNodo = new long[nodos];
+		respuestasNodo = new long[nodos];
+	}
+
+	/**
+	 * Agrega la cache del siguiente nucleo. La primera define los bloques del directorio;
+	 * todas deben tener el mismo tamano de bloque.
+	 */
+	@Override
+	public void conectar(CacheDatos cache){
+		if(caches.length == nodos){
+			throw new IllegalArgumentException("El directorio es de " + nodos + " nodos");
+		}
+		if(caches.length > 0 && (cache.getPalabrasBloque() != caches[0].getPalabrasBloque()
+				|| cache.getBloquesMemoria() != caches[0].getBloquesMemoria())){
+			throw new IllegalArgumentException("Las caches de un directorio deben tener el mismo tamano de bloque");
+		}
+		cache.setCoherencia(this, caches.length);
+		if(caches.length == 0){
+			int bloques = cache.getBloquesMemoria();
+			bloqueBase = cache.getBloqueBase();
+			duenos = new int[bloques];
+			Arrays.fill(duenos, -1);
+			if(punteros == 0){
+				mapa = new long[bloques * palabrasMapa];
+			}
+			else{
+				listaPunteros = new int[bloques * punteros];
+				usados = new int[bloques];
+				desbordado = new boolean[bloques];
+			}
+		}
+		CacheDatos[] nuevas = new CacheDatos[caches.length + 1];
+		System.arraycopy(caches, 0, nuevas, 0, caches.length);
+		nuevas[caches.length] = cache;
+		caches = nuevas;
+	}
+
+	/**
+	 * El pedido va al nodo del bloque. Si otro nucleo lo tiene exclusivo o modificado
+	 * el nodo se lo pide y ese nucleo contesta; si es para escribir ademas se invalidan
+	 * las copias.
+	 * @return ciclos de red, espera y busqueda hasta que el bloque puede llegar
+	 */
+	@Override
+	public int pedir(CacheDatos quien, int bloqueMem, boolean escritura, int ahora, int costoLlenado){
+		if(escritura){
+			lecturasExclusivas++;
+		}
+		else{
+			lecturas++;
+		}
+		int nodo = nodo(quien);
+		int bloque = bloqueMem - bloqueBase;
+		int casa = bloqueMem % nodos;
+		int llegada = llegar(nodo, casa, ahora);
+		compartido = false;
+
+		int costo = 0;		// desde que el nodo lee el registro hasta la ultima respuesta
+		int dueno = duenos[bloque];
+		if(dueno >= 0 && dueno != nodo){
+			int copia = caches[dueno].fisgonear(bloqueMem, escritura);
+			costo = mensaje(casa, dueno) + mensaje(dueno, nodo);
+			respuestasNodo[dueno]++;
+			if(copia == 2){
+				intervenciones++;
+				costo += caches[dueno].costoIntervencion();
+			}
+			if(copia > 0){
+				compartido = true;
+				if(escritura){
+					invalidaciones++;
+				}
+			}
+			quitar(bloque, dueno);
+			if(copia > 0 && !escritura){
+				agregar(bloque, dueno);	// el dueno se queda con una copia compartida
+			}
+		}
+		duenos[bloque] = -1;
+		if(escritura){
+			costo = Math.max(costo, invalidarOtras(bloqueMem, casa, nodo));
+			duenos[bloque] = nodo;
+		}
+		else{
+			compartido = compartido || hayOtras(bloque, nodo);
+			if(!compartido && protocolo == Protocolo.MESI){
+				duenos[bloque] = nodo;
+			}
+		}
+		agregar(bloque, nodo);
+		costo = Math.max(costo, mensaje(casa, nodo));	// el bloque sale de la memoria del nodo
+		respuestasNodo[casa]++;
+		libre[casa] = llegada + costo + costoLlenado;
+		return llegada + costo - ahora;
+	}
+
+	/**
+	 * El pedido va al nodo del bloque, que manda las invalidaciones; las copias
+	 * confirman directo al que pidio
+	 * @return ciclos hasta la ultima confirmacion
+	 */
+	@Override
+	public int invalidarCopias(CacheDatos quien, int bloqueMem, int ahora){
+		actualizaciones++;
+		int nodo = nodo(quien);
+		int casa = bloqueMem % nodos;
+		int llegada = llegar(nodo, casa, ahora);
+		int costo = Math.max(mensaje(casa, nodo), invalidarOtras(bloqueMem, casa, nodo));
+		respuestasNodo[casa]++;
+		duenos[bloqueMem - bloqueBase] = nodo;
+		agregar(bloqueMem - bloqueBase, nodo);
+		libre[casa] = llegada + costo;
+		return llegada + costo - ahora;
+	}
+
+	/**
+	 * El pedido viaja al nodo del bloque, espera a que se desocupe y lee el registro
+	 * @return ciclo en que el nodo termino de leer el registro
+	 */
+	private int llegar(int nodo, int casa, int ahora){
+		pedidosNodo[nodo]++;
+		int llegada = ahora + mensaje(nodo, casa);
+		int espera = Math.max(0, libre[casa] - llegada);
+		ciclosEspera += espera;
+		return llegada + espera + ciclosBusqueda;
+	}
+
+	/**
+	 * Invalida todas las copias menos la del nucleo, en paralelo, y las quita del registro
+	 * @return ciclos hasta que llega la ultima confirmacion
+	 */
+	private int invalidarOtras(int bloqueMem, int casa, int nodo){
+		int bloque = bloqueMem - bloqueBase;
+		int costo = 0;
+		if(punteros == 0){
+			int inicio = bloque * palabrasMapa;
+			for(int p = 0; p < palabrasMapa; ++p){
+				long bits = mapa[inicio + p];
+				while(bits != 0){
+					int otro = (p << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if(otro != nodo){
+						costo = Math.max(costo, invalidar(bloqueMem, casa, otro, nodo));
+					}
+				}
+				mapa[inicio + p] = 0;
+			}
+		}
+		else if(desbordado[bloque]){
+			difusiones++;
+			for(int otro = 0; otro < caches.length; ++otro){
+				if(otro != nodo){
+					costo = Math.max(costo, invalidar(bloqueMem, casa, otro, nodo));
+				}
+			}
+			desbordado[bloque] = false;
+			usados[bloque] = 0;
+		}
+		else{
+			int inicio = bloque * punteros;
+			for(int p = 0; p < usados[bloque]; ++p){
+				int otro = listaPunteros[inicio + p];
+				if(otro != nodo){
+					costo = Math.max(costo, invalidar(bloqueMem, casa, otro, nodo));
+				}
+			}
+			usados[bloque] = 0;
+		}
+		return costo;
+	}
+
+	/**
+	 * Manda la invalidacion a una copia, que confirma al nucleo que pidio
+	 * @return ciclos hasta la confirmacion
+	 */
+	private int invalidar(int bloqueMem, int casa, int otro, int nodo){
+		int copia = caches[otro].fisgonear(bloqueMem, true);
+		int costo = mensaje(casa, otro) + mensaje(otro, nodo);
+		respuestasNodo[otro]++;
+		if(copia > 0){
+			compartido = true;
+			invalidaciones++;
+		}
+		if(copia == 2){
+			intervenciones++;
+			costo += caches[otro].costoIntervencion();
+		}
+		return costo;
+	}
+
+	/**
+	 * Anota la copia del nucleo. Con punteros limitados y sin punteros libres el
+	 * registro queda desbordado.
+	 */
+	private void agregar(int bloque, int nucleo){
+		if(punteros == 0){
+			mapa[bloque * palabrasMapa + (nucleo >>> 6)] |= 1L << nucleo;
+			return;
+		}
+		if(desbordado[bloque]){
+			return;
+		}
+		int inicio = bloque * punteros;
+		int n = usados[bloque];
+		for(int p = 0; p < n; ++p){
+			if(listaPunteros[inicio + p] == nucleo){
+				return;
+			}
+		}
+		if(n == punteros){
+			desbordado[bloque] = true;
+			desbordes++;
+			return;
+		}
+		listaPunteros[inicio + n] = nucleo;
+		usados[bloque] = n + 1;
+	}
+
+	/**
+	 * Borra la copia del nucleo del registro. Un registro desbordado no sabe quien
+	 * tiene copia y sigue igual.
+	 */
+	private void quitar(int bloque, int nucleo){
+		if(punteros == 0){
+			mapa[bloque * palabrasMapa + (nucleo >>> 6)] &= ~(1L << nucleo);
+			return;
+		}
+		if(desbordado[bloque]){
+			return;
+		}
+		int inicio = bloque * punteros;
+		int n = usados[bloque];
+		for(int p = 0; p < n; ++p){
+			if(listaPunteros[inicio + p] == nucleo){
+				System.arraycopy(listaPunteros, inicio + p + 1, listaPunteros, inicio + p, n - p - 1);
+				usados[bloque] = n - 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true si el registro anota una copia de otro nucleo
+	 */
+	private boolean hayOtras(int bloque, int nucleo){
+		if(punteros == 0){
+			int inicio = bloque * palabrasMapa;
+			for(int p = 0; p < palabrasMapa; ++p){
+				long bits = mapa[inicio + p];
+				if(p == nucleo >>> 6){
+					bits &= ~(1L << nucleo);
+				}
+				if(bits != 0){
+					return true;
+				}
+			}
+			return false;
+		}
+		if(desbordado[bloque]){
+			return true;
+		}
+		int inicio = bloque * punteros;
+		for(int p = 0; p < usados[bloque]; ++p){
+			if(listaPunteros[inicio + p] != nucleo){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Cuenta un mensaje de la red
+	 * @return ciclos que tarda, 0 dentro del mismo nodo
+	 */
+	private int mensaje(int desde, int hasta){
+		int distancia = Math.abs(desde % ancho - hasta % ancho) + Math.abs(desde / ancho - hasta / ancho);
+		mensajes++;
+		saltos += distancia;
+		return distancia * ciclosSalto;
+	}
+
+	private int nodo(CacheDatos cache){
+		int n = cache.getNodo();
+		if(n >= caches.length || caches[n] != cache){
+			throw new IllegalArgumentException("La cache no esta conectada al directorio");
+		}
+		return n;
+	}
+
+	@Override
+	public boolean fueCompartido(){
+		return compartido;
+	}
+
+	@Override
+	public Protocolo getProtocolo(){
+		return protocolo;
+	}
+
+	public int getNodos(){
+		return nodos;
+	}
+
+	/**
+	 * @return punteros por bloque, 0 si es mapa completo
+	 */
+	public int getPunteros(){
+		return punteros;
+	}
+
+	public int getCiclosSalto(){
+		return ciclosSalto;
+	}
+
+	public int getCiclosBusqueda(){
+		return ciclosBusqueda;
+	}
+
+	@Override
+	public long getLecturas(){
+		return lecturas;
+	}
+
+	@Override
+	public long getLecturasExclusivas(){
+		return lecturasExclusivas;
+	}
+
+	@Override
+	public long getActualizaciones(){
+		return actualizaciones;
+	}
+
+	@Override
+	public long getInvalidaciones(){
+		return invalidaciones;
+	}
+
+	@Override
+	public long getIntervenciones(){
+		return intervenciones;
+	}
+
+	/**
+	 * @return veces que un registro se quedo sin punteros
+	 */
+	public long getDesbordes(){
+		return desbordes;
+	}
+
+	/**
+	 * @return escrituras que invalidaron por difusion porque el registro estaba desbordado
+	 */
+	public long getDifusiones(){
+		return difusiones;
+	}
+
+	/**
+	 * @return mensajes que pasaron por la red, contando los que no salen del nodo
+	 */
+	public long getMensajes(){
+		return mensajes;
+	}
+
+	/**
+	 * @return saltos entre nodos de todos los mensajes
+	 */
+	public long getSaltos(){
+		return saltos;
+	}
+
+	@Override
+	public long getCiclosEspera(){
+		return ciclosEspera;
+	}
+
+	/**
+	 * @return fallos e invalidaciones que pidio el nucleo
+	 */
+	public long getPedidos(int nodo){
+		return pedidosNodo[nodo];
+	}
+
+	/**
+	 * @return bloques y confirmaciones que mando el nodo, como dueno, como copia o
+	 * como nodo del bloque
+	 */
+	public long getRespuestas(int nodo){
+		return respuestasNodo[nodo];
+	}
+
+	@Override
+	public String toString(){
+		return protocolo.name().toLowerCase() + ", directorio " + (punteros == 0 ? "de mapa completo"
+				: "de " + punteros + " punteros") + ", " + nodos + " nodos";
+	}
+}//fin de la clase
@@ -0,0 +1,97 @@
+/**
+ * Condicion que termina el avance rapido funcional y pasa el estado al
+ * pipeline detallado. Se revisa antes de ejecutar cada instruccion.
+ */
+public final class Disparador {
+	public enum Tipo { INSTRUCCIONES, PC, CODIGO }
+
+	private final Tipo tipo;
+	private final long valor;
+
+	private Disparador(Tipo tipo, long valor){
+		this.tipo = tipo;
+		this.valor = valor;
+	}
+
+	/**
+	 * Se dispara cuando ya se ejecutaron n instrucciones
+	 */
+	public static Disparador instrucciones(long n){
+		return new Disparador(Tipo.INSTRUCCIONES, n);
+	}
+
+	/**
+	 * Se dispara cuando PC llega a la direccion indicada
+	 */
+	public static Disparador pc(int pc){
+		return new Disparador(Tipo.PC, pc);
+	}
+
+	/**
+	 * Se dispara antes de la primera instruccion con el codigo de operacion indicado
+	 */
+	public static Disparador codigo(int codigoOperacion){
+		return new Disparador(Tipo.CODIGO, codigoOperacion);
+	}
+
+	/**
+	 * Lee un disparador escrito como tipo:valor, por ejemplo instrucciones:5000,
+	 * pc:48 o codigo:50
+	 */
+	public static Disparador leer(String texto){
+		int dosPuntos = texto.indexOf(':');
+		if(dosPuntos < 0){
+			throw new IllegalArgumentException("El disparador debe ser tipo:valor, no " + texto);
+		}
+		Tipo tipo = Tipo.valueOf(texto.substring(0, dosPuntos).toUpperCase());
+		long valor = Long.parseLong(texto.substring(dosPuntos + 1));
+		return new Disparador(tipo, valor);
+	}
+
+	public Tipo getTipo(){
+		return tipo;
+	}
+
+	public long getValor(){
+		return valor;
+	}
+
+	/**
+	 * @param instrucciones - instrucciones ejecutadas hasta ahora
+	 * @param pc - direccion de la siguiente instruccion
+	 * @param instruccion - la siguiente instruccion, empacada
+	 * @return true si hay que parar antes de ejecutar la instruccion
+	 */
+	boolean seDispara(long instrucciones, int pc, long instruccion){
+		switch(tipo){
+		case INSTRUCCIONES:
+			return instrucciones >= valor;
+		case PC:
+			return pc == valor;
+		default:
+			return Instruccion.codigo(instruccion) == valor;
+		}
+	}
+
+	/**
+	 * Dice si se puede correr completo un bloque traducido sin saltarse el disparo
+	 * @param instrucciones - instrucciones ejecutadas hasta ahora
+	 * @param pc - direccion de la primera instruccion del bloque
+	 * @param largo - instrucciones del bloque
+	 */
+	boolean permiteBloque(long instrucciones, int pc, int largo){
+		switch(tipo){
+		case INSTRUCCIONES:
+			return instrucciones + largo <= valor;
+		case PC:
+			return valor < pc || valor >= pc + 4L*largo;
+		default:
+			return !TraductorBloques.puedeContener((int) valor);
+		}
+	}
+
+	@Override
+	public String toString(){
+		return tipo.name().toLowerCase() + ":" + valor;
+	}
+}//fin de la clase
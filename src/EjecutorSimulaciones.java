@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Corre varias instancias independientes de MIPSimulator sobre un pool
+ * de hilos acotado y reporta los ciclos simulados por segundo del lote.
+ * Cada simulador se corre completo en un solo hilo del pool, por lo que
+ * no se comparte estado entre tareas.
+ */
+public class EjecutorSimulaciones {
+	private final int numHilos;	// Tamano maximo del pool
+	private final boolean virtuales;	// el pool usa hilos virtuales
+
+	/**
+	 * @param numHilos - cantidad de simulaciones que pueden correr al mismo tiempo
+	 */
+	public EjecutorSimulaciones(int numHilos){
+		this(numHilos, false);
+	}
+
+	/**
+	 * @param numHilos - cantidad de simulaciones que pueden correr al mismo tiempo
+	 * @param virtuales - true para que cada simulacion corra en un hilo virtual, asi el
+	 * hilo que espera a las etapas del motor con hilos no ocupa un hilo del sistema
+	 */
+	public EjecutorSimulaciones(int numHilos, boolean virtuales){
+		if(numHilos <= 0){
+			throw new IllegalArgumentException("El numero de hilos debe ser positivo: " + numHilos);
+		}
+		this.numHilos = numHilos;
+		this.virtuales = virtuales;
+	}
+
+	/**
+	 * Crea un ejecutor con un hilo por procesador disponible
+	 */
+	public EjecutorSimulaciones(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Corre todos los simuladores (ya con sus hilos cargados) hasta que terminen.
+	 * Si una simulacion falla se reporta en la salida de error y no cuenta en el total.
+	 * @param simuladores - simuladores a correr
+	 * @return resumen con los ciclos totales y el tiempo que tardo el lote
+	 */
+	public Resumen correr(List<MIPSimulator> simuladores) throws InterruptedException{
+		return correr(simuladores, null);
+	}
+
+	/**
+	 * Igual que correr(simuladores), pero avisa al observador cada vez que una
+	 * simulacion termina. Los avisos se hacen desde el hilo que llama, en el
+	 * mismo orden de la lista.
+	 * @param simuladores - simuladores a correr
+	 * @param alTerminar - observador, puede ser null
+	 * @return resumen con los ciclos totales y el tiempo que tardo el lote
+	 */
+	public Resumen correr(List<MIPSimulator> simuladores, AlTerminar alTerminar) throws InterruptedException{
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(numHilos, Math.max(1, simuladores.size())),
+				FabricaHilos.fabrica(virtuales));
+		List<Future<MIPSimulator>> pendientes = new ArrayList<Future<MIPSimulator>>(simuladores.size());
+		long inicio = System.nanoTime();
+		try{
+			for(final MIPSimulator sim : simuladores){
+				pendientes.add(pool.submit(new Runnable(){
+					@Override
+					public void run(){
+						sim.runProgram();
+					}
+				}, sim));
+			}
+
+			long totalCiclos = 0;
+			int fallidas = 0;
+			for(int i = 0; i < pendientes.size(); ++i){
+				Throwable error = null;
+				try{
+					totalCiclos += pendientes.get(i).get().getClock();
+				}catch(ExecutionException e){
+					System.err.println("Fallo una simulacion: " + e.getCause());
+					error = e.getCause();
+					fallidas++;
+				}
+				if(alTerminar != null){
+					alTerminar.terminado(i, simuladores.get(i), error);
+				}
+			}
+			return new Resumen(simuladores.size() - fallidas, fallidas, totalCiclos, System.nanoTime() - inicio);
+		}finally{
+			pool.shutdownNow();
+		}
+	}//fin del metodo correr
+
+	/**
+	 * Observador que recibe cada simulacion del lote cuando termina
+	 */
+	public interface AlTerminar {
+		/**
+		 * @param indice - posicion del simulador en la lista
+		 * @param sim - el simulador ya terminado
+		 * @param error - la excepcion que lanzo, o null si termino bien
+		 */
+		void terminado(int indice, MIPSimulator sim, Throwable error);
+	}
+
+	/**
+	 * Resultado agregado de correr un lote de simulaciones
+	 */
+	public static class Resumen {
+		public final int simulaciones;	// simulaciones que terminaron bien
+		public final int fallidas;		// simulaciones que lanzaron una excepcion
+		public final long totalCiclos;	// suma de los ciclos de reloj de todas
+		public final long nanos;		// tiempo de pared del lote
+
+		Resumen(int simulaciones, int fallidas, long totalCiclos, long nanos){
+			this.simulaciones = simulaciones;
+			this.fallidas = fallidas;
+			this.totalCiclos = totalCiclos;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return ciclos simulados por segundo sumando todas las simulaciones
+		 */
+		public double ciclosPorSegundo(){
+			return nanos == 0 ? 0 : totalCiclos * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString(){
+			return String.format("%d simulaciones (%d fallidas), %d ciclos en %.3f s: %.0f ciclos/s",
+					simulaciones, fallidas, totalCiclos, nanos / 1e9, ciclosPorSegundo());
+		}
+	}//fin de la clase Resumen
+
+}//fin de la clase
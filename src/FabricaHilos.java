@@ -0,0 +1,49 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fabricas de hilos para las etapas del motor con hilos y para el pool de
+ * simulaciones. Los hilos virtuales (Java 21 o mas nuevo) se piden por reflexion
+ * para que el proyecto siga compilando para Java 8; si la maquina virtual no los
+ * tiene se usan hilos de plataforma.
+ */
+final class FabricaHilos {
+	private static final ThreadFactory VIRTUALES = buscarVirtuales();
+
+	private FabricaHilos(){
+	}
+
+	/**
+	 * @return true si la maquina virtual puede crear hilos virtuales
+	 */
+	static boolean hayVirtuales(){
+		return VIRTUALES != null;
+	}
+
+	/**
+	 * @param virtuales - true para pedir hilos virtuales
+	 * @return fabrica de hilos virtuales si se pidieron y hay, si no la de hilos de plataforma
+	 */
+	static ThreadFactory fabrica(boolean virtuales){
+		if(virtuales && VIRTUALES != null){
+			return VIRTUALES;
+		}
+		return Executors.defaultThreadFactory();
+	}
+
+	/**
+	 * Equivale a Thread.ofVirtual().factory(), o null si no existe o esta
+	 * deshabilitado (Java 19 y 20 lo tienen como preview)
+	 */
+	private static ThreadFactory buscarVirtuales(){
+		try{
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object constructor = ofVirtual.invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			return (ThreadFactory) factory.invoke(constructor);
+		}catch(Exception e){
+			return null;
+		}
+	}
+}//fin de la clase
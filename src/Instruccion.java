@@ -0,0 +1,37 @@
+/**
+ * Formato empacado de una instruccion ya decodificada. Las cuatro palabras
+ * de una instruccion (codigo, Y, X, n) se guardan en un solo long para que
+ * IF la busque con una sola lectura:
+ *
+ *   bits  0-7   codigo de operacion (con signo, -1 es una burbuja)
+ *   bits  8-15  campo Y (registro fuente)
+ *   bits 16-23  campo X (registro fuente o destino)
+ *   bits 32-63  campo n (inmediato o registro destino)
+ */
+final class Instruccion {
+	/** Instruccion vacia que se pasa por el pipeline cuando no hay nada que hacer */
+	static final long BURBUJA = empacar(-1, 0, 0, 0);
+
+	private Instruccion(){
+	}
+
+	static long empacar(int codigo, int y, int x, int n){
+		return (codigo & 0xFFL) | ((y & 0xFFL) << 8) | ((x & 0xFFL) << 16) | ((long) n << 32);
+	}
+
+	static int codigo(long instruccion){
+		return (byte) instruccion;
+	}
+
+	static int y(long instruccion){
+		return (int) (instruccion >>> 8) & 0xFF;
+	}
+
+	static int x(long instruccion){
+		return (int) (instruccion >>> 16) & 0xFF;
+	}
+
+	static int n(long instruccion){
+		return (int) (instruccion >> 32);
+	}
+}//fin de la clase
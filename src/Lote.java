@@ -0,0 +1,746 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Punto de entrada sin interfaz grafica para correr programas en lote.
+ * Cada programa se corre en su propio simulador, en paralelo, y por cada uno
+ * se escribe una linea JSON con los registros finales, los ciclos de reloj y
+ * las estadisticas de la cache.
+ *
+ * uso: java Main -q QUANTUM [opciones] programa...
+ *      java Main -y DIRECTORIO [-o ARCHIVO]
+ *      java Main -r TRAZA [-x GEOMETRIAS] [-j N] [-o ARCHIVO]
+ */
+public class Lote {
+	private static final String USO =
+			"uso: java Main -q QUANTUM [opciones] programa...\n"
+			+ "     java Main -y DIRECTORIO [-o ARCHIVO]\n"
+			+ "     java Main -r TRAZA [-x GEOMETRIAS] [-j N] [-o ARCHIVO]\n"
+			+ "  programa   archivo de un hilo, varios hilos separados por coma (a.txt,b.txt)\n"
+			+ "             o un directorio (cada archivo .txt es un programa)\n"
+			+ "  -q N       quantum para el round robin (1 a 100)\n"
+			+ "  -j N       simulaciones en paralelo (por defecto, una por procesador)\n"
+			+ "  -o ARCHIVO escribe los resultados en ARCHIVO en vez de la salida estandar\n"
+			+ "  -y DIR     no corre programas: corre las pruebas de Verificacion con los programas de DIR\n"
+			+ "  -m MOTOR   SECUENCIAL (por defecto), HILOS o FUNCIONAL\n"
+			+ "  -a DISP    avance rapido funcional hasta DISP (instrucciones:N, pc:N o codigo:N)\n"
+			+ "             y de ahi en adelante pipeline detallado\n"
+			+ "  -c         el avance rapido pasa por la cache para calentarla\n"
+			+ "  -v         con -m HILOS corre las etapas en hilos virtuales (Java 21 o mas nuevo)\n"
+			+ "  -k GEOM    cache de datos CONJUNTOS,VIAS,PALABRAS,REEMPLAZO, por ejemplo 4,2,4,lru\n"
+			+ "             (REEMPLAZO: lru, plru, fifo o aleatorio; por defecto 8,1,4,lru)\n"
+			+ "  -w POL     politica de escritura de la cache: write_back (por defecto),\n"
+			+ "             write_through o write_around\n"
+			+ "  -l TIEMPOS tiempos de la memoria FALLO,ESCRITURA,POR_PALABRA en ciclos, por ejemplo\n"
+			+ "             10,10,1 (por defecto 0,0,0: los fallos no cuestan ciclos)\n"
+			+ "  -n N       cache sin bloqueo con N MSHRs: los fallos no detienen MEM\n"
+			+ "             (por defecto 0: la cache se bloquea en cada fallo)\n"
+			+ "  -s L2      cache unificada de segundo nivel CONJUNTOS,VIAS,LATENCIA,INCLUSION, por ejemplo\n"
+			+ "             32,4,6,inclusiva (INCLUSION: inclusiva, exclusiva o nine)\n"
+			+ "  -i ICACHE  cache de instrucciones CONJUNTOS,VIAS,PALABRAS,LATENCIA_FALLO, por ejemplo 4,2,4,10\n"
+			+ "             (con -s los fallos van a la L2, que debe tener el mismo tamano de bloque)\n"
+			+ "  -p PRECARGA precargador de la cache de datos: siguiente[,GRADO],\n"
+			+ "             paso[,ENTRADAS,DISTANCIA] o flujo[,FLUJOS,PROFUNDIDAD]\n"
+			+ "  -b V,B     cache de victimas de V bloques y buffer de escritura de B bloques\n"
+			+ "             junto a la cache de datos, por ejemplo 4,4 (por defecto 0,0)\n"
+			+ "  -e PLAN    planificador de los hilos de un programa: rr (por defecto), prioridad,P0,P1,...\n"
+			+ "             (0 es la mas alta), loteria,B0,B1,..., paso,B0,B1,... (boletos por hilo)\n"
+			+ "             o memoria[,UMBRAL,PACIENCIA] (los hilos que esperan memoria van despues)\n"
+			+ "  -u MODO    multihilo: quantum (por defecto, cambio de contexto por software), intercalado\n"
+			+ "             (IF cambia de hilo en cada ciclo) o fallo (IF cambia cuando una carga falla\n"
+			+ "             o despues de QUANTUM busquedas seguidas); los dos ultimos tienen un banco de\n"
+			+ "             registros por hilo\n"
+			+ "  -d N[,PROT[,RED]] N nucleos con caches de datos privadas y memoria compartida, coherentes\n"
+			+ "             con PROT msi o mesi (por defecto); el hilo h va al nucleo h % N. RED es bus (por\n"
+			+ "             defecto) o directorio[,PUNTEROS[,SALTO,BUSQUEDA]]: directorio repartido de mapa\n"
+			+ "             completo (PUNTEROS 0, por defecto) o de PUNTEROS punteros por bloque, en una malla\n"
+			+ "             con SALTO ciclos por salto y BUSQUEDA ciclos por consulta (por defecto 1,1)\n"
+			+ "  -g ARCHIVO graba los accesos de MEM de cada programa en ARCHIVO (ARCHIVO.N si hay varios)\n"
+			+ "  -r TRAZA   no corre programas: prueba con la traza grabada todas las caches de -x\n"
+			+ "  -x GEOM    geometrias para -r como CONJUNTOS/VIAS/PALABRAS, cada parte una lista\n"
+			+ "             separada por comas (por defecto 1,2,4,8,16/1,2,4,8/1,2,4)\n"
+			+ "  -t         imprime lo que hace cada etapa en cada ciclo";
+
+	public static void main(String[] args) {
+		int quantum = -1;
+		int numHilos = Runtime.getRuntime().availableProcessors();
+		String salida = null;
+		String verificar = null;
+		MIPSimulator.Motor motor = MIPSimulator.Motor.SECUENCIAL;
+		boolean traza = false;
+		Disparador avanceRapido = null;
+		boolean calentarCache = false;
+		boolean virtuales = false;
+		String[] geometria = null;
+		CacheDatos.Escritura escritura = CacheDatos.Escritura.WRITE_BACK;
+		int[] tiempos = {0, 0, 0};
+		int mshrs = 0;
+		String precarga = null;
+		String[] segundoNivel = null;
+		int[] victimasBuffer = {0, 0};
+		int[] instrucciones = null;
+		String planificador = null;
+		MIPSimulator.Multihilo multihilo = MIPSimulator.Multihilo.QUANTUM;
+		int numNucleos = 0;
+		Coherencia.Protocolo protocolo = Coherencia.Protocolo.MESI;
+		int[] directorio = null;		// punteros, ciclos por salto y por busqueda; null para bus
+		String grabar = null;
+		String repetir = null;
+		String barrido = "1,2,4,8,16/1,2,4,8/1,2,4";
+		List<String> programas = new ArrayList<String>();
+
+		// Lee las opciones de la linea de comandos
+		try{
+			for(int i = 0; i < args.length; ++i){
+				if(args[i].equals("-q")){
+					quantum = Integer.parseInt(args[++i]);
+				}
+				else if(args[i].equals("-j")){
+					numHilos = Integer.parseInt(args[++i]);
+				}
+				else if(args[i].equals("-o")){
+					salida = args[++i];
+				}
+				else if(args[i].equals("-y")){
+					verificar = args[++i];
+				}
+				else if(args[i].equals("-m")){
+					motor = MIPSimulator.Motor.valueOf(args[++i].toUpperCase());
+				}
+				else if(args[i].equals("-a")){
+					avanceRapido = Disparador.leer(args[++i]);
+				}
+				else if(args[i].equals("-c")){
+					calentarCache = true;
+				}
+				else if(args[i].equals("-v")){
+					virtuales = true;
+				}
+				else if(args[i].equals("-k")){
+					geometria = args[++i].split(",");
+					if(geometria.length != 4){
+						salir("La cache se indica como CONJUNTOS,VIAS,PALABRAS,REEMPLAZO");
+					}
+				}
+				else if(args[i].equals("-w")){
+					escritura = CacheDatos.Escritura.valueOf(args[++i].toUpperCase().replace('-', '_'));
+				}
+				else if(args[i].equals("-l")){
+					String[] partes = args[++i].split(",");
+					if(partes.length != 3){
+						salir("Los tiempos de la memoria se indican como FALLO,ESCRITURA,POR_PALABRA");
+					}
+					for(int t = 0; t < 3; ++t){
+						tiempos[t] = Integer.parseInt(partes[t]);
+					}
+				}
+				else if(args[i].equals("-n")){
+					mshrs = Integer.parseInt(args[++i]);
+				}
+				else if(args[i].equals("-s")){
+					segundoNivel = args[++i].split(",");
+					if(segundoNivel.length != 4){
+						salir("La cache L2 se indica como CONJUNTOS,VIAS,LATENCIA,INCLUSION");
+					}
+				}
+				else if(args[i].equals("-i")){
+					String[] partes = args[++i].split(",");
+					if(partes.length != 4){
+						salir("La cache de instrucciones se indica como CONJUNTOS,VIAS,PALABRAS,LATENCIA_FALLO");
+					}
+					instrucciones = new int[4];
+					for(int t = 0; t < 4; ++t){
+						instrucciones[t] = Integer.parseInt(partes[t]);
+					}
+				}
+				else if(args[i].equals("-b")){
+					String[] partes = args[++i].split(",");
+					if(partes.length != 2){
+						salir("La cache de victimas y el buffer de escritura se indican como VICTIMAS,BUFFER");
+					}
+					for(int t = 0; t < 2; ++t){
+						victimasBuffer[t] = Integer.parseInt(partes[t]);
+					}
+				}
+				else if(args[i].equals("-p")){
+					precarga = args[++i];
+					Precargador.leer(precarga);
+				}
+				else if(args[i].equals("-e")){
+					planificador = args[++i];
+					Planificador.leer(planificador);
+				}
+				else if(args[i].equals("-u")){
+					multihilo = MIPSimulator.Multihilo.valueOf(args[++i].toUpperCase());
+				}
+				else if(args[i].equals("-d")){
+					String[] partes = args[++i].split(",");
+					boolean esBus = partes.length < 3 || partes[2].equals("bus");
+					if(partes.length > 6 || (esBus ? partes.length > 3 : !partes[2].equals("directorio"))
+							|| partes.length == 5){
+						salir("Los nucleos se indican como NUCLEOS[,PROTOCOLO[,bus|directorio[,PUNTEROS[,SALTO,BUSQUEDA]]]]");
+					}
+					numNucleos = Integer.parseInt(partes[0]);
+					if(partes.length >= 2){
+						protocolo = Coherencia.Protocolo.valueOf(partes[1].toUpperCase());
+					}
+					if(!esBus){
+						directorio = new int[]{0, 1, 1};
+						for(int t = 3; t < partes.length; ++t){
+							directorio[t - 3] = Integer.parseInt(partes[t]);
+						}
+						new DirectorioCoherencia(Math.max(numNucleos, 1), protocolo, directorio[0], directorio[1],
+								directorio[2]);
+					}
+				}
+				else if(args[i].equals("-g")){
+					grabar = args[++i];
+				}
+				else if(args[i].equals("-r")){
+					repetir = args[++i];
+				}
+				else if(args[i].equals("-x")){
+					barrido = args[++i];
+					BarridoCaches.leerGeometrias(barrido);
+				}
+				else if(args[i].equals("-t")){
+					traza = true;
+				}
+				else if(args[i].startsWith("-")){
+					salir("Opcion desconocida: " + args[i]);
+				}
+				else{
+					programas.addAll(expandir(args[i]));
+				}
+			}
+		}catch(ArrayIndexOutOfBoundsException e){
+			salir("Falta el valor de la ultima opcion");
+		}catch(IllegalArgumentException e){
+			salir("Valor invalido: " + e.getMessage());
+		}
+		if(verificar != null){
+			verificar(new File(verificar), salida);
+			return;
+		}
+		if(numHilos <= 0){
+			salir("El numero de simulaciones en paralelo debe ser positivo");
+		}
+		if(repetir != null){
+			barrer(repetir, BarridoCaches.leerGeometrias(barrido), numHilos, salida);
+			return;
+		}
+		if(quantum <= 0 || quantum > 100){
+			salir("El quantum debe estar entre 1 y 100");
+		}
+		if(mshrs < 0){
+			salir("El numero de MSHRs no puede ser negativo");
+		}
+		if(programas.isEmpty()){
+			salir("No se indico ningun programa");
+		}
+		if(numNucleos < 0){
+			salir("El numero de nucleos no puede ser negativo");
+		}
+		if(numNucleos > 0 && (escritura != CacheDatos.Escritura.WRITE_BACK || segundoNivel != null
+				|| victimasBuffer[0] > 0 || victimasBuffer[1] > 0)){
+			salir("Con -d la cache de datos debe ser write_back, sin L2, cache de victimas ni buffer de escritura");
+		}
+		if(numNucleos > 0 && (avanceRapido != null || grabar != null)){
+			salir("Con -d no se puede usar el avance rapido ni grabar la traza");
+		}
+		if(virtuales && !FabricaHilos.hayVirtuales()){
+			System.err.println("Esta maquina virtual no tiene hilos virtuales, se usan hilos de plataforma.");
+		}
+
+		// Crea un simulador (o un sistema de varios nucleos) por programa y le carga sus hilos
+		final List<MIPSimulator> simuladores = new ArrayList<MIPSimulator>();
+		final List<Multinucleo> sistemas = new ArrayList<Multinucleo>();
+		final List<String> nombres = new ArrayList<String>();
+		for(String programa : programas){
+			Multinucleo sistema = null;
+			MIPSimulator[] nucleos;
+			if(numNucleos > 0){
+				sistema = new Multinucleo(numNucleos, quantum, directorio == null ? new BusCoherencia(protocolo)
+						: new DirectorioCoherencia(numNucleos, protocolo, directorio[0], directorio[1], directorio[2]));
+				nucleos = new MIPSimulator[numNucleos];
+				for(int n = 0; n < numNucleos; ++n){
+					nucleos[n] = sistema.getNucleo(n);
+				}
+			}
+			else{
+				nucleos = new MIPSimulator[]{new MIPSimulator(quantum, motor)};
+			}
+			for(MIPSimulator sim : nucleos){
+				sim.setTraza(traza);
+				sim.setAvanceRapido(avanceRapido, calentarCache);
+				sim.setHilosVirtuales(virtuales);
+				if(geometria == null){
+					geometria = new String[]{"8", "1", "4", "lru"};
+				}
+				try{
+					sim.setCache(Integer.parseInt(geometria[0]), Integer.parseInt(geometria[1]),
+							Integer.parseInt(geometria[2]), CacheDatos.Reemplazo.valueOf(geometria[3].toUpperCase()),
+							escritura);
+					sim.setTiemposMemoria(tiempos[0], tiempos[1], tiempos[2]);
+					sim.setCacheVictimas(victimasBuffer[0]);
+					sim.setBufferEscritura(victimasBuffer[1]);
+					if(segundoNivel != null){
+						sim.setCacheL2(Integer.parseInt(segundoNivel[0]), Integer.parseInt(segundoNivel[1]),
+								Integer.parseInt(segundoNivel[2]), CacheL2.Inclusion.valueOf(segundoNivel[3].toUpperCase()));
+					}
+					sim.setMSHR(mshrs);
+					if(instrucciones != null){
+						sim.setCacheInstrucciones(instrucciones[0], instrucciones[1], instrucciones[2], instrucciones[3]);
+					}
+					if(precarga != null){
+						sim.setPrecargador(Precargador.leer(precarga));	// cada simulador aprende por su cuenta
+					}
+					if(grabar != null){
+						sim.setGrabacion(new TrazaMemoria());
+					}
+					if(planificador != null){
+						sim.setPlanificador(Planificador.leer(planificador));
+					}
+					sim.setMultihilo(multihilo);
+				}catch(IllegalArgumentException e){
+					salir("Cache invalida: " + e.getMessage());
+				}
+			}
+			boolean sePudo = true;
+			for(String hilo : programa.split(",")){
+				sePudo = sePudo && (sistema != null ? sistema.loadFile(new File(hilo)) : nucleos[0].loadFile(new File(hilo)));
+			}
+			if(!sePudo){
+				System.err.println("No se pudo cargar " + programa + ", se omite.");
+				continue;
+			}
+			if(sistema != null){
+				sistemas.add(sistema);
+			}
+			else{
+				simuladores.add(nucleos[0]);
+			}
+			nombres.add(programa);
+		}
+		if(numNucleos > 0){
+			correrNucleos(sistemas, nombres, salida, programas.size());
+			return;
+		}
+
+		PrintStream out = System.out;
+		try{
+			if(salida != null){
+				out = new PrintStream(new File(salida));
+			}
+			final PrintStream registro = out;
+			final String archivoTraza = grabar;
+			final boolean variasTrazas = simuladores.size() > 1;
+			EjecutorSimulaciones.Resumen resumen = new EjecutorSimulaciones(numHilos, virtuales).correr(simuladores,
+					new EjecutorSimulaciones.AlTerminar(){
+				@Override
+				public void terminado(int indice, MIPSimulator sim, Throwable error){
+					registro.println(aJson(nombres.get(indice), sim, error));
+					if(archivoTraza != null && error == null){
+						File archivo = new File(variasTrazas ? archivoTraza + "." + indice : archivoTraza);
+						try{
+							sim.getGrabacion().guardar(archivo);
+						}catch(IOException e){
+							System.err.println("No se pudo guardar la traza " + archivo + ": " + e.getMessage());
+						}
+					}
+				}
+			});
+			System.err.println(resumen);
+			if(resumen.fallidas > 0 || simuladores.size() < programas.size()){
+				System.exit(1);
+			}
+		}catch(FileNotFoundException e){
+			salir("No se pudo abrir el archivo de salida " + salida);
+		}catch(InterruptedException e){
+			System.err.println("Se interrumpio la corrida del lote.");
+			System.exit(1);
+		}finally{
+			if(out != System.out){
+				out.close();
+			}
+		}
+	}//fin del metodo main
+
+	/**
+	 * Corre uno por uno los sistemas de varios nucleos y escribe una linea JSON por
+	 * cada uno. Cada sistema corre sus nucleos al mismo paso en este hilo.
+	 */
+	private static void correrNucleos(List<Multinucleo> sistemas, List<String> nombres, String salida, int programas){
+		PrintStream out = System.out;
+		int fallidas = 0;
+		long totalCiclos = 0;
+		long inicio = System.nanoTime();
+		try{
+			if(salida != null){
+				out = new PrintStream(new File(salida));
+			}
+			for(int i = 0; i < sistemas.size(); ++i){
+				Multinucleo sistema = sistemas.get(i);
+				Throwable error = null;
+				try{
+					sistema.runProgram();
+					totalCiclos += sistema.getClock();
+				}catch(RuntimeException e){
+					error = e;
+					fallidas++;
+				}
+				out.println(aJson(nombres.get(i), sistema, error));
+			}
+		}catch(FileNotFoundException e){
+			salir("No se pudo abrir el archivo de salida " + salida);
+		}finally{
+			if(out != System.out){
+				out.close();
+			}
+		}
+		System.err.println(new EjecutorSimulaciones.Resumen(sistemas.size() - fallidas, fallidas, totalCiclos,
+				System.nanoTime() - inicio));
+		if(fallidas > 0 || sistemas.size() < programas){
+			System.exit(1);
+		}
+	}//fin del metodo correrNucleos
+
+	/**
+	 * Lee una traza grabada con -g y escribe una linea JSON por geometria con sus
+	 * aciertos y fallos. Las geometrias se reparten en un pool de fork-join.
+	 */
+	private static void barrer(String archivoTraza, int[][] geometrias, int numHilos, String salida){
+		TrazaMemoria traza = null;
+		try{
+			traza = TrazaMemoria.leer(new File(archivoTraza));
+		}catch(IOException e){
+			salir("No se pudo leer la traza: " + e.getMessage());
+		}
+		BarridoCaches.Resultado[] resultados = null;
+		ForkJoinPool pool = new ForkJoinPool(numHilos);
+		long inicio = System.nanoTime();
+		try{
+			resultados = new BarridoCaches(traza).barrer(geometrias, pool);
+		}catch(IllegalArgumentException e){
+			salir("Cache invalida: " + e.getMessage());
+		}finally{
+			pool.shutdown();
+		}
+		long nanos = System.nanoTime() - inicio;
+
+		PrintStream out = System.out;
+		try{
+			if(salida != null){
+				out = new PrintStream(new File(salida));
+			}
+			for(BarridoCaches.Resultado r : resultados){
+				out.println("{\"traza\":\"" + escapar(archivoTraza) + "\",\"conjuntos\":" + r.conjuntos
+						+ ",\"vias\":" + r.vias + ",\"palabras\":" + r.palabrasBloque
+						+ ",\"aciertos\":" + r.aciertos + ",\"fallos\":" + r.fallos
+						+ ",\"tasaFallos\":" + String.format(Locale.ROOT, "%.4f", r.tasaFallos()) + "}");
+			}
+		}catch(FileNotFoundException e){
+			salir("No se pudo abrir el archivo de salida " + salida);
+		}finally{
+			if(out != System.out){
+				out.close();
+			}
+		}
+		System.err.println(String.format("%d geometrias, %d accesos en %.3f s", resultados.length, traza.getLargo(),
+				nanos / 1e9));
+	}//fin del metodo barrer
+
+	/**
+	 * Si el argumento es un directorio devuelve sus archivos .txt ordenados,
+	 * si no devuelve el argumento tal cual (uno o varios hilos separados por coma)
+	 */
+	private static List<String> expandir(String argumento){
+		File dir = new File(argumento);
+		if(!dir.isDirectory()){
+			return Arrays.asList(argumento);
+		}
+		List<String> archivos = new ArrayList<String>();
+		File[] contenido = dir.listFiles();
+		if(contenido != null){
+			Arrays.sort(contenido);
+			for(File f : contenido){
+				if(f.isFile() && f.getName().endsWith(".txt")){
+					archivos.add(f.getPath());
+				}
+			}
+		}
+		return archivos;
+	}
+
+	/**
+	 * Corre las pruebas de Verificacion con los programas de un directorio. Termina
+	 * la maquina virtual con 1 si alguna fallo, y con 0 si no, porque pueden quedar
+	 * hilos de etapas de un motor que no termino.
+	 */
+	private static void verificar(File directorio, String salida){
+		if(!directorio.isDirectory()){
+			salir("No existe el directorio " + directorio);
+		}
+		PrintStream out = System.out;
+		int fallidas = 0;
+		try{
+			if(salida != null){
+				out = new PrintStream(new File(salida));
+			}
+			fallidas = Verificacion.correr(directorio, out);
+		}catch(FileNotFoundException e){
+			salir("No se pudo abrir el archivo de salida " + salida);
+		}finally{
+			if(salida != null){
+				out.close();
+			}
+		}
+		System.exit(fallidas > 0 ? 1 : 0);
+	}//fin del metodo verificar
+
+	/**
+	 * Arma el registro JSON (una linea) con el resultado de un programa
+	 */
+	static String aJson(String programa, MIPSimulator sim, Throwable error){
+		return aJson(new StringBuilder(), programa, sim, error, "").toString();
+	}
+
+	/**
+	 * Agrega a sb el registro JSON de un simulador
+	 * @param camposCache - campos que van al principio del objeto cache, cada uno
+	 * seguido de una coma; "" si no hay
+	 * @return sb
+	 */
+	private static StringBuilder aJson(StringBuilder sb, String programa, MIPSimulator sim, Throwable error,
+			String camposCache){
+		sb.append("{\"programa\":\"").append(escapar(programa)).append('"');
+		if(error != null){
+			sb.append(",\"error\":\"").append(escapar(String.valueOf(error))).append("\"}");
+			return sb;
+		}
+		sb.append(",\"ciclos\":").append(sim.getClock());
+		sb.append(",\"ciclosAvance\":").append(sim.getCiclosAvanceRapido());
+		sb.append(",\"ciclosEsperaMemoria\":").append(sim.getCiclosEsperaMemoria());
+		sb.append(",\"registros\":[");
+		int[] registros = sim.getRegistros();
+		for(int i = 0; i < registros.length; ++i){
+			if(i > 0){
+				sb.append(',');
+			}
+			sb.append(registros[i]);
+		}
+		sb.append(']');
+		if(sim.getHilosCargados() > 1){
+			int hilos = sim.getHilosCargados();
+			long instrucciones = 0;
+			int terminados = 0;
+			for(int h = 0; h < hilos; ++h){
+				instrucciones += sim.getInstruccionesHilo(h);
+				terminados += sim.getRetornoHilo(h) >= 0 ? 1 : 0;
+			}
+			sb.append(",\"hilos\":{\"multihilo\":\"").append(sim.getMultihilo().name().toLowerCase()).append('"');
+			if(sim.getMultihilo() == MIPSimulator.Multihilo.QUANTUM){
+				sb.append(",\"planificador\":\"").append(sim.getPlanificador()).append('"');
+				sb.append(",\"cambiosContexto\":").append(sim.getCambiosContexto());
+				sb.append(",\"ciclosCambioContexto\":").append(sim.getCiclosCambioContexto());
+			}
+			else{
+				sb.append(",\"cambiosHilo\":").append(sim.getCambiosContexto());
+				sb.append(",\"cambiosPorFallo\":").append(sim.getCambiosPorFallo());
+				sb.append(",\"instruccionesDescartadas\":").append(sim.getInstruccionesDescartadas());
+				sb.append(",\"ciclosSinHilo\":").append(sim.getCiclosSinHilo());
+			}
+			sb.append(",\"hilosPorMilCiclos\":").append(String.format(Locale.ROOT, "%.3f",
+					sim.getClock() == 0 ? 0.0 : 1000.0 * terminados / sim.getClock()));
+			sb.append(",\"ipc\":").append(proporcion(instrucciones, sim.getClock()));
+			sb.append(",\"ciclosPorHilo\":[");
+			for(int h = 0; h < hilos; ++h){
+				sb.append(h > 0 ? "," : "").append(sim.getCiclosHilo(h));
+			}
+			sb.append("],\"instruccionesPorHilo\":[");
+			for(int h = 0; h < hilos; ++h){
+				sb.append(h > 0 ? "," : "").append(sim.getInstruccionesHilo(h));
+			}
+			sb.append("],\"retornoPorHilo\":[");
+			for(int h = 0; h < hilos; ++h){
+				sb.append(h > 0 ? "," : "").append(sim.getRetornoHilo(h));
+			}
+			sb.append("],\"esperaPorHilo\":[");
+			for(int h = 0; h < hilos; ++h){
+				sb.append(h > 0 ? "," : "").append(sim.getEsperaHilo(h));
+			}
+			sb.append("],\"registrosPorHilo\":[");
+			for(int h = 0; h < sim.getHilosCargados(); ++h){
+				sb.append(h > 0 ? "," : "").append(Arrays.toString(sim.getRegistrosHilo(h)).replace(" ", ""));
+			}
+			sb.append("]}");
+		}
+		sb.append(",\"cache\":{").append(camposCache).append("\"aciertos\":").append(sim.getAciertosCache());
+		sb.append(",\"fallos\":").append(sim.getFallosCache());
+		sb.append(",\"bloquesEscritos\":").append(sim.getBloquesEscritos());
+		sb.append(",\"palabrasEscritas\":").append(sim.getPalabrasEscritas());
+		CacheDatos cache = sim.getCache();
+		sb.append(",\"geometria\":\"").append(cache).append('"');
+		sb.append(",\"aciertosPorConjunto\":[");
+		for(int c = 0; c < cache.getConjuntos(); ++c){
+			sb.append(c > 0 ? "," : "").append(cache.getAciertos(c));
+		}
+		sb.append("],\"fallosPorConjunto\":[");
+		for(int c = 0; c < cache.getConjuntos(); ++c){
+			sb.append(c > 0 ? "," : "").append(cache.getFallos(c));
+		}
+		sb.append(']');
+		CacheL2 l2 = sim.getCacheL2();
+		if(l2 != null){
+			sb.append(",\"l2\":{\"aciertos\":").append(l2.getAciertos());
+			sb.append(",\"fallos\":").append(l2.getFallos());
+			sb.append(",\"bloquesEscritos\":").append(l2.getBloquesEscritos());
+			sb.append(",\"palabrasEscritas\":").append(l2.getPalabrasEscritas());
+			sb.append(",\"invalidaciones\":").append(l2.getInvalidaciones());
+			sb.append(",\"geometria\":\"").append(l2).append("\"}");
+		}
+		if(cache.getVictimas() > 0){
+			sb.append(",\"victimas\":{\"entradas\":").append(cache.getVictimas());
+			sb.append(",\"aciertos\":").append(cache.getAciertosVictimas()).append('}');
+		}
+		if(cache.getBufferEscritura() > 0){
+			sb.append(",\"bufferEscritura\":{\"entradas\":").append(cache.getBufferEscritura());
+			sb.append(",\"escrituras\":").append(cache.getEscriturasBuffer());
+			sb.append(",\"reenvios\":").append(cache.getReenvios());
+			sb.append(",\"ciclosOcultos\":").append(cache.getCiclosOcultos());
+			sb.append(",\"ciclosLleno\":").append(cache.getCiclosBufferLleno()).append('}');
+		}
+		sb.append('}');
+		CacheInstrucciones icache = sim.getCacheInstrucciones();
+		if(icache != null){
+			sb.append(",\"icache\":{\"aciertos\":").append(icache.getAciertos());
+			sb.append(",\"fallos\":").append(icache.getFallos());
+			sb.append(",\"ciclosEspera\":").append(icache.getCiclosEspera());
+			sb.append(",\"geometria\":\"").append(icache).append('"');
+			sb.append(",\"aciertosPorHilo\":[");
+			for(int h = 0; h < sim.getHilosCargados(); ++h){
+				sb.append(h > 0 ? "," : "").append(icache.getAciertos(h));
+			}
+			sb.append("],\"fallosPorHilo\":[");
+			for(int h = 0; h < sim.getHilosCargados(); ++h){
+				sb.append(h > 0 ? "," : "").append(icache.getFallos(h));
+			}
+			sb.append("]}");
+		}
+		sb.append(",\"memoria\":{\"ciclosEsperaBloqueante\":").append(sim.getCiclosEsperaBloqueante());
+		sb.append(",\"ciclosAhorrados\":").append(sim.getCiclosEsperaBloqueante() - sim.getCiclosEsperaMemoria());
+		sb.append(",\"fallosPrimarios\":").append(sim.getFallosPrimarios());
+		sb.append(",\"fallosSecundarios\":").append(sim.getFallosSecundarios());
+		sb.append(",\"paralelismo\":").append(String.format(Locale.ROOT, "%.3f", sim.getParalelismoMemoria()));
+		sb.append('}');
+		if(sim.getPrecargador() != null){
+			long utiles = cache.getPrecargasUtiles();
+			sb.append(",\"precarga\":{\"precargador\":\"").append(sim.getPrecargador()).append('"');
+			sb.append(",\"emitidas\":").append(cache.getPrecargasEmitidas());
+			sb.append(",\"utiles\":").append(utiles);
+			sb.append(",\"tardias\":").append(sim.getPrecargasTardias());
+			sb.append(",\"inutiles\":").append(cache.getPrecargasInutiles());
+			sb.append(",\"pisadas\":").append(cache.getPrecargasPisadas());
+			sb.append(",\"fallosPorContaminacion\":").append(cache.getFallosPorContaminacion());
+			sb.append(",\"bloquesEscritos\":").append(cache.getEscriturasPrecarga());
+			sb.append(",\"ciclosMemoria\":").append(cache.getCiclosPrecarga());
+			sb.append(",\"precision\":").append(proporcion(utiles, cache.getPrecargasEmitidas()));
+			sb.append(",\"cobertura\":").append(proporcion(utiles, utiles + cache.getFallos()));
+			sb.append('}');
+		}
+		sb.append('}');
+		return sb;
+	}
+
+	/**
+	 * Arma el registro JSON de un programa que corrio en varios nucleos: el bus o el
+	 * directorio y, por nucleo, el mismo registro que aJson da para un simulador
+	 */
+	static String aJson(String programa, Multinucleo sistema, Throwable error){
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"programa\":\"").append(escapar(programa)).append('"');
+		if(error != null){
+			sb.append(",\"error\":\"").append(escapar(String.valueOf(error))).append("\"}");
+			return sb.toString();
+		}
+		Coherencia coherencia = sistema.getCoherencia();
+		sb.append(",\"ciclos\":").append(sistema.getClock());
+		sb.append(",\"nucleos\":").append(sistema.getNumNucleos());
+		sb.append(",\"protocolo\":\"").append(coherencia.getProtocolo().name().toLowerCase()).append('"');
+		sb.append(",\"coherencia\":{\"red\":\"")
+				.append(coherencia instanceof DirectorioCoherencia ? "directorio" : "bus").append('"');
+		sb.append(",\"lecturas\":").append(coherencia.getLecturas());
+		sb.append(",\"lecturasExclusivas\":").append(coherencia.getLecturasExclusivas());
+		sb.append(",\"actualizaciones\":").append(coherencia.getActualizaciones());
+		sb.append(",\"invalidaciones\":").append(coherencia.getInvalidaciones());
+		sb.append(",\"intervenciones\":").append(coherencia.getIntervenciones());
+		sb.append(",\"ciclosEspera\":").append(coherencia.getCiclosEspera());
+		sb.append(",\"fallosCoherencia\":").append(sistema.getFallosCoherencia());
+		sb.append(",\"ciclosCoherencia\":").append(sistema.getCiclosCoherencia());
+		if(coherencia instanceof BusCoherencia){
+			sb.append(",\"ciclosOcupado\":").append(((BusCoherencia) coherencia).getCiclosOcupado());
+		}
+		else if(coherencia instanceof DirectorioCoherencia){
+			DirectorioCoherencia dir = (DirectorioCoherencia) coherencia;
+			sb.append(",\"punteros\":").append(dir.getPunteros());
+			sb.append(",\"desbordes\":").append(dir.getDesbordes());
+			sb.append(",\"difusiones\":").append(dir.getDifusiones());
+			sb.append(",\"mensajes\":").append(dir.getMensajes());
+			sb.append(",\"saltos\":").append(dir.getSaltos());
+			sb.append(",\"pedidosPorNucleo\":[");
+			for(int n = 0; n < sistema.getNumNucleos(); ++n){
+				sb.append(n > 0 ? "," : "").append(dir.getPedidos(n));
+			}
+			sb.append("],\"respuestasPorNucleo\":[");
+			for(int n = 0; n < sistema.getNumNucleos(); ++n){
+				sb.append(n > 0 ? "," : "").append(dir.getRespuestas(n));
+			}
+			sb.append(']');
+		}
+		sb.append("},\"porNucleo\":[");
+		for(int n = 0; n < sistema.getNumNucleos(); ++n){
+			MIPSimulator nucleo = sistema.getNucleo(n);
+			CacheDatos cache = nucleo.getCache();
+			// los fallos de coherencia van dentro del objeto cache del nucleo
+			String coherenciaCache = "\"fallosCoherencia\":" + cache.getFallosCoherencia()
+					+ ",\"ciclosCoherencia\":" + cache.getCiclosCoherencia() + ",";
+			aJson(sb.append(n > 0 ? "," : ""), programa + "#" + n, nucleo, null, coherenciaCache);
+		}
+		sb.append("]}");
+		return sb.toString();
+	}
+
+	private static String proporcion(long parte, long total){
+		return String.format(Locale.ROOT, "%.3f", total == 0 ? 0.0 : (double) parte / total);
+	}
+
+	private static String escapar(String s){
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < s.length(); ++i){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				sb.append('\\').append(c);
+			}
+			else if(c < 0x20){
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+			else{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void salir(String mensaje){
+		System.err.println(mensaje);
+		System.err.println(USO);
+		System.exit(2);
+	}
+}//fin de la clase
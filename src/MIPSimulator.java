@@ -1,11 +1,14 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.InputMismatchException;
 import java.util.Scanner;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
 
 
 import javax.swing.JOptionPane;
@@ -17,7 +20,7 @@ import javax.swing.JOptionPane;
 public class MIPSimulator {
 	private final int tamMemInstrucciones = 768;//768 / 4 = 192 instrucciones / 4 = 48 bloques
 	private final int tamMemDatos = 832; 		//se asume que cada entero es de 4 bytes
-	private final int numBloquesCache = 8;		//el cache tiene 8 bloques
+
 	private int primerCampoVacio = 0;     		//Desde donde se puede cargar el siguiente hilo
 
 	// Constantes para los codigos de operacion
@@ -40,32 +43,78 @@ public class MIPSimulator {
 	private int[] R;		  		// Registros del procesador
 	private int [] rUsados; 		// Registros que estan en uso para evitar conflicto de datos
 	private int[] instructionMem;	// Memoria de instrucciones
+	private long[] programa;		// Instrucciones ya decodificadas por loadFile, una por cada 4 enteros
 	private int[] dataMem;        	// Memoria de datos
-	private Bloque[] cache;			// cache del mips, formada de 8 bloques de 16 enteros c/u
-
-	private static int clock;	// Reloj del sistema
+	private CacheDatos cache;		// cache de datos, por defecto de mapeo directo con 8 bloques de 4 palabras
+	private CacheL2 cacheL2;		// segundo nivel unificado, null si no hay
+	private CacheInstrucciones cacheInstrucciones;	// cache de IF, null si IF lee directo la memoria
+	private int esperaIF;				// ciclos que le faltan al bloque que espera IF
+	private boolean instruccionLista;	// ya llego el bloque que esperaba IF, no se vuelve a buscar
+	private final int[] hiloDeInstruccion = new int[tamMemInstrucciones / 4];	// hilo de cada instruccion
+	private int hilosCargados;
+
+	// Round robin: cada hilo tiene su contexto (PC, registros y link register) en arreglos
+	// planos que crecen en loadFile, asi el cambio de contexto solo copia enteros. Cuando el
+	// hilo cumple su quantum IF deja de buscar, el pipeline se vacia y entre dos ciclos se
+	// guarda el contexto y se carga el del siguiente hilo vivo. Con el pipeline vacio la
+	// tabla de registros usados queda en cero, asi que no hace falta guardarla.
+	private int[] pcHilo = new int[0];
+	private int[] linkHilo = new int[0];
+	private int[] registrosHilos = new int[0];	// 32 registros por hilo, uno tras otro
+	private boolean[] vivoHilo = new boolean[0];
+	private long[] ciclosHilo = new long[0];	// ciclos que cada hilo tuvo el procesador
+	private long[] instruccionesHilo = new long[0];	// instrucciones que decodifico ID de cada hilo
+	private int[] finHilo = new int[0];		// ciclo en que termino cada hilo, -1 si sigue
+	private int hiloActual;
+	private int siguienteHilo = -1;		// el que escogio el planificador mientras se vacia el pipeline
+	private Planificador planificador = new PlanificadorRR();
+	private boolean planificadorIniciado;	// ya recibio los hilos cargados
+	private long esperaAlEntrar;		// ciclos de espera de memoria cuando entro el hilo actual
+	private int hilosVivos;
+	private int ciclosEnQuantum;		// ciclos que lleva el hilo actual desde que entro
+	private boolean buscoEnQuantum;		// el hilo actual ya busco una instruccion en este quantum
+	// Multihilo por hardware: un banco de registros y un PC por hilo, IF escoge el hilo
+	// en cada ciclo y las instrucciones llevan su hilo en los registros intermedios
+	private Multihilo multihilo = Multihilo.QUANTUM;
+	private int[] bancoR;				// registros que usan las etapas: R o los bancos de registrosHilos
+	private boolean bancosListos;		// ya se armaron los bancos de cada hilo
+	private boolean[] buscandoHilo = new boolean[0];	// IF todavia no busca el FIN del hilo
+	private int[] listoHilo = new int[0];	// ciclo desde el que IF puede volver a buscar del hilo
+	private int hilosBuscando;
+	private int busquedasEnHilo;		// FALLO: busquedas seguidas de IF en el hilo actual
+	private int finesID, finesEX, finesMEM;	// FIN que ya pasaron por cada etapa
+	private int hiloConFallo = -1;		// hilo de la carga que fallo en MEM en este ciclo
+	private int finFallo;				// ciclo en que llega su dato
+	private long ciclosSinHilo;			// ciclos en que IF no tuvo un hilo listo
+	private long cambiosPorFallo;		// veces que un fallo saco a su hilo de IF
+	private long instruccionesDescartadas;	// buscadas por IF y descartadas por el fallo de su hilo
+	private boolean drenando;			// IF no busca mas del hilo actual, se espera que se vacie el pipeline
+	private boolean terminoHilo;		// WB recibio el FIN del hilo actual y quedan otros hilos
+	private long cambiosContexto;
+	private long ciclosCambioContexto;	// ciclos que se gastaron vaciando el pipeline
+
+	private int clock;			// Reloj del sistema
 	private int PC;				// Contador del programa / Puntero de instrucciones
 	int quantum;				// El quatum para implementar el round round robin
 
 
-	//en la ultima posicion se pasa el operation code
-	private int[] IR;
-	private int[] IF_ID = {-1,-1,-1,-1};
-	private int[] ID_EX = {-1,-1,-1, -1};
-	private int[] EX_MEM = {-1,-1, -1};
-	private int[] MEM_WB = {-1,-1, -1};
-
-
-
-	//semaforos por cada etapa
-	private static Semaphore semIf = new Semaphore(1);
-	private static Semaphore semId = new Semaphore(1);
-	private static Semaphore semEx = new Semaphore(1);
-	private static Semaphore semMem = new Semaphore(1);
-	private static Semaphore semR = new Semaphore(1);
-
-	// Barrera para controlar cada ciclo del reloj
-	static CyclicBarrier barrier = new CyclicBarrier(6);
+	// Registros entre etapas. Hasta EX_MEM se pasa el operation code y la direccion de la
+	// instruccion, que usa el precargador; la ultima posicion es el hilo de la instruccion
+	private final RegistroIntermedio IF_ID = new RegistroIntermedio(6);
+	private final RegistroIntermedio ID_EX = new RegistroIntermedio(6);
+	private final RegistroIntermedio EX_MEM = new RegistroIntermedio(5);
+	private final RegistroIntermedio MEM_WB = new RegistroIntermedio(5);
+
+	// Reloj del motor con hilos, cada etapa viva es una de sus partes. Se crea en cada corrida
+	// porque cuando la ultima etapa se retira queda terminado
+	private Phaser reloj;
+	// Cuantas veces revisa una etapa si ya cambio el ciclo antes de dormirse en el reloj,
+	// con un solo procesador la espera activa solo le quita tiempo a las otras etapas
+	private int girosReloj = Runtime.getRuntime().availableProcessors() > 1 ? 200 : 0;
+	// Con que se crean los hilos de las etapas, de plataforma o virtuales
+	private ThreadFactory fabricaHilos = FabricaHilos.fabrica(false);
+	private boolean hilosVirtuales;		// fabricaHilos da hilos virtuales
+	private int girosPlataforma;		// girosReloj de antes de pasar a hilos virtuales
 
 	// Booleanos para saber si etapas estan vivas
 	private boolean ifAlive;
@@ -76,13 +125,113 @@ public class MIPSimulator {
 
 	private boolean hayConflicto = false; // indica a IF que hay conflicto de datos
 
+	// Modelo de tiempo de la memoria: cuando un acceso de MEM tarda, la instruccion se queda
+	// en MEM esos ciclos y EX, ID e IF se detienen
+	private int latenciaFallo;			// ciclos hasta que llega la primera palabra de un bloque
+	private int latenciaEscritura;		// ciclos hasta que la memoria acepta una escritura
+	private int ciclosPorPalabra;		// ciclos del bus por cada palabra transferida
+	private int ciclosMemoria;			// lo que tardo la memoria en los accesos de este ciclo
+	private int esperaMem;				// ciclos que le faltan a la instruccion que esta en MEM
+	private boolean memDetenida;		// MEM esta esperando en este ciclo, se calcula entre ciclos
+	private final int[] pendienteMem = new int[5];	// lo que MEM pasa a MEM_WB cuando termina de esperar
+	private long ciclosEsperaMemoria;	// total de ciclos que MEM espero a la memoria
+	private long ciclosEsperaBloqueante;	// lo que hubiera esperado MEM si la cache bloqueara en cada fallo
+
+	// Cache sin bloqueo: con MSHRs un fallo no detiene MEM, la carga sigue a WB y solo
+	// esperan en ID las instrucciones que leen su registro. Las cargas pendientes las lleva WB
+	private TablaMSHR mshr;				// null: la cache bloquea en cada fallo
+	// Con multihilo por hardware hay 32 por hilo, como los bancos de registros
+	private boolean[] cargaPendiente = new boolean[32];	// el registro espera el dato de un fallo
+	private int[] valorPendiente = new int[32];		// el dato que se escribe cuando llega
+	private int[] finPendiente = new int[32];		// el ciclo en que llega
+	private int cargasPendientes;
+	private long ciclosEsperaDependencia;	// ciclos que ID espero un registro de una carga pendiente
+	private long ciclosEsperaDrenado;		// ciclos que WB espero cargas pendientes despues de FIN
+
+	private Precargador precargador;		// null: la cache solo trae bloques cuando se piden
+	private long precargasTardias;			// precargas que se usaron antes de que llegara el bloque
+	private TrazaMemoria grabacion;			// null: no se graban los accesos de MEM
+	private boolean traza = true;		  // imprime en consola lo que hace cada etapa en cada ciclo
+
+
+	/**
+	 * Motores disponibles para correr el pipeline.
+	 * HILOS: cada etapa corre en su propio hilo y se sincronizan con la barrera.
+	 * SECUENCIAL: las cinco etapas corren en el hilo que llama a runProgram.
+	 * FUNCIONAL: sin pipeline, ejecuta una instruccion por ciclo y traduce a bytecode
+	 * los bloques basicos que mas se repiten (ver TraductorBloques).
+	 */
+	public enum Motor { HILOS, SECUENCIAL, FUNCIONAL }
+
+	/**
+	 * Como se reparten el procesador los hilos cargados.
+	 * QUANTUM: cambio de contexto por software, cada hilo corre su quantum y se vacia el pipeline.
+	 * INTERCALADO: multihilo por hardware de grano fino, IF busca de un hilo distinto en cada ciclo.
+	 * FALLO: multihilo por hardware de grano grueso, IF cambia de hilo cuando una carga falla en MEM
+	 * o cuando el hilo lleva quantum busquedas seguidas, para que un hilo que no falla (por
+	 * ejemplo uno que espera un candado) no deje sin avanzar a los demas.
+	 */
+	public enum Multihilo { QUANTUM, INTERCALADO, FALLO }
+
+	private final Motor motor;	// Motor con el que se corre el programa
+
+	// Veces que el motor funcional interpreta un bloque antes de traducirlo
+	private static final int UMBRAL_TRADUCCION = 50;
+	private TraductorBloques traductor;	// bloques traducidos del motor funcional
+	private long instrucciones;			// instrucciones ejecutadas por el motor funcional
+
+	// Avance rapido: se corre en modo funcional hasta el disparo y luego sigue el pipeline detallado
+	private Disparador avanceRapido;	// null si se corre todo en el pipeline
+	private boolean calentarCache;		// si el avance rapido pasa por la cache o va directo a dataMem
+	private int ciclosAvanceRapido;		// ciclos que se contaron en modo funcional antes del disparo
+
+	// Control desde otro hilo (pause, resume, stop), se revisa en el limite de cada ciclo
+	private volatile boolean pausado;		// el controlador pidio una pausa
+	private volatile boolean detenido;		// el controlador pidio terminar la simulacion
+	private volatile boolean enPausa;		// el motor esta parado esperando resume
+	private volatile boolean corriendo;		// runProgram esta corriendo en algun hilo
+	private volatile Thread hiloEnPausa;	// hilo del motor que espera resume
+	private volatile Thread controlador;	// hilo que espera en pause a que el motor pare
+
+	// Vistas de solo lectura sobre los registros y la memoria de datos, sin copias
+	private final IntBuffer vistaRegistros;
+	private final IntBuffer vistaMemoria;
+
+	/**
+	 * Registros entre etapas que se pueden consultar con leerRegistroIntermedio
+	 */
+	public enum Intermedio { IF_ID, ID_EX, EX_MEM, MEM_WB }
+
+	// Resultados de interpretar un bloque
+	private static final int SIGUE = 0;		// termino en una instruccion de control
+	private static final int TERMINO = 1;	// llego a FIN
+	private static final int DISPARO = 2;	// se cumplio el disparador del avance rapido
+
 	/**
 	 * Constructor de la clase, recibe del usuario el quantum con el
 	 * que se va a trabajar el round Robin
 	 * @param quantum
 	 */
 	public MIPSimulator(int quantum){
+		this(quantum, Motor.HILOS);
+	}
+
+	/**
+	 * Constructor que ademas permite escoger el motor que corre el pipeline
+	 * @param quantum
+	 * @param motor - HILOS o SECUENCIAL
+	 */
+	public MIPSimulator(int quantum, Motor motor){
+		this(quantum, motor, null);
+	}
+
+	/**
+	 * Constructor para los nucleos de un Multinucleo, que comparten la memoria de datos
+	 * @param memoriaDatos - memoria de datos de otro nucleo, null para crear una nueva
+	 */
+	MIPSimulator(int quantum, Motor motor, int[] memoriaDatos){
 		this.quantum = quantum;
+		this.motor = motor;
 
 		// Se inicializan los registros en 0
 		R = new int[32];
@@ -96,24 +245,33 @@ public class MIPSimulator {
 		for(int i=0; i<tamMemInstrucciones; ++i){
 			instructionMem[i] = 1;
 		}
+		programa = new long[tamMemInstrucciones/4];
+		for(int i=0; i<programa.length; ++i){
+			programa[i] = Instruccion.BURBUJA;
+		}
+		traductor = new TraductorBloques(programa.length, UMBRAL_TRADUCCION);
 		// Se inicializa la memoria de datos
-		dataMem = new int[tamMemDatos];
-		for(int i=0; i<tamMemDatos; ++i){
-			dataMem[i] = 1;	//SE INICIALIZA EN 1 PARA SIMULAR QUE LOS CANDADOS
-			//FUERON INICIADOS POR EL HILO PRINCIPAL
+		if(memoriaDatos != null){
+			dataMem = memoriaDatos;
 		}
-		// Se inicializa la cache
-		cache = new Bloque[numBloquesCache];
-		for(int i=0; i<numBloquesCache; ++i){
-			cache[i] = new Bloque();
+		else{
+			dataMem = new int[tamMemDatos];
+			for(int i=0; i<tamMemDatos; ++i){
+				dataMem[i] = 1;	//SE INICIALIZA EN 1 PARA SIMULAR QUE LOS CANDADOS
+				//FUERON INICIADOS POR EL HILO PRINCIPAL
+			}
 		}
+		// Se inicializa la cache
+		cache = new CacheDatos(dataMem, 768);
+
+		bancoR = R;
+		vistaRegistros = IntBuffer.wrap(R).asReadOnlyBuffer();
+		vistaMemoria = IntBuffer.wrap(dataMem).asReadOnlyBuffer();
 
 		// Inicializar valores del ciclo del reloj y PC en 0
 		clock = 0;
 		PC = 0;
 
-		// Inicializar IR
-		IR = new int[4];
 
 		linkRegister = -1;	//por comodidad se inicializa en -1
 
@@ -125,1019 +283,200 @@ public class MIPSimulator {
 		wbAlive = true;
 	}
 
+	/*
+	 * ========================== MOTOR CON HILOS ==========================
+	 * Cada etapa corre en su propio hilo y en cada ciclo llama al mismo metodo
+	 * cicloIF, cicloID, ... que usa el motor secuencial. Como los registros
+	 * intermedios tienen doble buffer, las etapas no necesitan pedirse permiso
+	 * para leerlos o escribirlos: cada una lee el buffer actual de su registro de
+	 * entrada y escribe el siguiente del de salida, y el reloj los intercambia una
+	 * vez por ciclo cuando llega la ultima etapa.
+	 *
+	 * Dentro de un mismo ciclo solo hay dos dependencias: WB -> ID (los registros y
+	 * la tabla de registros usados) e ID -> IF (el conflicto de datos y el PC de los
+	 * saltos). Se publican con el contador volatil fase: WB lo pone en FASE_WB al
+	 * terminar, ID espera ese valor y al terminar lo pone en FASE_ID, e IF espera
+	 * FASE_ID. EX y MEM no dependen de nadie dentro del ciclo. Si la cache de
+	 * instrucciones comparte la L2 con la de datos, IF tambien espera a MEM para usar
+	 * la L2 en el mismo orden que el motor secuencial.
+	 *
+	 * La etapa que espera revisa girosReloj veces y despues se duerme con park; la
+	 * que publica la despierta si la encuentra anotada. Asi una etapa que espera no
+	 * gasta un procesador mientras la otra termina.
+	 */
+	private volatile int fase;				// avance dentro del ciclo actual
+	private volatile boolean memTermino;	// MEM ya termino el ciclo actual
+	private volatile Thread dormidaIF;		// hilo de IF si esta dormido esperando, si no null
+	private volatile Thread dormidaID;		// hilo de ID si esta dormido esperando, si no null
+	private static final int FASE_WB = 1;	// WB ya escribio los registros
+	private static final int FASE_ID = 2;	// ID ya decidio si hay conflicto y a donde salta
+
 	/**
-	 * Instancia de runnable que se encargar de la etapa IF del pipeline.
-	 * En esta etapa se guarda en IR la instruccin a la que apunta PC y,
-	 * cuando ID ya no este ocupado se le pasa la instruccion en IF_ID
+	 * Etapa IF: espera a que ID decida si hay conflicto o salto y busca la instruccion
 	 */
 	private final Runnable IFstage = new Runnable(){
 		@Override
 		public void run(){
-			// Mientras no se llegue a la instruccion 63 la etapa ejecutara lo que le corresponde
-			while(ifAlive == true){
-
-				/* Obtiene la instruccion del vector de instrucciones esto lo hara en paralelo
-				 * con las otras etapas, se sincroniza a la hora de que pasa la instruccin a ID */
-				for(int i = 0; i < 4; ++i){
-					IR[i] = instructionMem[PC+i];
-				}
-
-
-				/* Cuando IF termina  le mandara la instruccion 63 a ID
-				 * pone la bandera de que esta viva en falso y hara el await para que el hilo
-				 * principal haga cambio de ciclo */
-				if(IR[0] == FIN){
-					ifAlive = false;
-				}
-
-				/* Hasta que ID este desocupado se ejecuta, pide permiso para ingresar a esta
-				 * region de codigo */
-				try {
-					semIf.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-
-				/* Si hay conflicto IF no hace nada pero se actualiza el reloj  
-				 * no va a pasar una nueva instruccion hasta que termine el conflicto */
-				if(hayConflicto){
-					semIf.release(1);
-
-					try {
-						barrier.await();
-						barrier.await();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (BrokenBarrierException e) {
-						e.printStackTrace();
-					}
-					continue;
-				}
-
-				// Guarda la instruccin a ejecutar en el registro intermedio
-				for(int i = 0; i < 4; ++i){
-					IF_ID[i] = IR[i];
-				}
-
-				//***** Probar valores en registro intermedio
-				System.out.println("ENTRO: IF_ID: " + IF_ID[0] +
-						IF_ID[1] + IF_ID[2] + IF_ID[3]);
-
-				// Aumenta el PC
-				PC += 4;
-
-				semIf.release(1);
-
-				/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-				 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-				 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-				 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-				 * principal que las controla */
-				try {
-					barrier.await();
-					barrier.await();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (BrokenBarrierException e) {
-					e.printStackTrace();
-				}
-			}//fin de while(alive)
-
-			/* Muere y actualiza la barrera para controlar  el ciclo del reloj.
-			 * Cuando IF deja de mandar instrucciones, actualiza el barrier que el principal tiene
-			 * para actualizar el ciclo de reloj, hasta que WB muera*/
-			while (wbAlive) {
-				try {
-					barrier.await(5,TimeUnit.SECONDS);
-					barrier.await(5,TimeUnit.SECONDS);
-				} catch (InterruptedException e) {
-					continue;
-				} catch (BrokenBarrierException e) {
-					continue;
-				} catch (TimeoutException e) {
-					continue;
+			do{
+				esperarFase(FASE_ID);
+				if(cacheInstrucciones != null && cacheL2 != null){
+					esperarMEM();
 				}
-			}
-
-		}//fin de metodo run
-	};//fin de metodo IFstage
+				cicloIF();
+			}while(finCiclo(ifAlive));
+		}
+	};
 
 	/**
-	 * Instancia de runnable que se encargara de la etapa ID del pipeline.
-	 * En esta etapa se decodifica la instruccin, se obtienen la informacin
-	 * necesaria, ya sea en registros o en memoria de datos.
+	 * Etapa ID: espera a que WB escriba los registros y decodifica
 	 */
 	private final Runnable IDstage = new Runnable(){
-		// operadores para almacenar lo que se lee de IF_ID
-		int operador_0; // Codigo de operacion
-		int operador_1; // Operador
-		int operador_2; // operador
-		int operador_3; // operador
 		@Override
 		public void run(){
-			// Mientras no se llegue a la instruccion 63 la etapa ejecutara lo que le corresponde
-			while(idAlive == true){
-				if(IF_ID[0] == FIN){
-					idAlive = false;
-				}
-
-				/*Se leen los registros entre etapas a la izquierda al 
-				 * inicio del ciclo
-				 */
-				operador_0 = IF_ID[0];
-				operador_1 = IF_ID[1];
-				operador_2 = IF_ID[2];
-				operador_3 = IF_ID[3];
-
-				//Si es la primera instruccion no hace nada
-				//y desbloquea la etapa hacia atras
-				// aunque no haga nada tiene que actualizar el barrier
-				// para que se actualice el ciclo del reloj
-				if(operador_0 == -1){
-					semIf.release();
-
-					/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-					 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-					 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-					 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-					 * principal que las controla */
-					try {
-						barrier.await();
-						barrier.await();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (BrokenBarrierException e) {
-						e.printStackTrace();
-					}
-					continue;
-
-				}
-
-				/* Para escribir en registro y mandar los valores en ID_EX
-				 * pregunta a EX si esta ocupado (Desbloqueo hacia atras)
-				 */
-				try {
-					semId.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				/*
-				 * Pide permiso para bloquear los registros y usarlos
-				 */
-				try {
-					semR.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-
-				/***********************************************
-				 *  Codigo para el manejo de conflicto de datos
-				 *  Si el registro que se requiere como operando aun no ha sido escrito
-				 *  por writeBack  ID se queda esperando hasta que WB escriba en el registro
-				 *  destino, manda una burbuja a ID_EX si hay conflicto de datos.
-				 *  Para verificar utiliza la tabla de registros usados, si hay conflicto ademas
-				 *  desbloquea if y le avisa con una bandera que hay conflicto y aun no le pase la
-				 *  siguiente instruccion
-				 * ********************************************
-				 */
-				//if()if(hayConflicto == false){
-
-				switch(operador_0){//contiene el cdigo de instruccion
-				case DADDI:
-					if(rUsados[operador_1] == 1 ){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					} // fin if
-
-					break;
-				case DADD:
-					if( (rUsados[operador_1] == 1) || (rUsados[operador_2] == 1) ){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					} // fin if	
-					break;
-				case DSUB:
-					if((rUsados[operador_1] == 1) || (rUsados[operador_2] == 1)){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					} // Fin if
-
-
-					break;
-				case DMUL:
-					if( (rUsados[operador_1] == 1) || (rUsados[operador_2] == 1) ){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-
-
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					}//fin if
-
-					break;
-				case DDIV:
-					if( (rUsados[operador_1] == 1) || (rUsados[operador_2] == 1) ){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					}// fin if
-
-					break;
-				case LW:
-					if( (rUsados[operador_1] == 1) ){
-						ID_EX[3] = -1;			//operation code
-
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					} // fin if
-
-					break;
-				case SW:
-					if((rUsados[operador_2] == 1)  || (rUsados[operador_1] == 1) ){
-						ID_EX[3] = -1;			//operation code
-						System.out.println("ENTRO ACA");
-						hayConflicto = true;
-						semIf.release();
-						semR.release();
-						//actualiza el reloj y se sale
-						try {
-							barrier.await();
-							barrier.await();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						} catch (BrokenBarrierException e) {
-							e.printStackTrace();
-						}
-						continue;	
-					} // fin if
-					break;
-				case LL:
-
-					break;
-				case SC:
-
-					break;
-
-				case FIN:
-					break;
-
-				}//fin del switch
-
-				//}
-
-				/***********************************************
-				 *  Fin manejo de conflicto de datos
-				 * ********************************************
-				 */
-
-				/* si salio del switch quiere decir que no hay 
-				 * conflicto y escribe en ID_EX 
-				 */
-				hayConflicto = false;
-				switch(operador_0){//contiene el cdigo de instruccion
-				case DADDI:
-					ID_EX[0] = R[operador_1]; // RY
-					ID_EX[1] = operador_2;          // Destino
-					ID_EX[2] = operador_3;          // n
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_2] = 1;  // guarda en la tabla que registro destino esta siendo usado
-					break;
-				case DADD:
-					ID_EX[0] = R[operador_1]; // Reg Operando1
-					ID_EX[1] = R[operador_2]; // Reg Operando2
-					ID_EX[2] = operador_3;          // Reg Destino
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_3] = 1; 
-					break;
-				case DSUB:
-					ID_EX[0] = R[operador_1]; // Reg Operando1
-					ID_EX[1] = R[operador_2]; // Reg Operando2
-					ID_EX[2] = operador_3;          // Reg Destino
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_3] = 1; 
-					break;
-				case DMUL:
-					ID_EX[0] = R[operador_1]; // Reg Operando1
-					ID_EX[1] = R[operador_2]; // Reg Operando2
-					ID_EX[2] = operador_3;          // Reg destino
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_3] = 1; 
-					break;
-				case DDIV:
-					ID_EX[0] = R[operador_1];			// Reg Operando1
-					ID_EX[1] = R[operador_2];			// Reg Operando2
-					ID_EX[2] = operador_3;			// Reg Destino
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_3] = 1; 
-					break;
-				case LW:
-					ID_EX[0] = operador_3; 			// valor inmediato
-					ID_EX[1] = R[operador_1];  		// Origen
-					ID_EX[2] = operador_2;          	// Destino
-					ID_EX[3] = operador_0;			//operation code
-					rUsados[operador_2] = 1; 
-					break;
-				case SW:
-					// No hay que ponerle registros usados por que se escribira en
-					// memoria
-					ID_EX[0] = operador_3; 			// valor inmediato
-					ID_EX[1] = R[operador_2]; 	// Origen
-					ID_EX[2] = R[operador_1];	// Destino
-					ID_EX[3] = operador_0;			//operation code
-					break;
-				case LL:
-
-					break;
-				case SC:
-
-					break;
-
-				case FIN:
-					ID_EX[0] = 0; 			// valor inmediato
-					ID_EX[1] = 0; 	// Origen
-					ID_EX[2] = 0;	// Destino
-					ID_EX[3] = operador_0;			//operation code
-					break;
-
-				}//fin del switch
-
-
-				semId.release();
-				// Avisa que no hay conflicto para que IF ya lea otra instruccion
-				// luego la desbloquea
-				hayConflicto = false;
-				// Le dice a IF que ya se desocupo y desbloquea los registros
-				semIf.release();
-				semR.release();
-
-				//*****
-				System.out.println("ENTRO: ID_EX: " + ID_EX[3] +
-						ID_EX[2] + ID_EX[0] + ID_EX[1]);
-
-				/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-				 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-				 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-				 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-				 * principal que las controla */
-				try {
-					barrier.await();
-					barrier.await();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (BrokenBarrierException e) {
-					e.printStackTrace();
-				}
-
-			}//fin del while alive
-
-			/* Muere y actualiza la barrera para controlar  el ciclo del reloj.
-			 * Cuando ID deja de decodificar instrucciones, actualiza el barrier que el principal 
-			 * tiene para actualizar el ciclo de reloj, hasta que WB muera */
-			while (wbAlive) {
-				try {
-					barrier.await(5,TimeUnit.SECONDS);
-					barrier.await(5,TimeUnit.SECONDS);
-				} catch (InterruptedException e) {
-					continue;
-				} catch (BrokenBarrierException e) {
-					continue;
-				} catch (TimeoutException e) {
-					continue;
-				}
-			}
-
-		}//fin del metodo run
-	};//fin del metodo IDstage
+			do{
+				esperarFase(FASE_WB);
+				cicloID();
+				fase = FASE_ID;
+				despertar(dormidaIF);
+			}while(finCiclo(idAlive));
+		}
+	};
 
-	/** 
-	 * En esta etapa se realizan las operaciones aritmeticas
-	 * se escribe en EX_M , debe verificar que EX_M no este bloqueado
+	/**
+	 * Etapa EX: operaciones del ALU
 	 */
 	private final Runnable EXstage = new Runnable(){
-		// operadores para almacenar lo que se lee de ID_EX
-		int operador_0; // Fuente
-		int operador_1; // Fuente
-		int operador_2; // Destino
-		int operador_3; // Codigo de operacion
-		int resultado; // guarda el resultado de ALU
 		@Override
 		public void run(){
-			// Mientras no se llegue a la instruccion 63 la etapa ejecutara lo que le corresponde
-			while(exAlive == true){
-
-				/*Se leen los registros entre etapas a la izquierda al 
-				 * inicio del ciclo
-				 */
-				operador_0 = ID_EX[0];
-				operador_1 = ID_EX[1];
-				operador_2 = ID_EX[2];
-				operador_3 = ID_EX[3];
-				
-				// Le dice a ID que no esta ocupado los registros intermedios
-				semId.release();
-
-				/* Si el codigo de operacion es 63 debe morir cuando WB muera*/
-				if(operador_3 == FIN){
-					exAlive = false;
-				}
-
-				/*Si es la primera instruccion no hace nada y desbloquea la etapa hacia atras  
-				 * actualiza el ciclo del reloj
-				 */
-				if(operador_3 == -1){
-					semId.release();	
-
-					// Manda -1 a mem
-					EX_MEM[0] = -1;
-					EX_MEM[1] = -1;
-					EX_MEM[2] = -1;
-
-					/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-					 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-					 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-					 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-					 * principal que las controla */
-					try {
-						barrier.await();
-						barrier.await();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (BrokenBarrierException e) {
-						e.printStackTrace();
-					}
-
-					continue;
-				} // fin if cuando esta comenzando las etapas
-
-				
-				// Realiza las operaciones
-				switch(operador_3){
-				case DADDI:
-					resultado = operador_0 + operador_2;
-					break;
-				case DADD:
-					resultado = operador_0 + operador_1;
-					break;
-				case DSUB:
-					resultado = operador_0 - operador_1;
-					break;
-				case DMUL:
-					resultado = operador_0 * operador_1;
-					break;
-				case DDIV:
-					resultado = operador_0 / operador_1;
-					break;
-				case LW:
-					resultado = operador_0 + operador_1;	//Resultado de memoria del ALU
-					break;
-				case SW:
-					resultado = operador_0 + operador_2;	//Resultado de memoria del ALU
-					break;
-				}//fin del switch
-				
-				/* Si Mem Stage lo desbloqueo pasa el resultado de las operaciones aritmeticas
-				 * y el registro destino o posicion de memoria a EX_MEM
-				 */
-				try {
-					semEx.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				
-				// Escribe los resultados intermedios
-				switch(operador_3){
-				case DADDI:
-					EX_MEM[0] = resultado;
-					EX_MEM[1] = operador_1; //como escribe en registro, el campo de memoria va vacio
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case DADD:
-					EX_MEM[0] = resultado;
-					EX_MEM[1] = operador_2;
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case DSUB:
-					EX_MEM[0] = resultado;
-					EX_MEM[1] = operador_2;
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case DMUL:
-					EX_MEM[0] = resultado;
-					EX_MEM[1] = operador_2;
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case DDIV:
-					EX_MEM[0] = resultado;
-					EX_MEM[1] = operador_2;
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case LW:
-					EX_MEM[0] = resultado;	//Resultado de memoria del ALU
-					EX_MEM[1] = operador_2;			//Destino
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case SW:
-					EX_MEM[0] = resultado;	//Resultado de memoria del ALU
-					EX_MEM[1] = operador_1;			//Destino
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				case FIN:
-					EX_MEM[0] = 0;	//Resultado de memoria del ALU
-					EX_MEM[1] = 0;			//Destino
-					EX_MEM[2] = operador_3; //codigo de operacion
-					break;
-				}//fin del switch
-				
-				
-				semEx.release();
-
-				
-				//***** PRUEBA
-				System.out.println("ENTRO EX_MEM: " + EX_MEM[2] +
-						EX_MEM[1] + EX_MEM[0] );
-
-				/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-				 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-				 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-				 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-				 * principal que las controla */
-				try {
-					barrier.await();
-					barrier.await();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (BrokenBarrierException e) {
-					e.printStackTrace();
-				}
-
-			}//fin del while alive
-
-			/* Muere y actualiza la barrera para controlar  el ciclo del reloj.
-			 * Cuando EX deja de ejecutar operaciones en el ALU, actualiza el barrier que el principal tiene
-			 * para actualizar el ciclo de reloj, hasta que WB muera */
-			while (wbAlive) {
-				try {
-					barrier.await(5,TimeUnit.SECONDS);
-					barrier.await(5,TimeUnit.SECONDS);
-				} catch (InterruptedException e) {
-					continue;
-				} catch (BrokenBarrierException e) {
-					continue;
-				} catch (TimeoutException e) {
-				}
-			}
-
-		}//fin del metodo run
-	};//fin del metodo EXstage
+			do{
+				cicloEX();
+			}while(finCiclo(exAlive));
+		}
+	};
 
 	/**
-	 * En esta etapa se carga de memoria o se almacena en memoria, es decir
-	 * se realiza el store, o se obtiene el valor de memoria que se desea almacenar
-	 * en algun registro. Se verifica los hit de cache y todas las operaciones
-	 * que se realizan con la cache
+	 * Etapa MEM: accesos a memoria por la cache
 	 */
 	private final Runnable MEMstage = new Runnable(){
-		// operadores para almacenar lo que se lee de EX_MEM
-		int operador_0; // Resultado operacion ALU
-		int operador_1; // Destino
-		int operador_2; // Codigo de operacion
-
 		@Override
 		public void run(){
-			// Mientras no se llegue a la instruccion 63 la etapa ejecutara lo que le corresponde
-			while(memAlive == true){
-
-				/*Se leen los registros entre etapas a la izquierda al 
-				 * inicio del ciclo
-				 */
-				operador_0 = EX_MEM[0];
-				operador_1 = EX_MEM[1];
-				operador_2 = EX_MEM[2];
-				
-				// Libera los registros intermedios EX_MEM
-				semEx.release();
-
-				// Si el codigo de operacion es 63
-				// la etapa tiene que termiar-morir
-				if(operador_2 == FIN){
-					memAlive = false;
-				}
-
-				/*Si es la primera instruccion no hace nada libera a EX y actualiza el reloj 
-				 * En los registros intermedios con Mem pone un -1
-				 */
-				if(operador_2 == -1){
-					semEx.release();
-					MEM_WB[2] = -1;
-
-					/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-					 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-					 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-					 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-					 * principal que las controla */
-					try {
-						barrier.await();
-						barrier.await();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (BrokenBarrierException e) {
-						e.printStackTrace();
-					}
-					continue;
-				}
-
-				// Pregunta a WriteBack si ya se desocupo
-				try {
-					semMem.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-
-				boolean direccionValida;
-				int bloqueMem, bloqueCache;
-				// TODO: VOLVER A PONER LO DE CACHE
-				switch(operador_2){
-				case LW:
-					/*codigo viejo, sin implementacion de cache
-						MEM_WB[0] = dataMem[EX_MEM[0]]; //
-						MEM_WB[1] = EX_MEM[1];			//
-						MEM_WB[2] = EX_MEM[2]; 			//codigo de operacion */
-
-					//primero hay que verificar que la direccion que se tratar de leer sea valida
-					direccionValida = verificarDirMem(operador_0);
-					if(direccionValida){//si diera false, sera bueno agregar un manejo de excepcion
-						//si fuera vlida, hay que verificar que haya un hit de memoria en cache.
-						//si diera fallo, hay que traer el bloque desde memoria, si estuviera se toma directo de la cache
-						bloqueMem = calcularBloqueMemoria(operador_0);
-						bloqueCache = calcularBloqueCache(operador_0);
-						if(!hitMemoria(operador_0)){
-							//si hubiera fallo de memoria y el bloque en cache correspondiente est modificado,
-							//primero hay que guardarlo a memoria. para esto primero calculamos el bloque en memoria
-							//del dato que se quiere cargar. es aqui cuando se usa la estrategia WRITE ALLOCATE
-							if(cache[bloqueCache].getEstado() == 'm'){
-								cacheStore(bloqueCache);
-							}
-							//en este punto se hace se carga la cache, pues no hubo hit de memoria
-							//y si el bloque estaba modificado ya se guard antes a memoria
-							//es aqui cuando se usa la estrategia de WRITE BACK
-							cacheLoad(operador_0);
-						}
-						//en este punto s hubo hit de memoria, por lo que se carga el dato desde la cache
-						int indice = ((operador_0+768) / 16 ) % 4;
-						MEM_WB[0] = cache[bloqueCache].getValor(indice);
-						//System.out.println(MEM_WB[0]);
-						MEM_WB[1] = operador_1;			//
-						MEM_WB[2] = operador_2; 			//en MEM_WB[2] va el codigo de operacion			
-					}//fin de if direccionValida
-					break;
-
-				case SW:
-					/*codigo viejo, sin implementacion de cache
-						dataMem[EX_MEM[0]] = EX_MEM[1]; //se hace el store en memoria
-						MEM_WB[0] = EX_MEM[0];			//no hace nada pero tiene que pasar el valor
-						MEM_WB[1] = EX_MEM[1];			//no hace nada pero tiene que pasar el valor
-						MEM_WB[2] = EX_MEM[2]; 			//codigo de operacion*/
-
-					//nuevamente, lo primero es verificar que la referencia a memoria sea valida
-					direccionValida = verificarDirMem(operador_0);
-					if(direccionValida){
-						//si fuera valida, se verifica si el bloque de memoria est en cache
-						bloqueMem = calcularBloqueMemoria(operador_0);
-						bloqueCache = calcularBloqueCache(operador_0);
-						if(!hitMemoria(operador_0)){
-							//si no hay hit de memoria hay que cargar el bloque a cache, pero si en el bloque de cache
-							//donde vamos a escribir est modificado, primero hay que escribir el bloque actual a memoria:
-							if(cache[bloqueCache].getEstado() == 'm'){
-								cacheStore(bloqueCache);
-							}
-							//si no estuviera modificado, entonces ya podemos escribir el bloque de cache a memoria
-							cacheLoad(operador_0);
-						}
-						//con el bloque ya en cache, debemos escribir en la posicion correcta del bloque
-						int offset = (operador_0 / 4) % 4; //se calcula el desplazamiento en el bloque
-						cache[bloqueCache].setBloquePos(offset, operador_1); //el valor a guardar esta en EX_MEM[1]
-						cache[bloqueCache].setEstado('m'); //cuando se escribe en cache el estado debe pasar a modificado
-						cacheStore(bloqueCache);
-						//pasa los valores a MEM_WB
-						MEM_WB[0] = operador_0;			//no hace nada pero tiene que pasar el valor
-						MEM_WB[1] = operador_1;			//no hace nada pero tiene que pasar el valor
-						MEM_WB[2] = operador_2; 			//en MEM_WB[2] va el codigo de operacion
-					}
-					break;
-
-				case LL://hace exactamente lo mismo que un load normal, pero ademas de eso escribe el link register
-					direccionValida = verificarDirMem(operador_0);
-					if(direccionValida){//si diera false, sera bueno agregar un manejo de excepcion
-						//si fuera vlida, hay que verificar que haya un hit de memoria en cache.
-						//si diera fallo, hay que traer el bloque desde memoria, si estuviera se toma directo de la cache
-						bloqueMem = calcularBloqueMemoria(operador_0);
-						bloqueCache = calcularBloqueCache(operador_0);
-						if(!hitMemoria(operador_0)){
-							//si hubiera fallo de memoria y el bloque en cache correspondiente est modificado,
-							//primero hay que guardarlo a memoria. para esto primero calculamos el bloque en memoria
-							//del dato que se quiere cargar. es aqui cuando se usa la estrategia WRITE ALLOCATE
-							if(cache[bloqueCache].getEtiqueta() == bloqueMem && cache[bloqueCache].getEtiqueta() == 'm'){
-								cacheStore(bloqueCache);
-							}
-							//en este punto se hace se carga la cache, pues no hubo hit de memoria
-							//y si el bloque estaba modificado ya se guard antes a memoria
-							//es aqui cuando se usa la estrategia de WRITE BACK
-							cacheLoad(operador_0);
-						}
-						//en este punto s hubo hit de memoria, por lo que se carga el dato desde la cache
-						int indice = ((operador_0+768) / 16 ) % 4;
-						MEM_WB[0] = cache[bloqueCache].getValor(indice);
-						//System.out.println(MEM_WB[0]);
-						MEM_WB[1] = operador_1;			//
-						MEM_WB[2] = operador_2; 			//en MEM_WB[2] va el codigo de operacion			
-					}//fin de if direccionValida
-				break;
-				case SC://igual a SW, solo que se hace solo si el register link es igual a la direccion de la memoria y pone 1 en Rx
-						//si no fueran iguales, entonces no pasa nada en memoria y pone un 0 en Rx
-					if(true){
-						direccionValida = verificarDirMem(operador_0);
-						if(direccionValida){
-							//si fuera valida, se verifica si el bloque de memoria est en cache
-							bloqueMem = calcularBloqueMemoria(operador_0);
-							bloqueCache = calcularBloqueCache(operador_0);
-							if(!hitMemoria(operador_0)){
-								//si no hay hit de memoria hay que cargar el bloque a cache, pero si en el bloque de cache
-								//donde vamos a escribir est modificado, primero hay que escribir el bloque actual a memoria:
-								if(cache[bloqueCache].getEtiqueta() == bloqueMem && cache[bloqueCache].getEtiqueta() == 'm'){
-									cacheStore(bloqueCache);
-								}
-								//si no estuviera modificado, entonces ya podemos escribir el bloque de cache a memoria
-								cacheLoad(operador_0);
-							}
-							//con el bloque ya en cache, debemos escribir en la posicion correcta del bloque
-							int offset = (operador_0 / 4) % 4; //se calcula el desplazamiento en el bloque
-							cache[bloqueCache].setBloquePos(offset, operador_1); //el valor a guardar esta en EX_MEM[1]
-							cache[bloqueCache].setEstado('m'); //cuando se escribe en cache el estado debe pasar a modificado
-
-							//pasa los valores a MEM_WB
-							MEM_WB[0] = operador_0;			//no hace nada pero tiene que pasar el valor
-							MEM_WB[1] = operador_1;			//no hace nada pero tiene que pasar el valor
-							MEM_WB[2] = operador_2; 			//en MEM_WB[2] va el codigo de operacion
-						}
-					}
-					else{
-						
-					}
-				break;
-				default:
-					MEM_WB[0] = operador_0;
-					MEM_WB[1] = operador_1;
-					MEM_WB[2] = operador_2; 			//en MEM_WB va el codigo de operacion
-				
-				}//fin del switch
-
-				semMem.release();
-				
-
-				//*****PRUEBA
-				System.out.println("ENTRO MEM_WB: " + MEM_WB[2] +
-						MEM_WB[1] + MEM_WB[0] );
-
-				/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-				 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-				 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-				 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-				 * principal que las controla */
-				try {
-					barrier.await();
-					barrier.await();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (BrokenBarrierException e) {
-					e.printStackTrace();
-				}
-
-
-			}//fin del while
-
-			/* Muere y actualiza la barrera para controlar  el ciclo del reloj.
-			 * Actualiza el barrier que el principal tiene
-			 * para actualizar el ciclo de reloj, hasta que WB muera 
-			 * */
-			while (wbAlive) {
-				try {
-					barrier.await(5,TimeUnit.SECONDS);
-					barrier.await(5,TimeUnit.SECONDS);
-				} catch (InterruptedException e) {
-					continue;
-				} catch (BrokenBarrierException e) {
-					continue;
-				} catch (TimeoutException e) {
-					continue;
-				}
-			}
-
-		}//fin del metodo run
-	};//fin del metodo MEMstage
+			do{
+				cicloMEM();
+				memTermino = true;
+				despertar(dormidaIF);
+			}while(finCiclo(memAlive));
+		}
+	};
 
 	/**
-	 * Etapa que escribe en en los registros destinos el valor calculado en EX
-	 * Libera a MEM y adems libera los registros
+	 * Etapa WB: escribe los registros y se lo avisa a ID
 	 */
 	private final Runnable WBstage = new Runnable(){
-		// operadores para almacenar lo que se lee de MEM_WB
-		int operador_0; // resultado operacion
-		int operador_1; // Destino
-		int operador_2; // codigo de operacion
-
 		@Override
 		public void run(){
+			do{
+				cicloWB();
+				fase = FASE_WB;
+				despertar(dormidaID);
+			}while(finCiclo(wbAlive));
+		}
+	};
 
-			// Mientras no se llegue a la instruccion 63 la etapa ejecutara lo que le corresponde
-			while(wbAlive == true){
-
-				/*Se leen los registros entre etapas a la izquierda al 
-				 * inicio del ciclo
-				 */
-				operador_0 = MEM_WB[0]; 
-				operador_1 = MEM_WB[1]; 
-				operador_2 = MEM_WB[2]; 
-				
-				// Le dice a la etapa MEM que ya esta libre 
-				semMem.release(1);
-
-				/* Cuando recibe un 63 de cdigo de operacion no hace nada  solo actualiza el ciclo 
-				 * del reloj y avisa a las etapas que murio mediante la bandera wbAlive */
-				if(operador_2 == FIN){
-
-					/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-					 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-					 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-					 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-					 * principal que las controla */
-					try {
-						barrier.await(5,TimeUnit.SECONDS);
-						barrier.await(5,TimeUnit.SECONDS);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (BrokenBarrierException e) {
-						e.printStackTrace();
-					} catch (TimeoutException e) {
-					}
-					wbAlive = false;
-
-					continue;
-				}
-
-				// Si es la primera instruccion no hace nada
-				// libera registros y Mem Stage y actualiza el reloj
-				if(operador_2 == -1){
-					semMem.release();
-					semR.release();
-					try {
-						barrier.await();
-						barrier.await();
-					} catch (InterruptedException e) {
-						break;
-					} catch (BrokenBarrierException e) {
-						break;
-					}
-					continue;
-				}
-
-				/* Se escribe en el registro y adems se actualiza la tabla de registros usados
-				 * restando el que actualmente fue escrito
-				 */
-				switch(operador_2){
-				case DADDI:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-				case DADD:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-				case DSUB:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-				case DMUL:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-				case DDIV:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-				case LW:
-					R[operador_1] = operador_0;
-					rUsados[operador_1] = 0;  // una vez que escribe en el registro notifica que no habra conflicto
-					break;
-					//en SW no hace nada en la etapa de writeback
-				}//fin del switch
-
-				// imprimir registros usados para probar
-				System.out.format("-----------------REGISTROS USADOS WB-----------------\n");
-				int count=0;
-				for(int i=0; i<8; ++i){
-					for(int j=0; j<4; ++j){
-						System.out.format("R%02d" + ": " + "%04d, ", count, rUsados[count]);
-
-						++count;
-					}
-					System.out.println();
-				}
+	/**
+	 * Espera dentro del ciclo a que otra etapa publique su avance. La espera FASE_ID
+	 * IF y la espera FASE_WB ID.
+	 * @param valor - fase que hay que esperar
+	 */
+	private void esperarFase(int valor){
+		for(int i = 0; i < girosReloj && fase < valor; ++i){
+			Thread.yield();
+		}
+		if(fase >= valor){
+			return;
+		}
+		// primero se anota y despues revisa, asi la etapa que publica no puede dejar de despertarla
+		if(valor == FASE_ID){
+			dormidaIF = Thread.currentThread();
+		}
+		else{
+			dormidaID = Thread.currentThread();
+		}
+		while(fase < valor){
+			LockSupport.park(this);
+		}
+		if(valor == FASE_ID){
+			dormidaIF = null;
+		}
+		else{
+			dormidaID = null;
+		}
+	}
 
-				// Libera los registros para ID los pueda usar
-				semR.release();
-
-				/* Con este barrier que el hilo principal controla se actualiza el ciclo del reloj
-				 * El primer await sera para decir que termino de realizar operaciones por el ciclo actual 
-				 * y el segundo await es para saber que se volvera a empezar un nuevo ciclo de reloj 
-				 * corriendo las etapas en paralelos hasta que todas hagan ese await, incluido el hilo 
-				 * principal que las controla */
-				try {
-					barrier.await();
-					barrier.await();
-				} catch (InterruptedException e) {
-					break;
-				} catch (BrokenBarrierException e) {
-					break;
-				}
+	/**
+	 * IF espera a que MEM termine el ciclo, cuando las dos usan la L2
+	 */
+	private void esperarMEM(){
+		for(int i = 0; i < girosReloj && !memTermino; ++i){
+			Thread.yield();
+		}
+		if(memTermino){
+			return;
+		}
+		dormidaIF = Thread.currentThread();
+		while(!memTermino){
+			LockSupport.park(this);
+		}
+		dormidaIF = null;
+	}
 
-			}// fin del while	
+	/**
+	 * Despierta a la etapa que se durmio esperando lo que se acaba de publicar
+	 */
+	private static void despertar(Thread etapa){
+		if(etapa != null){
+			LockSupport.unpark(etapa);
+		}
+	}
 
+	/**
+	 * La etapa avisa al reloj que termino el ciclo actual y espera el siguiente.
+	 * Primero revisa girosReloj veces si el ciclo ya cambio, porque normalmente las
+	 * otras etapas estan por llegar, y solo despues se duerme en el reloj. Una etapa
+	 * que ya paso la instruccion FIN se retira del reloj y su hilo termina.
+	 * @param sigueViva - false si la etapa ya termino
+	 * @return true si hay que correr otro ciclo
+	 */
+	private boolean finCiclo(boolean sigueViva){
+		if(!sigueViva){
+			reloj.arriveAndDeregister();
+			return false;
+		}
+		int ciclo = reloj.arrive();
+		for(int i = 0; i < girosReloj && reloj.getPhase() == ciclo; ++i){
+			// espera activa
+		}
+		return reloj.awaitAdvance(ciclo) >= 0;
+	}
 
-		}//fin del metodo run
-	};//fin del metodo WBstage
+	/**
+	 * Crea el reloj del motor con hilos. Cuando llega la ultima etapa del ciclo,
+	 * antes de despertar a las demas, avanza el reloj e intercambia los registros
+	 * intermedios. Se termina cuando se retira la ultima etapa (WB despues de FIN).
+	 */
+	private Phaser crearReloj(){
+		return new Phaser(5){
+			@Override
+			protected boolean onAdvance(int ciclo, int etapasVivas){
+				clock++;
+				intercambiarRegistros();
+				revisarHilos();
+				imprimirCiclo();
+				fase = 0;
+				memTermino = false;
+				return etapasVivas == 0 || !puntoDeControl();
+			}
+		};
+	}
 
 	/**
 	 * Guarda las instrucciones del archivo especificado 
@@ -1149,29 +488,125 @@ public class MIPSimulator {
 	public boolean loadFile(File program){
 		int pos = primerCampoVacio;
 		boolean sePudo = false;
+		traductor.invalidar();	// los bloques traducidos ya no corresponden a la memoria de instrucciones
 		try{
 			Scanner scanner = new Scanner(program);
-			while(scanner.hasNext() && pos < tamMemInstrucciones/4){
-				instructionMem[pos] = scanner.nextInt();
-				pos++;
+			try{
+				while(scanner.hasNext() && pos < tamMemInstrucciones){
+					instructionMem[pos] = scanner.nextInt();
+					pos++;
+				}
+
+				// Se fija si el hilo cupo en la memoria y si sus instrucciones son validas
+				if(scanner.hasNext()){
+					System.err.println("La memoria de instrucciones es insuficiente para " + program.getName());
+				}
+				else if(predecodificar(primerCampoVacio, pos)){
+					agregarContexto(primerCampoVacio);
+					Arrays.fill(hiloDeInstruccion, primerCampoVacio / 4, (pos + 3) / 4, hilosCargados++);
+					primerCampoVacio = pos;
+					sePudo = true;
+				}
+			}catch(InputMismatchException e){
+				System.err.println("El archivo " + program.getName() + " tiene algo que no es un entero.");
 			}
+			scanner.close();
 
-			// Se fija si el hilo cupo en la memoria
-			if(scanner.hasNext()){
+			if(!sePudo){
 				// De no ser as, borra lo que haya escrito
 				for(int i = primerCampoVacio; i < tamMemInstrucciones; i++){
 					instructionMem[i] = 1;
+					programa[i/4] = Instruccion.BURBUJA;
 				}
 			}
-			else{
-				primerCampoVacio = pos;
-				sePudo = true;
-			}
-			scanner.close();
 		}catch(FileNotFoundException e){
 			System.err.println("Error abriendo el archivo del programa.");
 		}
 		return sePudo;
+	}
+
+	/**
+	 * Crea el contexto del hilo que se esta cargando: empieza en su primera instruccion
+	 * con los registros en 0
+	 * @param inicio - posicion de su primera instruccion en instructionMem
+	 */
+	private void agregarContexto(int inicio){
+		int h = hilosCargados;
+		if(h == pcHilo.length){
+			int capacidad = Math.max(4, 2 * h);
+			pcHilo = Arrays.copyOf(pcHilo, capacidad);
+			linkHilo = Arrays.copyOf(linkHilo, capacidad);
+			registrosHilos = Arrays.copyOf(registrosHilos, 32 * capacidad);
+			vivoHilo = Arrays.copyOf(vivoHilo, capacidad);
+			ciclosHilo = Arrays.copyOf(ciclosHilo, capacidad);
+			instruccionesHilo = Arrays.copyOf(instruccionesHilo, capacidad);
+			finHilo = Arrays.copyOf(finHilo, capacidad);
+			buscandoHilo = Arrays.copyOf(buscandoHilo, capacidad);
+			listoHilo = Arrays.copyOf(listoHilo, capacidad);
+		}
+		finHilo[h] = -1;
+		buscandoHilo[h] = true;
+		hilosBuscando++;
+		pcHilo[h] = inicio;
+		linkHilo[h] = -1;
+		vivoHilo[h] = true;
+		hilosVivos++;
+	}
+
+	/**
+	 * Decodifica una sola vez las instrucciones que se acaban de cargar en la memoria
+	 * de instrucciones y las guarda empacadas en programa, para que IF solo tenga que
+	 * leer una posicion. Las instrucciones mal formadas se rechazan aqui y no a media corrida.
+	 * @param desde - primer entero del hilo en instructionMem
+	 * @param hasta - posicion siguiente al ultimo entero del hilo
+	 * @return true si todas las instrucciones son validas
+	 */
+	private boolean predecodificar(int desde, int hasta){
+		if((hasta - desde) % 4 != 0){
+			System.err.println("La ultima instruccion del hilo esta incompleta.");
+			return false;
+		}
+		for(int pos = desde; pos < hasta; pos += 4){
+			int codigo = instructionMem[pos];
+			int y = instructionMem[pos+1];
+			int x = instructionMem[pos+2];
+			int n = instructionMem[pos+3];
+			boolean valida;
+			switch(codigo){
+			case DADD:
+			case DSUB:
+			case DMUL:
+			case DDIV:
+				//en las instrucciones de tres registros n es el registro destino
+				valida = esRegistro(y) && esRegistro(x) && esRegistro(n);
+				break;
+			case DADDI:
+			case LW:
+			case SW:
+			case LL:
+			case SC:
+			case BEQZ:
+			case BNEZ:
+			case JAL:
+			case JR:
+			case FIN:
+				valida = esRegistro(y) && esRegistro(x);
+				break;
+			default:
+				System.err.println("Instruccion " + (pos/4) + ": codigo de operacion " + codigo + " invalido.");
+				return false;
+			}
+			if(!valida){
+				System.err.println("Instruccion " + (pos/4) + ": registro fuera de rango en " + codigo + " " + y + " " + x + " " + n);
+				return false;
+			}
+			programa[pos/4] = Instruccion.empacar(codigo, y, x, n);
+		}
+		return true;
+	}//fin del metodo predecodificar
+
+	private boolean esRegistro(int r){
+		return r >= 0 && r < 32;
 	}	
 
 
@@ -1197,594 +632,1877 @@ public class MIPSimulator {
 	}
 
 	/**
-	 * Metodo que se llama al inicio de cada ciclo nuevo de reloj, con el fin
-	 * de que se bloque todo, este metodo sera usado desde el principal
+	 * @return los ciclos de reloj que lleva la simulacion
 	 */
-	public void iniciarSemaforos(){
-		semId.drainPermits();
-		semIf.drainPermits();
-		semMem.drainPermits();
-		semEx.drainPermits();
+	public int getClock(){
+		return clock;
 	}
 
 	/**
-	 * Metodo que corresponde al hilo principal, en donde se controlara 
-	 * los ciclos de reloj, el cambio de contexto, el bloqueo al inicio de las etapas
-	 * e imprimira resultados finales
+	 * @return copia de los registros del procesador
 	 */
-	public void runProgram() {
+	public int[] getRegistros(){
+		return R.clone();
+	}
 
-		/*
-		 * Iniciar  bloqueo de semaforos
-		 * para la primera ejecucion de las etapas
-		 * e inica cada thread correspondiente a cada 
-		 * etapa
-		 */
-		iniciarSemaforos();
-		Thread IF = new Thread(IFstage);
-		Thread ID = new Thread(IDstage);
-		Thread EX = new Thread(EXstage);
-		Thread M  = new Thread(MEMstage);
-		Thread WB = new Thread(WBstage);
-		IF.start();
-		ID.start();
-		EX.start();
-		M.start();
-		WB.start();
+	public long getAciertosCache(){
+		return cache.getAciertos();
+	}
 
-		/*
-		 * Mientras alguna alguna etapa este viva correra todo para actualizar el reloj
-		 * y realizar las operaciones necesarias
-		 */
-		while(algunaEtapaViva() == true){
-			try {
+	public long getFallosCache(){
+		return cache.getFallos();
+	}
 
-				/* espera que se ejecuten todas las etapas 
-				 * para actualizar el ciclo del reloj
-				 */
+	public long getBloquesEscritos(){
+		return cache.getBloquesEscritos();
+	}
 
-				barrier.await(5,TimeUnit.SECONDS);
+	public long getPalabrasEscritas(){
+		return cache.getPalabrasEscritas();
+	}
 
-				//vuelve a iniciar los semaforos, es decir bloquea los intermedios
-				iniciarSemaforos();
+	/**
+	 * @return la cache de datos, para consultar su geometria y los aciertos y fallos por conjunto
+	 */
+	public CacheDatos getCache(){
+		return cache;
+	}
 
-				// bloquea los registros
-				try{// bloquea los registros
-					semR.acquire();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+	/**
+	 * Cambia la geometria y la politica de reemplazo de la cache de datos. Se
+	 * llama antes de correr el programa, la cache nueva empieza vacia.
+	 * @param conjuntos - numero de conjuntos, 1 es totalmente asociativa
+	 * @param vias - vias por conjunto, 1 es mapeo directo
+	 * @param palabrasBloque - palabras por bloque, potencia de 2
+	 * @param reemplazo - LRU, PLRU, FIFO o ALEATORIO
+	 * @param escritura - WRITE_BACK, WRITE_THROUGH o WRITE_AROUND
+	 */
+	public void setCache(int conjuntos, int vias, int palabrasBloque, CacheDatos.Reemplazo reemplazo,
+			CacheDatos.Escritura escritura){
+		int victimas = cache.getVictimas();
+		int buffer = cache.getBufferEscritura();
+		cache = new CacheDatos(conjuntos, vias, palabrasBloque, reemplazo, escritura, dataMem, 768);
+		cache.setTiempos(latenciaFallo, latenciaEscritura, ciclosPorPalabra);
+		cache.setVictimas(victimas);
+		cache.setBufferEscritura(buffer);
+		if(cacheL2 != null){
+			setCacheL2(cacheL2.getConjuntos(), cacheL2.getVias(), cacheL2.getLatencia(), cacheL2.getInclusion());
+		}
+	}
 
-				/* Actualiza el ciclo del reloj al terminar todas las etapas
-				 * de realizar sus respectivas acciones
-				 */
+	/**
+	 * Pone una cache unificada de segundo nivel detras de la cache de datos, con el
+	 * mismo tamano de bloque. Se llama antes de correr el programa y empieza vacia;
+	 * si despues se cambia la cache de datos se vuelve a armar con la misma configuracion.
+	 * @param conjuntos - numero de conjuntos, 0 para quitar el segundo nivel
+	 * @param vias - vias por conjunto
+	 * @param latencia - ciclos de un acierto
+	 * @param inclusion - INCLUSIVA, EXCLUSIVA o NINE
+	 */
+	public void setCacheL2(int conjuntos, int vias, int latencia, CacheL2.Inclusion inclusion){
+		cacheL2 = (conjuntos == 0) ? null
+				: new CacheL2(conjuntos, vias, cache.getPalabrasBloque(), latencia, inclusion);
+		if(cacheL2 != null){
+			cacheL2.setTiempos(latenciaFallo, latenciaEscritura, ciclosPorPalabra);
+		}
+		cache.setSiguienteNivel(cacheL2);
+		if(cacheInstrucciones != null){
+			cacheInstrucciones.setSiguienteNivel(cacheL2);
+		}
+	}
 
-				clock++;
-				// TODO: AQUI VA DONDE COMPARA CUANTOS CLOCKS LLEVA EL HILO CON EL QUAUNTUM Y LLAMA AL CAMBIO DE CONTEXTO
-				System.out.println("--- Ciclos de reloj: " + clock + " ---");
+	/**
+	 * Pone una cache de instrucciones en IF. En un fallo IF manda burbujas a ID
+	 * hasta que llega el bloque. Si hay una L2 el fallo va a ella, que debe tener
+	 * el mismo tamano de bloque. Afecta a los motores SECUENCIAL e HILOS.
+	 * @param conjuntos - numero de conjuntos, 0 para quitar la cache
+	 * @param vias - vias por conjunto
+	 * @param palabrasBloque - instrucciones por bloque, potencia de 2
+	 * @param latenciaFallo - ciclos de un fallo sin L2
+	 */
+	public void setCacheInstrucciones(int conjuntos, int vias, int palabrasBloque, int latenciaFallo){
+		cacheInstrucciones = (conjuntos == 0) ? null
+				: new CacheInstrucciones(conjuntos, vias, palabrasBloque, latenciaFallo);
+		if(cacheInstrucciones != null){
+			cacheInstrucciones.setSiguienteNivel(cacheL2);
+		}
+	}
 
-				// espera a que todas las etapas vayan a empezar un nuevo ciclo
-				barrier.await(5,TimeUnit.SECONDS);
-				//printState();
+	/**
+	 * Pone una cache de victimas al lado de la cache de datos. Se llama antes de
+	 * correr el programa y se mantiene si despues se cambia la cache de datos.
+	 * @param entradas - bloques totalmente asociativos, 0 para quitarla
+	 */
+	public void setCacheVictimas(int entradas){
+		cache.setVictimas(entradas);
+	}
 
-			} catch (InterruptedException e) {
-				break;
-			} catch (BrokenBarrierException e) {
-				break;
-			}catch (TimeoutException e) {
-			}
-		}
-		//printState();
-		System.out.println("--- Ciclos de reloj: " + clock + " ---");
+	/**
+	 * Pone un buffer de escritura entre la cache de datos y el siguiente nivel: los
+	 * bloques modificados que salen se escriben de fondo. Se llama antes de correr
+	 * el programa y se mantiene si despues se cambia la cache de datos.
+	 * @param entradas - bloques que caben, 0 para quitarlo
+	 */
+	public void setBufferEscritura(int entradas){
+		cache.setBufferEscritura(entradas);
 	}
 
 	/**
-	 * Metodo para verificar que las etapas sigan con vida en el
-	 * pipeline
-	 * @return algunaVive que indica si ya todas las etapas murieron
+	 * @return la cache de instrucciones, null si no hay
 	 */
-	private boolean algunaEtapaViva(){
-		//mientras alguna viva el principal seguira ejecutandose
-		boolean algunaVive = false;
-		if(ifAlive || idAlive || exAlive || memAlive || wbAlive){
-			algunaVive = true;
-		}
-		return algunaVive;
+	public CacheInstrucciones getCacheInstrucciones(){
+		return cacheInstrucciones;
 	}
 
-	/** Calcula el bloque de memoria en el que se encuentra una direccion de memoria especfica,	
-	 * ej: la direccion de memoria 0768 est en el bloque 48 de memoria, pues 768 / 16 = 48 
-	 * la direccion de memoria 4092 est en el bloque 256 de memoria, pues 4092/16 = 255
-	 * @param dirMemoria
-	 * @return
+	/**
+	 * @return hilos cargados en la memoria de instrucciones
 	 */
-	public int calcularBloqueMemoria(int dirMemoria){
-		int posBloqueMem = dirMemoria / 16;
-		return posBloqueMem;
+	public int getHilosCargados(){
+		return hilosCargados;
 	}
 
-	/** Calcula el bloque de cache donde se debe almacenar un bloque de memoria especfico, usando 
-	 * la estrategia de MAPEO DIRECTO recibe: la direccion de memoria, a la cual se le calcular 
-	 * su bloque de memoria ej: la direccion 3324 est en la direccion [831] del vector de memoria 
-	 * de datos, la direccion de meroria [831]  est el bloque de memoria 255 y esta en el bloque 
-	 * de cache 7, pues 255 mod 8 = 1
-	 * @param dirMem
-	 * @return
+	/**
+	 * @return el hilo que tiene el procesador
 	 */
-	public int calcularBloqueCache(int dirMem){
-		int bloqueMem = calcularBloqueMemoria(dirMem);
-		int posBloqueCache = bloqueMem % 8;
-		return posBloqueCache;
+	public int getHiloActual(){
+		return hiloActual;
 	}
 
-	/* Metodo que verifica si la direccion de memoria es valida
-	 * La memoria total es de 4096 enteros, 768 para instrucciones y 3328 para datos como cada entero 
-	 * en la memoria de datos es de 4 bytes hay que hacer el calculo para accesar a la memoria de 
-	 * datos as las direcciones referenciables son de 768 a 3324, siendo 768 v[0], 772 v[1], ... 3324 v[831] 
-	 * debe verificarse que las direcciones de memoria sean ser multiplos de 4 y que esten entre 768 y 3324 
-	 * retorna true si la direccion es valida, de lo contrario devuelve false
+	/**
+	 * @return ciclos que el hilo tuvo el procesador, contando los de vaciar el pipeline al salir;
+	 * con multihilo por hardware, ciclos en que IF busco una instruccion del hilo
 	 */
-	public boolean verificarDirMem(int dir){
-		boolean valida=false;
-		//primero verifica si la direccion es valida
-		if((dir>767 && dir<4093) && (dir % 4 == 0 )){
-			valida = true;
-		}
-		else{
-			if(dir<=767 || dir>=4093){
-				System.err.println("La direccin " + dir + " se sale del rango vlido.");
-			}
-			else{
-				System.err.println("La direccin " + dir + " no cumple con ser mltiplo de 4.");
-			}
-		}
-		return valida;
+	public long getCiclosHilo(int hilo){
+		return ciclosHilo[hilo];
 	}
 
-	/* No confundir con instruccin LOAD
-	 * Guarda un bloque en cache, trado desde memoria recibe la 
-	 * posicion de memoria en la cual esta el dato que se quiere cargar
-	 * @param dirMemoria
+	/**
+	 * @return copia de los registros del hilo, los del hilo actual si es el que corre
 	 */
-	public void cacheLoad(int dirMemoria){
-		int bloqueMem = calcularBloqueMemoria(dirMemoria);
-		int bloqueCache = calcularBloqueCache(dirMemoria);
-		for(int i=0; i<4; ++i){//4 porque cada bloque contiene 16 enteros
-			cache[bloqueCache].setBloquePos(i, dataMem[(bloqueMem-48)*4+i]);
+	public int[] getRegistrosHilo(int hilo){
+		if(hilo == hiloActual && bancoR == R){
+			return R.clone();
 		}
-		cache[bloqueCache].setEtiqueta(bloqueMem);
-		cache[bloqueCache].setEstado('c');
-	}//fin del metodo cacheLoad
+		return Arrays.copyOfRange(registrosHilos, 32 * hilo, 32 * hilo + 32);
+	}
 
-	/** No confundir con instruccion STORE 
-	 * Guarda en memoria un bloque que est en la cache de datos recibe el numero de bloque de cache 
-	 * que se quiere guardar (que basta para saber el bloque en memoria)
-	 * @param numBloqueCache
+	/**
+	 * @return instrucciones del hilo que pasaron por ID
 	 */
-	public void cacheStore(int numBloqueCache){
-		int dirMem = cache[numBloqueCache].getEtiqueta()*4 - 192; //direccion a partir de la que hay que guardar
-		for(int i=0; i<4; ++i){//4 porque cada bloque contiene 4 enteros
-			dataMem[dirMem+i] = cache[numBloqueCache].getValor(i);
-		}
-	}//fin del metodo cacheStore
+	public long getInstruccionesHilo(int hilo){
+		return instruccionesHilo[hilo];
+	}
 
-	/** Metodo para saber si un bloque de memoria est guardado en la cache recibe la direccion de 
-	 * memoria que se quiere accesar devuelve true si est en cache, de lo contrario devuleve false
-	 * @param dirMemoria
-	 * @return
+	/**
+	 * @return tiempo de retorno del hilo: el ciclo en que termino, porque todos los
+	 * hilos llegan en el ciclo 0; -1 si no ha terminado
 	 */
-	public boolean hitMemoria(int dirMemoria){
-		boolean hit = false;
-		int bloqueMem = calcularBloqueMemoria(dirMemoria);
-		int bloqueCache = calcularBloqueCache(dirMemoria);
-		if(cache[bloqueCache].getEtiqueta() == bloqueMem){
-			hit = true;
-		}
-		return hit;
-	}//fin del metodo hitMemoria
+	public int getRetornoHilo(int hilo){
+		return finHilo[hilo];
+	}
 
 	/**
-	 * Metodo que imprime el estado de todas las variables dle MIPS
+	 * @return ciclos que el hilo espero sin el procesador hasta terminar, -1 si no ha terminado
 	 */
-	void imprimirEstado(){
-		//imprime el estado de los registros
-		System.out.format("-----------------REGISTROS-----------------\n");
-		int count=0;
-		for(int i=0; i<8; ++i){
-			for(int j=0; j<4; ++j){
-				System.out.format("R%02d" + ": " + "%04d, ", count, R[count]);
-				++count;
-			}
-			System.out.println();
+	public long getEsperaHilo(int hilo){
+		return finHilo[hilo] < 0 ? -1 : finHilo[hilo] - ciclosHilo[hilo];
+	}
+
+	/**
+	 * Cambia la politica que escoge el siguiente hilo. Se llama antes de correr el
+	 * programa; el quantum sigue siendo el del constructor.
+	 * @param planificador - por defecto round robin
+	 */
+	public void setPlanificador(Planificador planificador){
+		if(planificador == null){
+			throw new IllegalArgumentException("El planificador no puede ser null");
 		}
+		this.planificador = planificador;
+		planificadorIniciado = false;
+	}
 
-		//imprime la memoria de instrucciones
-		System.out.println("\n----MEMORIA DE INSTRUCCIONES----");
-		count=0;
-		for(int i=0; i<48; ++i){
-			System.out.format("Bloque%02d: ", i);
-			for(int j=0; j<4; ++j){
-				System.out.format("%04d" + ", ", instructionMem[count]);
-				++count;
+	public Planificador getPlanificador(){
+		return planificador;
+	}
+
+	/**
+	 * Escoge como se reparten el procesador los hilos cargados. Se llama antes de
+	 * correr el programa. Con INTERCALADO y FALLO cada hilo tiene su banco de registros
+	 * y su PC, el quantum no se usa y la cache no se bloquea en los fallos de las
+	 * cargas: si no se pidieron MSHRs se pone uno por hilo.
+	 * @param multihilo - por defecto QUANTUM
+	 */
+	public void setMultihilo(Multihilo multihilo){
+		if(multihilo == null){
+			throw new IllegalArgumentException("El modo de multihilo no puede ser null");
+		}
+		this.multihilo = multihilo;
+	}
+
+	public Multihilo getMultihilo(){
+		return multihilo;
+	}
+
+	/**
+	 * @return ciclos en que IF mando una burbuja porque todos los hilos esperaban un fallo
+	 */
+	public long getCiclosSinHilo(){
+		return ciclosSinHilo;
+	}
+
+	/**
+	 * @return fallos de carga que sacaron a su hilo de IF mientras llegaba el dato
+	 */
+	public long getCambiosPorFallo(){
+		return cambiosPorFallo;
+	}
+
+	/**
+	 * @return instrucciones que IF busco y se descartaron porque su hilo tuvo un fallo
+	 */
+	public long getInstruccionesDescartadas(){
+		return instruccionesDescartadas;
+	}
+
+	/**
+	 * @return cambios de hilo: de contexto con QUANTUM, de hilo en IF con multihilo por hardware
+	 */
+	public long getCambiosContexto(){
+		return cambiosContexto;
+	}
+
+	/**
+	 * @return ciclos en que IF no busco porque se estaba vaciando el pipeline para cambiar de hilo
+	 */
+	public long getCiclosCambioContexto(){
+		return ciclosCambioContexto;
+	}
+
+	/**
+	 * @return el segundo nivel, null si no hay
+	 */
+	public CacheL2 getCacheL2(){
+		return cacheL2;
+	}
+
+	/**
+	 * Configura cuanto tarda la memoria de datos. Con todo en 0 (por defecto) los
+	 * fallos de cache no cuestan ciclos. Traer un bloque tarda latenciaFallo mas
+	 * ciclosPorPalabra por palabra y guardar un bloque modificado latenciaEscritura mas
+	 * lo mismo; mientras tanto la instruccion se queda en MEM y el pipeline se detiene.
+	 * @param latenciaFallo
+	 * @param latenciaEscritura
+	 * @param ciclosPorPalabra
+	 */
+	public void setTiemposMemoria(int latenciaFallo, int latenciaEscritura, int ciclosPorPalabra){
+		cache.setTiempos(latenciaFallo, latenciaEscritura, ciclosPorPalabra);
+		if(cacheL2 != null){
+			cacheL2.setTiempos(latenciaFallo, latenciaEscritura, ciclosPorPalabra);
+		}
+		this.latenciaFallo = latenciaFallo;
+		this.latenciaEscritura = latenciaEscritura;
+		this.ciclosPorPalabra = ciclosPorPalabra;
+	}
+
+	/**
+	 * @return ciclos de reloj en los que el pipeline estuvo detenido esperando a la memoria
+	 */
+	public long getCiclosEsperaMemoria(){
+		return ciclosEsperaMemoria + ciclosEsperaDependencia + ciclosEsperaDrenado;
+	}
+
+	/**
+	 * Activa la cache sin bloqueo. Con n MSHRs puede haber n bloques pendientes a la
+	 * vez: un fallo no detiene MEM y los accesos al mismo bloque se unen al MSHR que
+	 * ya lo esta trayendo. MEM solo se detiene si no hay un MSHR libre (o en un SC).
+	 * Afecta a los motores SECUENCIAL e HILOS; el FUNCIONAL siempre espera cada fallo.
+	 * @param n - numero de MSHRs, 0 para la cache que bloquea (por defecto)
+	 */
+	public void setMSHR(int n){
+		mshr = (n == 0) ? null : new TablaMSHR(n);
+	}
+
+	/**
+	 * @return ciclos de espera que hubiera tenido la cache bloqueante con los mismos accesos
+	 */
+	public long getCiclosEsperaBloqueante(){
+		return ciclosEsperaBloqueante;
+	}
+
+	/**
+	 * @return fallos que ocuparon un MSHR, 0 con la cache bloqueante
+	 */
+	public long getFallosPrimarios(){
+		return mshr == null ? 0 : mshr.getPrimarios();
+	}
+
+	/**
+	 * @return accesos que se unieron a un MSHR que ya estaba trayendo el bloque
+	 */
+	public long getFallosSecundarios(){
+		return mshr == null ? 0 : mshr.getSecundarios();
+	}
+
+	/**
+	 * @return paralelismo de memoria: fallos pendientes en promedio en los ciclos que hubo alguno
+	 */
+	public double getParalelismoMemoria(){
+		return mshr == null ? (ciclosEsperaMemoria > 0 ? 1 : 0) : mshr.getParalelismo();
+	}
+
+	/**
+	 * Pone un precargador en la cache de datos. MEM le avisa de cada acceso y los
+	 * bloques que pide llegan de fondo; si una instruccion usa uno antes de que
+	 * llegue, espera lo que falta. Afecta a los motores SECUENCIAL e HILOS.
+	 * @param precargador - null para no precargar (por defecto)
+	 */
+	public void setPrecargador(Precargador precargador){
+		this.precargador = precargador;
+	}
+
+	public Precargador getPrecargador(){
+		return precargador;
+	}
+
+	/**
+	 * Graba en la traza cada acceso de MEM a la memoria de datos (direccion, lectura o
+	 * escritura, PC e hilo), para probar despues otras caches con BarridoCaches. Solo
+	 * graban los motores SECUENCIAL e HILOS, no el avance rapido.
+	 * @param grabacion - null para no grabar (por defecto)
+	 */
+	public void setGrabacion(TrazaMemoria grabacion){
+		this.grabacion = grabacion;
+	}
+
+	public TrazaMemoria getGrabacion(){
+		return grabacion;
+	}
+
+	/**
+	 * @return precargas que se usaron antes de que llegara el bloque
+	 */
+	public long getPrecargasTardias(){
+		return precargasTardias;
+	}
+
+	/**
+	 * Copia a memoria de datos los bloques modificados de la cache. runProgram lo hace
+	 * al terminar, y step y runUntil cuando llegan a FIN.
+	 */
+	public void vaciarCache(){
+		cache.vaciar();
+	}
+
+	/**
+	 * @return instrucciones ejecutadas por el motor funcional
+	 */
+	public long getInstrucciones(){
+		return instrucciones;
+	}
+
+	/**
+	 * @return cantidad de bloques basicos que el motor funcional tradujo a bytecode
+	 */
+	public int getBloquesTraducidos(){
+		return traductor.getBloquesTraducidos();
+	}
+
+	/**
+	 * Cambia cuantas veces se interpreta un bloque antes de traducirlo. Descarta
+	 * los bloques que ya se habian traducido.
+	 * @param umbral - 1 traduce cada bloque la primera vez que se ejecuta
+	 */
+	public void setUmbralTraduccion(int umbral){
+		traductor = new TraductorBloques(programa.length, umbral);
+	}
+
+	/**
+	 * Corre en modo funcional hasta que se cumpla el disparador y de ahi en adelante
+	 * sigue con el pipeline detallado del motor escogido. No tiene efecto con el motor FUNCIONAL.
+	 * @param disparador - cuando pasar al pipeline, null para correr todo en el pipeline
+	 * @param calentarCache - true para que el avance rapido lea y escriba por la cache
+	 * y esta llegue a la region de interes con contenido realista
+	 */
+	public void setAvanceRapido(Disparador disparador, boolean calentarCache){
+		this.avanceRapido = disparador;
+		this.calentarCache = calentarCache;
+	}
+
+	/**
+	 * @return ciclos que se contaron en el avance rapido, antes de pasar al pipeline
+	 */
+	public int getCiclosAvanceRapido(){
+		return ciclosAvanceRapido;
+	}
+
+	/**
+	 * Activa o desactiva la impresion en consola de lo que hace cada etapa,
+	 * para correr sin salida cuando se usan muchos simuladores en lote
+	 * @param traza
+	 */
+	public void setTraza(boolean traza){
+		this.traza = traza;
+	}
+
+	/**
+	 * Cambia cuantas veces revisa cada etapa del motor con hilos si ya cambio el
+	 * ciclo antes de dormirse. 0 duerme de una vez, lo que conviene si hay mas
+	 * simuladores corriendo que procesadores.
+	 * @param giros
+	 */
+	public void setGirosReloj(int giros){
+		this.girosReloj = Math.max(0, giros);
+	}
+
+	public int getGirosReloj(){
+		return girosReloj;
+	}
+
+	/**
+	 * Corre las etapas del motor con hilos en hilos virtuales, para poder tener miles
+	 * de simulaciones con hilos sobre pocos procesadores. Las etapas solo se bloquean
+	 * en el Phaser del reloj y con park, que no fijan el hilo virtual a su portador.
+	 * Tambien quita la espera activa, que con hilos virtuales ocuparia al portador, y
+	 * la devuelve al volver a hilos de plataforma. Si la maquina virtual no tiene
+	 * hilos virtuales (antes de Java 21) se siguen usando hilos de plataforma y la
+	 * espera activa no cambia.
+	 * @param virtuales
+	 * @return true si de verdad se van a usar hilos virtuales
+	 */
+	public boolean setHilosVirtuales(boolean virtuales){
+		boolean usar = virtuales && FabricaHilos.hayVirtuales();
+		fabricaHilos = FabricaHilos.fabrica(usar);
+		if(usar && !hilosVirtuales){
+			girosPlataforma = girosReloj;
+			girosReloj = 0;
+		}
+		else if(!usar && hilosVirtuales){
+			girosReloj = girosPlataforma;
+		}
+		hilosVirtuales = usar;
+		return usar;
+	}
+
+	/**
+	 * Metodo que corresponde al hilo principal, en donde se controlara 
+	 * los ciclos de reloj, el cambio de contexto, el bloqueo al inicio de las etapas
+	 * e imprimira resultados finales
+	 */
+	public void runProgram() {
+		if(corriendo){
+			throw new IllegalStateException("El simulador ya esta corriendo en otro hilo");
+		}
+		corriendo = true;
+		try{
+			correr();
+			cache.vaciar();
+		}finally{
+			corriendo = false;
+			LockSupport.unpark(controlador);
+		}
+	}
+
+	/**
+	 * Corre el programa con el motor escogido, desde donde haya quedado
+	 */
+	private void correr(){
+		if(motor == Motor.FUNCIONAL){
+			correrFuncional(null, memoria);
+			if(traza){
+				System.out.println("--- Ciclos de reloj: " + clock + " ---");
 			}
-			System.out.println();
+			return;
 		}
 
-		//imprime la memoria de datos
-		System.out.println("\n---------MEMORIA DE DATOS---------");
-		count=0;
-		for(int i=48; i<256; ++i){
-			System.out.format("Bloque%03d: ", i);
-			for(int j=0; j<4; ++j){
-				System.out.format("%04d" + ", ", dataMem[count]);
-				++count;
+		// Con avance rapido se corre en modo funcional hasta el disparo
+		if(avanceRapido != null){
+			boolean seDisparo = correrFuncional(avanceRapido, calentarCache ? memoria : memoriaDirecta);
+			ciclosAvanceRapido = clock;
+			if(!seDisparo){
+				return;	// el programa termino antes de llegar a la region de interes
+			}
+			iniciarPipeline();
+			if(traza){
+				System.out.println("--- Avance rapido hasta PC " + PC + " en " + clock + " ciclos ---");
 			}
-			System.out.println();
 		}
-		
-		System.out.println("\nLink Register: " + linkRegister);
-		
-		//imprime la memoria cache
-		System.out.println("\n----------MEMORIA CACH---------");
-		count=0;
-		for(int i=0; i<8; ++i){
-			System.out.format("Bloque%02d: ", i);
-			for(int j=0; j<4; ++j){
-				System.out.format("%04d" + ", ", cache[i].getValor(j));
+		prepararBancos();
+
+		if(motor == Motor.SECUENCIAL){
+			correrSecuencial();
+			if(traza){
+				System.out.println("--- Ciclos de reloj: " + clock + " ---");
 			}
-			System.out.println("status: " + cache[i].getEstado() + ", etiqueta: " + cache[i].getEtiqueta());
+			return;
 		}
 
-		//agregar imprimir middle stages, pc, IR, etc
+		/*
+		 * Inicia cada thread correspondiente a cada etapa
+		 */
+		fase = 0;
+		memTermino = false;
+		reloj = crearReloj();
+		Thread[] etapas = {
+				fabricaHilos.newThread(IFstage), fabricaHilos.newThread(IDstage), fabricaHilos.newThread(EXstage),
+				fabricaHilos.newThread(MEMstage), fabricaHilos.newThread(WBstage)
+		};
+		for(Thread etapa : etapas){
+			etapa.start();
+		}
 
-	}//fin del metodo imprimirEstado
+		/*
+		 * El reloj avanza solo, el hilo principal espera a que todas las etapas terminen
+		 */
+		for(Thread etapa : etapas){
+			try {
+				etapa.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if(traza){
+			System.out.println("--- Ciclos de reloj: " + clock + " ---");
+		}
+	}
+
+
+	/*
+	 * ========================== CONTROL ==========================
+	 * step y runUntil corren el pipeline ciclo por ciclo en el hilo que llama, con
+	 * los mismos metodos cicloIF..cicloWB de los dos motores, asi que el resultado es
+	 * el mismo que con runProgram. pause, resume y stop sirven para controlar desde
+	 * otro hilo un runProgram que ya esta corriendo: el motor los revisa al terminar
+	 * cada ciclo (cada bloque en el motor funcional). Los registros, la memoria, los
+	 * registros intermedios y la cache se pueden consultar en cualquier momento con
+	 * las vistas de abajo, sin copiar nada; mientras el motor corre en otro hilo los
+	 * valores solo son consistentes con el simulador en pausa.
+	 */
+
+	/**
+	 * Corre a lo sumo n ciclos del pipeline en el hilo que llama. No hace el avance
+	 * rapido, empieza desde donde haya quedado el simulador.
+	 * @param ciclos - ciclos que se quieren correr
+	 * @return los ciclos que se corrieron, menos que n si el programa termino
+	 */
+	public int step(int ciclos){
+		revisarControlManual();
+		int corridos = 0;
+		while(corridos < ciclos && wbAlive && !detenido){
+			cicloPipeline();
+			corridos++;
+		}
+		if(!wbAlive){
+			cache.vaciar();
+		}
+		return corridos;
+	}
+
+	/**
+	 * Corre un ciclo del pipeline en el hilo que llama. Lo usa Multinucleo para llevar
+	 * a todos los nucleos al mismo paso; cuando el programa termina vacia la cache.
+	 * @return false si el programa ya habia terminado y no se corrio el ciclo
+	 */
+	boolean avanzarCiclo(){
+		if(!wbAlive){
+			return false;
+		}
+		prepararBancos();
+		cicloPipeline();
+		if(!wbAlive){
+			cache.vaciar();
+		}
+		return true;
+	}
+
+	/**
+	 * @return la memoria de datos, para compartirla con los otros nucleos
+	 */
+	int[] getMemoriaDatos(){
+		return dataMem;
+	}
+
+	/**
+	 * Corre el pipeline en el hilo que llama hasta que se cumpla la condicion,
+	 * que se revisa antes de cada ciclo, o hasta que termine el programa
+	 * @param condicion - por ejemplo sim -> sim.getPC() == 40
+	 * @return los ciclos que se corrieron
+	 */
+	public int runUntil(Predicate<? super MIPSimulator> condicion){
+		revisarControlManual();
+		int corridos = 0;
+		while(wbAlive && !detenido && !condicion.test(this)){
+			cicloPipeline();
+			corridos++;
+		}
+		if(!wbAlive){
+			cache.vaciar();
+		}
+		return corridos;
+	}
+
+	/**
+	 * step y runUntil usan el pipeline y no se pueden mezclar con un runProgram corriendo
+	 */
+	private void revisarControlManual(){
+		if(motor == Motor.FUNCIONAL){
+			throw new UnsupportedOperationException("El motor funcional no tiene ciclos de pipeline");
+		}
+		if(corriendo){
+			throw new IllegalStateException("El simulador esta corriendo en otro hilo, use pause");
+		}
+		prepararBancos();
+	}
 
+	/**
+	 * Pide al runProgram que corre en otro hilo que pare al terminar el ciclo actual
+	 * y espera a que pare (o a que termine el programa). Si se llama antes de
+	 * runProgram, este para antes del primer ciclo.
+	 */
+	public void pause(){
+		controlador = Thread.currentThread();
+		pausado = true;
+		while(corriendo && !enPausa && !detenido){
+			LockSupport.park(this);
+		}
+	}
+
+	/**
+	 * Deja seguir al runProgram que estaba en pausa
+	 */
+	public void resume(){
+		pausado = false;
+		LockSupport.unpark(hiloEnPausa);
+	}
+
+	/**
+	 * Termina la simulacion al final del ciclo actual, aunque este en pausa.
+	 * runProgram regresa y step o runUntil ya no corren mas ciclos.
+	 */
+	public void stop(){
+		detenido = true;
+		pausado = false;
+		LockSupport.unpark(hiloEnPausa);
+	}
+
+	/**
+	 * @return true si el motor esta parado por pause
+	 */
+	public boolean isPausado(){
+		return enPausa;
+	}
+
+	/**
+	 * @return true si el programa ya llego a FIN o se llamo a stop
+	 */
+	public boolean haTerminado(){
+		return !wbAlive || detenido;
+	}
+
+	/**
+	 * Lo llama el motor en el limite de cada ciclo. Si hay una pausa pendiente le
+	 * avisa al controlador y se duerme hasta resume o stop.
+	 * @return false si hay que detener la simulacion
+	 */
+	private boolean puntoDeControl(){
+		if(pausado && !detenido){
+			hiloEnPausa = Thread.currentThread();
+			enPausa = true;
+			LockSupport.unpark(controlador);
+			while(pausado && !detenido){
+				LockSupport.park(this);
+			}
+			enPausa = false;
+			hiloEnPausa = null;
+		}
+		return !detenido;
+	}
+
+	/**
+	 * @return vista de solo lectura de los 32 registros, se actualiza sola
+	 */
+	public IntBuffer getVistaRegistros(){
+		return vistaRegistros;
+	}
+
+	/**
+	 * @return vista de solo lectura de la memoria de datos, la posicion i es la
+	 * direccion 768 + 4*i. Con WRITE_BACK un bloque modificado puede estar solo en la
+	 * cache hasta que se reemplace o se llame a vaciarCache.
+	 */
+	public IntBuffer getVistaMemoria(){
+		return vistaMemoria;
+	}
+
+	/**
+	 * @param registro - registro entre etapas
+	 * @param i - posicion, la ultima es el codigo de operacion
+	 * @return el valor que la etapa siguiente lee en este ciclo
+	 */
+	public int leerRegistroIntermedio(Intermedio registro, int i){
+		switch(registro){
+		case IF_ID:
+			return IF_ID.leer(i);
+		case ID_EX:
+			return ID_EX.leer(i);
+		case EX_MEM:
+			return EX_MEM.leer(i);
+		default:
+			return MEM_WB.leer(i);
+		}
+	}
+
+	/**
+	 * @return direccion de la siguiente instruccion que va a buscar IF
+	 */
+	public int getPC(){
+		return PC;
+	}
+
+	/**
+	 * @param linea - linea de la cache, la via v del conjunto c es la linea c*vias + v
+	 * @return el bloque de memoria que tiene, -1 si esta vacio
+	 */
+	public int getEtiquetaCache(int linea){
+		return cache.getEtiqueta(linea);
+	}
+
+	/**
+	 * @param linea - linea de la cache, la via v del conjunto c es la linea c*vias + v
+	 * @return 'v' vacio, 'c' compartido o 'm' modificado
+	 */
+	public char getEstadoCache(int linea){
+		return cache.getEstado(linea);
+	}
+
+	/**
+	 * @param linea - linea de la cache, la via v del conjunto c es la linea c*vias + v
+	 * @param palabra - palabra del bloque
+	 */
+	public int getDatoCache(int linea, int palabra){
+		return cache.getDato(linea, palabra);
+	}
+
+	/*
+	 * ========================== MOTOR SECUENCIAL ==========================
+	 * Corre las cinco etapas en un solo hilo, en orden inverso al del pipeline
+	 * (WB, MEM, EX, ID, IF), para que WB escriba los registros antes de que ID los
+	 * lea e ID decida si hay conflicto o salto antes de que IF busque, igual que con
+	 * la variable fase del motor con hilos. Los registros intermedios se intercambian
+	 * al final de cada ciclo.
+	 */
+
+	/**
+	 * Ciclo principal del motor secuencial, avanza el reloj hasta que WB
+	 * recibe la instruccion FIN
+	 */
+	private void correrSecuencial(){
+		while(wbAlive && puntoDeControl()){
+			cicloPipeline();
+		}
+	}
+
+	/**
+	 * Un ciclo de reloj completo del pipeline en el hilo que llama
+	 */
+	private void cicloPipeline(){
+		cicloWB();
+		cicloMEM();
+		cicloEX();
+		cicloID();
+		cicloIF();
+		clock++;
+		intercambiarRegistros();
+		revisarHilos();
+		imprimirCiclo();
+	}
+
+	/**
+	 * Entre dos ciclos: con QUANTUM revisa el quantum del hilo actual y con multihilo
+	 * por hardware atiende el fallo de carga que hubo en MEM
+	 */
+	private void revisarHilos(){
+		if(multihilo == Multihilo.QUANTUM){
+			revisarQuantum();
+		}
+		else if(hiloConFallo >= 0){
+			sacarHiloConFallo();
+		}
+	}
+
+	/**
+	 * Arma un banco de registros por hilo para el multihilo por hardware. El primer hilo
+	 * se queda con los registros y el PC que tenga el procesador, por si hubo avance rapido.
+	 */
+	private void prepararBancos(){
+		if(multihilo == Multihilo.QUANTUM || bancosListos || hilosCargados == 0){
+			return;
+		}
+		int n = 32 * hilosCargados;
+		System.arraycopy(R, 0, registrosHilos, 32 * hiloActual, 32);
+		pcHilo[hiloActual] = PC;
+		bancoR = registrosHilos;
+		rUsados = new int[n];
+		cargaPendiente = new boolean[n];
+		valorPendiente = new int[n];
+		finPendiente = new int[n];
+		if(mshr == null){
+			mshr = new TablaMSHR(hilosCargados);
+		}
+		bancosListos = true;
+	}
+
+	/**
+	 * @return primera posicion del banco de registros del hilo en bancoR
+	 */
+	private int banco(int hilo){
+		return bancosListos ? 32 * hilo : 0;
+	}
+
+	/**
+	 * @return link register del hilo: el del procesador con QUANTUM, el de su contexto
+	 * con multihilo por hardware
+	 */
+	private int enlace(int hilo){
+		return bancosListos ? linkHilo[hilo] : linkRegister;
+	}
+
+	private void enlazar(int hilo, int dirMemoria){
+		if(bancosListos){
+			linkHilo[hilo] = dirMemoria;
+		}
+		else{
+			linkRegister = dirMemoria;
+		}
+	}
+
+	/**
+	 * El hilo de la carga que fallo deja de buscar instrucciones hasta que llega su dato.
+	 * Si IF ya busco la siguiente instruccion del hilo se descarta y el hilo vuelve a
+	 * buscarla despues; no hay que deshacer nada porque ID todavia no la decodifico.
+	 * Las instrucciones del hilo que ya pasaron ID no leen el registro de la carga.
+	 */
+	private void sacarHiloConFallo(){
+		int hilo = hiloConFallo;
+		hiloConFallo = -1;
+		if(!hayOtroHiloListo(hilo)){
+			return;		// sin otro hilo es mejor seguir con las instrucciones que no esperan el dato
+		}
+		listoHilo[hilo] = finFallo;
+		cambiosPorFallo++;
+		int codigo = IF_ID.leer(0);
+		if(codigo != -1 && codigo != FIN && IF_ID.leer(5) == hilo){
+			pcHilo[hilo] = IF_ID.leer(4);
+			IF_ID.limpiar();
+			hayConflicto = false;
+			instruccionesDescartadas++;
+			if(hilo == hiloActual){
+				// IF pudo quedarse esperando la instruccion siguiente en la cache de instrucciones
+				esperaIF = 0;
+				instruccionLista = false;
+			}
+		}
+	}
+
+	private boolean hayOtroHiloListo(int hilo){
+		for(int h = 0; h < hilosCargados; ++h){
+			if(h != hilo && buscandoHilo[h] && listoHilo[h] <= clock){
+				return true;
+			}
+		}
+		return false;
+	}
 
-	//TODO: DE AQUI PARA ABAJO METODOS DE PRUEBA QUE HAY QUE BORRAR
-	public void fetch(){
+	/**
+	 * @return el hilo del que busca IF en este ciclo, -1 si todos esperan un fallo.
+	 * INTERCALADO avanza al siguiente hilo listo en cada ciclo, FALLO sigue con el
+	 * mismo mientras pueda y no haya cumplido su quantum.
+	 */
+	private int escogerHiloIF(){
+		int hilo = hiloActual;
+		if(multihilo == Multihilo.FALLO && buscandoHilo[hilo] && listoHilo[hilo] <= clock
+				&& busquedasEnHilo < quantum){
+			return hilo;
+		}
+		for(int i = 0; i < hilosCargados; ++i){
+			hilo = (hilo + 1) % hilosCargados;
+			if(buscandoHilo[hilo] && listoHilo[hilo] <= clock){
+				return hilo;
+			}
+		}
+		return -1;
+	}
 
-		if(IR[0] == FIN){
-			ifAlive = false;
+	/**
+	 * Entre dos ciclos: cuenta el ciclo al hilo actual y cuando cumple su quantum le
+	 * pide al planificador el siguiente. Si es otro hilo, o si el actual llego a su
+	 * FIN, espera a que el pipeline se vacie para cambiar de hilo. El quantum no se
+	 * cumple mientras IF espera un bloque de la cache de instrucciones ni antes de
+	 * que el hilo busque una instruccion: si no, con quantums cortos los hilos se
+	 * sacan unos a otros los bloques antes de usarlos y ninguno avanza.
+	 */
+	private void revisarQuantum(){
+		if(hilosCargados == 0){
+			return;
+		}
+		if(!planificadorIniciado){
+			// el primer hilo ya esta corriendo, los demas empiezan listos
+			planificador.reiniciar(hilosCargados);
+			for(int h = 0; h < hilosCargados; ++h){
+				if(h != hiloActual && vivoHilo[h]){
+					planificador.listo(h, 0, 0);
+				}
+			}
+			planificadorIniciado = true;
+		}
+		ciclosHilo[hiloActual]++;
+		if(drenando){
+			ciclosCambioContexto++;
+			if(pipelineVacio()){
+				cambiarContexto();
+			}
 		}
+		else if(hilosVivos > 1 && ++ciclosEnQuantum >= quantum && buscoEnQuantum && esperaIF == 0
+				&& !instruccionLista){
+			long espera = getCiclosEsperaMemoria();
+			planificador.listo(hiloActual, ciclosEnQuantum, (int) (espera - esperaAlEntrar));
+			siguienteHilo = elegirHilo();
+			if(siguienteHilo == hiloActual){
+				siguienteHilo = -1;		// sigue el mismo, no hace falta vaciar el pipeline
+				ciclosEnQuantum = 0;
+				buscoEnQuantum = false;
+				esperaAlEntrar = espera;
+			}
+			else{
+				drenando = true;
+			}
+		}
+	}
 
-		for(int i = 0; i < 4; ++i){
-			IR[i] = instructionMem[PC+i];
+	/**
+	 * @return el hilo vivo que escoge el planificador; un hilo que termino despues de
+	 * volver a la cola se salta ahi
+	 */
+	private int elegirHilo(){
+		int hilo = planificador.elegir();
+		while(hilo >= 0 && !vivoHilo[hilo]){
+			hilo = planificador.elegir();
 		}
+		return hilo;
+	}
 
-		// Guarda la instruccin a ejecutar en IR
-		// hasta que ID este desocupado se ejecuta
+	/**
+	 * @return true si ya no queda ninguna instruccion del hilo actual en el pipeline
+	 */
+	private boolean pipelineVacio(){
+		return IF_ID.leer(0) == -1 && ID_EX.leer(3) == -1 && EX_MEM.leer(2) == -1 && MEM_WB.leer(2) == -1
+				&& esperaMem == 0 && cargasPendientes == 0;
+	}
 
-		for(int i = 0; i < 4; ++i){
-			IF_ID[i] = IR[i];
+	/**
+	 * Guarda el contexto del hilo actual y carga el del siguiente hilo vivo. Solo copia
+	 * enteros entre arreglos que ya existen.
+	 */
+	private void cambiarContexto(){
+		int anterior = hiloActual;
+		pcHilo[anterior] = PC;
+		linkHilo[anterior] = linkRegister;
+		System.arraycopy(R, 0, registrosHilos, 32 * anterior, 32);
+		if(terminoHilo){
+			vivoHilo[anterior] = false;
+			finHilo[anterior] = clock;
+			hilosVivos--;
+			terminoHilo = false;
+		}
+		int siguiente = siguienteHilo;
+		if(siguiente < 0 || !vivoHilo[siguiente]){
+			siguiente = elegirHilo();
+		}
+		siguienteHilo = -1;
+		hiloActual = siguiente;
+		PC = pcHilo[siguiente];
+		linkRegister = linkHilo[siguiente];
+		System.arraycopy(registrosHilos, 32 * siguiente, R, 0, 32);
+		drenando = false;
+		ciclosEnQuantum = 0;
+		buscoEnQuantum = false;
+		esperaAlEntrar = getCiclosEsperaMemoria();
+		esperaIF = 0;
+		instruccionLista = false;
+		if(siguiente != anterior){
+			cambiosContexto++;
+		}
+	}//fin del metodo cambiarContexto
+
+	/**
+	 * Una escritura a la direccion hace fallar el SC de los hilos que esperan, que
+	 * tienen su link register guardado en el contexto
+	 */
+	private void romperEnlaces(int dirMemoria, int hilo){
+		for(int h = 0; h < hilosCargados; ++h){
+			if(h != hilo && linkHilo[h] == dirMemoria){
+				linkHilo[h] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Otro nucleo escribio el bloque o salio de la cache: fallan los SC de todos los
+	 * hilos que tenian una direccion del bloque en su link register
+	 */
+	private void romperEnlacesBloque(int bloque){
+		if(linkRegister >= 0 && cache.calcularBloqueMemoria(linkRegister) == bloque){
+			linkRegister = -1;
+		}
+		for(int h = 0; h < hilosCargados; ++h){
+			if(linkHilo[h] >= 0 && cache.calcularBloqueMemoria(linkHilo[h]) == bloque){
+				linkHilo[h] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Publica lo que las etapas escribieron en los registros intermedios durante el ciclo
+	 */
+	private void intercambiarRegistros(){
+		memDetenida = esperaMem > 0;
+		if(mshr != null){
+			mshr.contarCiclo(clock);
+		}
+		IF_ID.intercambiar();
+		ID_EX.intercambiar();
+		EX_MEM.intercambiar();
+		MEM_WB.intercambiar();
+	}
+
+	/**
+	 * Si la traza esta activa imprime el ciclo y los registros intermedios
+	 */
+	private void imprimirCiclo(){
+		if(traza){
+			System.out.println("--- Ciclos de reloj: " + clock + " --- IF_ID: " + IF_ID + " ID_EX: " + ID_EX
+					+ " EX_MEM: " + EX_MEM + " MEM_WB: " + MEM_WB);
 		}
+	}
 
-		//*****
-		//System.out.println("ENTRO: IF_ID: " + IF_ID[0] + IF_ID[1] + IF_ID[2] + IF_ID[3]);
-		// Aumenta el PC
+	/**
+	 * Un ciclo de la etapa IF: si ID no reporto conflicto pasa a IF_ID
+	 * la instruccion a la que apunta PC
+	 */
+	private void cicloIF(){
+		if(!ifAlive){
+			return;
+		}
+		if(esperaIF > 0){
+			// el bloque sigue llegando aunque el pipeline este detenido
+			esperaIF--;
+			instruccionLista = esperaIF == 0;
+		}
+		if(hayConflicto || memDetenida){
+			return;
+		}
+		if(drenando){
+			IF_ID.escribir(0, -1);		// se acabo el quantum, se vacia el pipeline
+			return;
+		}
+		if(bancosListos && esperaIF == 0 && !instruccionLista){
+			// multihilo por hardware; mientras llega un bloque de la cache de instrucciones sigue el mismo hilo
+			int hilo = escogerHiloIF();
+			if(hilo < 0){
+				IF_ID.escribir(0, -1);
+				ciclosSinHilo++;
+				return;
+			}
+			if(hilo != hiloActual){
+				cambiosContexto++;
+				hiloActual = hilo;
+				busquedasEnHilo = 0;
+			}
+			busquedasEnHilo++;
+			PC = pcHilo[hilo];
+		}
+		if(esperaIF == 0 && !instruccionLista && cacheInstrucciones != null){
+			esperaIF = cacheInstrucciones.leer(PC, hiloDeInstruccion[PC/4]);
+		}
+		if(esperaIF > 0){
+			IF_ID.escribir(0, -1);		// burbuja mientras llega el bloque
+			return;
+		}
+		instruccionLista = false;
+		long instruccion = programa[PC/4];
 		PC += 4;
-		// Espera a que ID se desocupe con un lock o algo as		
-	}//fin metodo fetch
+		int codigo = Instruccion.codigo(instruccion);
+		IF_ID.escribir(0, codigo);
+		IF_ID.escribir(1, Instruccion.y(instruccion));
+		IF_ID.escribir(2, Instruccion.x(instruccion));
+		IF_ID.escribir(3, Instruccion.n(instruccion));
+		IF_ID.escribir(4, PC - 4);		// direccion de la instruccion
+		IF_ID.escribir(5, hiloActual);
+		buscoEnQuantum = true;
+		if(bancosListos){
+			ciclosHilo[hiloActual]++;		// con multihilo por hardware se cuentan las busquedas
+			pcHilo[hiloActual] = PC;
+			if(codigo == FIN){
+				buscandoHilo[hiloActual] = false;
+				ifAlive = --hilosBuscando > 0;
+			}
+		}
+		else if(codigo == FIN){
+			if(hilosVivos > 1){
+				drenando = true;		// termina este hilo pero quedan otros
+			}
+			else{
+				ifAlive = false;
+			}
+		}
+	}//fin del metodo cicloIF
 
-	public void decode(){
+	/**
+	 * Un ciclo de la etapa ID: revisa conflictos de datos con la tabla de registros
+	 * usados, resuelve los saltos y escribe los operandos en ID_EX
+	 */
+	private void cicloID(){
+		if(!idAlive || memDetenida){
+			return;
+		}
+		hayConflicto = false;
+		int codigo = IF_ID.leer(0);
+		int y = IF_ID.leer(1);
+		int x = IF_ID.leer(2);
+		int n = IF_ID.leer(3);
+		int hilo = IF_ID.leer(5);
+		int b = banco(hilo);		// los registros del hilo de la instruccion
+
+		//si hay conflicto se manda una burbuja y se vuelve a decodificar en el siguiente ciclo
+		if(codigo == -1 || hayDependencia(codigo, b + y, b + x)){
+			hayConflicto = (codigo != -1);
+			if(hayConflicto && cargasPendientes > 0 && (cargaPendiente[b + y] || cargaPendiente[b + x])){
+				ciclosEsperaDependencia++;
+			}
+			ID_EX.escribir(3, -1);
+			return;
+		}
+		if(codigo != FIN && hilosCargados > 0){
+			instruccionesHilo[hilo]++;
+		}
+		// con multihilo por hardware los saltos cambian el PC del hilo de la instruccion
+		int pc = bancosListos ? pcHilo[hilo] : PC;
 
-		//System.out.println("ENtro ID");
+		switch(codigo){
+		case DADDI:
+			ID_EX.escribir(0, bancoR[b + y]);	// RY
+			ID_EX.escribir(1, x);		// Destino
+			ID_EX.escribir(2, n);		// inmediato
+			rUsados[b + x]++;
+			break;
+		case DADD:
+		case DSUB:
+		case DMUL:
+		case DDIV:
+			ID_EX.escribir(0, bancoR[b + y]);	// Reg Operando1
+			ID_EX.escribir(1, bancoR[b + x]);	// Reg Operando2
+			ID_EX.escribir(2, n);		// Reg Destino
+			rUsados[b + n]++;
+			break;
+		case LW:
+		case LL:
+			ID_EX.escribir(0, n);		// valor inmediato
+			ID_EX.escribir(1, bancoR[b + y]);	// Origen
+			ID_EX.escribir(2, x);		// Destino
+			rUsados[b + x]++;
+			break;
+		case SW:
+			ID_EX.escribir(0, n);		// valor inmediato
+			ID_EX.escribir(1, bancoR[b + x]);	// valor a guardar
+			ID_EX.escribir(2, bancoR[b + y]);	// base de la direccion
+			break;
+		case SC:
+			ID_EX.escribir(0, n);		// valor inmediato
+			ID_EX.escribir(1, bancoR[b + y]);	// base de la direccion
+			ID_EX.escribir(2, x);		// registro con el valor y destino del resultado
+			rUsados[b + x]++;
+			break;
+		case JAL:
+			ID_EX.escribir(2, pc);		// direccion de retorno, se guardara en R31
+			pc += n;
+			rUsados[b + 31]++;
+			break;
+		case BEQZ:
+			if(bancoR[b + y] == 0){
+				pc += n*4;
+			}
+			codigo = -1;		// despues de ID el salto es una burbuja
+			break;
+		case BNEZ:
+			if(bancoR[b + y] != 0){
+				pc += n*4;
+			}
+			codigo = -1;
+			break;
+		case JR:
+			pc = bancoR[b + y];
+			codigo = -1;
+			break;
+		case FIN:
+			idAlive = bancosListos ? ++finesID < hilosCargados : hilosVivos > 1;
+			break;
+		default:
+			codigo = -1;
+		}//fin del switch
+		if(bancosListos){
+			pcHilo[hilo] = pc;
+		}
+		else{
+			PC = pc;
+		}
+		ID_EX.escribir(3, codigo);
+		ID_EX.escribir(4, IF_ID.leer(4));
+		ID_EX.escribir(5, hilo);
+	}//fin del metodo cicloID
 
-		switch(IF_ID[0]){//contiene el cdigo de instruccion
+	/**
+	 * Verifica en la tabla de registros usados si la instruccion lee un
+	 * registro que todavia no ha sido escrito por WB
+	 * @param y, x - registros que puede leer, ya con la posicion del banco de su hilo
+	 */
+	private boolean hayDependencia(int codigo, int y, int x){
+		switch(codigo){
 		case DADDI:
-			ID_EX[0] = R[IF_ID[1]]; 		// RY
-			ID_EX[1] = IF_ID[2];          	// X
-			ID_EX[2] = IF_ID[3];          	// n
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
+		case LW:
+		case LL:
+		case BEQZ:
+		case BNEZ:
+		case JR:
+			return rUsados[y] > 0;
 		case DADD:
-			ID_EX[0] = R[IF_ID[1]]; 		// Reg Operando1
-			ID_EX[1] = R[IF_ID[2]]; 		// Reg Operando2
-			ID_EX[2] = IF_ID[3];          	// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
 		case DSUB:
-			ID_EX[0] = R[IF_ID[1]]; 		// Reg Operando1
-			ID_EX[1] = R[IF_ID[2]]; 		// Reg Operando2
-			ID_EX[2] = IF_ID[3];          	// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
 		case DMUL:
-			ID_EX[0] = R[IF_ID[1]]; 		// Reg Operando1
-			ID_EX[1] = R[IF_ID[2]]; 		// Reg Operando2
-			ID_EX[2] = IF_ID[3];          	// Reg Operando3
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
 		case DDIV:
-			ID_EX[0] = R[IF_ID[1]];			// Reg Operando1
-			ID_EX[1] = R[IF_ID[2]];			// Reg Operando2
-			ID_EX[2] = IF_ID[3];			// Reg Operando3
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
-		case LW:
-			ID_EX[0] = IF_ID[3]; 			// valor inmediato
-			ID_EX[1] = R[IF_ID[1]];  		// Reg Origen
-			ID_EX[2] = IF_ID[2];          	// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
 		case SW:
-			ID_EX[0] = IF_ID[3]; 			// valor inmediato
-			ID_EX[1] = R[IF_ID[2]]; 		// Reg Origen
-			ID_EX[2] = R[IF_ID[1]];			// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
-		case LL:	//hace lo mismo que LW
-			ID_EX[0] = IF_ID[3]; 			// valor inmediato
-			ID_EX[1] = R[IF_ID[1]];  		// Reg Origen
-			ID_EX[2] = IF_ID[2];          	// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
-		case SC:	//hace lo mismo que SW
-			ID_EX[0] = IF_ID[3]; 			// valor inmediato
-			ID_EX[1] = R[IF_ID[1]]; 		// Valor en Reg Origen
-			ID_EX[2] = IF_ID[2];			// Reg Destino
-			ID_EX[3] = IF_ID[0];			// operation code
-			break;
-		case BEQZ://se resuelve en ID
-			if(R[IF_ID[1]] == 0){
-				PC = IF_ID[4];
-			}
-			ID_EX[3] = IF_ID[0];			// operation code
-		break;
-		case BNEZ://se resuelve en ID
-			if(R[IF_ID[1]] != 0){
-				PC = IF_ID[4];
-			}
-			ID_EX[3] = IF_ID[0];			// operation code
-		break;
-		case JAL:
-			//R[31] = PC+16;				// guarda la direccion de la siguiente instruccion
-			ID_EX[2] = PC;					//pasa el PC actual, se guardar en R[31]
-			PC= PC+IF_ID[1];				
-			ID_EX[3] = IF_ID[0];			// operation code
-		break;
-		case JR://JR tambien se resuelve en ID
-			PC = R[IF_ID[0]];
-			ID_EX[3] = IF_ID[0];			// operation code
-		break;
-		}//fin del switch
-
-		//System.out.println("ENTRO: ID_EX: " + ID_EX[0] + ID_EX[1] + ID_EX[2] + ID_EX[3]);
-
-	}//fin metodo decode
+		case SC:
+			return rUsados[y] > 0 || rUsados[x] > 0;
+		default:
+			return false;
+		}
+	}
 
-	public void execute(){
-		switch(ID_EX[3]){
+	/**
+	 * Un ciclo de la etapa EX: realiza la operacion del ALU y escribe en EX_MEM
+	 */
+	private void cicloEX(){
+		if(!exAlive || memDetenida){
+			return;
+		}
+		int a = ID_EX.leer(0);
+		int b = ID_EX.leer(1);
+		int c = ID_EX.leer(2);
+		int codigo = ID_EX.leer(3);
+		switch(codigo){
 		case DADDI:
-			EX_MEM[0] = ID_EX[0]+ID_EX[2];
-			EX_MEM[1] = ID_EX[1]; 			//como escribe en registro, el campo de memoria va vacio
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			EX_MEM.escribir(0, a + c);
+			EX_MEM.escribir(1, b);
 			break;
 		case DADD:
-			EX_MEM[0] = ID_EX[0] + ID_EX[1];
-			EX_MEM[1] = ID_EX[2];
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			EX_MEM.escribir(0, a + b);
+			EX_MEM.escribir(1, c);
 			break;
 		case DSUB:
-			EX_MEM[0] = ID_EX[0] - ID_EX[1];
-			EX_MEM[1] = ID_EX[2];
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			EX_MEM.escribir(0, a - b);
+			EX_MEM.escribir(1, c);
 			break;
 		case DMUL:
-			EX_MEM[0] = ID_EX[0] * ID_EX[1];
-			EX_MEM[1] = ID_EX[2];
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			EX_MEM.escribir(0, a * b);
+			EX_MEM.escribir(1, c);
 			break;
 		case DDIV:
-			EX_MEM[0] = ID_EX[0] / ID_EX[1];
-			EX_MEM[1] = ID_EX[2];
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			if(b == 0){
+				System.err.println("Division entre cero, el resultado queda en 0.");
+				EX_MEM.escribir(0, 0);
+			}
+			else{
+				EX_MEM.escribir(0, a / b);
+			}
+			EX_MEM.escribir(1, c);
 			break;
 		case LW:
-			EX_MEM[0] = ID_EX[0]+ID_EX[1];	//Resultado de memoria del ALU
-			EX_MEM[1] = ID_EX[2];			//Reg Destino
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+		case LL:
+		case SC:
+			EX_MEM.escribir(0, a + b);	// direccion de memoria
+			EX_MEM.escribir(1, c);		// registro destino
 			break;
 		case SW:
-			EX_MEM[0] = ID_EX[0]+ID_EX[2];	//Resultado de memoria del ALU
-			EX_MEM[1] = ID_EX[1];			//Destino
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+			EX_MEM.escribir(0, a + c);	// direccion de memoria
+			EX_MEM.escribir(1, b);		// valor a guardar
 			break;
-		case LL://hace lo mismo que LW
-			EX_MEM[0] = ID_EX[0]+ID_EX[1];	//Resultado de memoria del ALU
-			EX_MEM[1] = ID_EX[2];			//Reg Destino
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+		case JAL:
+			EX_MEM.escribir(0, c);		// direccion de retorno
+			EX_MEM.escribir(1, 31);
 			break;
-		case SC://hace lo mismo que SW
-			EX_MEM[0] = ID_EX[0]+ID_EX[1];	//Resultado de memoria del ALU
-			EX_MEM[1] = ID_EX[2];			//Registro Destino
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
+		case FIN:
+			exAlive = bancosListos ? ++finesEX < hilosCargados : hilosVivos > 1;
 			break;
-		case BEQZ://no hace nada, solo pasa el opCode
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
-		break;
-		case JAL:
-			EX_MEM[1] = ID_EX[2] + 16;		//PC que se guardar en R[31]
-		break;
-		default://no hace nada, solo pasa el opCode
-			EX_MEM[2] = ID_EX[3]; 			//codigo de operacion
 		}//fin del switch
-	}//fin metodo execute
+		EX_MEM.escribir(2, codigo);
+		EX_MEM.escribir(3, ID_EX.leer(4));
+		EX_MEM.escribir(4, ID_EX.leer(5));
+	}//fin del metodo cicloEX
 
-	public void memory(){
-		boolean direccionValida;
-		int bloqueMem, bloqueCache;
-		switch(EX_MEM[2]){
+	/**
+	 * Un ciclo de la etapa MEM: hace los accesos a memoria a traves de la cache
+	 */
+	private void cicloMEM(){
+		if(!memAlive){
+			return;
+		}
+		if(esperaMem > 0){
+			// la instruccion sigue esperando a la memoria, pasa a WB cuando termina la espera
+			esperaMem--;
+			if(esperaMem == 0){
+				MEM_WB.escribir(0, pendienteMem[0]);
+				MEM_WB.escribir(1, pendienteMem[1]);
+				MEM_WB.escribir(2, pendienteMem[2]);
+				MEM_WB.escribir(3, pendienteMem[3]);
+				MEM_WB.escribir(4, pendienteMem[4]);
+			}
+			else{
+				MEM_WB.escribir(2, -1);
+			}
+			return;
+		}
+		ciclosMemoria = 0;
+		int alu = EX_MEM.leer(0);
+		int dato = EX_MEM.leer(1);
+		int codigo = EX_MEM.leer(2);
+		int hilo = EX_MEM.leer(4);
+		boolean acceso = false;		// la instruccion llego a la cache
+		switch(codigo){
 		case LW:
-			/*codigo viejo, sin implementacion de cache
-			MEM_WB[0] = dataMem[EX_MEM[0]]; //lee el dato de Mem[ALU]
-			MEM_WB[1] = EX_MEM[1];			//reg destino
-			MEM_WB[2] = EX_MEM[2]; 			//codigo de operacion */
-
-			//primero hay que verificar que la direccion que se tratar de leer sea valida
-			direccionValida = verificarDirMem(EX_MEM[0]);
-			if(direccionValida){//si diera false, sera bueno agregar un manejo de excepcion
-				//si fuera vlida, hay que verificar que haya un hit de memoria en cache.
-				//si diera fallo, hay que traer el bloque desde memoria, si estuviera se toma directo de la cache
-				bloqueMem = calcularBloqueMemoria(EX_MEM[0]);
-				bloqueCache = calcularBloqueCache(EX_MEM[0]);
-				if(!hitMemoria(EX_MEM[0])){
-					//si hubiera fallo de memoria y el bloque en cache correspondiente est modificado,
-					//primero hay que guardarlo a memoria. para esto primero calculamos el bloque en memoria
-					//del dato que se quiere cargar. es aqui cuando se usa la estrategia WRITE ALLOCATE
-					if(cache[bloqueCache].getEstado() == 'm'){
-						cacheStore(bloqueCache);
-					}
-					//en este punto se hace se carga la cache, pues no hubo hit de memoria
-					//y si el bloque estaba modificado ya se guard antes a memoria
-					//es aqui cuando se usa la estrategia de WRITE BACK
-					cacheLoad(EX_MEM[0]);
+		case LL:
+			acceso = verificarDirMem(alu);
+			MEM_WB.escribir(0, acceso ? cacheLeer(alu) : 0);
+			if(codigo == LL){
+				int perdido = cache.enlazar(alu);		// con varios nucleos la cache vigila el bloque
+				if(perdido >= 0){
+					romperEnlacesBloque(perdido);
 				}
-				//en este punto s hubo hit de memoria, por lo que se carga el dato desde la cache
-				int indice = ((EX_MEM[0]+768) / 16 ) % 4;
-				MEM_WB[0] = cache[bloqueCache].getValor(indice);
-				//System.out.println(MEM_WB[0]);
-				MEM_WB[1] = EX_MEM[1];			//reg destino
-				MEM_WB[2] = EX_MEM[2]; 			//el codigo de operacion			
-			}//fin de if direccionValida
+				enlazar(hilo, alu);
+			}
 			break;
-
 		case SW:
-			/*codigo viejo, sin implementacion de cache
-			dataMem[EX_MEM[0]] = EX_MEM[1]; //se hace el store en memoria
-			MEM_WB[0] = EX_MEM[0];			//no hace nada pero tiene que pasar el valor
-			MEM_WB[1] = EX_MEM[1];			//no hace nada pero tiene que pasar el valor
-			MEM_WB[2] = EX_MEM[2]; 			//codigo de operacion*/
-
-			//nuevamente, lo primero es verificar que la referencia a memoria sea valida
-			direccionValida = verificarDirMem(EX_MEM[0]);
-			if(direccionValida){
-				//si fuera valida, se verifica si el bloque de memoria est en cache
-				bloqueMem = calcularBloqueMemoria(EX_MEM[0]);
-				bloqueCache = calcularBloqueCache(EX_MEM[0]);
-				if(!hitMemoria(EX_MEM[0])){
-					//si no hay hit de memoria hay que cargar el bloque a cache, pero si en el bloque de cache
-					//donde vamos a escribir est modificado, primero hay que escribir el bloque actual a memoria:
-					if(cache[bloqueCache].getEtiqueta() == bloqueMem && cache[bloqueCache].getEtiqueta() == 'm'){
-						cacheStore(bloqueCache);
-					}
-					//si no estuviera modificado, entonces ya podemos escribir el bloque de cache a memoria
-					cacheLoad(EX_MEM[0]);
-				}
-				//con el bloque ya en cache, debemos escribir en la posicion correcta del bloque
-				int offset = (EX_MEM[0] / 4) % 4; //se calcula el desplazamiento en el bloque
-				cache[bloqueCache].setBloquePos(offset, EX_MEM[1]); //el valor a guardar esta en EX_MEM[1]
-				cache[bloqueCache].setEstado('m'); //cuando se escribe en cache el estado debe pasar a modificado
-
-				//pasa los valores a MEM_WB
-				MEM_WB[0] = EX_MEM[0];			//no hace nada pero tiene que pasar el valor
-				MEM_WB[1] = EX_MEM[1];			//no hace nada pero tiene que pasar el valor
-				MEM_WB[2] = EX_MEM[2]; 			//codigo de operacion
+			if(verificarDirMem(alu)){
+				cacheEscribir(alu, dato);
+				acceso = true;
+				romperEnlaces(alu, hilo);
 			}
+			MEM_WB.escribir(0, alu);
 			break;
-
-		case LL://hace exactamente lo mismo que un load normal, pero ademas de eso escribe el link register
-			direccionValida = verificarDirMem(EX_MEM[0]);
-			if(direccionValida){//si diera false, sera bueno agregar un manejo de excepcion
-				//si fuera vlida, hay que verificar que haya un hit de memoria en cache.
-				//si diera fallo, hay que traer el bloque desde memoria, si estuviera se toma directo de la cache
-				bloqueMem = calcularBloqueMemoria(EX_MEM[0]);
-				bloqueCache = calcularBloqueCache(EX_MEM[0]);
-				if(!hitMemoria(EX_MEM[0])){
-					//si hubiera fallo de memoria y el bloque en cache correspondiente est modificado,
-					//primero hay que guardarlo a memoria. para esto primero calculamos el bloque en memoria
-					//del dato que se quiere cargar. es aqui cuando se usa la estrategia WRITE ALLOCATE
-					if(cache[bloqueCache].getEtiqueta() == bloqueMem && cache[bloqueCache].getEtiqueta() == 'm'){
-						cacheStore(bloqueCache);
-					}
-					//en este punto se hace se carga la cache, pues no hubo hit de memoria
-					//y si el bloque estaba modificado ya se guard antes a memoria
-					//es aqui cuando se usa la estrategia de WRITE BACK
-					cacheLoad(EX_MEM[0]);
-
-				}
-				//en este punto s hubo hit de memoria, por lo que se carga el dato desde la cache
-				int indice = ((EX_MEM[0]+768) / 16 ) % 4; //es el desplazamiento que debe hacerse en el bloque
-				MEM_WB[0] = cache[bloqueCache].getValor(indice);
-				MEM_WB[1] = EX_MEM[1];		//reg destino
-				MEM_WB[2] = EX_MEM[0]; 		//direccion de memoria M[ALU]
-			}//fin de if direccionValida
-			break;
-		case SC://igual a SW, solo que se hace solo si el register link es igual a la direccion de la memoria y pone 1 en Rx
-			//si no fueran iguales, entonces no realiza nada en memoria y pone un 0 en Rx
-
-			direccionValida = verificarDirMem(EX_MEM[0]);
-			if(direccionValida){
-				if(EX_MEM[0]==linkRegister){//si son iguales, no ha habido cambio de contexto
-					//si fuera valida, se verifica si el bloque de memoria est en cache
-					bloqueMem = calcularBloqueMemoria(EX_MEM[0]);
-					bloqueCache = calcularBloqueCache(EX_MEM[0]);
-					if(!hitMemoria(EX_MEM[0])){
-						//si no hay hit de memoria hay que cargar el bloque a cache, pero si en el bloque de cache
-						//donde vamos a escribir est modificado, primero hay que escribir el bloque actual a memoria:
-						if(cache[bloqueCache].getEtiqueta() == bloqueMem && cache[bloqueCache].getEtiqueta() == 'm'){
-							cacheStore(bloqueCache);
-						}
-						//si no estuviera modificado, entonces ya podemos escribir el bloque de cache a memoria
-						cacheLoad(EX_MEM[0]);
-					}
-					//con el bloque ya en cache, debemos escribir en la posicion correcta del bloque
-					int offset = (EX_MEM[0] / 4) % 4; //se calcula el desplazamiento en el bloque
-					cache[bloqueCache].setBloquePos(offset, R[EX_MEM[1]]); //el valor a guardar en el bloque est en el registro EX_MEM[1]
-					cache[bloqueCache].setEstado('m'); //cuando se escribe en cache el estado debe pasar a modificado
-					MEM_WB[2] = 1; //si el SC es exitoso, se guarda un 1 en el registro destino
-				}
-				else{
-					MEM_WB[2] = 0; //hubo cambio de contexto y el SC fall, por lo que pasa un 0
-				}
-				//pasa los valores a MEM_WB, sin importar si el SC falle o sea exitoso
-				MEM_WB[0] = EX_MEM[0];	//direccion de memoria M[ALU]
-				MEM_WB[1] = EX_MEM[1];	//registro destino
+		case SC:
+			//solo escribe si nadie ha tocado la direccion desde el LL, y deja 1 o 0 en el registro
+			if(alu == enlace(hilo) && cache.enlazado(alu) && verificarDirMem(alu)){
+				cacheEscribir(alu, bancoR[banco(hilo) + dato]);
+				MEM_WB.escribir(0, 1);
+				acceso = true;
+				romperEnlaces(alu, hilo);
+			}
+			else{
+				MEM_WB.escribir(0, 0);
 			}
+			enlazar(hilo, -1);
+			break;
+		case FIN:
+			memAlive = bancosListos ? ++finesMEM < hilosCargados : hilosVivos > 1;
+			MEM_WB.escribir(0, alu);
 			break;
 		default:
-			MEM_WB[0] = EX_MEM[0];
-			MEM_WB[1] = EX_MEM[1];
-			MEM_WB[2] = EX_MEM[2]; 			//en MEM_WB va el codigo de operacion
+			MEM_WB.escribir(0, alu);
 		}//fin del switch
-	}//fin metodo memory
+		MEM_WB.escribir(1, dato);
+		MEM_WB.escribir(2, codigo);
+		MEM_WB.escribir(3, -1);
+		MEM_WB.escribir(4, hilo);
+		if(acceso){
+			revisarPrecarga(EX_MEM.leer(3), alu);
+			if(grabacion != null){
+				int pc = EX_MEM.leer(3);
+				grabacion.registrar(alu, codigo == SW || codigo == SC, pc, hiloDeInstruccion[pc/4]);
+			}
+		}
+		ciclosEsperaBloqueante += ciclosMemoria;
+
+		// con MSHRs el fallo se atiende de fondo y la carga le dice a WB cuando llega el dato
+		int espera = ciclosMemoria;
+		if(mshr != null && acceso){
+			int fin = mshr.registrar(cache.calcularBloqueMemoria(alu), clock, ciclosMemoria);
+			espera = mshr.getEsperaEstructural();
+			if(codigo == SC){
+				espera = fin - clock;		// el SC es atomico, espera a que termine su acceso
+			}
+			else if(codigo != SW){
+				MEM_WB.escribir(3, fin);
+				if(bancosListos && fin > clock){
+					hiloConFallo = hilo;	// el hilo deja IF hasta que llegue el dato
+					finFallo = fin;
+				}
+			}
+		}
 
-	public void writeBack(){
-		switch(IR[0]){ //codigo de operacion en IR[0]
-		case DADDI:
-			R[MEM_WB[1]] = MEM_WB[0];
+		// si la memoria tarda, la instruccion se queda en MEM y las etapas de atras se detienen
+		if(espera > 0){
+			esperaMem = espera;
+			ciclosEsperaMemoria += espera;
+			pendienteMem[0] = MEM_WB.leerSiguiente(0);
+			pendienteMem[1] = dato;
+			pendienteMem[2] = codigo;
+			pendienteMem[3] = MEM_WB.leerSiguiente(3);
+			pendienteMem[4] = hilo;
+			MEM_WB.escribir(2, -1);
+		}
+	}//fin del metodo cicloMEM
+
+	/**
+	 * Si el acceso fue el primer uso de un bloque precargado que todavia no llega,
+	 * la instruccion espera lo que falta. Despues le avisa al precargador.
+	 */
+	private void revisarPrecarga(int pc, int dirMemoria){
+		int llegada = cache.getPrecargaUsada();
+		if(llegada > clock){
+			precargasTardias++;
+			ciclosMemoria += llegada - clock;
+		}
+		if(precargador != null){
+			precargador.acceso(pc, dirMemoria, cache.calcularBloqueMemoria(dirMemoria), !cache.fueAcierto(),
+					llegada >= 0, destinoPrecarga);
+		}
+	}
+
+	// Las precargas se piden en el ciclo actual y llegan cuando la memoria termina de traerlas.
+	// No detienen al pipeline: lo que tardan, con las escrituras de los bloques que sacan,
+	// lo cuenta la cache en getCiclosPrecarga y getEscriturasPrecarga
+	private final Precargador.Destino destinoPrecarga = new Precargador.Destino(){
+		@Override
+		public void precargarBloque(int bloqueMem){
+			cache.precargar(bloqueMem, clock);
+		}
+
+		@Override
+		public void precargarDireccion(int dirMemoria){
+			cache.precargar(cache.calcularBloqueMemoria(dirMemoria), clock);
+		}
+	};
+
+	/**
+	 * Un ciclo de la etapa WB: escribe el resultado en el registro destino y
+	 * lo libera en la tabla de registros usados
+	 */
+	private void cicloWB(){
+		if(!wbAlive){
+			return;
+		}
+		if(cargasPendientes > 0){
+			completarCargas();
+		}
+		int resultado = MEM_WB.leer(0);
+		int hilo = MEM_WB.leer(4);
+		int destino = banco(hilo) + MEM_WB.leer(1);
+		switch(MEM_WB.leer(2)){
+		case LW:
+		case LL:
+			//si el dato del fallo todavia no llega la carga queda pendiente
+			if(MEM_WB.leer(3) >= clock){
+				registrarCarga(destino, resultado, MEM_WB.leer(3));
+			}
+			else{
+				escribirRegistro(destino, resultado);
+			}
 			break;
+		case DADDI:
 		case DADD:
-			R[MEM_WB[1]] = MEM_WB[0];
-			break;
 		case DSUB:
-			R[MEM_WB[1]] = MEM_WB[0];
-			break;
 		case DMUL:
-			R[MEM_WB[1]] = MEM_WB[0];
-			break;
 		case DDIV:
-			R[MEM_WB[1]] = MEM_WB[0];
-			break;
-		case LW:
-			R[MEM_WB[1]] = MEM_WB[0];
-			break;
-		case LL:
-			linkRegister = MEM_WB[2];	//guarda en el LR la direccion de memoria
-			R[MEM_WB[1]] = MEM_WB[0];
-		break;
 		case SC:
-			if(MEM_WB[2] == 1){			//si el SC fue exitoso
-				R[MEM_WB[1]] = 1;
+		case JAL:
+			escribirRegistro(destino, resultado);
+			break;
+		case FIN:
+			//el programa termina cuando llegan todas las cargas pendientes
+			if(hilosVivos > 1 && bancosListos){
+				// multihilo por hardware: las cargas pendientes del hilo llegan a su banco despues
+				vivoHilo[hilo] = false;
+				finHilo[hilo] = clock + 1;
+				hilosVivos--;
 			}
-			if(MEM_WB[2] == 0){			//si el SC no tuvo exito
-				R[MEM_WB[1]] = 0;
+			else if(hilosVivos > 1){
+				terminoHilo = true;		// el cambio de contexto espera las cargas
 			}
-		break;
-		case JAL:
-			R[31] = MEM_WB[1];			//guarda el PC en R[31]
-		break;
-			//en RW no hace nada en la etapa de writeback
+			else if(cargasPendientes == 0){
+				wbAlive = false;
+				if(hilosCargados > 0){
+					finHilo[hilo] = clock + 1;
+				}
+				if(bancosListos){
+					System.arraycopy(bancoR, banco(hilo), R, 0, 32);	// quedan los del ultimo hilo
+				}
+			}
+			else{
+				ciclosEsperaDrenado++;
+			}
+			break;
 		}//fin del switch
-	}//fin metodo writeBack
+	}//fin del metodo cicloWB
+
+	/**
+	 * Escribe el resultado de una instruccion y lo libera en la tabla de registros
+	 * usados. Si una carga anterior al mismo registro sigue pendiente, su dato ya no
+	 * sirve (esta instruccion es mas nueva) y tambien se libera.
+	 * @param destino - registro, ya con la posicion del banco de su hilo
+	 */
+	private void escribirRegistro(int destino, int valor){
+		if(cargaPendiente[destino]){
+			cargaPendiente[destino] = false;
+			cargasPendientes--;
+			rUsados[destino]--;
+		}
+		bancoR[destino] = valor;
+		rUsados[destino]--;
+	}
+
+	/**
+	 * Deja una carga esperando el dato de su fallo. El registro sigue marcado en
+	 * rUsados, asi que solo se detienen las instrucciones que lo leen.
+	 */
+	private void registrarCarga(int destino, int valor, int fin){
+		if(cargaPendiente[destino]){
+			cargasPendientes--;
+			rUsados[destino]--;		// la carga anterior al mismo registro queda reemplazada
+		}
+		cargaPendiente[destino] = true;
+		valorPendiente[destino] = valor;
+		finPendiente[destino] = fin;
+		cargasPendientes++;
+	}
+
+	/**
+	 * Escribe las cargas pendientes cuyo dato ya llego
+	 */
+	private void completarCargas(){
+		for(int r = 0; r < cargaPendiente.length; ++r){
+			if(cargaPendiente[r] && finPendiente[r] < clock){
+				cargaPendiente[r] = false;
+				cargasPendientes--;
+				bancoR[r] = valorPendiente[r];
+				rUsados[r]--;
+			}
+		}
+	}
+
+	/* Metodo que verifica si la direccion de memoria es valida
+	 * La memoria total es de 4096 enteros, 768 para instrucciones y 3328 para datos como cada entero 
+	 * en la memoria de datos es de 4 bytes hay que hacer el calculo para accesar a la memoria de 
+	 * datos as las direcciones referenciables son de 768 a 3324, siendo 768 v[0], 772 v[1], ... 3324 v[831] 
+	 * debe verificarse que las direcciones de memoria sean ser multiplos de 4 y que esten entre 768 y 3324 
+	 * retorna true si la direccion es valida, de lo contrario devuelve false
+	 */
+	public boolean verificarDirMem(int dir){
+		boolean valida=false;
+		//primero verifica si la direccion es valida
+		if((dir>767 && dir<4093) && (dir % 4 == 0 )){
+			valida = true;
+		}
+		else{
+			if(dir<=767 || dir>=4093){
+				System.err.println("La direccin " + dir + " se sale del rango vlido.");
+			}
+			else{
+				System.err.println("La direccin " + dir + " no cumple con ser mltiplo de 4.");
+			}
+		}
+		return valida;
+	}
+
+	/*
+	 * ========================== MOTOR FUNCIONAL ==========================
+	 * Ejecuta el programa sin modelar el pipeline: cada instruccion termina en un
+	 * ciclo de reloj. Se interpreta un bloque basico a la vez y los bloques que
+	 * llegan a UMBRAL_TRADUCCION ejecuciones se traducen a bytecode. Un bloque
+	 * traducido avanza el reloj y el contador de instrucciones en la misma cantidad
+	 * que si se hubiera interpretado, y lee y escribe memoria por la misma cache.
+	 */
+
+	// Acceso a memoria que comparten el interprete y los bloques traducidos
+	private final TraductorBloques.Memoria memoria = new TraductorBloques.Memoria(){
+		@Override
+		public int leer(int direccion){
+			if(!verificarDirMem(direccion)){
+				return 0;
+			}
+			int valor = cacheLeer(direccion);
+			esperarMemoria();
+			return valor;
+		}
+
+		@Override
+		public void escribir(int direccion, int valor){
+			if(verificarDirMem(direccion)){
+				cacheEscribir(direccion, valor);
+				esperarMemoria();
+			}
+		}
+
+		/**
+		 * Sin pipeline lo que tarda la memoria se suma directo al reloj
+		 */
+		private void esperarMemoria(){
+			clock += ciclosMemoria;
+			ciclosEsperaMemoria += ciclosMemoria;
+			ciclosEsperaBloqueante += ciclosMemoria;
+			ciclosMemoria = 0;
+		}
+	};
+
+	// Acceso directo a dataMem para el avance rapido sin calentar la cache
+	private final TraductorBloques.Memoria memoriaDirecta = new TraductorBloques.Memoria(){
+		@Override
+		public int leer(int direccion){
+			return verificarDirMem(direccion) ? dataMem[(direccion - 768) / 4] : 0;
+		}
+
+		@Override
+		public void escribir(int direccion, int valor){
+			if(verificarDirMem(direccion)){
+				dataMem[(direccion - 768) / 4] = valor;
+			}
+		}
+	};
+
+	/**
+	 * Ciclo principal del motor funcional, corre hasta la instruccion FIN o hasta el disparo
+	 * @param disparador - condicion para parar antes de una instruccion, o null
+	 * @param mem - acceso a memoria, por la cache o directo a dataMem
+	 * @return true si paro por el disparador, false si llego a FIN
+	 */
+	private boolean correrFuncional(Disparador disparador, TraductorBloques.Memoria mem){
+		int estado = SIGUE;
+		while(estado == SIGUE && puntoDeControl()){
+			int indice = PC/4;
+			TraductorBloques.Codigo codigo = traductor.traducido(indice);
+			if(codigo != null && (disparador == null
+					|| disparador.permiteBloque(instrucciones, PC, traductor.largo(indice)))){
+				int largo = traductor.largo(indice);
+				PC = codigo.ejecutar(R, mem);
+				clock += largo;
+				instrucciones += largo;
+			}
+			else{
+				traductor.contar(programa, indice);
+				estado = interpretarBloque(disparador, mem);
+			}
+		}
+		return estado == DISPARO;
+	}//fin del metodo correrFuncional
+
+	/**
+	 * Interpreta instrucciones desde PC hasta la primera instruccion de control
+	 * @param disparador - condicion para parar antes de una instruccion, o null
+	 * @param mem - acceso a memoria, por la cache o directo a dataMem
+	 * @return SIGUE, TERMINO si la ultima instruccion fue FIN o DISPARO
+	 */
+	private int interpretarBloque(Disparador disparador, TraductorBloques.Memoria mem){
+		while(true){
+			long instruccion = programa[PC/4];
+			if(disparador != null && disparador.seDispara(instrucciones, PC, instruccion)){
+				return DISPARO;
+			}
+			int y = Instruccion.y(instruccion);
+			int x = Instruccion.x(instruccion);
+			int n = Instruccion.n(instruccion);
+			int dir;
+			PC += 4;
+			clock++;
+			instrucciones++;
+			switch(Instruccion.codigo(instruccion)){
+			case DADDI:
+				R[x] = R[y] + n;
+				break;
+			case DADD:
+				R[n] = R[y] + R[x];
+				break;
+			case DSUB:
+				R[n] = R[y] - R[x];
+				break;
+			case DMUL:
+				R[n] = R[y] * R[x];
+				break;
+			case DDIV:
+				R[n] = TraductorBloques.dividir(R[y], R[x]);
+				break;
+			case LW:
+				R[x] = mem.leer(R[y] + n);
+				break;
+			case SW:
+				mem.escribir(R[y] + n, R[x]);
+				break;
+			case LL:
+				dir = R[y] + n;
+				R[x] = mem.leer(dir);
+				linkRegister = dir;
+				break;
+			case SC:
+				dir = R[y] + n;
+				if(dir == linkRegister && verificarDirMem(dir)){
+					mem.escribir(dir, R[x]);
+					R[x] = 1;
+				}
+				else{
+					R[x] = 0;
+				}
+				linkRegister = -1;
+				break;
+			case BEQZ:
+				if(R[y] == 0){
+					PC += n*4;
+				}
+				return SIGUE;
+			case BNEZ:
+				if(R[y] != 0){
+					PC += n*4;
+				}
+				return SIGUE;
+			case JAL:
+				R[31] = PC;
+				PC += n;
+				return SIGUE;
+			case JR:
+				PC = R[y];
+				return SIGUE;
+			case FIN:
+				return TERMINO;
+			}//fin del switch
+		}
+	}//fin del metodo interpretarBloque
+
+	/**
+	 * Deja el pipeline vacio para que empiece a buscar instrucciones desde el PC
+	 * actual con los registros y la memoria que dejo el avance rapido. Las
+	 * estadisticas de la cache empiezan de cero en la region de interes.
+	 */
+	private void iniciarPipeline(){
+		IF_ID.limpiar();
+		ID_EX.limpiar();
+		EX_MEM.limpiar();
+		MEM_WB.limpiar();
+		Arrays.fill(rUsados, 0);
+		hayConflicto = false;
+		esperaMem = 0;
+		memDetenida = false;
+		ifAlive = idAlive = exAlive = memAlive = wbAlive = true;
+		cache.reiniciarEstadisticas();
+		if(cacheL2 != null){
+			cacheL2.reiniciarEstadisticas();
+		}
+		if(cacheInstrucciones != null){
+			cacheInstrucciones.reiniciarEstadisticas();
+		}
+		esperaIF = 0;
+		instruccionLista = false;
+		ciclosEsperaMemoria = ciclosEsperaBloqueante = 0;
+		Arrays.fill(cargaPendiente, false);
+		cargasPendientes = 0;
+		ciclosEsperaDependencia = ciclosEsperaDrenado = 0;
+		if(mshr != null){
+			mshr.limpiar();
+		}
+		if(precargador != null){
+			precargador.reiniciar();
+		}
+		precargasTardias = 0;
+	}//fin del metodo iniciarPipeline
+
+	/**
+	 * Lee una palabra de memoria de datos a traves de la cache
+	 * @param dirMemoria - direccion valida de memoria de datos
+	 * @return el valor de la palabra
+	 */
+	private int cacheLeer(int dirMemoria){
+		cache.setCiclo(clock);
+		int valor = cache.leer(dirMemoria);
+		ciclosMemoria += cache.getCiclosAcceso();
+		return valor;
+	}//fin del metodo cacheLeer
+
+	/**
+	 * Escribe una palabra en memoria de datos a traves de la cache
+	 * @param dirMemoria - direccion valida de memoria de datos
+	 * @param valor - valor a guardar
+	 */
+	private void cacheEscribir(int dirMemoria, int valor){
+		cache.setCiclo(clock);
+		cache.escribir(dirMemoria, valor);
+		ciclosMemoria += cache.getCiclosAcceso();
+	}//fin del metodo cacheEscribir
+
+	/**
+	 * Metodo que imprime el estado de todas las variables dle MIPS
+	 */
+	void imprimirEstado(){
+		//imprime el estado de los registros
+		System.out.format("-----------------REGISTROS-----------------\n");
+		int count=0;
+		for(int i=0; i<8; ++i){
+			for(int j=0; j<4; ++j){
+				System.out.format("R%02d" + ": " + "%04d, ", count, R[count]);
+				++count;
+			}
+			System.out.println();
+		}
+
+		//imprime la memoria de instrucciones
+		System.out.println("\n----MEMORIA DE INSTRUCCIONES----");
+		count=0;
+		for(int i=0; i<48; ++i){
+			System.out.format("Bloque%02d: ", i);
+			for(int j=0; j<4; ++j){
+				System.out.format("%04d" + ", ", instructionMem[count]);
+				++count;
+			}
+			System.out.println();
+		}
+
+		//imprime la memoria de datos
+		System.out.println("\n---------MEMORIA DE DATOS---------");
+		count=0;
+		for(int i=48; i<256; ++i){
+			System.out.format("Bloque%03d: ", i);
+			for(int j=0; j<4; ++j){
+				System.out.format("%04d" + ", ", dataMem[count]);
+				++count;
+			}
+			System.out.println();
+		}
+		
+		System.out.println("\nLink Register: " + linkRegister);
+		
+		//imprime la memoria cache
+		System.out.println("\n----------MEMORIA CACH---------");
+		count=0;
+		for(int i=0; i<cache.getLineas(); ++i){
+			Bloque linea = cache.getLinea(i);
+			System.out.format("Bloque%02d: ", i);
+			for(int j=0; j<cache.getPalabrasBloque(); ++j){
+				System.out.format("%04d" + ", ", linea.getValor(j));
+			}
+			System.out.println("status: " + linea.getEstado() + ", etiqueta: " + linea.getEtiqueta());
+		}
+		for(int c=0; c<cache.getConjuntos(); ++c){
+			System.out.println("Conjunto " + c + ": " + cache.getAciertos(c) + " aciertos, " + cache.getFallos(c) + " fallos");
+		}
+		if(cacheL2 != null){
+			System.out.println("L2 (" + cacheL2 + "): " + cacheL2.getAciertos() + " aciertos, " + cacheL2.getFallos()
+					+ " fallos, " + cacheL2.getBloquesEscritos() + " bloques escritos");
+		}
+
+		//agregar imprimir middle stages, pc, IR, etc
+
+	}//fin del metodo imprimirEstado
 
 }//fin de la clase
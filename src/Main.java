@@ -10,26 +10,12 @@ import javax.swing.JOptionPane;
  */
 public class Main {
 	public static void main(String[] args) {
-		/*
-		//roy. prueba los stages de forma asincrnica
-		MIPSimulator sim = new MIPSimulator(25);
-
-		JFileChooser fileChooser = new JFileChooser();
-		if(fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION){
-			sim.loadFile(fileChooser.getSelectedFile());
-			//sim.runProgram();
-			
-			for(int i=0; i<4; ++i){
-				sim.fetch();
-				sim.decode();
-				sim.execute();
-				sim.memory();
-				sim.writeBack();
-			}
-			sim.imprimirEstado();
+		// Con argumentos corre sin interfaz grafica, ver la clase Lote
+		if(args.length > 0){
+			Lote.main(args);
+			return;
 		}
-		*/
-		
+
 		//main de Alexis 
 		// prueba repo
 		int quantum = 0;
@@ -64,16 +50,6 @@ public class Main {
 			boolean sePudo = true;
 			if(fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION){
 				sePudo = sim.loadFile(fileChooser.getSelectedFile());
-				//sim.runProgram(); 
-				
-				for(int i=0; i<2; ++i){
-					sim.fetch();
-					sim.decode();
-					sim.execute();
-					sim.memory();
-					sim.writeBack();
-				}
-				//sim.imprimirEstado();
 			}
 			if(!sePudo){
 				int respuestaCargar = JOptionPane.showConfirmDialog(null, "La memoria es insuficiente para ese hilo.\nDesea cargar otro?");
@@ -0,0 +1,147 @@
+import java.io.File;
+
+/**
+ * Procesador de varios nucleos. Cada nucleo es un MIPSimulator con su pipeline de
+ * cinco etapas, su memoria de instrucciones y su cache de datos privada; todos
+ * comparten la memoria de datos y mantienen las caches coherentes con un
+ * BusCoherencia o un DirectorioCoherencia (MSI o MESI). Los hilos se reparten entre los nucleos en el orden
+ * en que se cargan: el hilo h va al nucleo h % nucleos, y si un nucleo tiene varios
+ * hilos los turna como un solo procesador (quantum o multihilo por hardware).
+ *
+ * Los nucleos corren al mismo paso en el hilo que llama: en cada ciclo se corre un
+ * ciclo de cada nucleo. El nucleo que empieza cambia en cada ciclo para que ninguno
+ * tenga siempre la coherencia primero, y el resultado no depende de la maquina.
+ */
+public class Multinucleo {
+	private final MIPSimulator[] nucleos;
+	private final Coherencia coherencia;
+	private int hilosCargados;
+	private int ciclos;				// ciclos del sistema, los del nucleo que termino de ultimo
+	private boolean conectado;		// las caches ya estan conectadas a la coherencia
+
+	/**
+	 * Nucleos coherentes por un bus
+	 * @param nucleos - numero de nucleos, al menos 1
+	 * @param quantum - quantum de cada nucleo para turnar sus hilos
+	 * @param protocolo - MSI o MESI
+	 */
+	public Multinucleo(int nucleos, int quantum, Coherencia.Protocolo protocolo){
+		this(nucleos, quantum, new BusCoherencia(protocolo));
+	}
+
+	/**
+	 * @param nucleos - numero de nucleos, al menos 1
+	 * @param quantum - quantum de cada nucleo para turnar sus hilos
+	 * @param coherencia - bus o directorio, todavia sin caches conectadas
+	 */
+	public Multinucleo(int nucleos, int quantum, Coherencia coherencia){
+		if(nucleos <= 0){
+			throw new IllegalArgumentException("Debe haber al menos un nucleo: " + nucleos);
+		}
+		this.nucleos = new MIPSimulator[nucleos];
+		this.nucleos[0] = new MIPSimulator(quantum, MIPSimulator.Motor.SECUENCIAL);
+		for(int i = 1; i < nucleos; ++i){
+			this.nucleos[i] = new MIPSimulator(quantum, MIPSimulator.Motor.SECUENCIAL,
+					this.nucleos[0].getMemoriaDatos());
+		}
+		this.coherencia = coherencia;
+	}
+
+	/**
+	 * Carga un hilo en el nucleo que le toca
+	 * @return false si no se pudo cargar, como MIPSimulator.loadFile
+	 */
+	public boolean loadFile(File programa){
+		if(!nucleos[hilosCargados % nucleos.length].loadFile(programa)){
+			return false;
+		}
+		hilosCargados++;
+		return true;
+	}
+
+	/**
+	 * Conecta las caches a la coherencia y corre todos los nucleos hasta que terminan. Las
+	 * caches se configuran antes en cada nucleo con getNucleo.
+	 */
+	public void runProgram(){
+		if(!conectado){
+			for(MIPSimulator nucleo : nucleos){
+				coherencia.conectar(nucleo.getCache());
+			}
+			conectado = true;
+		}
+		boolean alguno = true;
+		for(int paso = 0; alguno; ++paso){
+			alguno = false;
+			for(int i = 0; i < nucleos.length; ++i){
+				MIPSimulator nucleo = nucleos[(paso + i) % nucleos.length];
+				if(nucleo.getHilosCargados() > 0 && nucleo.avanzarCiclo()){
+					alguno = true;
+				}
+			}
+		}
+		for(MIPSimulator nucleo : nucleos){
+			ciclos = Math.max(ciclos, nucleo.getClock());
+		}
+	}
+
+	public int getNumNucleos(){
+		return nucleos.length;
+	}
+
+	/**
+	 * @return el nucleo, para configurarlo antes de correr y leer sus resultados despues
+	 */
+	public MIPSimulator getNucleo(int nucleo){
+		return nucleos[nucleo];
+	}
+
+	/**
+	 * @return el nucleo donde corre el hilo, en el orden en que se cargaron
+	 */
+	public int getNucleoDeHilo(int hilo){
+		return hilo % nucleos.length;
+	}
+
+	public int getHilosCargados(){
+		return hilosCargados;
+	}
+
+	public Coherencia getCoherencia(){
+		return coherencia;
+	}
+
+	/**
+	 * @return ciclos hasta que termino el ultimo nucleo
+	 */
+	public int getClock(){
+		return ciclos;
+	}
+
+	/**
+	 * @return fallos de coherencia de todas las caches
+	 */
+	public long getFallosCoherencia(){
+		long total = 0;
+		for(MIPSimulator nucleo : nucleos){
+			total += nucleo.getCache().getFallosCoherencia();
+		}
+		return total;
+	}
+
+	/**
+	 * @return ciclos que los nucleos perdieron por la coherencia, ver CacheDatos.getCiclosCoherencia
+	 */
+	public long getCiclosCoherencia(){
+		long total = 0;
+		for(MIPSimulator nucleo : nucleos){
+			total += nucleo.getCache().getCiclosCoherencia();
+		}
+		return total;
+	}
+
+	@Override
+	public String toString(){
+		return nucleos.length + " nucleos, " + coherencia;
+	}
+}//fin de la clase
@@ -0,0 +1,54 @@
+/**
+ * Politica que escoge que hilo corre cuando el hilo actual cumple su quantum o
+ * termina. El simulador le avisa de cada hilo que queda listo y le pide el
+ * siguiente; el hilo que corre no esta en la cola de listos. Meter y sacar hilos
+ * de la cola no crea objetos.
+ */
+public interface Planificador {
+
+	/**
+	 * Deja la cola vacia para un programa con tantos hilos
+	 */
+	void reiniciar(int hilos);
+
+	/**
+	 * El hilo queda listo para correr: al empezar, o porque cumplio su quantum
+	 * @param hilo - numero del hilo en el orden en que se cargo
+	 * @param ciclos - ciclos que corrio en el turno que termino, 0 al empezar
+	 * @param ciclosMemoria - de esos ciclos, los que espero a la memoria
+	 */
+	void listo(int hilo, int ciclos, int ciclosMemoria);
+
+	/**
+	 * Saca de la cola el hilo que corre ahora
+	 * @return el hilo, -1 si no hay ninguno listo
+	 */
+	int elegir();
+
+	/**
+	 * Lee un planificador escrito como nombre[,parametros]: rr, prioridad,P0,P1,...
+	 * (0 es la mas alta), loteria,B0,B1,... y paso,B0,B1,... (boletos de cada hilo)
+	 * o memoria[,UMBRAL,PACIENCIA]. Los hilos sin parametro tienen prioridad 0 o un boleto.
+	 */
+	static Planificador leer(String texto){
+		String[] partes = texto.split(",");
+		int[] p = new int[partes.length - 1];
+		for(int i = 1; i < partes.length; ++i){
+			p[i-1] = Integer.parseInt(partes[i]);
+		}
+		switch(partes[0].toLowerCase()){
+		case "rr":
+			return new PlanificadorRR();
+		case "prioridad":
+			return new PlanificadorPrioridad(p);
+		case "loteria":
+			return new PlanificadorLoteria(p);
+		case "paso":
+			return new PlanificadorPaso(p);
+		case "memoria":
+			return new PlanificadorMemoria(p.length > 0 ? p[0] : 50, p.length > 1 ? p[1] : 3);
+		default:
+			throw new IllegalArgumentException("Planificador desconocido: " + partes[0]);
+		}
+	}
+}//fin de la interfaz
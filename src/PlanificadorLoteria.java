@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * Loteria: cada hilo tiene boletos y en cada turno se sortea uno entre los de los
+ * hilos listos, asi un hilo con el doble de boletos corre en promedio el doble.
+ * Los boletos de los hilos listos estan en un arbol de Fenwick indexado por hilo:
+ * meter, sacar y encontrar al dueno del boleto ganador son O(log n). La semilla es
+ * fija para que las corridas se repitan.
+ */
+final class PlanificadorLoteria implements Planificador {
+	private final int[] boletos;		// boletos de cada hilo en el orden de carga
+	private long[] arbol = new long[1];	// arbol de Fenwick, desde 1: boletos listos por rango de hilos
+	private int mitad;					// la potencia de 2 mas grande que no pasa de los hilos
+	private int numListos;
+	private long totalBoletos;			// suma de los boletos de los hilos listos
+	private int semilla;
+
+	PlanificadorLoteria(int[] boletos){
+		for(int b : boletos){
+			if(b <= 0){
+				throw new IllegalArgumentException("Cada hilo debe tener al menos un boleto: " + b);
+			}
+		}
+		this.boletos = boletos;
+	}
+
+	private int boletos(int hilo){
+		return hilo < boletos.length ? boletos[hilo] : 1;
+	}
+
+	@Override
+	public void reiniciar(int hilos){
+		arbol = new long[hilos + 1];
+		mitad = Integer.highestOneBit(Math.max(1, hilos));
+		numListos = 0;
+		totalBoletos = 0;
+		semilla = 0x2545F491;
+	}
+
+	@Override
+	public void listo(int hilo, int ciclos, int ciclosMemoria){
+		sumar(hilo, boletos(hilo));
+		numListos++;
+		totalBoletos += boletos(hilo);
+	}
+
+	@Override
+	public int elegir(){
+		if(numListos == 0){
+			return -1;
+		}
+		semilla ^= semilla << 13;
+		semilla ^= semilla >>> 17;
+		semilla ^= semilla << 5;
+		long ganador = (semilla & 0x7FFFFFFFL) % totalBoletos;
+		// baja por el arbol buscando el ultimo hilo cuyos anteriores suman ganador o menos
+		int hilo = 0;
+		for(int paso = mitad; paso > 0; paso >>>= 1){
+			if(hilo + paso < arbol.length && arbol[hilo + paso] <= ganador){
+				hilo += paso;
+				ganador -= arbol[hilo];
+			}
+		}
+		sumar(hilo, -boletos(hilo));
+		numListos--;
+		totalBoletos -= boletos(hilo);
+		return hilo;
+	}
+
+	/**
+	 * Suma boletos al hilo en el arbol
+	 */
+	private void sumar(int hilo, long cuantos){
+		for(int i = hilo + 1; i < arbol.length; i += i & -i){
+			arbol[i] += cuantos;
+		}
+	}
+
+	@Override
+	public String toString(){
+		return "loteria" + (boletos.length > 0 ? "," + Arrays.toString(boletos).replaceAll("[\\[\\] ]", "") : "");
+	}
+}//fin de la clase
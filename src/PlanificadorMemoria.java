@@ -0,0 +1,56 @@
+/**
+ * Planificador que conoce la memoria: un hilo que paso al menos umbral por ciento
+ * de su ultimo turno esperando a la memoria va a la cola de los lentos y los
+ * demas a la de los rapidos. Primero corren los rapidos, que aprovechan mejor el
+ * pipeline; para que los lentos no se queden sin correr, despues de paciencia
+ * turnos seguidos de rapidos corre un lento. Las dos colas son O(1).
+ */
+final class PlanificadorMemoria implements Planificador {
+	private final int umbral;			// por ciento del turno esperando memoria para ser lento
+	private final int paciencia;		// turnos de rapidos seguidos con lentos esperando
+	private ColaHilos rapidos = new ColaHilos(1);
+	private ColaHilos lentos = new ColaHilos(1);
+	private int saltados;				// turnos que los lentos llevan esperando
+
+	PlanificadorMemoria(int umbral, int paciencia){
+		if(umbral < 0 || umbral > 100 || paciencia < 0){
+			throw new IllegalArgumentException("El umbral va de 0 a 100 y la paciencia no puede ser negativa");
+		}
+		this.umbral = umbral;
+		this.paciencia = paciencia;
+	}
+
+	@Override
+	public void reiniciar(int hilos){
+		rapidos = new ColaHilos(hilos);
+		lentos = new ColaHilos(hilos);
+		saltados = 0;
+	}
+
+	@Override
+	public void listo(int hilo, int ciclos, int ciclosMemoria){
+		if(ciclos > 0 && 100L * ciclosMemoria >= (long) umbral * ciclos){
+			lentos.meter(hilo);
+		}
+		else{
+			rapidos.meter(hilo);
+		}
+	}
+
+	@Override
+	public int elegir(){
+		if(!rapidos.vacia() && (lentos.vacia() || saltados < paciencia)){
+			if(!lentos.vacia()){
+				saltados++;
+			}
+			return rapidos.sacar();
+		}
+		saltados = 0;
+		return lentos.sacar();
+	}
+
+	@Override
+	public String toString(){
+		return "memoria," + umbral + "," + paciencia;
+	}
+}//fin de la clase
@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * Planificacion por paso (stride): la version determinista de la loteria. Cada
+ * hilo avanza su pase en PASO_BASE / boletos cada vez que corre un turno y
+ * siempre corre el hilo listo con el pase menor, asi los turnos quedan
+ * proporcionales a los boletos sin depender del azar. Los hilos listos estan en
+ * un monticulo ordenado por pase (y por hilo si empatan), asi meter y escoger son
+ * O(log n).
+ */
+final class PlanificadorPaso implements Planificador {
+	private static final int PASO_BASE = 1 << 20;
+
+	private final int[] boletos;		// boletos de cada hilo en el orden de carga
+	private long[] pases = new long[0];
+	private int[] listos = new int[0];	// monticulo de hilos listos, el de menor pase primero
+	private int numListos;
+
+	PlanificadorPaso(int[] boletos){
+		for(int b : boletos){
+			if(b <= 0){
+				throw new IllegalArgumentException("Cada hilo debe tener al menos un boleto: " + b);
+			}
+		}
+		this.boletos = boletos;
+	}
+
+	@Override
+	public void reiniciar(int hilos){
+		pases = new long[hilos];
+		listos = new int[hilos];
+		numListos = 0;
+	}
+
+	@Override
+	public void listo(int hilo, int ciclos, int ciclosMemoria){
+		int i = numListos++;
+		while(i > 0 && antes(hilo, listos[(i - 1) >>> 1])){
+			listos[i] = listos[(i - 1) >>> 1];
+			i = (i - 1) >>> 1;
+		}
+		listos[i] = hilo;
+	}
+
+	@Override
+	public int elegir(){
+		if(numListos == 0){
+			return -1;
+		}
+		int hilo = listos[0];
+		int ultimo = listos[--numListos];
+		int i = 0;
+		while(2 * i + 1 < numListos){
+			int hijo = 2 * i + 1;
+			if(hijo + 1 < numListos && antes(listos[hijo + 1], listos[hijo])){
+				hijo++;
+			}
+			if(!antes(listos[hijo], ultimo)){
+				break;
+			}
+			listos[i] = listos[hijo];
+			i = hijo;
+		}
+		listos[i] = ultimo;
+		pases[hilo] += PASO_BASE / (hilo < boletos.length ? boletos[hilo] : 1);
+		return hilo;
+	}
+
+	/**
+	 * @return true si el hilo a va antes que b en el monticulo
+	 */
+	private boolean antes(int a, int b){
+		return pases[a] < pases[b] || (pases[a] == pases[b] && a < b);
+	}
+
+	@Override
+	public String toString(){
+		return "paso" + (boletos.length > 0 ? "," + Arrays.toString(boletos).replaceAll("[\\[\\] ]", "") : "");
+	}
+}//fin de la clase
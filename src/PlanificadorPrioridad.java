@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * Prioridad fija: corre el hilo listo de mayor prioridad (0 es la mas alta, hasta
+ * 63) y los de la misma prioridad se turnan por round robin. Hay una cola por
+ * prioridad y un mapa de bits de las colas que tienen hilos, asi escoger es O(1)
+ * con numberOfTrailingZeros. Un hilo de baja prioridad solo corre cuando no hay
+ * uno mas importante listo.
+ */
+final class PlanificadorPrioridad implements Planificador {
+	private static final int NIVELES = 64;
+
+	private final int[] prioridades;	// prioridad de cada hilo en el orden de carga
+	private ColaHilos[] colas = new ColaHilos[NIVELES];
+	private long ocupadas;				// bit p: la cola de prioridad p tiene hilos
+
+	PlanificadorPrioridad(int[] prioridades){
+		for(int p : prioridades){
+			if(p < 0 || p >= NIVELES){
+				throw new IllegalArgumentException("La prioridad debe estar entre 0 y " + (NIVELES - 1) + ": " + p);
+			}
+		}
+		this.prioridades = prioridades;
+	}
+
+	private int prioridad(int hilo){
+		return hilo < prioridades.length ? prioridades[hilo] : 0;
+	}
+
+	@Override
+	public void reiniciar(int hilos){
+		colas = new ColaHilos[NIVELES];
+		for(int h = 0; h < hilos; ++h){
+			if(colas[prioridad(h)] == null){
+				colas[prioridad(h)] = new ColaHilos(hilos);
+			}
+		}
+		ocupadas = 0;
+	}
+
+	@Override
+	public void listo(int hilo, int ciclos, int ciclosMemoria){
+		int p = prioridad(hilo);
+		colas[p].meter(hilo);
+		ocupadas |= 1L << p;
+	}
+
+	@Override
+	public int elegir(){
+		if(ocupadas == 0){
+			return -1;
+		}
+		int p = Long.numberOfTrailingZeros(ocupadas);
+		int hilo = colas[p].sacar();
+		if(colas[p].vacia()){
+			ocupadas &= ~(1L << p);
+		}
+		return hilo;
+	}
+
+	@Override
+	public String toString(){
+		return "prioridad" + (prioridades.length > 0 ? "," + Arrays.toString(prioridades).replaceAll("[\\[\\] ]", "") : "");
+	}
+}//fin de la clase
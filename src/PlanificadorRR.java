@@ -0,0 +1,27 @@
+/**
+ * Round robin: los hilos corren por turnos de un quantum en el orden en que
+ * quedan listos
+ */
+final class PlanificadorRR implements Planificador {
+	private ColaHilos listos = new ColaHilos(1);
+
+	@Override
+	public void reiniciar(int hilos){
+		listos = new ColaHilos(hilos);
+	}
+
+	@Override
+	public void listo(int hilo, int ciclos, int ciclosMemoria){
+		listos.meter(hilo);
+	}
+
+	@Override
+	public int elegir(){
+		return listos.sacar();
+	}
+
+	@Override
+	public String toString(){
+		return "rr";
+	}
+}//fin de la clase
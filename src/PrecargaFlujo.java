@@ -0,0 +1,65 @@
+/**
+ * Buffers de flujo: sigue hasta flujos recorridos secuenciales a la vez. Un fallo
+ * que no es el siguiente bloque de ningun flujo abre uno nuevo (reemplaza al que
+ * se uso hace mas tiempo) y precarga los profundidad bloques que siguen. Cuando
+ * un acceso llega a la cabeza de un flujo, el flujo avanza y precarga un bloque
+ * mas adelante. A diferencia del buffer de flujo clasico, los bloques se dejan
+ * en la cache y no en un buffer aparte.
+ */
+final class PrecargaFlujo implements Precargador {
+	private final int profundidad;
+	private final int[] cabezas;		// siguiente bloque que se espera en cada flujo, -1 si esta libre
+	private final long[] ultimoUso;
+	private long accesos;
+
+	PrecargaFlujo(int flujos, int profundidad){
+		if(flujos <= 0 || profundidad <= 0){
+			throw new IllegalArgumentException("Los buffers de flujo necesitan flujos y profundidad positivos");
+		}
+		this.profundidad = profundidad;
+		cabezas = new int[flujos];
+		ultimoUso = new long[flujos];
+		reiniciar();
+	}
+
+	@Override
+	public void acceso(int pc, int dirMemoria, int bloqueMem, boolean fallo, boolean precargado, Destino destino){
+		accesos++;
+		for(int f = 0; f < cabezas.length; ++f){
+			if(cabezas[f] == bloqueMem){
+				cabezas[f] = bloqueMem + 1;
+				ultimoUso[f] = accesos;
+				destino.precargarBloque(bloqueMem + profundidad);
+				return;
+			}
+		}
+		if(!fallo){
+			return;
+		}
+		int f = 0;
+		for(int i = 1; i < cabezas.length; ++i){
+			if(ultimoUso[i] < ultimoUso[f]){
+				f = i;
+			}
+		}
+		cabezas[f] = bloqueMem + 1;
+		ultimoUso[f] = accesos;
+		for(int i = 1; i <= profundidad; ++i){
+			destino.precargarBloque(bloqueMem + i);
+		}
+	}
+
+	@Override
+	public void reiniciar(){
+		for(int f = 0; f < cabezas.length; ++f){
+			cabezas[f] = -1;
+			ultimoUso[f] = 0;
+		}
+		accesos = 0;
+	}
+
+	@Override
+	public String toString(){
+		return "flujo," + cabezas.length + "," + profundidad;
+	}
+}//fin de la clase
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+/**
+ * Precarga por paso indexada por PC (tabla de prediccion de referencias). Cada
+ * entrada guarda la ultima direccion que uso una instruccion y el paso entre sus
+ * dos ultimos accesos. Cuando el mismo paso se repite se precarga la direccion
+ * que esa instruccion va a usar distancia accesos despues. La tabla es de mapeo
+ * directo sobre el PC.
+ */
+final class PrecargaPaso implements Precargador {
+	private final int distancia;
+	private final int[] pcs;			// instruccion de cada entrada, -1 si esta vacia
+	private final int[] ultimaDir;
+	private final int[] pasos;			// paso entre los dos ultimos accesos, 0 si no hay
+
+	PrecargaPaso(int entradas, int distancia){
+		if(entradas <= 0 || distancia <= 0){
+			throw new IllegalArgumentException("La tabla de pasos necesita entradas y distancia positivas");
+		}
+		this.distancia = distancia;
+		pcs = new int[entradas];
+		ultimaDir = new int[entradas];
+		pasos = new int[entradas];
+		reiniciar();
+	}
+
+	@Override
+	public void acceso(int pc, int dirMemoria, int bloqueMem, boolean fallo, boolean precargado, Destino destino){
+		int e = (pc >>> 2) % pcs.length;
+		if(pcs[e] != pc){
+			pcs[e] = pc;
+			ultimaDir[e] = dirMemoria;
+			pasos[e] = 0;
+			return;
+		}
+		int paso = dirMemoria - ultimaDir[e];
+		ultimaDir[e] = dirMemoria;
+		if(paso != 0 && paso == pasos[e]){
+			destino.precargarDireccion(dirMemoria + distancia * paso);
+		}
+		pasos[e] = paso;
+	}
+
+	@Override
+	public void reiniciar(){
+		Arrays.fill(pcs, -1);
+	}
+
+	@Override
+	public String toString(){
+		return "paso," + pcs.length + "," + distancia;
+	}
+}//fin de la clase
@@ -0,0 +1,33 @@
+/**
+ * Precarga del bloque siguiente: en cada fallo, y en el primer uso de un bloque
+ * precargado, pide los grado bloques que siguen. Asi un recorrido secuencial
+ * solo falla en el primer bloque.
+ */
+final class PrecargaSiguiente implements Precargador {
+	private final int grado;
+
+	PrecargaSiguiente(int grado){
+		if(grado <= 0){
+			throw new IllegalArgumentException("El grado de la precarga debe ser positivo: " + grado);
+		}
+		this.grado = grado;
+	}
+
+	@Override
+	public void acceso(int pc, int dirMemoria, int bloqueMem, boolean fallo, boolean precargado, Destino destino){
+		if(fallo || precargado){
+			for(int i = 1; i <= grado; ++i){
+				destino.precargarBloque(bloqueMem + i);
+			}
+		}
+	}
+
+	@Override
+	public void reiniciar(){
+	}
+
+	@Override
+	public String toString(){
+		return "siguiente," + grado;
+	}
+}//fin de la clase
@@ -0,0 +1,62 @@
+/**
+ * Precargador de hardware de la cache de datos. MEM le avisa de cada acceso que
+ * llega a la cache y el precargador decide que bloques traer antes de que se
+ * pidan. Los bloques precargados quedan marcados en la cache para medir
+ * precision, cobertura, puntualidad y contaminacion.
+ */
+public interface Precargador {
+
+	/**
+	 * Donde el precargador pide los bloques, lo implementa el simulador
+	 */
+	interface Destino {
+		/**
+		 * Trae el bloque de memoria a la cache si no estaba
+		 */
+		void precargarBloque(int bloqueMem);
+
+		/**
+		 * Trae el bloque de la direccion en bytes a la cache si no estaba
+		 */
+		void precargarDireccion(int dirMemoria);
+	}
+
+	/**
+	 * Se llama despues de cada acceso de MEM a la cache de datos
+	 * @param pc - direccion de la instruccion que hizo el acceso
+	 * @param dirMemoria - direccion en bytes del acceso
+	 * @param bloqueMem - bloque de memoria del acceso
+	 * @param fallo - true si el bloque no estaba en la cache
+	 * @param precargado - true si el bloque estaba porque se precargo y es su primer uso
+	 * @param destino - donde se piden las precargas
+	 */
+	void acceso(int pc, int dirMemoria, int bloqueMem, boolean fallo, boolean precargado, Destino destino);
+
+	/**
+	 * Olvida lo aprendido, se llama al empezar el pipeline
+	 */
+	void reiniciar();
+
+	/**
+	 * Lee un precargador escrito como nombre[,parametros], por ejemplo siguiente,
+	 * siguiente,2 (grado), paso,16,2 (entradas de la tabla y distancia) o
+	 * flujo,4,2 (flujos y profundidad)
+	 */
+	static Precargador leer(String texto){
+		String[] partes = texto.split(",");
+		int[] p = new int[partes.length - 1];
+		for(int i = 1; i < partes.length; ++i){
+			p[i-1] = Integer.parseInt(partes[i]);
+		}
+		switch(partes[0].toLowerCase()){
+		case "siguiente":
+			return new PrecargaSiguiente(p.length > 0 ? p[0] : 1);
+		case "paso":
+			return new PrecargaPaso(p.length > 0 ? p[0] : 16, p.length > 1 ? p[1] : 1);
+		case "flujo":
+			return new PrecargaFlujo(p.length > 0 ? p[0] : 4, p.length > 1 ? p[1] : 2);
+		default:
+			throw new IllegalArgumentException("Precargador desconocido: " + partes[0]);
+		}
+	}
+}//fin de la interfaz
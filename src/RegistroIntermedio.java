@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * Registro intermedio entre dos etapas del pipeline (IF_ID, ID_EX, EX_MEM, MEM_WB)
+ * con doble buffer. La etapa que lo consume lee el buffer actual y la que lo produce
+ * escribe en el siguiente, asi que en un mismo ciclo ninguna ve lo que la otra esta
+ * escribiendo. Al final del ciclo el reloj llama a intercambiar().
+ */
+final class RegistroIntermedio {
+	int[] actual;		// lo que se escribio en el ciclo anterior
+	int[] siguiente;	// lo que se esta escribiendo en este ciclo
+
+	RegistroIntermedio(int tamano){
+		actual = new int[tamano];
+		siguiente = new int[tamano];
+		limpiar();
+	}
+
+	int leer(int i){
+		return actual[i];
+	}
+
+	void escribir(int i, int valor){
+		siguiente[i] = valor;
+	}
+
+	/**
+	 * @return lo que la etapa ya escribio en este ciclo en la posicion i
+	 */
+	int leerSiguiente(int i){
+		return siguiente[i];
+	}
+
+	/**
+	 * Publica lo escrito en este ciclo. El nuevo buffer siguiente empieza con una
+	 * copia del actual, para que una etapa que no escribe (por un conflicto o porque
+	 * ya termino) deje el registro como estaba.
+	 */
+	void intercambiar(){
+		int[] temp = actual;
+		actual = siguiente;
+		siguiente = temp;
+		System.arraycopy(actual, 0, siguiente, 0, actual.length);
+	}
+
+	/**
+	 * Deja los dos buffers en -1, que las etapas interpretan como vacio
+	 */
+	void limpiar(){
+		Arrays.fill(actual, -1);
+		Arrays.fill(siguiente, -1);
+	}
+
+	@Override
+	public String toString(){
+		return Arrays.toString(actual);
+	}
+}//fin de la clase
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Registros de fallos pendientes (MSHR) de la cache de datos sin bloqueo. Cada
+ * registro guarda un bloque que se esta trayendo de memoria y el ciclo en que
+ * llega. Un segundo fallo al mismo bloque se une al registro que ya existe en
+ * vez de pedir otra vez el bloque. Si no hay registros libres, el nuevo fallo
+ * espera a que se desocupe el primero.
+ */
+final class TablaMSHR {
+	private final int[] bloques;	// bloque de memoria de cada registro
+	private final int[] fines;		// ciclo en que llega el bloque, el registro esta libre despues
+	private int esperaEstructural;	// ciclos que el ultimo fallo espero un registro libre
+
+	// Estadisticas
+	private long primarios;			// fallos que ocuparon un registro
+	private long secundarios;		// accesos que se unieron a un registro ocupado
+	private long ciclosConFallos;	// ciclos con al menos un fallo pendiente
+	private long sumaFallos;		// suma de los fallos pendientes en esos ciclos
+
+	TablaMSHR(int registros){
+		if(registros <= 0){
+			throw new IllegalArgumentException("Debe haber al menos un MSHR: " + registros);
+		}
+		bloques = new int[registros];
+		fines = new int[registros];
+		limpiar();
+	}
+
+	/**
+	 * Registra un acceso a memoria
+	 * @param bloque - bloque de memoria del acceso
+	 * @param ahora - ciclo actual
+	 * @param costo - ciclos que tarda la memoria, 0 si fue un acierto
+	 * @return ciclo en que el dato esta listo
+	 */
+	int registrar(int bloque, int ahora, int costo){
+		esperaEstructural = 0;
+		for(int i = 0; i < bloques.length; ++i){
+			if(bloques[i] == bloque && fines[i] > ahora){
+				secundarios++;
+				return Math.max(fines[i], ahora + costo);
+			}
+		}
+		if(costo == 0){
+			return ahora;
+		}
+		int libre = -1;
+		int primero = 0;
+		for(int i = 0; i < fines.length && libre < 0; ++i){
+			if(fines[i] <= ahora){
+				libre = i;
+			}
+			else if(fines[i] < fines[primero]){
+				primero = i;
+			}
+		}
+		if(libre < 0){
+			libre = primero;
+			esperaEstructural = fines[primero] - ahora;
+		}
+		primarios++;
+		bloques[libre] = bloque;
+		fines[libre] = ahora + esperaEstructural + costo;
+		return fines[libre];
+	}
+
+	/**
+	 * @return ciclos que el ultimo acceso tuvo que esperar un registro libre
+	 */
+	int getEsperaEstructural(){
+		return esperaEstructural;
+	}
+
+	/**
+	 * Se llama una vez por ciclo para medir el paralelismo de memoria
+	 */
+	void contarCiclo(int ahora){
+		int pendientes = 0;
+		for(int fin : fines){
+			if(fin > ahora){
+				pendientes++;
+			}
+		}
+		if(pendientes > 0){
+			ciclosConFallos++;
+			sumaFallos += pendientes;
+		}
+	}
+
+	void limpiar(){
+		Arrays.fill(bloques, -1);
+		Arrays.fill(fines, 0);
+		primarios = secundarios = ciclosConFallos = sumaFallos = 0;
+	}
+
+	long getPrimarios(){
+		return primarios;
+	}
+
+	long getSecundarios(){
+		return secundarios;
+	}
+
+	/**
+	 * @return fallos pendientes en promedio en los ciclos que hubo alguno
+	 */
+	double getParalelismo(){
+		return ciclosConFallos == 0 ? 0 : (double) sumaFallos / ciclosConFallos;
+	}
+}//fin de la clase
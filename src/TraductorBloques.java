@@ -0,0 +1,420 @@
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traduce a bytecode de la JVM los bloques basicos que mas se ejecutan en el
+ * modo funcional del simulador. Un bloque basico empieza en la posicion a la que
+ * se salta y termina en la primera instruccion de control. Solo se traducen los
+ * bloques formados por DADDI, DADD, DSUB, DMUL, DDIV, LW y SW que terminan en
+ * BEQZ o BNEZ; los demas siempre se interpretan.
+ *
+ * Cada bloque traducido es una clase nueva que implementa Codigo. Los registros
+ * que usa el bloque se copian a variables locales al entrar y los que escribe se
+ * devuelven a R antes de salir, y los accesos a memoria pasan por Memoria para que
+ * la cache y dataMem queden igual que con el interprete.
+ */
+public class TraductorBloques {
+	// Codigos de operacion que se pueden traducir (los mismos de MIPSimulator)
+	private static final int DADDI = 8;
+	private static final int DADD  = 32;
+	private static final int DSUB  = 34;
+	private static final int DMUL  = 12;
+	private static final int DDIV  = 14;
+	private static final int LW    = 35;
+	private static final int SW    = 43;
+	private static final int BEQZ  = 4;
+	private static final int BNEZ  = 5;
+
+	/**
+	 * Acceso a la memoria de datos que usan los bloques traducidos
+	 */
+	public interface Memoria {
+		int leer(int direccion);
+		void escribir(int direccion, int valor);
+	}
+
+	/**
+	 * Un bloque traducido. Ejecuta todas sus instrucciones sobre los registros
+	 * y devuelve el PC de la siguiente instruccion.
+	 */
+	public interface Codigo {
+		int ejecutar(int[] registros, Memoria memoria);
+	}
+
+	private final int umbral;		// veces que se interpreta un bloque antes de traducirlo
+	private int[] contadores;		// veces que se ha ejecutado el bloque que empieza en cada instruccion
+	private Codigo[] traducidos;	// bloque traducido que empieza en cada instruccion, o null
+	private int[] largos;			// cantidad de instrucciones de cada bloque traducido
+	private Cargador cargador;		// cargador de las clases generadas
+	private int bloquesTraducidos;
+
+	/**
+	 * @param numInstrucciones - tamano de la memoria de instrucciones en instrucciones
+	 * @param umbral - ejecuciones de un bloque antes de traducirlo
+	 */
+	public TraductorBloques(int numInstrucciones, int umbral){
+		this.umbral = umbral;
+		contadores = new int[numInstrucciones];
+		traducidos = new Codigo[numInstrucciones];
+		largos = new int[numInstrucciones];
+		cargador = new Cargador();
+	}
+
+	/**
+	 * Descarta todos los bloques traducidos y los contadores, se usa cuando
+	 * cambia la memoria de instrucciones
+	 */
+	public void invalidar(){
+		contadores = new int[contadores.length];
+		traducidos = new Codigo[traducidos.length];
+		largos = new int[largos.length];
+		cargador = new Cargador();
+		bloquesTraducidos = 0;
+	}
+
+	/**
+	 * @param indice - PC/4 del inicio del bloque
+	 * @return el bloque traducido que empieza ahi, o null si se tiene que interpretar
+	 */
+	public Codigo traducido(int indice){
+		return traducidos[indice];
+	}
+
+	/**
+	 * @param indice - PC/4 del inicio de un bloque traducido
+	 * @return cantidad de instrucciones que ejecuta el bloque
+	 */
+	public int largo(int indice){
+		return largos[indice];
+	}
+
+	public int getBloquesTraducidos(){
+		return bloquesTraducidos;
+	}
+
+	/**
+	 * Cuenta una ejecucion interpretada del bloque que empieza en indice y,
+	 * si ya llego al umbral, intenta traducirlo
+	 * @param programa - instrucciones empacadas (ver Instruccion)
+	 * @param indice - PC/4 del inicio del bloque
+	 */
+	public void contar(long[] programa, int indice){
+		if(++contadores[indice] != umbral){
+			return;
+		}
+		List<Long> cuerpo = new ArrayList<Long>();
+		for(int i = indice; i < programa.length; ++i){
+			int codigo = Instruccion.codigo(programa[i]);
+			cuerpo.add(programa[i]);
+			if(codigo == BEQZ || codigo == BNEZ){
+				byte[] clase = generar("BloqueMIPS" + indice, indice, cuerpo);
+				try{
+					traducidos[indice] = (Codigo) cargador.definir("BloqueMIPS" + indice, clase)
+							.getDeclaredConstructor().newInstance();
+					largos[indice] = cuerpo.size();
+					bloquesTraducidos++;
+				}catch(ReflectiveOperationException e){
+					System.err.println("No se pudo traducir el bloque " + indice + ": " + e);
+				}
+				return;
+			}
+			if(!traducible(codigo)){
+				return;
+			}
+		}
+	}//fin del metodo contar
+
+	/**
+	 * @return true si un bloque traducido puede tener una instruccion con este codigo
+	 */
+	static boolean puedeContener(int codigo){
+		return traducible(codigo) || codigo == BEQZ || codigo == BNEZ;
+	}
+
+	private static boolean traducible(int codigo){
+		switch(codigo){
+		case DADDI:
+		case DADD:
+		case DSUB:
+		case DMUL:
+		case DDIV:
+		case LW:
+		case SW:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Division como la hace el interprete: la division entre cero da 0
+	 */
+	public static int dividir(int a, int b){
+		if(b == 0){
+			System.err.println("Division entre cero, el resultado queda en 0.");
+			return 0;
+		}
+		return a / b;
+	}
+
+	/*
+	 * ========================== GENERACION DE BYTECODE ==========================
+	 * Se genera un archivo de clase version 49, que no necesita StackMapTable.
+	 * Variables locales: 0 this, 1 registros, 2 memoria, 3+k el registro k.
+	 */
+	private static final String CODIGO = "TraductorBloques$Codigo";
+	private static final String MEMORIA = "TraductorBloques$Memoria";
+
+	/**
+	 * Arma el archivo de clase de un bloque
+	 * @param nombre - nombre de la clase
+	 * @param indice - PC/4 de la primera instruccion del bloque
+	 * @param cuerpo - instrucciones del bloque, la ultima es el salto
+	 */
+	private static byte[] generar(String nombre, int indice, List<Long> cuerpo){
+		Constantes cp = new Constantes();
+		int estaClase = cp.clase(nombre);
+		int objeto = cp.clase("java/lang/Object");
+		int interfaz = cp.clase(CODIGO);
+		int init = cp.metodo(10, objeto, "<init>", "()V");
+		int leer = cp.metodo(11, cp.clase(MEMORIA), "leer", "(I)I");
+		int escribir = cp.metodo(11, cp.clase(MEMORIA), "escribir", "(II)V");
+		int dividir = cp.metodo(10, cp.clase("TraductorBloques"), "dividir", "(II)I");
+
+		// registros que se leen o se escriben en el bloque
+		boolean[] usados = new boolean[32];
+		boolean[] escritos = new boolean[32];
+		for(long ins : cuerpo){
+			int y = Instruccion.y(ins), x = Instruccion.x(ins), n = Instruccion.n(ins);
+			usados[y] = true;
+			switch(Instruccion.codigo(ins)){
+			case DADDI:
+			case LW:
+				usados[x] = escritos[x] = true;
+				break;
+			case DADD:
+			case DSUB:
+			case DMUL:
+			case DDIV:
+				usados[x] = true;
+				usados[n] = escritos[n] = true;
+				break;
+			case SW:
+				usados[x] = true;
+				break;
+			}
+		}
+
+		Bytes c = new Bytes();
+		for(int k = 0; k < 32; ++k){
+			if(usados[k]){
+				c.u1(0x2b); entero(c, cp, k); c.u1(0x2e); c.u1(0x36); c.u1(3 + k);	// aload_1 k iaload istore
+			}
+		}
+		int pc = indice * 4;
+		for(int i = 0; i < cuerpo.size() - 1; ++i){
+			long ins = cuerpo.get(i);
+			int y = 3 + Instruccion.y(ins), x = 3 + Instruccion.x(ins), n = Instruccion.n(ins);
+			switch(Instruccion.codigo(ins)){
+			case DADDI:
+				c.u1(0x15); c.u1(y); entero(c, cp, n); c.u1(0x60); c.u1(0x36); c.u1(x);
+				break;
+			case DADD:
+				c.u1(0x15); c.u1(y); c.u1(0x15); c.u1(x); c.u1(0x60); c.u1(0x36); c.u1(3 + n);
+				break;
+			case DSUB:
+				c.u1(0x15); c.u1(y); c.u1(0x15); c.u1(x); c.u1(0x64); c.u1(0x36); c.u1(3 + n);
+				break;
+			case DMUL:
+				c.u1(0x15); c.u1(y); c.u1(0x15); c.u1(x); c.u1(0x68); c.u1(0x36); c.u1(3 + n);
+				break;
+			case DDIV:
+				c.u1(0x15); c.u1(y); c.u1(0x15); c.u1(x); c.u1(0xb8); c.u2(dividir); c.u1(0x36); c.u1(3 + n);
+				break;
+			case LW:
+				c.u1(0x2c); c.u1(0x15); c.u1(y); entero(c, cp, n); c.u1(0x60);
+				c.u1(0xb9); c.u2(leer); c.u1(2); c.u1(0);
+				c.u1(0x36); c.u1(x);
+				break;
+			case SW:
+				c.u1(0x2c); c.u1(0x15); c.u1(y); entero(c, cp, n); c.u1(0x60); c.u1(0x15); c.u1(x);
+				c.u1(0xb9); c.u2(escribir); c.u1(3); c.u1(0);
+				break;
+			}
+			pc += 4;
+		}
+		// devuelve los registros escritos antes de saltar
+		for(int k = 0; k < 32; ++k){
+			if(escritos[k]){
+				c.u1(0x2b); entero(c, cp, k); c.u1(0x15); c.u1(3 + k); c.u1(0x4f);	// aload_1 k iload iastore
+			}
+		}
+		long salto = cuerpo.get(cuerpo.size() - 1);
+		int siguiente = pc + 4;
+		int destino = siguiente + Instruccion.n(salto) * 4;
+		c.u1(0x15); c.u1(3 + Instruccion.y(salto));
+		int posSalto = c.size();
+		c.u1(Instruccion.codigo(salto) == BEQZ ? 0x99 : 0x9a);	// ifeq / ifne hacia destino
+		c.u2(0);
+		entero(c, cp, siguiente); c.u1(0xac);
+		c.parchar(posSalto + 1, c.size() - posSalto);
+		entero(c, cp, destino); c.u1(0xac);
+
+		// constructor: aload_0 invokespecial Object.<init> return
+		Bytes ctor = new Bytes();
+		ctor.u1(0x2a); ctor.u1(0xb7); ctor.u2(init); ctor.u1(0xb1);
+
+		int utfCode = cp.utf("Code");
+		int utfInit = cp.utf("<init>");
+		int utfVacio = cp.utf("()V");
+		int utfEjecutar = cp.utf("ejecutar");
+		int utfDesc = cp.utf("([IL" + MEMORIA + ";)I");
+
+		Bytes f = new Bytes();
+		f.u4(0xCAFEBABE); f.u2(0); f.u2(49);
+		cp.escribir(f);
+		f.u2(0x0031); f.u2(estaClase); f.u2(objeto);
+		f.u2(1); f.u2(interfaz);
+		f.u2(0);		// campos
+		f.u2(2);		// metodos
+		metodo(f, 0x0001, utfInit, utfVacio, utfCode, 1, 1, ctor);
+		metodo(f, 0x0001, utfEjecutar, utfDesc, utfCode, 6, 35, c);
+		f.u2(0);		// atributos
+		return f.toByteArray();
+	}//fin del metodo generar
+
+	private static void metodo(Bytes f, int acceso, int nombre, int desc, int utfCode, int pila, int locales, Bytes codigo){
+		f.u2(acceso); f.u2(nombre); f.u2(desc);
+		f.u2(1);
+		f.u2(utfCode);
+		f.u4(12 + codigo.size());
+		f.u2(pila); f.u2(locales);
+		f.u4(codigo.size());
+		codigo.writeTo(f);
+		f.u2(0);	// tabla de excepciones
+		f.u2(0);	// atributos del codigo
+	}
+
+	/**
+	 * Pone una constante entera en la pila con la instruccion mas corta posible
+	 */
+	private static void entero(Bytes c, Constantes cp, int v){
+		if(v >= -1 && v <= 5){
+			c.u1(0x03 + v);		// iconst_m1 .. iconst_5
+		}
+		else if(v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE){
+			c.u1(0x10); c.u1(v);
+		}
+		else if(v >= Short.MIN_VALUE && v <= Short.MAX_VALUE){
+			c.u1(0x11); c.u2(v);
+		}
+		else{
+			c.u1(0x13); c.u2(cp.entero(v));	// ldc_w
+		}
+	}
+
+	/**
+	 * Tabla de constantes del archivo de clase
+	 */
+	private static class Constantes {
+		private final Bytes datos = new Bytes();
+		private final List<String> llaves = new ArrayList<String>();
+
+		private int buscar(String llave){
+			int i = llaves.indexOf(llave);
+			return i < 0 ? -1 : i + 1;
+		}
+
+		private int agregar(String llave){
+			llaves.add(llave);
+			return llaves.size();
+		}
+
+		int utf(String s){
+			int i = buscar("U" + s);
+			if(i > 0){
+				return i;
+			}
+			datos.u1(1); datos.u2(s.length());
+			for(int k = 0; k < s.length(); ++k){
+				datos.u1(s.charAt(k));
+			}
+			return agregar("U" + s);
+		}
+
+		int clase(String nombre){
+			int i = buscar("C" + nombre);
+			if(i > 0){
+				return i;
+			}
+			int u = utf(nombre);
+			datos.u1(7); datos.u2(u);
+			return agregar("C" + nombre);
+		}
+
+		int entero(int v){
+			int i = buscar("I" + v);
+			if(i > 0){
+				return i;
+			}
+			datos.u1(3); datos.u4(v);
+			return agregar("I" + v);
+		}
+
+		int metodo(int tag, int clase, String nombre, String desc){
+			String llave = "M" + clase + "." + nombre + desc;
+			int i = buscar(llave);
+			if(i > 0){
+				return i;
+			}
+			int un = utf(nombre), ud = utf(desc);
+			datos.u1(12); datos.u2(un); datos.u2(ud);
+			int nat = agregar("N" + nombre + desc);
+			datos.u1(tag); datos.u2(clase); datos.u2(nat);
+			return agregar(llave);
+		}
+
+		void escribir(Bytes f){
+			f.u2(llaves.size() + 1);
+			datos.writeTo(f);
+		}
+	}//fin de la clase Constantes
+
+	private static class Bytes extends ByteArrayOutputStream {
+		void u1(int v){
+			write(v);
+		}
+
+		void u2(int v){
+			write(v >>> 8); write(v);
+		}
+
+		void u4(int v){
+			u2(v >>> 16); u2(v);
+		}
+
+		void parchar(int pos, int v){
+			buf[pos] = (byte) (v >>> 8);
+			buf[pos + 1] = (byte) v;
+		}
+
+		void writeTo(Bytes otro){
+			otro.write(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Cargador propio para poder definir las clases generadas y descartarlas
+	 * todas juntas cuando se invalida el traductor
+	 */
+	private static class Cargador extends ClassLoader {
+		Cargador(){
+			super(TraductorBloques.class.getClassLoader());
+		}
+
+		Class<?> definir(String nombre, byte[] clase){
+			return defineClass(nombre, clase, 0, clase.length);
+		}
+	}
+}//fin de la clase
@@ -0,0 +1,130 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Traza de los accesos que hace la etapa MEM a la memoria de datos, en orden.
+ * Cada acceso se guarda en un solo entero: la direccion en bytes, si fue
+ * escritura, el PC de la instruccion y el hilo al que pertenece. Como la memoria
+ * de datos y la de instrucciones son de 4096 bytes todo cabe en 31 bits, y un
+ * archivo de traza ocupa 4 bytes por acceso mas el encabezado.
+ *
+ * Con una traza grabada se pueden probar muchas caches sin volver a correr el
+ * pipeline, ver BarridoCaches.
+ */
+public final class TrazaMemoria {
+	private static final int MAGICO = 0x4D495054;	// "MIPT"
+
+	// Campos de cada acceso
+	private static final int BITS_DIRECCION = 12;
+	private static final int BITS_PC = 10;
+	private static final int BITS_HILO = 8;
+	private static final int MASCARA_DIRECCION = (1 << BITS_DIRECCION) - 1;
+	private static final int MASCARA_PC = (1 << BITS_PC) - 1;
+	private static final int MASCARA_HILO = (1 << BITS_HILO) - 1;
+
+	private int[] accesos = new int[1024];
+	private int largo;
+
+	/**
+	 * Agrega un acceso al final de la traza
+	 * @param dirMemoria - direccion en bytes, menor que 4096
+	 * @param escritura - true para SW y SC
+	 * @param pc - PC de la instruccion, menor que 1024
+	 * @param hilo - hilo de la instruccion, menor que 256
+	 */
+	public void registrar(int dirMemoria, boolean escritura, int pc, int hilo){
+		if(largo == accesos.length){
+			accesos = Arrays.copyOf(accesos, 2 * largo);
+		}
+		accesos[largo++] = (escritura ? 1 : 0)
+				| (dirMemoria & MASCARA_DIRECCION) << 1
+				| (pc & MASCARA_PC) << (1 + BITS_DIRECCION)
+				| (hilo & MASCARA_HILO) << (1 + BITS_DIRECCION + BITS_PC);
+	}
+
+	/**
+	 * @return cantidad de accesos grabados
+	 */
+	public int getLargo(){
+		return largo;
+	}
+
+	public int getDireccion(int i){
+		return (accesos[i] >>> 1) & MASCARA_DIRECCION;
+	}
+
+	public boolean esEscritura(int i){
+		return (accesos[i] & 1) != 0;
+	}
+
+	public int getPC(int i){
+		return (accesos[i] >>> (1 + BITS_DIRECCION)) & MASCARA_PC;
+	}
+
+	public int getHilo(int i){
+		return (accesos[i] >>> (1 + BITS_DIRECCION + BITS_PC)) & MASCARA_HILO;
+	}
+
+	/**
+	 * Deja la traza vacia
+	 */
+	public void limpiar(){
+		largo = 0;
+	}
+
+	/**
+	 * Escribe la traza en un archivo binario
+	 */
+	public void guardar(File archivo) throws IOException{
+		DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archivo)));
+		try{
+			salida.writeInt(MAGICO);
+			salida.writeInt(largo);
+			for(int i = 0; i < largo; ++i){
+				salida.writeInt(accesos[i]);
+			}
+		}finally{
+			salida.close();
+		}
+	}
+
+	/**
+	 * Lee una traza que se escribio con guardar
+	 */
+	public static TrazaMemoria leer(File archivo) throws IOException{
+		DataInputStream entrada = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)));
+		try{
+			if(entrada.readInt() != MAGICO){
+				throw new IOException("No es un archivo de traza: " + archivo);
+			}
+			int largo = entrada.readInt();
+			if(largo < 0){
+				throw new IOException("Traza danada: " + archivo);
+			}
+			TrazaMemoria traza = new TrazaMemoria();
+			traza.accesos = new int[Math.max(largo, 1)];
+			for(int i = 0; i < largo; ++i){
+				traza.accesos[i] = entrada.readInt();
+			}
+			traza.largo = largo;
+			return traza;
+		}catch(EOFException e){
+			throw new IOException("La traza termina antes de tiempo: " + archivo);
+		}finally{
+			entrada.close();
+		}
+	}
+
+	@Override
+	public String toString(){
+		return largo + " accesos";
+	}
+}//fin de la clase
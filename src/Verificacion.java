@@ -0,0 +1,1234 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Pruebas del simulador con los programas de ejemplo de programas/ (java Main -y
+ * programas, o java Verificacion programas). Cada prueba escribe una linea JSON
+ * con su resultado y el programa termina con 1 si alguna fallo.
+ * - resultados: cada programa, corrido con cada motor, debe terminar con los
+ *   registros y la memoria que se calcularon a mano, y con los motores de pipeline
+ *   (SECUENCIAL e HILOS) ademas con los mismos ciclos.
+ * - rendimiento: ciclos por segundo del motor SECUENCIAL contra el de HILOS.
+ * - virtuales: el motor HILOS da lo mismo con hilos virtuales, y la espera activa
+ *   solo se quita si de verdad los hay y vuelve al dejarlos.
+ * - reemplazo: en un conjunto lleno de la cache de datos LRU, PLRU y FIFO sacan
+ *   cada una el bloque que les toca, y con 4 vias conflictos.txt deja de fallar.
+ * - escritura: suma.txt guarda 10 veces la misma palabra; se cuentan los bloques y
+ *   las palabras que llegan a memoria con cada politica de escritura.
+ * - lineas: etiqueta, estado y datos de cada linea de la cache despues de correr
+ *   escrituras.txt en 2 conjuntos de 4 vias.
+ * - latencia: con la memoria a 10,10,1 los motores de pipeline tardan los ciclos
+ *   esperados y la diferencia con la memoria ideal es la espera que reportan.
+ * - mshr: con la cache sin bloqueo los resultados no cambian, nunca se tarda mas que
+ *   con la cache que bloquea y los fallos al mismo bloque se unen a un solo MSHR.
+ * - precarga: bloques emitidos, utiles, tardios e inutiles de cada precargador,
+ *   de donde salen la precision, la cobertura y la puntualidad.
+ * - inclusion: lo que queda en cada nivel con la L2 INCLUSIVA, EXCLUSIVA y NINE, y
+ *   los ciclos de conflictos.txt cuando sus tres bloques caben en la L2.
+ * - instrucciones: aciertos, fallos y espera de la cache de instrucciones, sola y
+ *   compartiendo la L2 con la de datos, iguales en los dos motores de pipeline.
+ * - victimas: aciertos en la cache de victimas, escrituras de fondo del buffer de
+ *   escritura y un fallo que toma su bloque del buffer antes de que llegue a memoria.
+ * - barrido: la traza grabada de cada programa, repetida con las distancias de pila
+ *   de BarridoCaches, da los mismos aciertos y fallos que una CacheDatos LRU real.
+ * - candado: 2 y 3 hilos de candado.txt llegan a FIN con el contador completo en
+ *   cada modo de multihilo, con quantums cortos y largos y varias memorias.
+ * - planificadores: orden en que prioridad, loteria, paso y memoria escogen los
+ *   hilos listos, y en que orden terminan tres hilos con cada uno.
+ * - coherencia: mensajes del bus, invalidaciones, intervenciones y fallos de
+ *   coherencia de MSI y MESI, con dos caches a mano y con candado.txt en varios
+ *   nucleos.
+ * - directorio: lo mismo con DirectorioCoherencia de mapa completo y de punteros
+ *   limitados, mas los desbordes, las difusiones y los mensajes de la malla.
+ */
+public class Verificacion {
+	private static final String[] PROGRAMAS = {"aritmetica.txt", "suma.txt", "conflictos.txt", "paso.txt",
+			"escrituras.txt"};
+	private static final int[] CICLOS = {20, 60, 709, 909, 1107};
+	private static final String CANDADO = "candado.txt";	// varios hilos, va aparte de PROGRAMAS
+	private static final int LIMITE_CANDADO = 2000000;
+	private static final int[] CICLOS_LENTA = {34, 74, 4909, 2309, 9521};	// con setTiemposMemoria(10, 10, 1)
+	private static final int[] CICLOS_MSHR = {30, 60, 718, 2309, 1130};	// y ademas setMSHR(4)
+	private static final long[] PRIMARIOS = {1, 1, 150, 100, 102};
+	private static final long[] SECUNDARIOS = {3, 2, 150, 0, 266};
+	/*
+	 * Precargador, programa y lo que debe contar con setTiemposMemoria(10, 10, 1):
+	 * {ciclos, emitidas, utiles, tardias, inutiles, fallos, pisadas, bloques escritos, ciclos de memoria}
+	 */
+	private static final String[][] PRECARGAS = {{"siguiente,2", "paso.txt"}, {"paso", "paso.txt"},
+			{"flujo", "paso.txt"}, {"siguiente", "paso.txt"}, {"siguiente", "conflictos.txt"}};
+	private static final long[][] CUENTAS_PRECARGA = {{1168, 200, 99, 49, 96, 1, 96, 0, 2800},
+			{1191, 98, 97, 48, 0, 3, 0, 0, 1372}, {1609, 100, 50, 0, 48, 50, 48, 0, 1400},
+			{2309, 100, 0, 0, 96, 100, 96, 0, 1400}, {4909, 300, 0, 0, 299, 300, 299, 0, 4200}};
+	/*
+	 * Registros distintos de 0 y palabras de la memoria de datos distintas de 1 al
+	 * terminar cada programa, como pares {registro, valor} y {direccion, valor}
+	 */
+	private static final int[][][] REGISTROS = {
+			{{1, 5}, {2, 3}, {3, 8}, {4, 2}, {5, 15}, {6, 1}, {7, 768}, {8, 8}, {9, 15}},
+			{{2, 55}, {3, 55}, {7, 768}},
+			{{2, 1}, {3, 1}, {4, 1}, {7, 768}},
+			{{2, 1}, {3, 100}, {7, 3968}},
+			{{2, 100}, {3, 100}, {7, 768}}};
+	private static final int[][][] MEMORIA = {
+			{{768, 8}, {772, 15}},
+			{{768, 55}},
+			{},
+			{},
+			{{768, 100}, {896, 100}, {1024, 100}}};
+
+	private static final int REPETICIONES = 100;	// corridas de cada programa para medir el motor secuencial
+	private static final int REPETICIONES_HILOS = 2;	// y para medir el de hilos, que es mucho mas lento
+
+	private final File directorio;
+	private final PrintStream out;
+	private int fallidas;
+	private int corridas;
+
+	private Verificacion(File directorio, PrintStream out){
+		this.directorio = directorio;
+		this.out = out;
+	}
+
+	public static void main(String[] args){
+		File directorio = new File(args.length > 0 ? args[0] : "programas");
+		System.exit(correr(directorio, System.out) > 0 ? 1 : 0);
+	}//fin del metodo main
+
+	/**
+	 * Corre todas las pruebas con los programas de un directorio
+	 * @param directorio - donde estan los programas de PROGRAMAS
+	 * @param out - donde se escribe el resultado de cada prueba
+	 * @return cuantas pruebas fallaron
+	 */
+	public static int correr(File directorio, PrintStream out){
+		Verificacion v = new Verificacion(directorio, out);
+		long inicio = System.nanoTime();
+		v.probarResultados();
+		v.medirMotores();
+		v.probarHilosVirtuales();
+		v.probarReemplazo();
+		v.probarEscritura();
+		v.probarLineas();
+		v.probarLatencia();
+		v.probarMSHR();
+		v.probarPrecarga();
+		v.probarInclusion();
+		v.probarInstrucciones();
+		v.probarVictimas();
+		v.probarBarrido();
+		v.probarCandado();
+		v.probarPlanificadores();
+		v.probarCoherencia();
+		v.probarDirectorio();
+		System.err.println(String.format("%d pruebas (%d fallidas) en %.3f s", v.corridas, v.fallidas,
+				(System.nanoTime() - inicio) / 1e9));
+		return v.fallidas;
+	}//fin del metodo correr
+
+	/**
+	 * Corre cada programa con cada motor y compara los registros y la memoria con
+	 * los valores esperados. El motor funcional no tiene pipeline, asi que a el no
+	 * se le revisan los ciclos.
+	 */
+	private void probarResultados(){
+		for(MIPSimulator.Motor motor : MIPSimulator.Motor.values()){
+			for(int p = 0; p < PROGRAMAS.length; ++p){
+				String prueba = "resultados " + motor + " " + PROGRAMAS[p];
+				MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+				if(sim == null){
+					reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+					continue;
+				}
+				sim.runProgram();
+				String error = revisar(sim, p, motor != MIPSimulator.Motor.FUNCIONAL);
+				reportar(prueba, error == null, error == null ? sim.getClock() + " ciclos" : error);
+			}
+		}
+	}//fin del metodo probarResultados
+
+	/**
+	 * @param conCiclos - si tambien se revisan los ciclos
+	 * @return null si el simulador termino como se espera para el programa p
+	 */
+	private static String revisar(MIPSimulator sim, int p, boolean conCiclos){
+		if(conCiclos && sim.getClock() != CICLOS[p]){
+			return "tardo " + sim.getClock() + " ciclos, se esperaban " + CICLOS[p];
+		}
+		String error = revisarRegistros(sim.getRegistros(), p);
+		if(error != null){
+			return error;
+		}
+		int[] memoria = sim.getMemoriaDatos();
+		for(int i = 0; i < memoria.length; ++i){
+			int esperado = 1;
+			for(int[] par : MEMORIA[p]){
+				if(par[0] == 768 + 4 * i){
+					esperado = par[1];
+				}
+			}
+			if(memoria[i] != esperado){
+				return "la direccion " + (768 + 4 * i) + " quedo en " + memoria[i] + ", se esperaba " + esperado;
+			}
+		}
+		return null;
+	}//fin del metodo revisar
+
+	private static String revisarRegistros(int[] obtenidos, int p){
+		int[] registros = new int[32];
+		for(int[] par : REGISTROS[p]){
+			registros[par[0]] = par[1];
+		}
+		for(int r = 0; r < 32; ++r){
+			if(obtenidos[r] != registros[r]){
+				return "R" + r + " quedo en " + obtenidos[r] + ", se esperaba " + registros[r];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Mide los ciclos por segundo de los dos motores de pipeline corriendo todos
+	 * los programas. Se espera que el secuencial sea mas rapido.
+	 */
+	private void medirMotores(){
+		double secuencial = medir(MIPSimulator.Motor.SECUENCIAL, REPETICIONES);
+		double deHilos = medir(MIPSimulator.Motor.HILOS, REPETICIONES_HILOS);
+		if(secuencial < 0 || deHilos < 0){
+			reportar("rendimiento", false, "no se pudieron cargar los programas");
+			return;
+		}
+		reportar("rendimiento", secuencial > deHilos, String.format("SECUENCIAL %.0f ciclos/s, HILOS %.0f ciclos/s"
+				+ " (%.1f veces)", secuencial, deHilos, secuencial / deHilos));
+	}//fin del metodo medirMotores
+
+	/**
+	 * Corre suma.txt con el motor HILOS despues de pedir hilos virtuales. Sin hilos
+	 * virtuales (antes de Java 21) se usan de plataforma y los giros no cambian.
+	 */
+	private void probarHilosVirtuales(){
+		MIPSimulator sim = cargar(PROGRAMAS[1], MIPSimulator.Motor.HILOS);
+		if(sim == null){
+			reportar("virtuales", false, "no se pudo cargar " + PROGRAMAS[1]);
+			return;
+		}
+		sim.setGirosReloj(50);
+		boolean virtuales = sim.setHilosVirtuales(true);
+		String error = null;
+		if(virtuales != FabricaHilos.hayVirtuales() || sim.getGirosReloj() != (virtuales ? 0 : 50)){
+			error = "con hilos virtuales " + virtuales + " quedaron " + sim.getGirosReloj() + " giros";
+		}
+		else{
+			sim.runProgram();
+			error = revisar(sim, 1, true);
+		}
+		sim.setHilosVirtuales(false);
+		if(error == null && sim.getGirosReloj() != 50){
+			error = "al volver a hilos de plataforma quedaron " + sim.getGirosReloj() + " giros, se esperaban 50";
+		}
+		reportar("virtuales", error == null, error != null ? error
+				: virtuales ? "hilos virtuales" : "sin hilos virtuales en esta maquina virtual, de plataforma");
+	}//fin del metodo probarHilosVirtuales
+
+	/**
+	 * @return ciclos por segundo del motor corriendo cada programa las veces indicadas, o -1 si
+	 * no se pudo cargar alguno
+	 */
+	private double medir(MIPSimulator.Motor motor, int repeticiones){
+		long ciclos = 0;
+		long inicio = System.nanoTime();
+		for(int r = 0; r < repeticiones; ++r){
+			for(String programa : PROGRAMAS){
+				MIPSimulator sim = cargar(programa, motor);
+				if(sim == null){
+					return -1;
+				}
+				sim.runProgram();
+				ciclos += sim.getClock();
+			}
+		}
+		return ciclos / ((System.nanoTime() - inicio) / 1e9);
+	}
+
+	/**
+	 * Llena una cache totalmente asociativa de 4 vias con los bloques 0, 1, 2 y 3,
+	 * vuelve a usar el 0 y pide el 4. LRU saca el 1 (el 0 se acaba de usar), FIFO
+	 * el 0 (el primero que entro) y PLRU el 2: despues de usar el 0 la raiz del
+	 * arbol apunta a la mitad derecha y el nodo de esa mitad a la via 2.
+	 */
+	private void probarReemplazo(){
+		CacheDatos.Reemplazo[] politicas = {CacheDatos.Reemplazo.LRU, CacheDatos.Reemplazo.PLRU,
+				CacheDatos.Reemplazo.FIFO};
+		int[] victimas = {1, 2, 0};
+		int[] accesos = {0, 1, 2, 3, 0, 4};
+		for(int i = 0; i < politicas.length; ++i){
+			CacheDatos cache = new CacheDatos(1, 4, 1, politicas[i], CacheDatos.Escritura.WRITE_BACK,
+					new int[8], 0);
+			for(int bloque : accesos){
+				cache.leer(4 * bloque);
+			}
+			String error = null;
+			for(int bloque = 0; bloque <= 4 && error == null; ++bloque){
+				if(cache.contiene(4 * bloque) == (bloque == victimas[i])){
+					error = "el bloque " + bloque + (bloque == victimas[i] ? " sigue" : " no esta") + " en la cache";
+				}
+			}
+			if(error == null && (cache.getAciertos() != 1 || cache.getFallos() != 5)){
+				error = cache.getAciertos() + " aciertos y " + cache.getFallos() + " fallos, se esperaban 1 y 5";
+			}
+			reportar("reemplazo " + politicas[i], error == null, error == null ? "saco el bloque " + victimas[i]
+					: error);
+		}
+
+		// conflictos.txt lee 100 veces tres bloques que caen en el mismo conjunto
+		MIPSimulator sim = cargar(PROGRAMAS[2], MIPSimulator.Motor.SECUENCIAL);
+		if(sim == null){
+			reportar("reemplazo vias", false, "no se pudo cargar " + PROGRAMAS[2]);
+			return;
+		}
+		sim.setCache(2, 4, 4, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK);
+		sim.runProgram();
+		String error = revisar(sim, 2, false);
+		if(error == null && (sim.getAciertosCache() != 297 || sim.getFallosCache() != 3)){
+			error = sim.getAciertosCache() + " aciertos y " + sim.getFallosCache() + " fallos, se esperaban 297 y 3";
+		}
+		reportar("reemplazo vias", error == null, error == null ? "2 conjuntos de 4 vias: 3 fallos" : error);
+	}//fin del metodo probarReemplazo
+
+	/**
+	 * Con WRITE_BACK los 10 SW de suma.txt quedan en la cache y solo se copia el
+	 * bloque (4 palabras) al vaciarla al final; con WRITE_THROUGH cada SW escribe su
+	 * palabra; con WRITE_AROUND tambien, pero el bloque no se carga hasta el LW, asi
+	 * que los 10 SW fallan.
+	 */
+	private void probarEscritura(){
+		CacheDatos.Escritura[] politicas = CacheDatos.Escritura.values();
+		long[][] esperado = {	// bloques escritos, palabras escritas, aciertos, fallos
+				{1, 4, 10, 1},
+				{0, 10, 10, 1},
+				{0, 10, 0, 11}};
+		for(int i = 0; i < politicas.length; ++i){
+			String prueba = "escritura " + politicas[i];
+			MIPSimulator sim = cargar(PROGRAMAS[1], MIPSimulator.Motor.SECUENCIAL);
+			if(sim == null){
+				reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[1]);
+				continue;
+			}
+			sim.setCache(8, 1, 4, CacheDatos.Reemplazo.LRU, politicas[i]);
+			sim.runProgram();
+			String error = revisar(sim, 1, false);
+			long[] obtenido = {sim.getBloquesEscritos(), sim.getPalabrasEscritas(), sim.getAciertosCache(),
+					sim.getFallosCache()};
+			if(error == null && !Arrays.equals(obtenido, esperado[i])){
+				error = "bloques, palabras, aciertos y fallos " + Arrays.toString(obtenido) + ", se esperaba "
+						+ Arrays.toString(esperado[i]);
+			}
+			reportar(prueba, error == null, error == null ? obtenido[1] + " palabras escritas" : error);
+		}
+	}//fin del metodo probarEscritura
+
+	/**
+	 * escrituras.txt escribe 100 en 768, 896 y 1024 (bloques 48, 56 y 64), que con
+	 * 2 conjuntos caen todos en el conjunto 0 y ocupan sus vias en el orden en que
+	 * se usan por primera vez. Al terminar la cache ya se vacio, asi que quedan
+	 * compartidos. La via 3 y el conjunto 1 quedan vacios.
+	 */
+	private void probarLineas(){
+		MIPSimulator sim = cargar(PROGRAMAS[4], MIPSimulator.Motor.SECUENCIAL);
+		if(sim == null){
+			reportar("lineas", false, "no se pudo cargar " + PROGRAMAS[4]);
+			return;
+		}
+		sim.setCache(2, 4, 4, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK);
+		sim.runProgram();
+		int[] etiquetas = {48, 56, 64, -1, -1, -1, -1, -1};
+		String error = null;
+		for(int linea = 0; linea < etiquetas.length && error == null; ++linea){
+			boolean vacia = etiquetas[linea] == -1;
+			if(sim.getEtiquetaCache(linea) != etiquetas[linea] || sim.getEstadoCache(linea) != (vacia ? 'v' : 'c')){
+				error = "la linea " + linea + " tiene el bloque " + sim.getEtiquetaCache(linea) + " en estado "
+						+ sim.getEstadoCache(linea) + ", se esperaba " + etiquetas[linea];
+			}
+			for(int palabra = 0; palabra < 4 && error == null && !vacia; ++palabra){
+				int dato = sim.getDatoCache(linea, palabra);
+				if(dato != (palabra == 0 ? 100 : 1)){
+					error = "la palabra " + palabra + " de la linea " + linea + " vale " + dato;
+				}
+			}
+		}
+		reportar("lineas", error == null, error == null ? "3 bloques en el conjunto 0" : error);
+	}//fin del metodo probarLineas
+
+	/**
+	 * Cada bloque que se trae o se guarda cuesta 10 + 4 ciclos. Por ejemplo
+	 * conflictos.txt falla 300 veces sin bloques modificados: 709 + 300*14 = 4909.
+	 */
+	private void probarLatencia(){
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int p = 0; p < PROGRAMAS.length; ++p){
+				String prueba = "latencia " + motor + " " + PROGRAMAS[p];
+				MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+				if(sim == null){
+					reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+					continue;
+				}
+				sim.setTiemposMemoria(10, 10, 1);
+				sim.runProgram();
+				String error = revisar(sim, p, false);
+				if(error == null && sim.getClock() != CICLOS_LENTA[p]){
+					error = "tardo " + sim.getClock() + " ciclos, se esperaban " + CICLOS_LENTA[p];
+				}
+				if(error == null && sim.getClock() - sim.getCiclosEsperaMemoria() != CICLOS[p]){
+					error = "reporta " + sim.getCiclosEsperaMemoria() + " ciclos de espera, se esperaban "
+							+ (CICLOS_LENTA[p] - CICLOS[p]);
+				}
+				reportar(prueba, error == null, error == null ? sim.getCiclosEsperaMemoria() + " ciclos de espera"
+						: error);
+			}
+		}
+	}//fin del metodo probarLatencia
+
+	/**
+	 * Compara cada programa con 1, 2 y 4 MSHRs contra la cache que bloquea. En
+	 * aritmetica.txt el SW a 768 falla y los tres accesos siguientes al mismo bloque
+	 * se unen a su MSHR en vez de esperar; con 4 MSHRs se fijan los ciclos y los
+	 * fallos primarios y secundarios exactos.
+	 */
+	private void probarMSHR(){
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int p = 0; p < PROGRAMAS.length; ++p){
+				for(int n = 1; n <= 4; n *= 2){
+					String prueba = "mshr " + motor + " " + PROGRAMAS[p] + " n=" + n;
+					MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+					if(sim == null){
+						reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+						continue;
+					}
+					sim.setTiemposMemoria(10, 10, 1);
+					sim.setMSHR(n);
+					sim.runProgram();
+					String error = revisar(sim, p, false);
+					if(error == null && sim.getClock() > CICLOS_LENTA[p]){
+						error = "tardo " + sim.getClock() + " ciclos, la cache que bloquea tarda " + CICLOS_LENTA[p];
+					}
+					if(error == null && sim.getCiclosEsperaBloqueante() != CICLOS_LENTA[p] - CICLOS[p]){
+						error = "la espera bloqueante es " + sim.getCiclosEsperaBloqueante() + ", se esperaba "
+								+ (CICLOS_LENTA[p] - CICLOS[p]);
+					}
+					if(error == null && n == 4 && (sim.getClock() != CICLOS_MSHR[p]
+							|| sim.getFallosPrimarios() != PRIMARIOS[p] || sim.getFallosSecundarios() != SECUNDARIOS[p])){
+						error = sim.getClock() + " ciclos, " + sim.getFallosPrimarios() + " primarios y "
+								+ sim.getFallosSecundarios() + " secundarios; se esperaban " + CICLOS_MSHR[p] + ", "
+								+ PRIMARIOS[p] + " y " + SECUNDARIOS[p];
+					}
+					reportar(prueba, error == null, error == null ? sim.getClock() + " ciclos contra " + CICLOS_LENTA[p]
+							: error);
+				}
+			}
+		}
+	}//fin del metodo probarMSHR
+
+	/**
+	 * paso.txt lee una palabra cada 2 bloques: siguiente,2 y paso aciertan casi
+	 * todo aunque la mitad de sus bloques llega tarde, flujo acierta uno de cada dos y
+	 * siguiente no sirve de nada. En conflictos.txt el bloque siguiente nunca se usa.
+	 * Las precargas inutiles de estos programas las pisa la precarga siguiente.
+	 *
+	 * Despues, a mano en una cache de 2 bloques de una palabra con memoria 10,10,1:
+	 * se escribe el bloque 1, precargar el 3 lo saca y lo guarda (11 + 11 ciclos) y
+	 * un ciclo despues precargar el 5 pisa al 3, que todavia no llega. El 5 se usa,
+	 * el fallo al 3 no es contaminacion porque nadie lo habia pedido y el fallo al 1 si.
+	 */
+	private void probarPrecarga(){
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int k = 0; k < PRECARGAS.length; ++k){
+				String prueba = "precarga " + motor + " " + PRECARGAS[k][0] + " " + PRECARGAS[k][1];
+				int p = Arrays.asList(PROGRAMAS).indexOf(PRECARGAS[k][1]);
+				MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+				if(sim == null){
+					reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+					continue;
+				}
+				sim.setTiemposMemoria(10, 10, 1);
+				sim.setPrecargador(Precargador.leer(PRECARGAS[k][0]));
+				sim.runProgram();
+				CacheDatos cache = sim.getCache();
+				long[] cuentas = {sim.getClock(), cache.getPrecargasEmitidas(), cache.getPrecargasUtiles(),
+						sim.getPrecargasTardias(), cache.getPrecargasInutiles(), cache.getFallos(),
+						cache.getPrecargasPisadas(), cache.getEscriturasPrecarga(), cache.getCiclosPrecarga()};
+				String error = revisar(sim, p, false);
+				if(error == null && !Arrays.equals(cuentas, CUENTAS_PRECARGA[k])){
+					error = "{ciclos, emitidas, utiles, tardias, inutiles, fallos, pisadas, bloques escritos,"
+							+ " ciclos de memoria} = " + Arrays.toString(cuentas) + ", se esperaba "
+							+ Arrays.toString(CUENTAS_PRECARGA[k]);
+				}
+				reportar(prueba, error == null, error != null ? error : String.format(Locale.ROOT,
+						"precision %.3f, cobertura %.3f, tardias %d", (double) cuentas[2] / cuentas[1],
+						(double) cuentas[2] / (cuentas[2] + cuentas[5]), cuentas[3]));
+			}
+		}
+
+		int[] memoria = new int[8];
+		CacheDatos cache = new CacheDatos(2, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+				memoria, 0);
+		cache.setTiempos(10, 10, 1);
+		cache.escribir(4, 9);
+		int[] costos = {cache.precargar(3, 20), cache.precargar(5, 21), 0};
+		cache.setCiclo(40);
+		cache.leer(20);
+		costos[2] = cache.getPrecargaUsada();
+		cache.setCiclo(60);
+		cache.leer(12);
+		cache.setCiclo(80);
+		cache.leer(4);
+		long[] cuentas = {cache.getPrecargasEmitidas(), cache.getPrecargasUtiles(), cache.getPrecargasInutiles(),
+				cache.getPrecargasPisadas(), cache.getEscriturasPrecarga(), cache.getCiclosPrecarga(),
+				cache.getFallosPorContaminacion(), cache.getFallos()};
+		String error = null;
+		if(!Arrays.equals(costos, new int[]{22, 11, 32}) || memoria[1] != 9){
+			error = "las precargas costaron " + costos[0] + " y " + costos[1] + ", el 5 llego en " + costos[2]
+					+ " y memoria[1] = " + memoria[1] + "; se esperaba 22, 11, 32 y 9";
+		}
+		else if(!Arrays.equals(cuentas, new long[]{2, 1, 1, 1, 1, 33, 1, 3})){
+			error = "{emitidas, utiles, inutiles, pisadas, bloques escritos, ciclos de memoria, contaminacion, fallos}"
+					+ " = " + Arrays.toString(cuentas) + ", se esperaba [2, 1, 1, 1, 1, 33, 1, 3]";
+		}
+		reportar("precarga pisada y con escritura", error == null, error == null ? "33 ciclos de memoria" : error);
+	}//fin del metodo probarPrecarga
+
+	/**
+	 * Primer nivel y L2 de 1 conjunto de 2 vias con bloques de una palabra, leyendo
+	 * los bloques 0, 1, 0, 2, 0, 1. La L2 no ve el acierto al 0, asi que al traer el 2
+	 * lo saca: la INCLUSIVA lo invalida arriba y el siguiente 0 falla en los dos
+	 * niveles; la NINE lo deja arriba. La EXCLUSIVA no guarda los fallos, solo los
+	 * bloques que bajan del primer nivel, y el 1 que acierta abajo sube y deja la L2.
+	 */
+	private void probarInclusion(){
+		CacheL2.Inclusion[] politicas = CacheL2.Inclusion.values();
+		int[] accesos = {0, 1, 0, 2, 0, 1};
+		// {aciertos L1, fallos L1, aciertos L2, fallos L2, invalidaciones}
+		long[][] cuentas = {{1, 5, 0, 5, 1}, {2, 4, 1, 3, 0}, {2, 4, 1, 3, 0}};
+		String[] enL2 = {"[0, 1]", "[2]", "[1, 2]"};
+		for(int i = 0; i < politicas.length; ++i){
+			CacheDatos cache = new CacheDatos(1, 2, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+					new int[4], 0);
+			CacheL2 l2 = new CacheL2(1, 2, 1, 2, politicas[i]);
+			cache.setSiguienteNivel(l2);
+			for(int bloque : accesos){
+				cache.leer(4 * bloque);
+			}
+			long[] obtenidas = {cache.getAciertos(), cache.getFallos(), l2.getAciertos(), l2.getFallos(),
+					l2.getInvalidaciones()};
+			StringBuilder bloques = new StringBuilder("[");
+			for(int bloque = 0; bloque < 4; ++bloque){
+				if(l2.contiene(bloque)){
+					bloques.append(bloques.length() > 1 ? ", " : "").append(bloque);
+				}
+			}
+			bloques.append(']');
+			String error = null;
+			if(!Arrays.equals(obtenidas, cuentas[i])){
+				error = "{aciertos L1, fallos L1, aciertos L2, fallos L2, invalidaciones} = "
+						+ Arrays.toString(obtenidas) + ", se esperaba " + Arrays.toString(cuentas[i]);
+			}
+			else if(!bloques.toString().equals(enL2[i])){
+				error = "la L2 tiene los bloques " + bloques + ", se esperaban " + enL2[i];
+			}
+			else if(!cache.contiene(0) || !cache.contiene(4)){
+				error = "el primer nivel no termina con los bloques 0 y 1";
+			}
+			reportar("inclusion " + politicas[i], error == null, error == null ? "L2 con " + bloques : error);
+		}
+
+		/*
+		 * conflictos.txt con memoria 10,10,1 y una L2 de 2x4 con latencia 2: 3 fallos de
+		 * 2+10+4 ciclos y 297 aciertos de 2, 709 + 48 + 594 = 1351. La EXCLUSIVA ademas
+		 * guarda en la L2 cada uno de los 299 bloques limpios que salen del primer nivel.
+		 */
+		int[] ciclos = {1351, 1949, 1351};
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int i = 0; i < politicas.length; ++i){
+				String prueba = "inclusion " + motor + " " + politicas[i] + " " + PROGRAMAS[2];
+				MIPSimulator sim = cargar(PROGRAMAS[2], motor);
+				if(sim == null){
+					reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[2]);
+					continue;
+				}
+				sim.setTiemposMemoria(10, 10, 1);
+				sim.setCacheL2(2, 4, 2, politicas[i]);
+				sim.runProgram();
+				CacheL2 l2 = sim.getCacheL2();
+				String error = revisar(sim, 2, false);
+				if(error == null && (sim.getClock() != ciclos[i] || l2.getAciertos() != 297 || l2.getFallos() != 3)){
+					error = sim.getClock() + " ciclos, " + l2.getAciertos() + " aciertos y " + l2.getFallos()
+							+ " fallos en la L2; se esperaban " + ciclos[i] + ", 297 y 3";
+				}
+				reportar(prueba, error == null, error == null ? sim.getClock() + " ciclos" : error);
+			}
+		}
+	}//fin del metodo probarInclusion
+
+	/**
+	 * Cache de instrucciones de 4x2 con bloques de 4 instrucciones y fallos de 10
+	 * ciclos: cada bloque del programa falla una vez. Con memoria 10,10,1 y una L2
+	 * NINE de 2x4 los fallos de instrucciones van a la L2, donde tambien compiten con
+	 * los de datos, y el motor HILOS debe terminar en los mismos ciclos.
+	 */
+	private void probarInstrucciones(){
+		// {ciclos, aciertos, fallos, ciclos de espera}, sin L2 y con L2
+		long[][][] cuentas = {
+				{{50, 9, 3, 30}, {71, 9, 3, 48}},
+				{{90, 42, 3, 30}, {124, 42, 3, 48}},
+				{{729, 501, 2, 20}, {1369, 501, 2, 32}},
+				{{929, 501, 2, 20}, {2541, 501, 2, 32}},
+				{{1135, 700, 3, 30}, {2370, 700, 3, 48}}};
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int p = 0; p < PROGRAMAS.length; ++p){
+				for(int conL2 = 0; conL2 < 2; ++conL2){
+					String prueba = "instrucciones " + motor + " " + PROGRAMAS[p] + (conL2 == 1 ? " L2" : "");
+					MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+					if(sim == null){
+						reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+						continue;
+					}
+					if(conL2 == 1){
+						sim.setTiemposMemoria(10, 10, 1);
+						sim.setCacheL2(2, 4, 2, CacheL2.Inclusion.NINE);
+					}
+					sim.setCacheInstrucciones(4, 2, 4, 10);
+					sim.runProgram();
+					CacheInstrucciones cache = sim.getCacheInstrucciones();
+					long[] obtenidas = {sim.getClock(), cache.getAciertos(), cache.getFallos(), cache.getCiclosEspera()};
+					String error = revisar(sim, p, false);
+					if(error == null && !Arrays.equals(obtenidas, cuentas[p][conL2])){
+						error = "{ciclos, aciertos, fallos, espera} = " + Arrays.toString(obtenidas) + ", se esperaba "
+								+ Arrays.toString(cuentas[p][conL2]);
+					}
+					reportar(prueba, error == null, error == null ? Arrays.toString(obtenidas) : error);
+				}
+			}
+		}
+	}//fin del metodo probarInstrucciones
+
+	/**
+	 * Cache de un bloque de una palabra con memoria 10,10,1 y buffer de una entrada.
+	 * Se escribe el bloque 0 y se lee el 1: el 0 modificado baja al buffer, y al
+	 * leerlo en el ciclo siguiente se toma de ahi en un ciclo sin que llegue a memoria.
+	 * Despues el buffer se llena y el ultimo fallo espera los 10 ciclos que le faltan
+	 * a la escritura anterior.
+	 */
+	private void probarVictimas(){
+		int[] memoria = new int[4];
+		CacheDatos cache = new CacheDatos(1, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+				memoria, 0);
+		cache.setTiempos(10, 10, 1);
+		cache.setBufferEscritura(1);
+		int[] costos = new int[5];
+		cache.setCiclo(0);
+		cache.escribir(0, 7);
+		costos[0] = cache.getCiclosAcceso();
+		cache.setCiclo(1);
+		cache.leer(4);
+		costos[1] = cache.getCiclosAcceso();
+		cache.setCiclo(2);
+		int leido = cache.leer(0);
+		costos[2] = cache.getCiclosAcceso();
+		String error = null;
+		if(leido != 7 || cache.getReenvios() != 1 || cache.getEstado(0) != 'm' || memoria[0] != 0){
+			error = "se leyo " + leido + " con " + cache.getReenvios() + " reenvios, estado " + cache.getEstado(0)
+					+ " y memoria[0] = " + memoria[0] + "; se esperaba 7 reenviado, modificado y sin escribir";
+		}
+		cache.setCiclo(3);
+		cache.escribir(8, 9);
+		costos[3] = cache.getCiclosAcceso();
+		cache.setCiclo(4);
+		cache.leer(12);
+		costos[4] = cache.getCiclosAcceso();
+		cache.vaciar();
+		if(error == null && !Arrays.equals(costos, new int[]{11, 11, 1, 11, 21})){
+			error = "los accesos tardaron " + Arrays.toString(costos) + ", se esperaba [11, 11, 1, 11, 21]";
+		}
+		if(error == null && (cache.getEscriturasBuffer() != 3 || cache.getCiclosBufferLleno() != 10
+				|| cache.getBloquesEscritos() != 2 || !Arrays.equals(memoria, new int[]{7, 0, 9, 0}))){
+			error = cache.getEscriturasBuffer() + " bloques al buffer, " + cache.getCiclosBufferLleno()
+					+ " ciclos con el buffer lleno, " + cache.getBloquesEscritos() + " bloques escritos y memoria "
+					+ Arrays.toString(memoria) + "; se esperaban 3, 10, 2 y [7, 0, 9, 0]";
+		}
+		reportar("victimas reenvio", error == null, error == null ? "el bloque 0 se tomo del buffer" : error);
+
+		/*
+		 * Con memoria 10,10,1: en conflictos.txt una cache de victimas de 2 bloques
+		 * guarda los otros dos bloques del conjunto, 709 + 3*14 + 297 = 1048 ciclos; en
+		 * escrituras.txt el buffer esconde las 300 escrituras de 14 ciclos, 9521 - 4200.
+		 * {victimas, buffer, programa, ciclos, aciertos en victimas, bloques al buffer, ciclos ocultos}
+		 */
+		int[][] casos = {{2, 0, 2, 1048, 297, 0, 0}, {2, 0, 4, 1447, 298, 0, 0}, {0, 1, 4, 5321, 0, 300, 4200},
+				{0, 4, 4, 5321, 0, 300, 4200}};
+		MIPSimulator.Motor[] motores = {MIPSimulator.Motor.SECUENCIAL, MIPSimulator.Motor.HILOS};
+		for(MIPSimulator.Motor motor : motores){
+			for(int[] caso : casos){
+				int p = caso[2];
+				String prueba = "victimas " + motor + " " + PROGRAMAS[p] + " v=" + caso[0] + " b=" + caso[1];
+				MIPSimulator sim = cargar(PROGRAMAS[p], motor);
+				if(sim == null){
+					reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+					continue;
+				}
+				sim.setTiemposMemoria(10, 10, 1);
+				sim.setCacheVictimas(caso[0]);
+				sim.setBufferEscritura(caso[1]);
+				sim.runProgram();
+				CacheDatos datos = sim.getCache();
+				long[] obtenidas = {sim.getClock(), datos.getAciertosVictimas(), datos.getEscriturasBuffer(),
+						datos.getCiclosOcultos()};
+				long[] esperadas = {caso[3], caso[4], caso[5], caso[6]};
+				error = revisar(sim, p, false);
+				if(error == null && !Arrays.equals(obtenidas, esperadas)){
+					error = "{ciclos, aciertos en victimas, bloques al buffer, ciclos ocultos} = "
+							+ Arrays.toString(obtenidas) + ", se esperaba " + Arrays.toString(esperadas);
+				}
+				reportar(prueba, error == null, error == null ? Arrays.toString(obtenidas) : error);
+			}
+		}
+	}//fin del metodo probarVictimas
+
+	/**
+	 * Graba los accesos de cada programa y los barre con 36 geometrias. Cada resultado
+	 * se compara con una CacheDatos LRU de esa geometria que lee y escribe la misma
+	 * traza, y con la cache del simulador cuando se corre el programa con ella.
+	 */
+	private void probarBarrido(){
+		int[][] geometrias = BarridoCaches.leerGeometrias("1,2,4,8/1,2,4/1,4,8");
+		for(int p = 0; p < PROGRAMAS.length; ++p){
+			String prueba = "barrido " + PROGRAMAS[p];
+			MIPSimulator sim = cargar(PROGRAMAS[p], MIPSimulator.Motor.SECUENCIAL);
+			if(sim == null){
+				reportar(prueba, false, "no se pudo cargar " + PROGRAMAS[p]);
+				continue;
+			}
+			TrazaMemoria traza = new TrazaMemoria();
+			sim.setGrabacion(traza);
+			sim.runProgram();
+			BarridoCaches.Resultado[] resultados = new BarridoCaches(traza).barrer(geometrias);
+			String error = null;
+			for(int g = 0; g < geometrias.length && error == null; ++g){
+				int[] geo = geometrias[g];
+				CacheDatos cache = new CacheDatos(geo[0], geo[1], geo[2], CacheDatos.Reemplazo.LRU,
+						CacheDatos.Escritura.WRITE_BACK, new int[sim.getMemoriaDatos().length], 768);
+				for(int i = 0; i < traza.getLargo(); ++i){
+					if(traza.esEscritura(i)){
+						cache.escribir(traza.getDireccion(i), 0);
+					}
+					else{
+						cache.leer(traza.getDireccion(i));
+					}
+				}
+				MIPSimulator conCache = cargar(PROGRAMAS[p], MIPSimulator.Motor.SECUENCIAL);
+				conCache.setCache(geo[0], geo[1], geo[2], CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK);
+				conCache.runProgram();
+				BarridoCaches.Resultado r = resultados[g];
+				if(r.aciertos != cache.getAciertos() || r.fallos != cache.getFallos()
+						|| r.aciertos != conCache.getAciertosCache() || r.fallos != conCache.getFallosCache()){
+					error = Arrays.toString(geo) + ": el barrido da " + r.aciertos + "/" + r.fallos
+							+ ", la cache con la traza " + cache.getAciertos() + "/" + cache.getFallos()
+							+ " y el simulador " + conCache.getAciertosCache() + "/" + conCache.getFallosCache();
+				}
+			}
+			// los tres bloques de conflictos.txt chocan en mapeo directo y caben en 4 vias
+			for(int g = 0; g < geometrias.length && error == null && p == 2; ++g){
+				int[] geo = geometrias[g];
+				boolean directo = Arrays.equals(geo, new int[]{8, 1, 4});
+				if((directo || Arrays.equals(geo, new int[]{2, 4, 4}))
+						&& resultados[g].fallos != (directo ? 300 : 3)){
+					error = Arrays.toString(geo) + ": " + resultados[g].fallos + " fallos, se esperaban "
+							+ (directo ? 300 : 3);
+				}
+			}
+			reportar(prueba, error == null, error == null ? traza.getLargo() + " accesos, " + geometrias.length
+					+ " geometrias iguales" : error);
+		}
+	}//fin del metodo probarBarrido
+
+	/**
+	 * Cada hilo de candado.txt suma 50 al contador (palabra 8) dentro de un candado
+	 * con LL/SC, asi que al terminar vale 1 + 50 por hilo y el candado queda libre.
+	 * Se corre en cada modo de multihilo con memoria ideal, con 10,10,1 (l), con 4
+	 * MSHRs (n) y con cache de instrucciones de 4x2 (i); los dos motores deben dar
+	 * los mismos ciclos. Se corre con un limite porque hubo dos maneras de no
+	 * terminar: por quantum, con la cache de instrucciones, 3 hilos y quantum corto
+	 * los hilos se sacaban los bloques unos a otros; con FALLO el hilo que esperaba
+	 * el candado nunca fallaba y no dejaba correr al que lo tenia.
+	 */
+	private void probarCandado(){
+		String[] memorias = {"", "l", "ln", "li"};
+		int[] quantums = {1, 5, 100};
+		for(MIPSimulator.Multihilo multihilo : MIPSimulator.Multihilo.values()){
+			for(int hilos = 2; hilos <= 3; ++hilos){
+				for(int quantum : quantums){
+					for(String memoria : memorias){
+						String prueba = "candado " + multihilo + " " + hilos + " hilos q" + quantum
+								+ (memoria.isEmpty() ? "" : " -" + memoria);
+						int ciclos = -1;
+						String error = null;
+						for(MIPSimulator.Motor motor : new MIPSimulator.Motor[]{MIPSimulator.Motor.SECUENCIAL,
+								MIPSimulator.Motor.HILOS}){
+							MIPSimulator sim = new MIPSimulator(quantum, motor);
+							sim.setTraza(false);
+							for(int h = 0; h < hilos; ++h){
+								if(!sim.loadFile(new File(directorio, CANDADO))){
+									error = "no se pudo cargar " + CANDADO;
+								}
+							}
+							if(error != null){
+								break;
+							}
+							sim.setMultihilo(multihilo);
+							configurar(sim, memoria);
+							sim.step(LIMITE_CANDADO);
+							error = revisarCandado(sim, hilos);
+							if(error == null && ciclos >= 0 && sim.getClock() != ciclos){
+								error = "HILOS tardo " + sim.getClock() + " ciclos y SECUENCIAL " + ciclos;
+							}
+							if(error != null){
+								error = motor + ": " + error;
+								break;
+							}
+							ciclos = sim.getClock();
+						}
+						reportar(prueba, error == null, error == null ? ciclos + " ciclos" : error);
+					}
+				}
+			}
+		}
+	}//fin del metodo probarCandado
+
+	/**
+	 * Primero cada planificador solo, metiendo y sacando hilos a mano. Prioridad
+	 * 1,0,0,2 turna a los hilos 1 y 2 mientras vuelvan a estar listos, y despues
+	 * saca el 0 y el 3. Memoria con umbral 50 y paciencia 2 deja al hilo 0, que
+	 * espero 8 de 10 ciclos, para despues de dos turnos de los rapidos. Loteria y paso
+	 * con boletos 3,2,1 reparten 6000 turnos en proporcion 3:2:1, y con 7,6,...,1
+	 * (siete hilos, asi el arbol y el monticulo no estan llenos) 28000 turnos en
+	 * proporcion 7:6:...:1; la loteria con un margen del 2% de los turnos y el paso
+	 * con uno de un turno.
+	 */
+	private void probarPlanificadores(){
+		Planificador prioridad = Planificador.leer("prioridad,1,0,0,2");
+		prioridad.reiniciar(4);
+		for(int h = 0; h < 4; ++h){
+			prioridad.listo(h, 0, 0);
+		}
+		int[] orden = new int[8];
+		for(int i = 0; i < orden.length; ++i){
+			orden[i] = prioridad.elegir();
+			if(i < 4){
+				prioridad.listo(orden[i], 10, 0);
+			}
+		}
+		revisarOrden("planificador prioridad", orden, new int[]{1, 2, 1, 2, 1, 2, 0, 3});
+
+		Planificador memoria = Planificador.leer("memoria,50,2");
+		memoria.reiniciar(3);
+		memoria.listo(0, 10, 8);
+		memoria.listo(1, 10, 0);
+		memoria.listo(2, 10, 4);
+		orden = new int[6];
+		for(int i = 0; i < orden.length; ++i){
+			orden[i] = memoria.elegir();
+			if(orden[i] >= 0 && i < 3){
+				memoria.listo(orden[i], 10, orden[i] == 0 ? 8 : 0);
+			}
+		}
+		revisarOrden("planificador memoria", orden, new int[]{1, 2, 0, 1, 2, 0});
+
+		for(String nombre : new String[]{"loteria,3,2,1", "paso,3,2,1", "loteria,7,6,5,4,3,2,1",
+				"paso,7,6,5,4,3,2,1"}){
+			Planificador plan = Planificador.leer(nombre);
+			int hilos = nombre.split(",").length - 1;
+			plan.reiniciar(hilos);
+			for(int h = 0; h < hilos; ++h){
+				plan.listo(h, 0, 0);
+			}
+			int[] turnos = new int[hilos];
+			int total = 1000 * hilos * (hilos + 1) / 2;
+			for(int i = 0; i < total; ++i){
+				int hilo = plan.elegir();
+				turnos[hilo]++;
+				plan.listo(hilo, 10, 0);
+			}
+			int margen = nombre.startsWith("loteria") ? total / 50 : 1;
+			String error = null;
+			for(int h = 0; h < hilos && error == null; ++h){
+				if(Math.abs(turnos[h] - 1000 * (hilos - h)) > margen){
+					error = "turnos " + Arrays.toString(turnos) + ", se esperaban " + 1000 * hilos + " hasta 1000 con margen "
+							+ margen;
+				}
+			}
+			for(int h = 0; h < hilos; ++h){
+				plan.elegir();
+			}
+			if(error == null && plan.elegir() != -1){
+				error = "escogio un hilo con la cola vacia";
+			}
+			reportar("planificador " + plan, error == null, error == null ? "turnos " + Arrays.toString(turnos)
+					: error);
+		}
+
+		/*
+		 * conflictos.txt, paso.txt y conflictos.txt con quantum 10 y memoria 10,10,1. Con
+		 * prioridad 1,0,2 el hilo 1 corre solo hasta terminar, despues el 0 y al final el
+		 * 2; con 3 boletos contra 1 el hilo 0 termina antes que el 2.
+		 */
+		int[] programas = {2, 3, 2};
+		String[] planes = {"prioridad,1,0,2", "loteria,3,2,1", "paso,3,2,1", "memoria"};
+		for(String plan : planes){
+			String prueba = "planificador " + plan + " con tres hilos";
+			MIPSimulator sim = new MIPSimulator(10, MIPSimulator.Motor.SECUENCIAL);
+			sim.setTraza(false);
+			boolean cargado = true;
+			for(int p : programas){
+				cargado &= sim.loadFile(new File(directorio, PROGRAMAS[p]));
+			}
+			if(!cargado){
+				reportar(prueba, false, "no se pudieron cargar los programas");
+				continue;
+			}
+			sim.setTiemposMemoria(10, 10, 1);
+			sim.setPlanificador(Planificador.leer(plan));
+			sim.runProgram();
+			String error = null;
+			for(int h = 0; h < programas.length && error == null; ++h){
+				error = revisarRegistros(sim.getRegistrosHilo(h), programas[h]);
+				if(error != null){
+					error = "hilo " + h + ": " + error;
+				}
+			}
+			int[] retorno = {sim.getRetornoHilo(0), sim.getRetornoHilo(1), sim.getRetornoHilo(2)};
+			if(error == null && plan.startsWith("prioridad") && !(retorno[1] < retorno[0] && retorno[0] < retorno[2])){
+				error = "los hilos terminaron en " + Arrays.toString(retorno) + ", se esperaba el 1, el 0 y el 2";
+			}
+			if(error == null && (plan.startsWith("loteria") || plan.startsWith("paso")) && retorno[0] >= retorno[2]){
+				error = "los hilos terminaron en " + Arrays.toString(retorno) + ", el 0 debia terminar antes que el 2";
+			}
+			reportar(prueba, error == null, error == null ? "retornos " + Arrays.toString(retorno) : error);
+		}
+	}//fin del metodo probarPlanificadores
+
+	private void revisarOrden(String prueba, int[] orden, int[] esperado){
+		reportar(prueba, Arrays.equals(orden, esperado), (Arrays.equals(orden, esperado) ? "orden "
+				: "escogio " + Arrays.toString(orden) + ", se esperaba ") + Arrays.toString(esperado));
+	}
+
+	/**
+	 * Dos caches de 2 bloques de una palabra en el mismo bus, con memoria 10,10,1 y
+	 * 50 ciclos entre accesos a la palabra 0: lee 0, lee 1, escribe 0 (invalida la
+	 * copia de 1), lee 1 (fallo de coherencia, 0 interviene y le pasa el 7), escribe
+	 * 1 y escribe 0 (BusRdX, 1 interviene y deja el 9 en memoria). Con MESI la
+	 * primera lectura queda exclusiva. Despues las dos leen la palabra 1 en el mismo
+	 * ciclo y la segunda espera los 11 ciclos de la primera. Al final una cache lee y
+	 * escribe sola un bloque: con MSI la escritura usa el bus y con MESI no.
+	 */
+	private void probarCoherencia(){
+		for(Coherencia.Protocolo protocolo : Coherencia.Protocolo.values()){
+			int[] memoria = new int[8];
+			BusCoherencia bus = new BusCoherencia(protocolo);
+			CacheDatos[] caches = new CacheDatos[2];
+			for(int i = 0; i < caches.length; ++i){
+				caches[i] = new CacheDatos(2, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+						memoria, 0);
+				caches[i].setTiempos(10, 10, 1);
+				bus.conectar(caches[i]);
+			}
+			int[] quien = {0, 1, 0, 1, 1, 0};
+			boolean[] escribe = {false, false, true, false, true, true};
+			StringBuilder estados = new StringBuilder();
+			StringBuilder leidos = new StringBuilder();
+			for(int i = 0; i < quien.length; ++i){
+				CacheDatos cache = caches[quien[i]];
+				cache.setCiclo(50 * i);
+				if(escribe[i]){
+					cache.escribir(0, 5 + i);
+				}
+				else{
+					leidos.append(cache.leer(0)).append(' ');
+				}
+				estados.append(caches[0].getEstado(0)).append(caches[1].getEstado(0)).append(' ');
+			}
+			for(CacheDatos cache : caches){
+				cache.setCiclo(400);
+				cache.leer(4);
+			}
+			long[] cuentas = {bus.getLecturas(), bus.getLecturasExclusivas(), bus.getActualizaciones(),
+					bus.getInvalidaciones(), bus.getIntervenciones(), bus.getCiclosOcupado(), bus.getCiclosEspera(),
+					caches[0].getFallosCoherencia(), caches[1].getFallosCoherencia()};
+			String esperados = protocolo == Coherencia.Protocolo.MSI ? "cv cc mv cc vm mv " : "ev cc mv cc vm mv ";
+			String error = null;
+			if(!estados.toString().equals(esperados) || !leidos.toString().equals("0 0 7 ")){
+				error = "estados " + estados + "y lecturas " + leidos + "; se esperaba " + esperados + "y 0 0 7";
+			}
+			else if(!Arrays.equals(cuentas, new long[]{5, 1, 2, 3, 2, 90, 11, 1, 1}) || memoria[0] != 9){
+				error = "{BusRd, BusRdX, BusUpgr, invalidaciones, intervenciones, ocupado, espera, fallos de coherencia}"
+						+ " = " + Arrays.toString(cuentas) + " con memoria[0] = " + memoria[0]
+						+ ", se esperaba [5, 1, 2, 3, 2, 90, 11, 1, 1] con 9";
+			}
+
+			BusCoherencia solo = new BusCoherencia(protocolo);
+			CacheDatos cache = new CacheDatos(2, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+					new int[8], 0);
+			solo.conectar(cache);
+			solo.conectar(new CacheDatos(2, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+					new int[8], 0));
+			cache.leer(0);
+			cache.escribir(0, 1);
+			long esperadas = protocolo == Coherencia.Protocolo.MSI ? 1 : 0;
+			if(error == null && solo.getActualizaciones() != esperadas){
+				error = "escribir un bloque que solo tiene una cache mando " + solo.getActualizaciones()
+						+ " BusUpgr, se esperaba " + esperadas;
+			}
+			reportar("coherencia " + protocolo, error == null, error == null ? "estados " + estados.toString().trim()
+					: error);
+		}
+
+		/*
+		 * candado.txt en varios nucleos con quantum 5 y memoria 10,10,1. Cada vuelta pasa
+		 * el candado y el contador de una cache a otra: un fallo de coherencia y una
+		 * intervencion por incremento.
+		 * {nucleos, hilos, BusRd, BusRdX, BusUpgr, invalidaciones, intervenciones, fallos de coherencia}
+		 */
+		long[][] casos = {{2, 2, 104, 0, 103, 102, 100, 100}, {2, 4, 204, 0, 203, 202, 199, 200},
+				{4, 4, 608, 0, 305, 606, 300, 600}};
+		for(Coherencia.Protocolo protocolo : Coherencia.Protocolo.values()){
+			for(long[] caso : casos){
+				int hilos = (int) caso[1];
+				String prueba = "coherencia " + protocolo + " " + caso[0] + " nucleos " + hilos + " hilos";
+				Multinucleo multi = new Multinucleo((int) caso[0], 5, protocolo);
+				String error = null;
+				for(int h = 0; h < hilos && error == null; ++h){
+					if(!multi.loadFile(new File(directorio, CANDADO))){
+						error = "no se pudo cargar " + CANDADO;
+					}
+				}
+				if(error != null){
+					reportar(prueba, false, error);
+					continue;
+				}
+				for(int n = 0; n < multi.getNumNucleos(); ++n){
+					multi.getNucleo(n).setTraza(false);
+					multi.getNucleo(n).setTiemposMemoria(10, 10, 1);
+				}
+				multi.runProgram();
+				Coherencia red = multi.getCoherencia();
+				long[] cuentas = {caso[0], caso[1], red.getLecturas(), red.getLecturasExclusivas(),
+						red.getActualizaciones(), red.getInvalidaciones(), red.getIntervenciones(),
+						multi.getFallosCoherencia()};
+				if(protocolo == Coherencia.Protocolo.MESI){
+					cuentas[4]++;		// la primera escritura al candado no usa el bus
+				}
+				int[] datos = multi.getNucleo(0).getMemoriaDatos();
+				if(datos[8] != 1 + 50 * hilos || datos[0] != 1){
+					error = "el contador termino en " + datos[8] + " y el candado en " + datos[0] + ", se esperaban "
+							+ (1 + 50 * hilos) + " y 1";
+				}
+				else if(!Arrays.equals(cuentas, caso)){
+					error = "{nucleos, hilos, BusRd, BusRdX, BusUpgr, invalidaciones, intervenciones, fallos de coherencia}"
+							+ " = " + Arrays.toString(cuentas) + ", se esperaba " + Arrays.toString(caso);
+				}
+				reportar(prueba, error == null, error == null ? multi.getClock() + " ciclos" : error);
+			}
+		}
+	}//fin del metodo probarCoherencia
+
+	/**
+	 * Cuatro caches de 2 bloques de una palabra en una malla de 2x2, con 2 ciclos por
+	 * salto, 1 de busqueda y memoria 10,10,1. Los nucleos 0, 1 y 2 leen la palabra 0
+	 * (con 2 punteros el registro se desborda), 3 la escribe (invalida las tres copias,
+	 * por difusion si esta desbordado), la vuelve a leer y 0 la escribe (3 interviene y
+	 * deja el 8 en memoria). Despues 1 y 2 leen la palabra 1 en el mismo ciclo: el
+	 * nodo 1 queda ocupado hasta terminar de mandar el bloque (1 de busqueda y 11 de
+	 * llenado) y el pedido de 2, que llega 2 saltos despues, espera 8 ciclos. Con MESI
+	 * la primera lectura queda exclusiva y la segunda tiene que preguntarle a 0, por
+	 * eso hay mas mensajes.
+	 */
+	private void probarDirectorio(){
+		// {punteros, BusRd, BusRdX, invalidaciones, intervenciones, desbordes, difusiones, mensajes, saltos, espera}
+		long[][] esperadas = {{0, 5, 2, 4, 1, 0, 0, 22, 22, 8}, {0, 5, 2, 4, 1, 0, 0, 26, 25, 8},
+				{2, 5, 2, 4, 1, 1, 1, 22, 22, 8}, {2, 5, 2, 4, 1, 1, 1, 26, 25, 8}};
+		long[][] respuestas = {{6, 3, 1, 1}, {7, 4, 1, 1}};
+		int caso = 0;
+		for(int punteros : new int[]{0, 2}){
+			for(Coherencia.Protocolo protocolo : Coherencia.Protocolo.values()){
+				int[] memoria = new int[8];
+				DirectorioCoherencia red = new DirectorioCoherencia(4, protocolo, punteros, 2, 1);
+				CacheDatos[] caches = new CacheDatos[4];
+				for(int i = 0; i < caches.length; ++i){
+					caches[i] = new CacheDatos(2, 1, 1, CacheDatos.Reemplazo.LRU, CacheDatos.Escritura.WRITE_BACK,
+							memoria, 0);
+					caches[i].setTiempos(10, 10, 1);
+					red.conectar(caches[i]);
+				}
+				int[] quien = {0, 1, 2, 3, 3, 0};
+				boolean[] escribe = {false, false, false, true, false, true};
+				StringBuilder estados = new StringBuilder();
+				StringBuilder leidos = new StringBuilder();
+				for(int i = 0; i < quien.length; ++i){
+					CacheDatos cache = caches[quien[i]];
+					cache.setCiclo(50 * i);
+					if(escribe[i]){
+						cache.escribir(0, 5 + i);
+					}
+					else{
+						leidos.append(cache.leer(0)).append(' ');
+					}
+					for(CacheDatos otra : caches){
+						estados.append(otra.getEstado(0));
+					}
+					estados.append(' ');
+				}
+				for(int i = 1; i <= 2; ++i){
+					caches[i].setCiclo(400);
+					caches[i].leer(4);
+				}
+				long[] cuentas = {punteros, red.getLecturas(), red.getLecturasExclusivas(),
+						red.getInvalidaciones(), red.getIntervenciones(), red.getDesbordes(),
+						red.getDifusiones(), red.getMensajes(), red.getSaltos(),
+						red.getCiclosEspera()};
+				long[] pedidos = new long[4];
+				long[] mandadas = new long[4];
+				long[] fallos = new long[4];
+				for(int n = 0; n < 4; ++n){
+					pedidos[n] = red.getPedidos(n);
+					mandadas[n] = red.getRespuestas(n);
+					fallos[n] = caches[n].getFallosCoherencia();
+				}
+				long[] esperadasRespuestas = respuestas[protocolo.ordinal()];
+				String primera = protocolo == Coherencia.Protocolo.MSI ? "cvvv" : "evvv";
+				String error = null;
+				if(!estados.toString().equals(primera + " ccvv cccv vvvm vvvm mvvv ")
+						|| !leidos.toString().equals("0 0 0 8 ") || memoria[0] != 8){
+					error = "estados " + estados + "lecturas " + leidos + "y memoria[0] = " + memoria[0]
+							+ "; se esperaba " + primera + " ccvv cccv vvvm vvvm mvvv, 0 0 0 8 y 8";
+				}
+				else if(!Arrays.equals(cuentas, esperadas[caso])){
+					error = "{punteros, BusRd, BusRdX, invalidaciones, intervenciones, desbordes, difusiones,"
+							+ " mensajes, saltos, espera} = " + Arrays.toString(cuentas) + ", se esperaba "
+							+ Arrays.toString(esperadas[caso]);
+				}
+				else if(!Arrays.equals(pedidos, new long[]{2, 2, 2, 1}) || !Arrays.equals(mandadas, esperadasRespuestas)
+						|| !Arrays.equals(fallos, new long[]{1, 0, 0, 0})){
+					error = "pedidos " + Arrays.toString(pedidos) + ", respuestas " + Arrays.toString(mandadas)
+							+ " y fallos de coherencia " + Arrays.toString(fallos) + " por nodo, se esperaba [2, 2, 2, 1], "
+							+ Arrays.toString(esperadasRespuestas) + " y [1, 0, 0, 0]";
+				}
+				caso++;
+				reportar("directorio " + protocolo + " " + punteros + " punteros", error == null,
+						error == null ? red.getMensajes() + " mensajes" : error);
+			}
+		}
+
+		/*
+		 * candado.txt con un hilo por nucleo, quantum 5, memoria 10,10,1 y 1 ciclo por
+		 * salto y por busqueda. Con 1 puntero casi cada escritura al candado desborda y
+		 * difunde; con 2 punteros en 9 nucleos, mas o menos siete de cada ocho. Con 4
+		 * nucleos cuenta lo mismo que el bus, porque el nodo del candado tambien atiende
+		 * los pedidos de uno en uno hasta mandar el bloque.
+		 * {punteros, nucleos, BusRd, BusRdX, BusUpgr, invalidaciones, intervenciones,
+		 * desbordes, difusiones, fallos de coherencia}
+		 */
+		long[][][] casos = {
+				{{0, 4, 608, 0, 305, 606, 300, 0, 0, 600}, {1, 4, 608, 0, 305, 606, 300, 304, 304, 600},
+						{2, 9, 3618, 0, 810, 3616, 800, 701, 701, 3600}},
+				{{0, 4, 608, 0, 304, 606, 300, 0, 0, 600}, {1, 4, 608, 0, 304, 606, 300, 304, 304, 600},
+						{2, 9, 3618, 0, 809, 3616, 800, 701, 701, 3600}}};
+		for(Coherencia.Protocolo protocolo : Coherencia.Protocolo.values()){
+			for(long[] esperado : casos[protocolo.ordinal()]){
+				int nucleos = (int) esperado[1];
+				String prueba = "directorio " + protocolo + " " + esperado[0] + " punteros " + nucleos + " nucleos";
+				DirectorioCoherencia red = new DirectorioCoherencia(nucleos, protocolo, (int) esperado[0], 1, 1);
+				Multinucleo multi = new Multinucleo(nucleos, 5, red);
+				String error = null;
+				for(int h = 0; h < nucleos && error == null; ++h){
+					if(!multi.loadFile(new File(directorio, CANDADO))){
+						error = "no se pudo cargar " + CANDADO;
+					}
+				}
+				if(error != null){
+					reportar(prueba, false, error);
+					continue;
+				}
+				for(int n = 0; n < nucleos; ++n){
+					multi.getNucleo(n).setTraza(false);
+					multi.getNucleo(n).setTiemposMemoria(10, 10, 1);
+				}
+				multi.runProgram();
+				long[] cuentas = {red.getPunteros(), red.getNodos(), red.getLecturas(), red.getLecturasExclusivas(),
+						red.getActualizaciones(), red.getInvalidaciones(), red.getIntervenciones(), red.getDesbordes(),
+						red.getDifusiones(), multi.getFallosCoherencia()};
+				int[] datos = multi.getNucleo(0).getMemoriaDatos();
+				if(datos[8] != 1 + 50 * nucleos || datos[0] != 1){
+					error = "el contador termino en " + datos[8] + " y el candado en " + datos[0] + ", se esperaban "
+							+ (1 + 50 * nucleos) + " y 1";
+				}
+				else if(!Arrays.equals(cuentas, esperado)){
+					error = "{punteros, nucleos, BusRd, BusRdX, BusUpgr, invalidaciones, intervenciones, desbordes,"
+							+ " difusiones, fallos de coherencia} = " + Arrays.toString(cuentas) + ", se esperaba "
+							+ Arrays.toString(esperado);
+				}
+				reportar(prueba, error == null, error == null ? multi.getClock() + " ciclos" : error);
+			}
+		}
+	}//fin del metodo probarDirectorio
+
+	/**
+	 * Configura la memoria: l para 10,10,1, n para 4 MSHRs, i para la cache de instrucciones
+	 */
+	private static void configurar(MIPSimulator sim, String memoria){
+		if(memoria.indexOf('l') >= 0){
+			sim.setTiemposMemoria(10, 10, 1);
+		}
+		if(memoria.indexOf('n') >= 0){
+			sim.setMSHR(4);
+		}
+		if(memoria.indexOf('i') >= 0){
+			sim.setCacheInstrucciones(4, 2, 4, 10);
+		}
+	}
+
+	/**
+	 * @return null si todos los hilos llegaron a FIN con el contador y el candado bien
+	 */
+	private static String revisarCandado(MIPSimulator sim, int hilos){
+		if(!sim.haTerminado()){
+			return "no termino en " + LIMITE_CANDADO + " ciclos, el contador va en " + sim.getMemoriaDatos()[8];
+		}
+		int contador = sim.getMemoriaDatos()[8];
+		if(contador != 1 + 50 * hilos || sim.getMemoriaDatos()[0] != 1){
+			return "el contador termino en " + contador + " y el candado en " + sim.getMemoriaDatos()[0]
+					+ ", se esperaban " + (1 + 50 * hilos) + " y 1";
+		}
+		return null;
+	}
+
+	/**
+	 * @return un simulador sin traza con el programa cargado, o null si no se pudo cargar
+	 */
+	private MIPSimulator cargar(String programa, MIPSimulator.Motor motor){
+		MIPSimulator sim = new MIPSimulator(1, motor);
+		sim.setTraza(false);
+		return sim.loadFile(new File(directorio, programa)) ? sim : null;
+	}
+
+	private void reportar(String prueba, boolean ok, String detalle){
+		corridas++;
+		if(!ok){
+			fallidas++;
+		}
+		out.println("{\"prueba\":\"" + prueba + "\",\"ok\":" + ok + ",\"detalle\":\"" + detalle + "\"}");
+	}
+}//fin de la clase